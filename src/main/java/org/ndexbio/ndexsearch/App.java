@@ -175,10 +175,11 @@ public class App {
                      new SearchHttpServletDispatcher());
                 
                 restEasyServlet.setInitOrder(1);
+                restEasyServlet.setAsyncSupported(true);
                 restEasyServlet.setInitParameters(initMap);
                 webappContext.addServlet(restEasyServlet, "/*");
-                webappContext.addFilter(CorsFilter.class, "/*", null);
-				webappContext.addFilter(RequestLoggingFilter.class, "/*", null);
+                webappContext.addFilter(CorsFilter.class, "/*", null).setAsyncSupported(true);
+				webappContext.addFilter(RequestLoggingFilter.class, "/*", null).setAsyncSupported(true);
                 ContextHandlerCollection contexts = new ContextHandlerCollection();
                 contexts.setHandlers(new Handler[] { webappContext });
  
@@ -273,6 +274,99 @@ public class App {
         sb.append("\n# Sets name of json file containing source results.\n# This file ");
         sb.append("expected to reside in " + Configuration.DATABASE_DIR + " directory\n");
         sb.append(Configuration.SOURCE_CONFIGURATIONS_JSON_FILE+ " = " + Configuration.SOURCE_CONFIGURATIONS_JSON_FILE + ".json\n");
+        
+        sb.append("\n# Number of worker threads that process submitted queries in parallel\n");
+        sb.append(Configuration.DISPATCHER_WORKERS + " = 4\n");
+        
+        sb.append("\n# Time in milliseconds each source is given to answer a query\n");
+        sb.append(Configuration.SOURCE_QUERY_TIMEOUT + " = 30000\n");
+        
+        sb.append("\n# Time in milliseconds sources are given to refresh their information.\n");
+        sb.append("# A source that takes longer keeps its previous information marked stale\n");
+        sb.append(Configuration.SOURCE_REFRESH_TIMEOUT + " = 30000\n");
+        
+        sb.append("\n# Delay in milliseconds before sources of an unfinished query are\n");
+        sb.append("# polled for progress. The delay doubles after each poll up to the max\n");
+        sb.append(Configuration.PROGRESS_POLL_INTERVAL + " = 1000\n");
+        sb.append(Configuration.PROGRESS_MAX_POLL_INTERVAL + " = 10000\n");
+        
+        sb.append("\n# Time in milliseconds an existing task is returned for identical\n");
+        sb.append("# queries instead of rerunning them. Set to 0 to disable\n");
+        sb.append(Configuration.QUERY_REUSE_TTL + " = 3600000\n");
+        
+        sb.append("\n# Number of completed results and time in milliseconds they are\n");
+        sb.append("# cached by each enrichment style source. Set size to 0 to disable\n");
+        sb.append(Configuration.ENRICHMENT_CACHE_SIZE + " = 500\n");
+        sb.append(Configuration.ENRICHMENT_CACHE_TTL + " = 3600000\n");
+        sb.append("\n# Time in milliseconds enrichment style sources keep finished tasks.\n");
+        sb.append("# Cached results refer to the task that produced them so they are\n");
+        sb.append("# reused for at most half this time\n");
+        sb.append(Configuration.ENRICHMENT_TASK_RETENTION + " = 86400000\n");
+        sb.append("\n# If true, each result of an enrichment style source is passed through\n");
+        sb.append("# as the JSON returned by the source under enrichmentResult in its details\n");
+        sb.append("# with only rank, networkUUID, nodes and edges set on the result itself\n");
+        sb.append(Configuration.ENRICHMENT_RAW_RESULTS + " = false\n");
+        sb.append("\n# Maximum size in bytes of results of finished tasks kept in memory\n");
+        sb.append(Configuration.COMPLETED_RESULTS_CACHE_SIZE + " = 268435456\n");
+        sb.append("\n# Format finished tasks are saved in, json or binary. Tasks saved\n");
+        sb.append("# in either format remain readable after this is changed\n");
+        sb.append(Configuration.TASK_STORAGE_FORMAT + " = json\n");
+        sb.append("\n# Where tasks are saved, filesystem saves each task in its own\n");
+        sb.append("# directory, embedded saves all tasks in a single file in task directory\n");
+        sb.append("# and ignores " + Configuration.TASK_STORAGE_FORMAT + "\n");
+        sb.append(Configuration.TASK_STORE + " = filesystem\n");
+        sb.append("\n# If true, saved tasks are flushed to disk (fsync) before the save\n");
+        sb.append("# is considered done. Safer on power loss but slower\n");
+        sb.append(Configuration.TASK_SYNC_WRITES + " = false\n");
+        sb.append("\n# Tasks older then this many milliseconds are removed (0 = never)\n");
+        sb.append(Configuration.TASK_MAX_AGE + " = 604800000\n");
+        sb.append("\n# When disk holding tasks is at least this percent full the oldest\n");
+        sb.append("# tasks are removed until it is not (0 = never)\n");
+        sb.append(Configuration.TASK_DISK_HIGH_WATER_MARK + " = 90\n");
+        sb.append("\n# Milliseconds between checks for tasks to remove\n");
+        sb.append(Configuration.TASK_JANITOR_INTERVAL + " = 600000\n");
+        sb.append("\n# Maximum calls to a single source running at once, further calls\n");
+        sb.append("# fail right away. Each call is also given " + Configuration.SOURCE_QUERY_TIMEOUT + "\n");
+        sb.append("# milliseconds to finish\n");
+        sb.append(Configuration.SOURCE_MAX_CONCURRENT_CALLS + " = 16\n");
+        sb.append("\n# After this many consecutive failed calls to a source, calls to it\n");
+        sb.append("# fail right away for " + Configuration.SOURCE_CIRCUIT_OPEN_TIME + " milliseconds\n");
+        sb.append(Configuration.SOURCE_CIRCUIT_FAILURE_THRESHOLD + " = 5\n");
+        sb.append(Configuration.SOURCE_CIRCUIT_OPEN_TIME + " = 30000\n");
+        sb.append("\n# Milliseconds a source task is kept waiting while its progress cannot\n");
+        sb.append("# be checked, due to timeouts or an open circuit, before it is failed\n");
+        sb.append(Configuration.SOURCE_TASK_DEADLINE + " = 600000\n");
+        sb.append("\n# Maximum attempts made for a failed call to a source. Retries wait a\n");
+        sb.append("# random time up to " + Configuration.SOURCE_RETRY_BASE_DELAY + " milliseconds, doubled\n");
+        sb.append("# for each later retry\n");
+        sb.append(Configuration.SOURCE_RETRY_MAX_ATTEMPTS + " = 3\n");
+        sb.append(Configuration.SOURCE_RETRY_BASE_DELAY + " = 100\n");
+        sb.append("\n# Percent of calls to all sources that can be retried or hedged\n");
+        sb.append(Configuration.SOURCE_RETRY_BUDGET_PERCENT + " = 10\n");
+        sb.append("\n# If true, a read from a source that is slower then 95% of recent\n");
+        sb.append("# reads is sent again and the first answer is used\n");
+        sb.append(Configuration.SOURCE_HEDGE_READS + " = false\n");
+        sb.append("\n# Pool of keep-alive HTTP connections shared by enrichment style sources.\n");
+        sb.append("# Timeouts and keep alive are in milliseconds\n");
+        sb.append(Configuration.SOURCE_HTTP_MAX_CONNECTIONS + " = 100\n");
+        sb.append(Configuration.SOURCE_HTTP_MAX_CONNECTIONS_PER_ROUTE + " = 20\n");
+        sb.append(Configuration.SOURCE_HTTP_CONNECT_TIMEOUT + " = 10000\n");
+        sb.append("# Read timeout must be less then " + Configuration.SOURCE_QUERY_TIMEOUT + ", if 0\n");
+        sb.append("# it is set to " + Configuration.SOURCE_QUERY_TIMEOUT + " less the connect timeout\n");
+        sb.append(Configuration.SOURCE_HTTP_READ_TIMEOUT + " = 0\n");
+        sb.append(Configuration.SOURCE_HTTP_KEEP_ALIVE + " = 30000\n");
+        sb.append("\n# Maximum networks returned by keyword source, raise to return more.\n");
+        sb.append("# Networks after the first page are fetched from NDEx in the\n");
+        sb.append("# background, a page at a time\n");
+        sb.append(Configuration.KEYWORD_MAX_RESULTS + " = 100\n");
+        sb.append(Configuration.KEYWORD_PAGE_SIZE + " = 100\n");
+        sb.append(Configuration.KEYWORD_MAX_CONCURRENT_PAGES + " = 4\n");
+        sb.append("\n# Estimated size in bytes and time in milliseconds results are cached\n");
+        sb.append("# by keyword source. Cached results are also dropped whenever the\n");
+        sb.append("# network count or version of NDEx changes. Set size to 0 to disable\n");
+        sb.append(Configuration.KEYWORD_CACHE_SIZE + " = 20000000\n");
+        sb.append(Configuration.KEYWORD_CACHE_TTL + " = 3600000\n");
+        
         sb.append(Configuration.NDEX_USER+ " = bob\n");
         sb.append(Configuration.NDEX_PASS+ " = somepassword\n");
         sb.append(Configuration.NDEX_SERVER+ " = public.ndexbio.org\n");
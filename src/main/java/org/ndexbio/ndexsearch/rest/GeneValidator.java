@@ -2,7 +2,10 @@ package org.ndexbio.ndexsearch.rest;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
@@ -59,6 +62,50 @@ public class GeneValidator {
 	public TreeMap<String,String> getAliasMap() {return aliasMap;}
 	
 	public ValidatedQueryGenes validateHumanGenes(Collection<String> genes) {
+		return validateHumanGenes(genes, null);
+	}
+	
+	/**
+	 * Validates several gene lists at once. Each distinct term is looked
+	 * up in the symbol set and alias map only once no matter how many
+	 * lists it appears in and identical lists share a single result
+	 * @param geneLists gene lists to validate
+	 * @return validated genes in same order as {@code geneLists}
+	 */
+	public List<ValidatedQueryGenes> validateHumanGenes(List<? extends Collection<String>> geneLists) {
+		Map<String, String> resolvedTerms = new HashMap<>();
+		Map<Collection<String>, ValidatedQueryGenes> validatedLists = new HashMap<>();
+		List<ValidatedQueryGenes> results = new ArrayList<>(geneLists.size());
+		for (Collection<String> genes : geneLists) {
+			ValidatedQueryGenes result = validatedLists.get(genes);
+			if (result == null) {
+				result = validateHumanGenes(genes, resolvedTerms);
+				validatedLists.put(genes, result);
+			}
+			results.add(result);
+		}
+		return results;
+	}
+	
+	/**
+	 * Gets official symbol for upper cased {@code term}
+	 * @return official symbol, the empty string if {@code term} is not
+	 *         a known symbol or alias
+	 */
+	private String resolveTerm(String term) {
+		if (geneSymbolSet.contains(term)) {
+			return term;
+		}
+		String officialGene = aliasMap.get(term);
+		return officialGene == null ? "" : officialGene;
+	}
+	
+	/**
+	 * @param resolvedTerms if not {@code null} used to remember terms
+	 *        already resolved via {@link #resolveTerm(java.lang.String)}
+	 */
+	private ValidatedQueryGenes validateHumanGenes(Collection<String> genes,
+			Map<String, String> resolvedTerms) {
 		ValidatedQueryGenes result = new ValidatedQueryGenes();
 		
 		Set<String> officialGenes = new TreeSet<>();
@@ -73,10 +120,11 @@ public class GeneValidator {
 		
 		for ( String rawTerm : genes) {
 			String term = rawTerm.toUpperCase();
-			if (geneSymbolSet.contains(term)) {
+			String officialGene = resolvedTerms == null ? resolveTerm(term)
+					: resolvedTerms.computeIfAbsent(term, this::resolveTerm);
+			if (officialGene.equals(term)) {
 				officialGenes.add(term);
-			} else if ( aliasMap.containsKey(term)) {
-				String officialGene = aliasMap.get(term);
+			} else if ( !officialGene.isEmpty()) {
 				officialGenes.add(officialGene);
 				normalizedGenes.put(officialGene, term);
 			} else 
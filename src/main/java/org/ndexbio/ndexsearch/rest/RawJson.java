@@ -0,0 +1,199 @@
+package org.ndexbio.ndexsearch.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A JSON value kept as its undecoded UTF-8 bytes. When written with
+ * Jackson the bytes are copied straight into the output instead of being
+ * encoded from objects. A value can be created from a slice of a larger
+ * buffer, such as a response body, in which case only the slice is kept.
+ *
+ * With the mapper and readers for raw results from {@link SearchJsonProvider},
+ * values in {@link org.ndexbio.ndexsearch.rest.model.SourceQueryResult#getDetails()}
+ * that are JSON objects or arrays are read back as {@code RawJson}, see
+ * {@link SourceQueryResultMixIn}, so they also pass through saved tasks
+ * without being decoded.
+ *
+ * @author churas
+ */
+public class RawJson implements JsonSerializable, SerializableString {
+
+    private final byte[] _json;
+
+    /**
+     * Constructor
+     * @param json UTF-8 bytes of a single JSON value, these are not copied
+     *        and must not be changed afterwards
+     */
+    public RawJson(byte[] json) {
+        _json = json;
+    }
+
+    /**
+     * Constructor for a JSON value that is a slice of {@code buffer}.
+     * The slice is copied so {@code buffer} is not kept
+     * @param buffer buffer holding the JSON value
+     * @param offset offset of first byte of value
+     * @param length number of bytes in value
+     */
+    public RawJson(byte[] buffer, int offset, int length) {
+        _json = Arrays.copyOfRange(buffer, offset, offset + length);
+    }
+
+    /**
+     * Gets copy of the JSON bytes
+     * @return UTF-8 bytes of JSON value
+     */
+    public byte[] getBytes() {
+        return _json.clone();
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider sp) throws IOException {
+        gen.writeRawValue(this);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider sp,
+            TypeSerializer ts) throws IOException {
+        serialize(gen, sp);
+    }
+
+    @Override
+    public String getValue() {
+        return new String(_json, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int charLength() {
+        return getValue().length();
+    }
+
+    @Override
+    public char[] asQuotedChars() {
+        return getValue().toCharArray();
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+        return getBytes();
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+        return getBytes();
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+        return appendUnquotedUTF8(buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+        return appendUnquoted(buffer, offset);
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+        if (offset + _json.length > buffer.length){
+            return -1;
+        }
+        System.arraycopy(_json, 0, buffer, offset, _json.length);
+        return _json.length;
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+        String value = getValue();
+        if (offset + value.length() > buffer.length){
+            return -1;
+        }
+        value.getChars(0, value.length(), buffer, offset);
+        return value.length();
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) throws IOException {
+        return writeUnquotedUTF8(out);
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+        out.write(_json);
+        return _json.length;
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) {
+        return putUnquotedUTF8(buffer);
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer buffer) {
+        if (buffer.remaining() < _json.length){
+            return -1;
+        }
+        buffer.put(_json);
+        return _json.length;
+    }
+
+    @Override
+    public String toString() {
+        return getValue();
+    }
+
+    /**
+     * Reads values that are JSON objects or arrays as {@link RawJson} by
+     * copying their tokens into a byte buffer, all other values are read
+     * as they would be for an {@link Object}
+     */
+    public static class ValueDeserializer extends StdDeserializer<Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        public ValueDeserializer() {
+            super(Object.class);
+        }
+
+        @Override
+        public Object deserialize(JsonParser p, DeserializationContext dc) throws IOException {
+            JsonToken token = p.getCurrentToken();
+            if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY){
+                return p.getCodec().readValue(p, Object.class);
+            }
+            try (ByteArrayBuilder bab = new ByteArrayBuilder()) {
+                try (JsonGenerator gen = p.getCodec().getFactory().createGenerator(bab)) {
+                    gen.copyCurrentStructure(p);
+                }
+                return new RawJson(bab.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * Mix-in for {@link org.ndexbio.ndexsearch.rest.model.SourceQueryResult}
+     * so structured values in its details are read as {@link RawJson}
+     */
+    public abstract static class SourceQueryResultMixIn {
+
+        @JsonDeserialize(contentUsing = ValueDeserializer.class)
+        public abstract void setDetails(Map<String, Object> details);
+    }
+}
@@ -1,6 +1,8 @@
 package org.ndexbio.ndexsearch.rest;
 
 import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -56,13 +58,35 @@ public class RequestLoggingFilter implements Filter {
         // pass the request along the filter chain
         chain.doFilter(servletRequest, servletResponse);
 		
-		//log the response
+		//log the response, for suspended requests once they complete
 		HttpServletResponse response = (HttpServletResponse)servletResponse;
-		_requestLogger.info(tid + "\t[end] [status: "
-				+ Integer.toString(response.getStatus()) + "]");
+		if (request.isAsyncStarted()){
+			request.getAsyncContext().addListener(new AsyncListener() {
+				@Override
+				public void onComplete(AsyncEvent event) {
+					logEnd(tid, response);
+				}
+				@Override
+				public void onTimeout(AsyncEvent event) {
+				}
+				@Override
+				public void onError(AsyncEvent event) {
+				}
+				@Override
+				public void onStartAsync(AsyncEvent event) {
+				}
+			});
+			return;
+		}
+		logEnd(tid, response);
 	
     }
 	
+	private void logEnd(final String tid, HttpServletResponse response){
+		_requestLogger.info(tid + "\t[end] [status: "
+				+ Integer.toString(response.getStatus()) + "]");
+	}
+	
 	private String getTimestampAndThreadId(){
 		return "[tid:" + Long.toString(System.currentTimeMillis()) + "-"
 				+ Long.toString(Thread.currentThread().getId()) + "]";
@@ -18,6 +18,7 @@ public class SearchApplication extends Application {
     private final Set<Object> _singletons = new HashSet<>();
     public SearchApplication() {        
         // Register our hello service
+        _singletons.add(new SearchJsonProvider());
     }
     @Override
     public Set<Object> getSingletons() {
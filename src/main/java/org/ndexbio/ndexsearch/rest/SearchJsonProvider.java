@@ -0,0 +1,195 @@
+package org.ndexbio.ndexsearch.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+import org.ndexbio.ndexsearch.rest.model.Query;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.QueryStatus;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceResults;
+
+/**
+ * JAX-RS provider that reads and writes JSON with a single shared
+ * {@link com.fasterxml.jackson.databind.ObjectMapper}. Readers and writers
+ * for the objects passed back and forth most often are built once up front
+ * so requests are deserialized straight from the input stream without any
+ * per request mapper construction or introspection. The same mapper,
+ * readers and writers are used by the search engine via the static
+ * methods of this class. Structured result details are read as
+ * {@link RawJson} by a provider created with raw results enabled and by
+ * the mapper and readers obtained with raw results requested.
+ *
+ * @author churas
+ */
+@Provider
+@Consumes({MediaType.APPLICATION_JSON, "text/json"})
+@Produces({MediaType.APPLICATION_JSON, "text/json"})
+public class SearchJsonProvider extends JacksonJsonProvider implements ContextResolver<ObjectMapper> {
+
+    /**
+     * Shared mapper, this must not be reconfigured after construction.
+     * Output streams are left open for the caller to close
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    /**
+     * Shared mapper used when raw results are enabled, same as
+     * {@link #MAPPER} except structured result details are kept as
+     * {@link RawJson}
+     */
+    private static final ObjectMapper RAW_MAPPER = MAPPER.copy()
+            .addMixIn(SourceQueryResult.class, RawJson.SourceQueryResultMixIn.class);
+
+    private static final Map<Class<?>, ObjectReader> READERS;
+    private static final Map<Class<?>, ObjectReader> RAW_READERS;
+    private static final Map<Class<?>, ObjectWriter> WRITERS;
+
+    static {
+        Map<Class<?>, ObjectReader> readers = new HashMap<>();
+        Map<Class<?>, ObjectReader> rawReaders = new HashMap<>();
+        Map<Class<?>, ObjectWriter> writers = new HashMap<>();
+        for (Class<?> theClass : Arrays.asList(Query.class, QueryResults.class,
+                QueryStatus.class, SourceResults.class)){
+            readers.put(theClass, MAPPER.readerFor(theClass));
+            rawReaders.put(theClass, RAW_MAPPER.readerFor(theClass));
+            writers.put(theClass, MAPPER.writerFor(theClass));
+        }
+        READERS = Collections.unmodifiableMap(readers);
+        RAW_READERS = Collections.unmodifiableMap(rawReaders);
+        WRITERS = Collections.unmodifiableMap(writers);
+    }
+
+    private final boolean _rawResults;
+
+    /**
+     * Constructor, structured result details are read as objects
+     */
+    public SearchJsonProvider() {
+        this(false);
+    }
+
+    /**
+     * Constructor
+     * @param rawResults {@code true} to read structured values in result
+     *        details as {@link RawJson}
+     */
+    public SearchJsonProvider(boolean rawResults) {
+        super(rawResults ? RAW_MAPPER : MAPPER);
+        _rawResults = rawResults;
+    }
+
+    /**
+     * Gets the shared mapper that reads structured result details as objects
+     * @return mapper that must not be reconfigured
+     */
+    public static ObjectMapper getObjectMapper() {
+        return MAPPER;
+    }
+
+    /**
+     * Gets the shared mapper
+     * @param rawResults {@code true} for the mapper that reads structured
+     *        values in result details as {@link RawJson}
+     * @return mapper that must not be reconfigured
+     */
+    public static ObjectMapper getObjectMapper(boolean rawResults) {
+        return rawResults ? RAW_MAPPER : MAPPER;
+    }
+
+    /**
+     * Gets reader for {@code theClass} that reads structured result
+     * details as objects
+     * @param theClass class to read
+     * @return pre-built reader or new reader from shared mapper if
+     *         {@code theClass} is not one of the pre-built types
+     */
+    public static ObjectReader getReader(Class<?> theClass) {
+        return getReader(theClass, false);
+    }
+
+    /**
+     * Gets reader for {@code theClass}
+     * @param theClass class to read
+     * @param rawResults {@code true} to read structured values in result
+     *        details as {@link RawJson}
+     * @return pre-built reader or new reader from shared mapper if
+     *         {@code theClass} is not one of the pre-built types
+     */
+    public static ObjectReader getReader(Class<?> theClass, boolean rawResults) {
+        ObjectReader reader = (rawResults ? RAW_READERS : READERS).get(theClass);
+        if (reader != null){
+            return reader;
+        }
+        return getObjectMapper(rawResults).readerFor(theClass);
+    }
+
+    /**
+     * Gets writer for {@code theClass}
+     * @param theClass class to write
+     * @return pre-built writer or new writer from shared mapper if
+     *         {@code theClass} is not one of the pre-built types
+     */
+    public static ObjectWriter getWriter(Class<?> theClass) {
+        ObjectWriter writer = WRITERS.get(theClass);
+        if (writer != null){
+            return writer;
+        }
+        return MAPPER.writerFor(theClass);
+    }
+
+    @Override
+    public ObjectMapper getContext(Class<?> type) {
+        return getObjectMapper(_rawResults);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, String> httpHeaders,
+            InputStream entityStream) throws IOException {
+        ObjectReader reader = (_rawResults ? RAW_READERS : READERS).get(type);
+        if (reader == null){
+            return super.readFrom(type, genericType, annotations, mediaType,
+                    httpHeaders, entityStream);
+        }
+        return reader.readValue(entityStream);
+    }
+
+    /**
+     * Writes {@code value} using the pre-built writer of its runtime class
+     * so a {@link org.ndexbio.ndexsearch.rest.model.QueryResults} returned
+     * as a {@link org.ndexbio.ndexsearch.rest.model.QueryStatus} is written
+     * in full.
+     */
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType,
+            Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders,
+            OutputStream entityStream) throws IOException {
+        ObjectWriter writer = value == null ? null : WRITERS.get(value.getClass());
+        if (writer == null){
+            super.writeTo(value, type, genericType, annotations, mediaType,
+                    httpHeaders, entityStream);
+            return;
+        }
+        writer.writeValue(entityStream, value);
+    }
+}
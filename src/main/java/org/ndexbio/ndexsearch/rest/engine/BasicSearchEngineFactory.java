@@ -1,9 +1,11 @@
 package org.ndexbio.ndexsearch.rest.engine;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import org.ndexbio.enrichment.rest.client.EnrichmentRestClientImpl;
+import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
 import org.ndexbio.ndexsearch.rest.model.SourceResult;
 import org.ndexbio.ndexsearch.rest.model.SourceConfiguration;
 import org.ndexbio.ndexsearch.rest.model.SourceConfigurations;
@@ -20,6 +22,24 @@ import org.slf4j.LoggerFactory;
 public class BasicSearchEngineFactory {
     
     static Logger _logger = LoggerFactory.getLogger(BasicSearchEngineFactory.class);
+    
+    /**
+     * Value of {@link Configuration#TASK_STORE} to save each task in its own
+     * directory via {@link FileSystemTaskStore}
+     */
+    public static final String FILESYSTEM_TASK_STORE = "filesystem";
+    
+    /**
+     * Value of {@link Configuration#TASK_STORE} to save all tasks in a 
+     * single file via {@link EmbeddedTaskStore}
+     */
+    public static final String EMBEDDED_TASK_STORE = "embedded";
+    
+    /**
+     * Value of {@link Configuration#TASK_STORAGE_FORMAT} to save finished
+     * tasks via {@link QueryResultsBinaryFile}
+     */
+    public static final String BINARY_STORAGE_FORMAT = "binary";
 
     private String _dbDir;
     private String _taskDir;
@@ -28,6 +48,42 @@ public class BasicSearchEngineFactory {
     private SourceConfigurations _sourceConfigurations;
     private long _sourcePollingInterval;
     private String _geneSymbolFile;
+    private int _numberOfDispatcherWorkers;
+    private long _sourceQueryTimeout;
+    private long _sourceRefreshTimeout;
+    private long _progressPollInterval;
+    private long _progressMaxPollInterval;
+    private long _queryReuseTimeToLive;
+    private int _enrichmentCacheSize;
+    private long _enrichmentCacheTimeToLive;
+    private long _enrichmentTaskRetention;
+    private long _completedResultsCacheSize;
+    private String _taskStorageFormat;
+    private String _taskStore;
+    private boolean _taskSyncWrites;
+    private long _taskMaxAge;
+    private int _taskDiskHighWaterMark;
+    private long _taskJanitorInterval;
+    private int _sourceMaxConcurrentCalls;
+    private int _sourceCircuitFailureThreshold;
+    private long _sourceCircuitOpenTime;
+    private long _sourceTaskDeadline;
+    private int _sourceRetryMaxAttempts;
+    private long _sourceRetryBaseDelay;
+    private boolean _sourceHedgeReads;
+    private boolean _enrichmentRawResults;
+    private RetryBudget _retryBudget;
+    private int _sourceHttpMaxConnections;
+    private int _sourceHttpMaxConnectionsPerRoute;
+    private int _sourceHttpConnectTimeout;
+    private int _sourceHttpReadTimeout;
+    private long _sourceHttpKeepAlive;
+    private SourceHttpTransport _sourceTransport;
+    private int _keywordMaxResults;
+    private int _keywordPageSize;
+    private int _keywordMaxConcurrentPages;
+    private long _keywordCacheSize;
+    private long _keywordCacheTimeToLive;
     
     /**
      * Temp directory where query results will temporarily be stored.
@@ -41,8 +97,105 @@ public class BasicSearchEngineFactory {
         _sourceConfigurations = config.getSourceConfigurations();
         _sourcePollingInterval = config.getSourcePollingInterval();
         _geneSymbolFile = config.getGeneSymbolFile();
+        _numberOfDispatcherWorkers = config.getNumberOfDispatcherWorkers();
+        _sourceQueryTimeout = config.getSourceQueryTimeout();
+        _sourceRefreshTimeout = config.getSourceRefreshTimeout();
+        _progressPollInterval = config.getProgressPollInterval();
+        _progressMaxPollInterval = config.getProgressMaxPollInterval();
+        _queryReuseTimeToLive = config.getQueryReuseTimeToLive();
+        _enrichmentCacheSize = config.getEnrichmentCacheSize();
+        _enrichmentCacheTimeToLive = config.getEnrichmentCacheTimeToLive();
+        _enrichmentTaskRetention = config.getEnrichmentTaskRetention();
+        _completedResultsCacheSize = config.getCompletedResultsCacheSize();
+        _taskStorageFormat = config.getTaskStorageFormat();
+        _taskStore = config.getTaskStore();
+        _taskSyncWrites = config.getTaskSyncWrites();
+        _taskMaxAge = config.getTaskMaxAge();
+        _taskDiskHighWaterMark = config.getTaskDiskHighWaterMark();
+        _taskJanitorInterval = config.getTaskJanitorInterval();
+        _sourceMaxConcurrentCalls = config.getSourceMaxConcurrentCalls();
+        _sourceCircuitFailureThreshold = config.getSourceCircuitFailureThreshold();
+        _sourceCircuitOpenTime = config.getSourceCircuitOpenTime();
+        _sourceTaskDeadline = config.getSourceTaskDeadline();
+        _sourceRetryMaxAttempts = config.getSourceRetryMaxAttempts();
+        _sourceRetryBaseDelay = config.getSourceRetryBaseDelay();
+        _sourceHedgeReads = config.getSourceHedgeReads();
+        _enrichmentRawResults = config.getEnrichmentRawResults();
+        _sourceHttpMaxConnections = config.getSourceHttpMaxConnections();
+        _sourceHttpMaxConnectionsPerRoute = config.getSourceHttpMaxConnectionsPerRoute();
+        _sourceHttpConnectTimeout = config.getSourceHttpConnectTimeout();
+        _sourceHttpReadTimeout = config.getSourceHttpReadTimeout();
+        _sourceHttpKeepAlive = config.getSourceHttpKeepAlive();
+        _keywordMaxResults = config.getKeywordMaxResults();
+        _keywordPageSize = config.getKeywordPageSize();
+        _keywordMaxConcurrentPages = config.getKeywordMaxConcurrentPages();
+        _keywordCacheSize = config.getKeywordCacheSize();
+        _keywordCacheTimeToLive = config.getKeywordCacheTimeToLive();
+        _retryBudget = new RetryBudget(config.getSourceRetryBudgetPercent(),
+                RetryBudget.DEFAULT_MAX_TOKENS);
+    }
+    
+    
+    /**
+     * Creates EnrichmentSourceEngine for enrichment style source
+     * @param endPoint URL of enrichment service
+     * @param sourceName name of source
+     * @return engine
+     */
+    private EnrichmentSourceEngine getEnrichmentSourceEngine(final String endPoint,
+            final String sourceName) throws SearchException {
+        EnrichmentSourceEngine engine = new EnrichmentSourceEngine(new EnrichmentRestClientImpl(endPoint,
+                "", getSourceTransport().getClient()), sourceName);
+        engine.updateResultCache(_enrichmentCacheSize, _enrichmentCacheTimeToLive,
+                _enrichmentTaskRetention);
+        if (_taskDir != null){
+            engine.updateSharedTaskFile(new File(_taskDir, sourceName
+                    + EnrichmentSourceEngine.SHARED_TASKS_FILE_SUFFIX));
+        }
+        engine.updateRetrier(new SourceCallRetrier(sourceName, _retryBudget,
+                _sourceRetryMaxAttempts, _sourceRetryBaseDelay, _sourceHedgeReads));
+        if (_enrichmentRawResults){
+            engine.updateRawResultReader(new RawEnrichmentResultReader(endPoint,
+                    getSourceTransport().getClient()));
+        }
+        return engine;
     }
     
+    /**
+     * Gets HTTP transport shared by all enrichment style sources creating
+     * it on first call. Reads time out before calls to the sources so a
+     * call that timed out does not keep waiting on its connection
+     * @return transport
+     * @throws SearchException if the read timeout is not less then the
+     *         source query timeout
+     */
+    private SourceHttpTransport getSourceTransport() throws SearchException {
+        if (_sourceTransport == null){
+            long callTimeout = _sourceQueryTimeout < 1 ?
+                    ResilientSourceEngine.DEFAULT_CALL_TIMEOUT : _sourceQueryTimeout;
+            _sourceTransport = new SourceHttpTransport(_sourceHttpMaxConnections,
+                    _sourceHttpMaxConnectionsPerRoute, _sourceHttpConnectTimeout,
+                    SourceHttpTransport.getReadTimeout(callTimeout,
+                            _sourceHttpConnectTimeout, _sourceHttpReadTimeout),
+                    _sourceHttpKeepAlive);
+        }
+        return _sourceTransport;
+    }
+    
+    /**
+     * Wraps {@code engine} with a {@link ResilientSourceEngine} so calls to
+     * the source have a deadline, a cap on concurrent calls and are
+     * rejected while the source keeps failing
+     * @param engine source to wrap
+     * @param sourceName name of source
+     * @return wrapped source
+     */
+    private SourceEngine getResilientSourceEngine(SourceEngine engine,
+            final String sourceName) {
+        return new ResilientSourceEngine(engine, sourceName, _sourceQueryTimeout,
+                _sourceMaxConcurrentCalls, _sourceCircuitFailureThreshold,
+                _sourceCircuitOpenTime, _sourceTaskDeadline);
+    }
     
     /**
      * Creates SearchEngine
@@ -62,38 +215,78 @@ public class BasicSearchEngineFactory {
 					sc.getName(), sc.getEndPoint());
 			if (sc.getName().equals(SourceResult.ENRICHMENT_SERVICE)){
 				sources.put(SourceResult.ENRICHMENT_SERVICE,
-						new EnrichmentSourceEngine(new EnrichmentRestClientImpl(sc.getEndPoint(),
-								"")));
+						getEnrichmentSourceEngine(sc.getEndPoint(),
+								SourceResult.ENRICHMENT_SERVICE));
              } else if (sc.getName().equals(SourceResult.KEYWORD_SERVICE)) {
-				 sources.put(sc.getName(),
-						 new KeywordSourceEngine(_keywordclient,
+				 KeywordSourceEngine keyword = new KeywordSourceEngine(_keywordclient,
 								 sc.getUuid().toString(), _unsetImageURL,
-						 rankMap.get(sc.getName())));
+						 rankMap.get(sc.getName()));
+				 keyword.updatePaging(_keywordMaxResults, _keywordPageSize,
+						 _keywordMaxConcurrentPages);
+				 keyword.updateResultCache(_keywordCacheSize, _keywordCacheTimeToLive);
+				 sources.put(sc.getName(), keyword);
 			} else if (sc.getName().equals(SourceResult.PATHWAYFIGURES_SERVICE)){
 				sources.put(sc.getName(),
-						new EnrichmentSourceEngine(new EnrichmentRestClientImpl(sc.getEndPoint(),
-								""), sc.getName()));
+						getEnrichmentSourceEngine(sc.getEndPoint(), sc.getName()));
 			}
 			else if (sc.getName().equals(SourceResult.INDRA_SERVICE)){
 				sources.put(sc.getName(),
-						new EnrichmentSourceEngine(new EnrichmentRestClientImpl(sc.getEndPoint(),
-								""), sc.getName()));
+						getEnrichmentSourceEngine(sc.getEndPoint(), sc.getName()));
 			}
 			else {
 				 _logger.warn("Unknown source {} assuming it is an enrichment", sc.getName());
 				 if (sc.getEndPoint() != null){
 					 sources.put(sc.getName(),
-							new EnrichmentSourceEngine(new EnrichmentRestClientImpl(sc.getEndPoint(),
-									""), sc.getName()));
+							getEnrichmentSourceEngine(sc.getEndPoint(), sc.getName()));
 				 } else {
 					 _logger.error("Unknown source {} has null for endpoint. Skipping", sc.getEndPoint());
 				 }
              } 
         }
+        for (Map.Entry<String, SourceEngine> entry : sources.entrySet()){
+            entry.setValue(getResilientSourceEngine(entry.getValue(), entry.getKey()));
+        }
         BasicSearchEngineImpl searcher = new BasicSearchEngineImpl(_dbDir,
                 _taskDir, _sourceConfigurations,
-				_sourcePollingInterval, sources, new File ( _dbDir + File.separator + _geneSymbolFile ));
+				_sourcePollingInterval, sources, new File ( _dbDir + File.separator + _geneSymbolFile ),
+                getTaskStore());
+        searcher.updateRawResults(_enrichmentRawResults);
+        searcher.updateNumberOfDispatcherWorkers(_numberOfDispatcherWorkers);
+        searcher.updateSourceQueryTimeout(_sourceQueryTimeout);
+        searcher.updateSourceRefreshTimeout(_sourceRefreshTimeout);
+        searcher.updateProgressPollIntervals(_progressPollInterval, _progressMaxPollInterval);
+        searcher.updateQueryReuseTimeToLive(_queryReuseTimeToLive);
+        searcher.updateCompletedResultsCacheSize(_completedResultsCacheSize);
+        searcher.updateTaskRetention(_taskMaxAge, _taskDiskHighWaterMark, _taskJanitorInterval);
+        if (_sourceTransport != null){
+            searcher.updateSourceTransport(_sourceTransport);
+        }
         return searcher;
     }
+    
+    /**
+     * Creates {@link TaskStore} set via {@link Configuration#TASK_STORE}
+     * defaulting to a {@link FileSystemTaskStore} that saves finished tasks
+     * in the format set via {@link Configuration#TASK_STORAGE_FORMAT}
+     * @return store
+     * @throws IOException if the store could not be opened
+     */
+    protected TaskStore getTaskStore() throws IOException {
+        if (EMBEDDED_TASK_STORE.equalsIgnoreCase(_taskStore)){
+            _logger.info("Saving tasks in {}", EmbeddedTaskStore.DEFAULT_FILE_NAME);
+            EmbeddedTaskStore store = new EmbeddedTaskStore(new File(_taskDir,
+                    EmbeddedTaskStore.DEFAULT_FILE_NAME), _taskSyncWrites);
+            store.setRawResults(_enrichmentRawResults);
+            return store;
+        }
+        if (_taskStore != null && !FILESYSTEM_TASK_STORE.equalsIgnoreCase(_taskStore)){
+            _logger.warn("Unknown task store {} using {}", _taskStore, FILESYSTEM_TASK_STORE);
+        }
+        FileSystemTaskStore store = new FileSystemTaskStore(_taskDir, 
+                BINARY_STORAGE_FORMAT.equalsIgnoreCase(_taskStorageFormat),
+                _taskSyncWrites);
+        store.setRawResults(_enrichmentRawResults);
+        return store;
+    }
        
 }
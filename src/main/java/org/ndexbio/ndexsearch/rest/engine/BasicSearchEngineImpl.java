@@ -2,31 +2,44 @@ package org.ndexbio.ndexsearch.rest.engine;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 
-import org.apache.commons.io.FileUtils;
 import org.ndexbio.enrichment.rest.model.DatabaseResults;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.ndexsearch.rest.GeneValidator;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
 import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
 import org.ndexbio.ndexsearch.rest.model.InternalSourceResults;
 import org.ndexbio.ndexsearch.rest.model.SourceResults;
@@ -53,28 +66,201 @@ import org.slf4j.LoggerFactory;
 public class BasicSearchEngineImpl implements SearchEngine {
 
 	public static final String QR_JSON_FILE = "queryresults.json";
+	
+	/**
+	 * File {@link FileSystemTaskStore} saves finished tasks to when 
+	 * binary format is enabled
+	 */
+	public static final String QR_BINARY_FILE = "queryresults.bin";
+	
+	/**
+	 * Time in milliseconds to wait for each dispatcher worker to finish
+	 * its current task during shutdown
+	 */
+	private static final long DISPATCHER_SHUTDOWN_WAIT_MILLIS = 10000;
+	
+	/**
+	 * Default time in milliseconds each source is given to answer
+	 * a query submission
+	 */
+	public static final long DEFAULT_SOURCE_QUERY_TIMEOUT = 30000;
+	
+	/**
+	 * Default time in milliseconds sources are given to refresh their
+	 * information
+	 */
+	public static final long DEFAULT_SOURCE_REFRESH_TIMEOUT = 30000;
+	
+	/**
+	 * Status of a source whose refresh did not finish in time. The rest
+	 * of its information is left as it was after its last refresh
+	 */
+	public static final String SOURCE_STALE_STATUS = "stale";
+	
+	/**
+	 * Status sources set when they could not be refreshed
+	 */
+	public static final String SOURCE_ERROR_STATUS = "error";
+	
+	/**
+	 * Default maximum size in bytes of results of finished tasks kept
+	 * in memory
+	 */
+	public static final long DEFAULT_COMPLETED_RESULTS_CACHE_SIZE = 268435456;
+	
+	/**
+	 * Name of metric with number of requests for finished tasks answered
+	 * from memory
+	 */
+	public static final String COMPLETED_RESULTS_CACHE_HITS_METRIC = "completedResultsCacheHits";
+	
+	/**
+	 * Name of metric with number of requests for finished tasks not found
+	 * in memory
+	 */
+	public static final String COMPLETED_RESULTS_CACHE_MISSES_METRIC = "completedResultsCacheMisses";
+	
+	/**
+	 * Name of metric with number of finished tasks evicted from memory
+	 */
+	public static final String COMPLETED_RESULTS_CACHE_EVICTIONS_METRIC = "completedResultsCacheEvictions";
+	
+	/**
+	 * Name of metric with estimated size in bytes of finished tasks in memory
+	 */
+	public static final String COMPLETED_RESULTS_CACHE_BYTES_METRIC = "completedResultsCacheBytes";
+	
+	/**
+	 * Name of metric with number of queries waiting for a dispatcher worker
+	 */
+	public static final String QUERY_QUEUE_DEPTH_METRIC = "queryQueueDepth";
+	
+	/**
+	 * Name of metric with fraction of dispatcher workers processing a query
+	 */
+	public static final String DISPATCHER_WORKER_UTILIZATION_METRIC = "dispatcherWorkerUtilization";
 
 	static Logger _logger = LoggerFactory.getLogger(BasicSearchEngineImpl.class);
 
 	ScheduledExecutorService _servicePollExecutor;
 	private long _sourcePollingInterval;
 	
+	/**
+	 * Time in milliseconds an idle thread querying sources is kept
+	 */
+	private static final long SOURCE_QUERY_THREAD_KEEP_ALIVE = 60000;
+
+	/**
+	 * Submits queries to and refreshes the individual sources in parallel,
+	 * sized by {@link #getNumberOfSourceQueryThreads(int)}
+	 */
+	private ThreadPoolExecutor _sourceQueryExecutor;
+	private long _sourceQueryTimeout;
+	private long _sourceRefreshTimeout;
+	
+	/**
+	 * Latest refresh of each source keyed by source name
+	 */
+	private final ConcurrentHashMap<String, CompletableFuture<SourceResult>> _sourceRefreshes;
+	
 	private String _dbDir;
 	private String _taskDir;
-	private boolean _shutdown;
+	
+	/**
+	 * Persists tasks
+	 */
+	private TaskStore _taskStore;
+	
+	/**
+	 * Saves tasks to {@link #_taskStore} in the background
+	 */
+	private TaskPersister _taskPersister;
+	
+	/**
+	 * Removes old tasks in the background
+	 */
+	private TaskJanitor _taskJanitor;
 
 	/**
 	 * This should be a map of <query UUID> => Query object
 	 */
 	private ConcurrentHashMap<String, Query> _queryTasks;
 
-	private ConcurrentLinkedQueue<String> _queryTaskIds;
+	/**
+	 * Hands submitted task ids to worker threads that run processQuery()
+	 */
+	private QueryTaskDispatcher _dispatcher;
+	
+	/**
+	 * Released when {@link #shutdown()} is invoked
+	 */
+	private CountDownLatch _shutdownLatch;
+	
+	/**
+	 * Polls sources of outstanding queries in the background
+	 */
+	private QueryProgressTracker _progressTracker;
+	
+	/**
+	 * Used to create snapshots of QueryResults handed to callers
+	 */
+	private ObjectMapper _mapper;
+	
+	/**
+	 * Lets identical queries share a task
+	 */
+	private QueryTaskIndex _queryTaskIndex;
+	
+	/**
+	 * Sorted results of finished tasks weighted by their estimated size
+	 * in bytes
+	 */
+	private ResultCache<String, RankedResultIndex> _resultIndexes;
+	
+	/**
+	 * Collapses concurrent loads of the same task from the {@link TaskStore}
+	 */
+	private SingleFlight<String, QueryResults> _taskLoads;
+	
+	/**
+	 * Collapses concurrent loads of the same finished task status or 
+	 * page of results from the {@link TaskStore}
+	 */
+	private SingleFlight<String, QueryResults> _finishedTaskLoads;
+	
+	/**
+	 * Collapses concurrent builds of the result index of the same task
+	 */
+	private SingleFlight<String, RankedResultIndex> _resultIndexBuilds;
+	
+	/**
+	 * Collapses concurrent serializations of the same running task 
+	 * made to create snapshots
+	 */
+	private SingleFlight<String, byte[]> _snapshotWrites;
+	
+	/**
+	 * Collapses concurrent refreshes of the same task from the sources
+	 */
+	private SingleFlight<String, Boolean> _queryRefreshes;
+	
+	/**
+	 * HTTP transport shared by the sources, closed after the sources are
+	 * shut down
+	 */
+	private SourceHttpTransport _sourceTransport;
 
 	/**
 	 * This should be a map of <query UUID> => QueryResults object
 	 */
 	private ConcurrentHashMap<String, QueryResults> _queryResults;
 
+	/**
+	 * This should be a map of <query UUID> => future completed when the 
+	 * task next changes
+	 */
+	private ConcurrentHashMap<String, CompletableFuture<Void>> _queryChangeFutures;
+
 	/**
 	 * This should be a map of <database UUID> => Map<Gene => Set of network UUIDs>
 	 */
@@ -83,7 +269,6 @@ public class BasicSearchEngineImpl implements SearchEngine {
 	private AtomicReference<SourceConfigurations> _sourceConfigurations;
 	private AtomicReference<SourceResults> _sourceResults;
 
-	private long _threadSleep = 10;
 	private SourceQueryResultsBySourceRank _sourceRankSorter;
 	private SourceQueryResultByRank _rankSorter;
 	private Map<String, SourceEngine> _sources;
@@ -102,24 +287,97 @@ public class BasicSearchEngineImpl implements SearchEngine {
 	public BasicSearchEngineImpl(final String dbDir, final String taskDir,
             SourceConfigurations sourceConfigurations, long sourcePollingInterval,
 			Map<String, SourceEngine> sources, File geneSymbolFile) throws SearchException {
-		_shutdown = false;
+		this(dbDir, taskDir, sourceConfigurations, sourcePollingInterval,
+				sources, geneSymbolFile, new FileSystemTaskStore(taskDir));
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param dbDir             directory path containing networks in database
+	 * @param taskDir           directory path where tasks will be stored
+	 * @param sourceConfigurations Sources to query against
+	 * @param sourcePollingInterval Interval in ms to poll for updates on sources
+	 * @param sources Map of source name to SourceEngine
+	 * @param geneSymbolFile gene symbol file, it is used to initialize the geneValidator
+	 * @param taskStore persists tasks
+	 */
+	public BasicSearchEngineImpl(final String dbDir, final String taskDir,
+            SourceConfigurations sourceConfigurations, long sourcePollingInterval,
+			Map<String, SourceEngine> sources, File geneSymbolFile,
+			TaskStore taskStore) throws SearchException {
 		_dbDir = dbDir;
 		_taskDir = taskDir;
+		_taskStore = taskStore;
 		_queryTasks = new ConcurrentHashMap<>();
 		_queryResults = new ConcurrentHashMap<>();
+		_queryChangeFutures = new ConcurrentHashMap<>();
 		_sourceConfigurations = new AtomicReference<>();
 		_sourcePollingInterval = sourcePollingInterval;
 		_sourceResults = new AtomicReference<>();
-		_queryTaskIds = new ConcurrentLinkedQueue<>();
+		_shutdownLatch = new CountDownLatch(1);
+		_dispatcher = new QueryTaskDispatcher(QueryTaskDispatcher.DEFAULT_NUMBER_OF_WORKERS,
+				(id) -> {
+					processQuery(id, _queryTasks.remove(id));
+				});
+		_progressTracker = new QueryProgressTracker((id) -> {
+			QueryResults qr = _queryResults.get(id);
+			if (qr == null){
+				return false;
+			}
+			checkAndUpdateQueryResults(id, qr);
+			return isQueryDone(qr) == false;
+		});
+		_mapper = SearchJsonProvider.getObjectMapper();
+		_taskPersister = new TaskPersister(taskStore, this::getQueryResultsToPersist,
+				(id) -> {
+					_queryResults.remove(id);
+					notifyQueryChanged(id);
+				});
+		_taskJanitor = new TaskJanitor(taskStore, taskDir == null ? null : new File(taskDir),
+				_queryResults::containsKey, this::purgeTask);
+		_queryTaskIndex = new QueryTaskIndex();
+		_resultIndexes = new ResultCache<>(DEFAULT_COMPLETED_RESULTS_CACHE_SIZE, 0,
+				RankedResultIndex::getEstimatedSize);
+		_taskLoads = new SingleFlight<>();
+		_finishedTaskLoads = new SingleFlight<>();
+		_resultIndexBuilds = new SingleFlight<>();
+		_snapshotWrites = new SingleFlight<>();
+		_queryRefreshes = new SingleFlight<>();
 		_sourceConfigurations.set(sourceConfigurations);
 		_sourceRankSorter = new SourceQueryResultsBySourceRank();
 		_rankSorter = new SourceQueryResultByRank();
 		_servicePollExecutor = Executors.newSingleThreadScheduledExecutor();
+		_sourceQueryTimeout = DEFAULT_SOURCE_QUERY_TIMEOUT;
+		_sourceRefreshTimeout = DEFAULT_SOURCE_REFRESH_TIMEOUT;
+		_sourceRefreshes = new ConcurrentHashMap<>();
 		geneValidator = new GeneValidator(geneSymbolFile);
 		if (sources == null){
 			throw new SearchException("Sources cannot be null");
 		}
 		_sources = sources;
+		int numberOfThreads = getNumberOfSourceQueryThreads(_dispatcher.getNumberOfWorkers());
+		AtomicInteger threadCount = new AtomicInteger(0);
+		_sourceQueryExecutor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads,
+				SOURCE_QUERY_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), (r) -> {
+					Thread t = new Thread(r, "source-query-" + threadCount.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+		_sourceQueryExecutor.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * Gets number of threads used to query and refresh sources, this is
+	 * enough for every dispatcher worker to query every source at the same
+	 * time as all sources are refreshed. Anything beyond that waits
+	 * for a free thread
+	 * @param numberOfWorkers number of dispatcher workers
+	 * @return number of threads
+	 */
+	private int getNumberOfSourceQueryThreads(int numberOfWorkers){
+		return (numberOfWorkers + 1) * Math.max(1, _sources.size());
 	}
 
 	/**
@@ -139,90 +397,422 @@ public class BasicSearchEngineImpl implements SearchEngine {
 	}
 	
 	/**
-	 * Sets milliseconds thread should sleep if no work needs to be done.
+	 * Sets number of worker threads that process submitted queries and
+	 * resizes the pool of threads querying sources to match.
+	 * This must be invoked before {@link #run()} to have any effect.
 	 * 
-	 * @param sleepTime
+	 * @param numberOfWorkers number of workers, if less then 1 
+	 *        {@link QueryTaskDispatcher#DEFAULT_NUMBER_OF_WORKERS} is used
 	 */
-	public void updateThreadSleepTime(long sleepTime) {
-        _logger.debug("Thread sleep time updated to {} ms", sleepTime);
-		_threadSleep = sleepTime;
+	public void updateNumberOfDispatcherWorkers(int numberOfWorkers) {
+		_logger.debug("Number of dispatcher workers updated to {}", numberOfWorkers);
+		_dispatcher.setNumberOfWorkers(numberOfWorkers);
+		int numberOfThreads = getNumberOfSourceQueryThreads(_dispatcher.getNumberOfWorkers());
+		if (numberOfThreads > _sourceQueryExecutor.getMaximumPoolSize()){
+			_sourceQueryExecutor.setMaximumPoolSize(numberOfThreads);
+			_sourceQueryExecutor.setCorePoolSize(numberOfThreads);
+		} else {
+			_sourceQueryExecutor.setCorePoolSize(numberOfThreads);
+			_sourceQueryExecutor.setMaximumPoolSize(numberOfThreads);
+		}
 	}
-
+	
 	/**
-	 * Calls {@link java.lang.Thread.sleep()} setting sleep time to value set by
-	 * {@link #updateThreadSleepTime(long)} which by default is set to 10ms
+	 * Sets time in milliseconds each source is given to answer a query
+	 * submission. Sources that do not answer in time are recorded as failed.
+	 * 
+	 * @param timeout timeout in milliseconds, if less then 1 
+	 *        {@link #DEFAULT_SOURCE_QUERY_TIMEOUT} is used
 	 */
-	protected void threadSleep() {
-		try {
-			Thread.sleep(_threadSleep);
-		} catch (InterruptedException ie) {
-
+	public void updateSourceQueryTimeout(long timeout) {
+		_logger.debug("Source query timeout updated to {} ms", timeout);
+		if (timeout < 1){
+			_sourceQueryTimeout = DEFAULT_SOURCE_QUERY_TIMEOUT;
+			return;
+		}
+		_sourceQueryTimeout = timeout;
+	}
+	
+	/**
+	 * Sets time in milliseconds sources are given to refresh their
+	 * information. Sources are refreshed at the same time and any source
+	 * that does not finish in time keeps its previous information with
+	 * status {@link #SOURCE_STALE_STATUS}
+	 * 
+	 * @param timeout timeout in milliseconds, if less then 1 
+	 *        {@link #DEFAULT_SOURCE_REFRESH_TIMEOUT} is used
+	 */
+	public void updateSourceRefreshTimeout(long timeout) {
+		_logger.debug("Source refresh timeout updated to {} ms", timeout);
+		if (timeout < 1){
+			_sourceRefreshTimeout = DEFAULT_SOURCE_REFRESH_TIMEOUT;
+			return;
 		}
+		_sourceRefreshTimeout = timeout;
+	}
+	
+	/**
+	 * Sets delays between background polls of the sources for
+	 * outstanding queries. The delay starts at {@code initialPollInterval}
+	 * and doubles after every poll until {@code maxPollInterval} is reached
+	 * 
+	 * @param initialPollInterval delay in milliseconds before first poll, 
+	 *        if less then 1 {@link QueryProgressTracker#DEFAULT_INITIAL_POLL_INTERVAL} is used
+	 * @param maxPollInterval maximum delay in milliseconds between polls,
+	 *        if less then 1 {@link QueryProgressTracker#DEFAULT_MAX_POLL_INTERVAL} is used
+	 */
+	public void updateProgressPollIntervals(long initialPollInterval, long maxPollInterval) {
+		_logger.debug("Progress poll intervals updated to {} ms initial "
+				+ "and {} ms max", initialPollInterval, maxPollInterval);
+		_progressTracker.setPollIntervals(initialPollInterval, maxPollInterval);
+	}
+	
+	/**
+	 * Sets time in milliseconds an in flight or completed task is returned
+	 * for identical queries instead of a new task being created
+	 * 
+	 * @param timeToLive time in milliseconds, 0 or less disables reuse
+	 */
+	public void updateQueryReuseTimeToLive(long timeToLive) {
+		_logger.debug("Query reuse time to live updated to {} ms", timeToLive);
+		_queryTaskIndex.setTimeToLive(timeToLive);
+	}
+	
+	/**
+	 * Sets when saved tasks are removed in the background
+	 * 
+	 * @param maxTaskAge time in milliseconds after which a task is removed,
+	 *        0 or less means tasks are never removed due to age
+	 * @param diskHighWaterMark percentage of disk usage above which the
+	 *        oldest tasks are removed, values outside of 1-100 mean tasks 
+	 *        are never removed due to disk usage
+	 * @param sweepInterval time in milliseconds between checks for tasks to
+	 *        remove, if 0 or less {@link TaskJanitor#DEFAULT_SWEEP_INTERVAL}
+	 *        is used. Must be set before {@link #run()} is invoked
+	 */
+	public void updateTaskRetention(long maxTaskAge, int diskHighWaterMark, long sweepInterval) {
+		_logger.debug("Task retention updated to max age {} ms, disk high "
+				+ "water mark {}% checked every {} ms", 
+				new Object[]{maxTaskAge, diskHighWaterMark, sweepInterval});
+		_taskJanitor.setMaxTaskAge(maxTaskAge);
+		_taskJanitor.setDiskHighWaterMark(diskHighWaterMark);
+		_taskJanitor.setSweepInterval(sweepInterval);
+	}
+	
+	/**
+	 * Gets number of tasks removed in the background
+	 * @return number of tasks
+	 */
+	public long getNumberOfTasksRemoved() {
+		return _taskJanitor.getNumberOfTasksRemoved();
+	}
+	
+	/**
+	 * Sets maximum size in bytes of results of finished tasks kept in memory.
+	 * Any results already cached are dropped
+	 * 
+	 * @param maxBytes maximum size in bytes, if less then 1 
+	 *        {@link #DEFAULT_COMPLETED_RESULTS_CACHE_SIZE} is used
+	 */
+	public void updateCompletedResultsCacheSize(long maxBytes) {
+		long size = maxBytes < 1 ? DEFAULT_COMPLETED_RESULTS_CACHE_SIZE : maxBytes;
+		_logger.debug("Completed results cache size updated to {} bytes", size);
+		_resultIndexes = new ResultCache<>(size, 0, RankedResultIndex::getEstimatedSize);
+	}
+	
+	/**
+	 * Sets whether structured values in result details are kept as
+	 * {@link org.ndexbio.ndexsearch.rest.RawJson} when results are copied.
+	 * This should match the setting of the sources and {@link TaskStore}
+	 * 
+	 * @param rawResults {@code true} to keep structured details as raw JSON
+	 */
+	public void updateRawResults(boolean rawResults) {
+		_logger.debug("Raw results updated to {}", rawResults);
+		_mapper = SearchJsonProvider.getObjectMapper(rawResults);
+	}
+	
+	/**
+	 * Sets HTTP transport shared by the sources. It is closed once the
+	 * sources have been shut down and its pool statistics are logged 
+	 * each time the sources are polled
+	 * @param transport shared transport
+	 */
+	public void updateSourceTransport(SourceHttpTransport transport) {
+		_sourceTransport = transport;
+	}
+	
+	/**
+	 * Gets number of requests for finished tasks answered from memory
+	 * @return number of hits
+	 */
+	public long getCompletedResultsCacheHitCount() {
+		return _resultIndexes.getHitCount();
+	}
+	
+	/**
+	 * Gets number of requests for tasks not found in the completed results cache
+	 * @return number of misses
+	 */
+	public long getCompletedResultsCacheMissCount() {
+		return _resultIndexes.getMissCount();
+	}
+	
+	/**
+	 * Gets number of finished tasks evicted from the completed results cache
+	 * to stay under its maximum size
+	 * @return number of evictions
+	 */
+	public long getCompletedResultsCacheEvictionCount() {
+		return _resultIndexes.getEvictionCount();
+	}
+	
+	/**
+	 * Gets estimated size in bytes of results held by the completed 
+	 * results cache
+	 * @return size in bytes
+	 */
+	public long getCompletedResultsCacheWeight() {
+		return _resultIndexes.getWeight();
+	}
+	
+	/**
+	 * Gets depth of the query queue, utilization of the dispatcher workers
+	 * and hits, misses, evictions and size of the completed results cache
+	 * @return map of metric name to value
+	 */
+	@Override
+	public Map<String, Number> getMetrics() {
+		Map<String, Number> metrics = new LinkedHashMap<>();
+		metrics.put(QUERY_QUEUE_DEPTH_METRIC, getQueryQueueDepth());
+		metrics.put(DISPATCHER_WORKER_UTILIZATION_METRIC, getDispatcherWorkerUtilization());
+		metrics.put(COMPLETED_RESULTS_CACHE_HITS_METRIC, getCompletedResultsCacheHitCount());
+		metrics.put(COMPLETED_RESULTS_CACHE_MISSES_METRIC, getCompletedResultsCacheMissCount());
+		metrics.put(COMPLETED_RESULTS_CACHE_EVICTIONS_METRIC, getCompletedResultsCacheEvictionCount());
+		metrics.put(COMPLETED_RESULTS_CACHE_BYTES_METRIC, getCompletedResultsCacheWeight());
+		return metrics;
+	}
+	
+	/**
+	 * Gets number of queries whose sources are being polled for progress
+	 * @return number of tracked queries
+	 */
+	public int getNumberOfTrackedQueries() {
+		return _progressTracker.getNumberOfTrackedTasks();
+	}
+	
+	/**
+	 * Gets number of submitted queries waiting for a free dispatcher worker
+	 * @return number of queued queries
+	 */
+	public int getQueryQueueDepth() {
+		return _dispatcher.getQueueDepth();
+	}
+	
+	/**
+	 * Gets fraction of dispatcher workers currently processing a query
+	 * @return value between 0 and 1
+	 */
+	public double getDispatcherWorkerUtilization() {
+		return _dispatcher.getWorkerUtilization();
 	}
 
 	/**
-	 * Processes any query tasks, looping until {@link #shutdown()} is invoked Note:
-	 * There is a delay in the loop which can be modified by
-	 * {@link #updateThreadSleepTime(long)
-	 * Before entering the loop, this method also starts up a separate thread that periodically checks for 
-	 * changes with sources
+	 * Starts the dispatcher workers that process query tasks and then blocks 
+	 * until {@link #shutdown()} is invoked.
+	 * Before starting the workers, this method also starts up a separate thread 
+	 * that periodically checks for changes with sources, beginning right
+	 * away. The workers start without waiting for the first check, a query
+	 * to a source whose first refresh is still running waits for it as
+	 * described in {@link #processQuery(java.lang.String, org.ndexbio.ndexsearch.rest.model.Query)}
 	 */
 	@Override
 	public void run() {
-		_logger.info("Performing initial update of sources");
-		updateSourceResults();
+		_logger.info("Starting initial update of sources");
+		startSourceRefreshes();
         _logger.debug("Starting service update polling task "
                 + "with update interval of {} ms", _sourcePollingInterval);
 		ScheduledFuture<?> servicePollFuture = _servicePollExecutor.scheduleWithFixedDelay(
 				() -> {
 					updateSourceResults();
+					_logger.info("Search engine metrics {}", getMetrics());
+					if (_sourceTransport != null){
+						_logger.debug("Source HTTP pool {} by route {}",
+								_sourceTransport.getPoolStats(),
+								_sourceTransport.getRouteStats());
+					}
 				}, 0, _sourcePollingInterval,TimeUnit.MILLISECONDS);
 		
-        _logger.info("Starting monitoring loop");
-		while (_shutdown == false) {
-			String id = _queryTaskIds.poll();
-			if (id == null) {
-				threadSleep();
-				continue;
-			}
-				processQuery(id, _queryTasks.remove(id));
+		_progressTracker.start();
+		_taskPersister.start();
+		_taskJanitor.start();
+        _logger.info("Starting dispatcher workers");
+		_dispatcher.start();
+		try {
+			_shutdownLatch.await();
+		} catch(InterruptedException ie){
+			_logger.warn("Interrupted while waiting for shutdown request");
 		}
 		
-		_logger.info("Stopping monitoring loop");
+		_logger.info("Stopping dispatcher workers");
+		_dispatcher.shutdown(DISPATCHER_SHUTDOWN_WAIT_MILLIS);
+		_progressTracker.shutdown();
+		_taskJanitor.shutdown();
 		
 		servicePollFuture.cancel(true);
 		_servicePollExecutor.shutdown();
+		_sourceQueryExecutor.shutdownNow();
 		
 		_sources.values().forEach((se) -> {
 			se.shutdown();
 		});
+		if (_sourceTransport != null){
+			try {
+				_sourceTransport.close();
+			} catch(IOException io){
+				_logger.error("Caught exception closing source HTTP transport", io);
+			}
+		}
+		_logger.info("Saving {} remaining tasks", _taskPersister.getNumberOfPendingTasks());
+		_taskPersister.shutdown();
+		try {
+			_taskStore.close();
+		} catch(IOException io){
+			_logger.error("Caught exception closing task store", io);
+		}
 	}
 
 	/**
-	 * Tells the thread to exit after finishing its current processing task which is
-	 * processed in {@link #run()} method
+	 * Tells the dispatcher workers to exit after finishing their current 
+	 * processing task which in turn lets {@link #run()} method return
 	 */
 	@Override
 	public void shutdown() {
         _logger.info("Shutdown requested");
-		_shutdown = true;
+		_shutdownLatch.countDown();
 	}
 
 	protected String getQueryResultsFilePath(final String id) {
 		return this._taskDir + File.separator + id + File.separator + BasicSearchEngineImpl.QR_JSON_FILE;
 	}
 
+	/**
+	 * Queues finished task to be saved to the {@link TaskStore}. The task
+	 * is removed from the internal database once it has been saved and
+	 * until then is served from memory
+	 * @param id id of task
+	 */
 	protected void saveQueryResultsToFilesystem(final String id) {
-		QueryResults eqr = getQueryResultsFromDb(id);
-
-		File destFile = new File(getQueryResultsFilePath(id));
-		ObjectMapper mappy = new ObjectMapper();
-		try (FileOutputStream out = new FileOutputStream(destFile)) {
-			mappy.writeValue(out, eqr);
-		} catch (IOException io) {
-			_logger.error("Caught exception writing " + destFile.getAbsolutePath(), io);
+		_taskPersister.persist(id, true);
+	}
+	
+	/**
+	 * Queues task to be saved to the {@link TaskStore} leaving it in 
+	 * the internal database
+	 * @param id id of task
+	 */
+	private void writeQueryResultsToFilesystem(final String id) {
+		_taskPersister.persist(id, false);
+	}
+	
+	/**
+	 * Gets QueryResults of task for {@link TaskPersister} to save. Finished
+	 * tasks are no longer modified so they are returned as is, unfinished
+	 * tasks are copied
+	 * @param id id of task
+	 * @return QueryResults or {@code null} if task is not in internal database
+	 */
+	private QueryResults getQueryResultsToPersist(final String id) {
+		QueryResults qr = _queryResults.get(id);
+		if (qr == null){
+			return null;
+		}
+		synchronized(qr){
+			if (isQueryDone(qr)){
+				return qr;
+			}
+			try {
+				return copyOf(qr, QueryResults.class);
+			} catch(IOException io){
+				_logger.error("Unable to copy results for task " + id, io);
+				return null;
+			}
 		}
-		_queryResults.remove(id);
+	}
+	
+	/**
+	 * Tells caller if query has finished
+	 * @param qr QueryResults to check
+	 * @return {@code true} if status is complete or failed otherwise {@code false}
+	 */
+	private boolean isQueryDone(QueryResults qr){
+		synchronized(qr){
+			return qr.getStatus() != null && (qr.getStatus().equals(QueryResults.COMPLETE_STATUS)
+					|| qr.getStatus().equals(QueryResults.FAILED_STATUS));
+		}
+	}
+	
+	/**
+	 * Gets a copy of the latest QueryResults for task with {@code id} that
+	 * can be filtered or modified by the caller. This method never contacts
+	 * the sources. Unfinished tasks loaded from the filesystem, such as those 
+	 * left over from a restart, are added to the internal database and
+	 * handed to the progress tracker. Callers asking for a snapshot of the
+	 * same running task at the same time share one serialization of the 
+	 * task and each get their own copy from it.
+	 * 
+	 * @param id id of task
+	 * @return copy of QueryResults or {@code null} if not found
+	 * @throws SearchException if unable to copy the QueryResults
+	 */
+	protected QueryResults getQueryResultsSnapshot(final String id) throws SearchException {
+		QueryResults qr = _queryResults.get(id);
+		if (qr == null){
+			qr = getQueryResultsFromDbOrFilesystem(id);
+			if (qr == null){
+				return null;
+			}
+			if (isQueryDone(qr)){
+				// loaded object is shared with concurrent loads of this task
+				try {
+					return copyOf(qr, QueryResults.class);
+				} catch(IOException io){
+					throw new SearchException("Unable to copy results for task " 
+							+ id + " : " + io.getMessage());
+				}
+			}
+			QueryResults liveQr = _queryResults.putIfAbsent(id, qr);
+			if (liveQr == null){
+				_logger.debug("Adopting unfinished task {} from filesystem", id);
+				_progressTracker.track(id);
+			} else {
+				qr = liveQr;
+			}
+		}
+		final QueryResults liveQr = qr;
+		try {
+			byte[] json = _snapshotWrites.execute(id, () -> {
+				synchronized(liveQr){
+					return _mapper.writeValueAsBytes(liveQr);
+				}
+			});
+			return _mapper.readValue(json, QueryResults.class);
+		} catch(IOException io){
+			throw new SearchException("Unable to copy results for task " 
+					+ id + " : " + io.getMessage());
+		}
+	}
+	
+	/**
+	 * Creates a deep copy of {@code obj} by serializing it with Jackson
+	 * @param <T> type of object
+	 * @param obj object to copy
+	 * @param theClass class of object
+	 * @return copy of object
+	 * @throws IOException if there was an error serializing or deserializing
+	 */
+	private <T> T copyOf(T obj, Class<T> theClass) throws IOException {
+		return _mapper.readValue(_mapper.writeValueAsBytes(obj), theClass);
 	}
 
 	/**
@@ -243,7 +833,8 @@ public class BasicSearchEngineImpl implements SearchEngine {
 
 	/**
 	 * First tries to get QueryResults from _queryResults and if not found there
-	 * attempts to load it from the filesystem
+	 * attempts to load it from the {@link TaskStore}. Concurrent loads of
+	 * the same task share one read of the store and the same QueryResults
 	 * @param id
 	 * @return 
 	 */
@@ -252,16 +843,10 @@ public class BasicSearchEngineImpl implements SearchEngine {
 		if (qr != null) {
 			return qr;
 		}
-		ObjectMapper mappy = new ObjectMapper();
-		File qrFile = new File(getQueryResultsFilePath(id));
-		if (qrFile.isFile() == false) {
-			_logger.error("{} is not a file", qrFile.getAbsolutePath());
-			return null;
-		}
 		try {
-			return mappy.readValue(qrFile, QueryResults.class);
+			return _taskLoads.execute(id, () -> _taskStore.load(id));
 		} catch (IOException io) {
-			_logger.error("Caught exception trying to load " + qrFile.getAbsolutePath(), io);
+			_logger.error("Caught exception trying to load task " + id, io);
 		}
 		return null;
 	}
@@ -274,43 +859,122 @@ public class BasicSearchEngineImpl implements SearchEngine {
 	 */
 	protected void updateQueryResultsInDb(final String id, QueryResults updatedQueryResults) {
 		_queryResults.merge(id, updatedQueryResults, (oldval, newval) -> newval.updateStartTime(oldval));
+		notifyQueryChanged(id);
+	}
+	
+	/**
+	 * Completes future returned by {@link #getQueryChangeFuture(java.lang.String)}
+	 * for task with {@code id}
+	 * @param id id of task
+	 */
+	private void notifyQueryChanged(final String id) {
+		CompletableFuture<Void> change = _queryChangeFutures.remove(id);
+		if (change != null){
+			change.complete(null);
+		}
+	}
+	
+	@Override
+	public CompletableFuture<Void> getQueryChangeFuture(final String id) {
+		QueryResults qr = _queryResults.get(id);
+		if (qr == null || isQueryDone(qr)){
+			return CompletableFuture.completedFuture(null);
+		}
+		CompletableFuture<Void> change = _queryChangeFutures.computeIfAbsent(id,
+				(key) -> new CompletableFuture<>());
+		
+		// task may have finished before the future was added
+		qr = _queryResults.get(id);
+		if (qr == null || isQueryDone(qr)){
+			notifyQueryChanged(id);
+		}
+		return change;
 	}
 
+	/**
+	 * Waits until {@code deadline} for the next source to answer
+	 * @param completionService service the source queries were submitted to
+	 * @param deadline time in milliseconds since epoch to stop waiting
+	 * @return completed query of source or {@code null} if no source 
+	 *         answered before the deadline
+	 */
+	private Future<SourceQueryResults> waitForSourceAnswer(CompletionService<SourceQueryResults> completionService,
+			long deadline){
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0){
+			return null;
+		}
+		try {
+			return completionService.poll(remaining, TimeUnit.MILLISECONDS);
+		} catch(InterruptedException ie){
+			_logger.warn("Interrupted waiting for sources to answer");
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
+	/**
+	 * Gets result of completed source query
+	 * @param answer completed source query
+	 * @return result or {@code null} if there was an error
+	 */
+	private SourceQueryResults getSourceAnswer(Future<SourceQueryResults> answer){
+		try {
+			return answer.get();
+		} catch(InterruptedException | ExecutionException ex){
+			_logger.error("Caught exception getting source query result", ex);
+			return null;
+		}
+	}
+	
+	/**
+	 * Creates a failed {@link SourceQueryResults}
+	 * @param message message to set
+	 * @return failed source query results with progress set to 100
+	 */
+	private SourceQueryResults getFailedSourceQueryResults(final String message){
+		SourceQueryResults sqr = new SourceQueryResults();
+		sqr.setMessage(message);
+		sqr.setProgress(100);
+		sqr.setStatus(QueryResults.FAILED_STATUS);
+		return sqr;
+	}
+	
 	/**
 	 * Submits query to sources to process and saves QueryResults object to 
-	 * internal database
+	 * internal database. Sources still running their first refresh after
+	 * start up are given until the refresh finishes, or the source refresh
+	 * timeout passes, before they are queried
 	 * @param id task id
 	 * @param query Query to run
 	 */
 	protected void processQuery(final String id, Query query) {
 
 		QueryResults qr = getQueryResultsFromDb(id);
+		String message;
+		List<SourceQueryResults> sqrList = new LinkedList<>();
+		
+		// verify all sources are configured before querying any of them
+		// cause this is a big configuration error
+		Map<String, SourceConfiguration> sourceConfs = new LinkedHashMap<>();
 		synchronized(qr){
 		//	qr.setQuery(query.getGeneList());
 		//	qr.setInputSourceList(query.getSourceList());
 			qr.setStatus(QueryResults.PROCESSING_STATUS);
-			File taskDir = new File(this._taskDir + File.separator + id);
-			_logger.debug("Creating new task directory {}", taskDir.getAbsolutePath());
-
-			if (taskDir.mkdirs() == false) {
-				_logger.error("Unable to create task directory: {}", taskDir.getAbsolutePath());
+			try {
+				_taskStore.createTask(id);
+			} catch(IOException io) {
+				_logger.error(io.getMessage());
 				qr.setStatus(QueryResults.FAILED_STATUS);
 				qr.setMessage("Internal error unable to create directory on filesystem");
 				qr.setProgress(100);
 				updateQueryResultsInDb(id, qr);
 				return;
 			}
-			String message;
-			List<SourceQueryResults> sqrList = new LinkedList<>();
 			qr.setSources(sqrList);
-			SourceQueryResults sqr;
+			
 			for (String source : query.getSourceList()) {
-				_logger.debug("Querying service: {}", source);
-
 				SourceConfiguration sourceConf = this._sourceConfigurations.get().getSourceConfigurationByName(source);
-
-				 // If no configuration or source matches report as an error and 
-				// return cause this is a big configuration error
 				if ( sourceConf == null || !_sources.containsKey(source)) {
 					message = "Source " + source + " is not configured in this server"; 
 					_logger.error(message);
@@ -320,26 +984,78 @@ public class BasicSearchEngineImpl implements SearchEngine {
 					updateQueryResultsInDb(id, qr);
 					return;
 				}
-
-				sqr = _sources.get(source).getSourceQueryResults(query);
-
-				// if sqr is null, create a SourceQueryResults (sqr) object
-				// denoting the error
-				if (sqr == null){
-					message = "Result from source " + source + " was null";
-					_logger.error(message);
-					sqr = new SourceQueryResults();
-					sqr.setMessage(message);
-					sqr.setProgress(100);
-					sqr.setStatus(QueryResults.FAILED_STATUS);
+				sourceConfs.put(source, sourceConf);
+			}
+		}
+		
+		waitForFirstSourceRefreshes(sourceConfs.keySet());
+		
+		// fan out the query to all sources in parallel and record
+		// each result as soon as its source answers. The deadline
+		// below is the only one a source query is given, wrapped
+		// sources run the query on the thread it is submitted to. The lock on qr
+		// is only held while adding a result so readers are not
+		// blocked while waiting on sources
+		CompletionService<SourceQueryResults> completionService = new ExecutorCompletionService<>(_sourceQueryExecutor);
+		Map<Future<SourceQueryResults>, String> pending = new HashMap<>();
+		for (String source : sourceConfs.keySet()) {
+			_logger.debug("Querying service: {}", source);
+			SourceEngine sourceEngine = _sources.get(source);
+			pending.put(completionService.submit(() -> {
+				try {
+					return sourceEngine.getSourceQueryResults(query);
+				} catch(Exception ex){
+					_logger.error("Caught exception querying source " + source, ex);
+					return null;
 				}
-				_logger.debug("Adding SourceQueryResult for {}", source);
-				sqr.setSourceUUID(sourceConf.getUuid());
+			}), source);
+		}
+		
+		long deadline = System.currentTimeMillis() + _sourceQueryTimeout;
+		SourceQueryResults sqr;
+		String source;
+		while (pending.isEmpty() == false) {
+			Future<SourceQueryResults> answer = waitForSourceAnswer(completionService, deadline);
+			if (answer == null){
+				break;
+			}
+			source = pending.remove(answer);
+			sqr = getSourceAnswer(answer);
+			
+			// if sqr is null, create a SourceQueryResults (sqr) object
+			// denoting the error
+			if (sqr == null){
+				message = "Result from source " + source + " was null";
+				_logger.error(message);
+				sqr = getFailedSourceQueryResults(message);
+			}
+			_logger.debug("Adding SourceQueryResult for {}", source);
+			sqr.setSourceUUID(sourceConfs.get(source).getUuid());
+			synchronized(qr){
 				sqrList.add(sqr);
 				updateQueryResultsInDb(id, qr);
 			}
-			saveQueryResultsToFilesystem(id);
 		}
+		
+		// any source still pending missed the deadline
+		if (pending.isEmpty() == false){
+			synchronized(qr){
+				for (Future<SourceQueryResults> slowAnswer : pending.keySet()){
+					slowAnswer.cancel(true);
+					source = pending.get(slowAnswer);
+					message = "Source " + source + " did not respond within "
+							+ _sourceQueryTimeout + " ms";
+					_logger.error(message);
+					sqr = getFailedSourceQueryResults(message);
+					sqr.setSourceUUID(sourceConfs.get(source).getUuid());
+					sqrList.add(sqr);
+				}
+				updateQueryResultsInDb(id, qr);
+			}
+		}
+		// saved outside of lock on qr since saving can lock other tasks
+		writeQueryResultsToFilesystem(id);
+		_progressTracker.track(id);
 	}
 
 	/**
@@ -369,21 +1085,105 @@ public class BasicSearchEngineImpl implements SearchEngine {
 	 */
 	@Override
 	public String query(Query thequery) throws SearchException {
+		checkQuery(thequery);
+		_logger.info("Received query request {}", thequery.toString());
+		ValidatedQueryGenes validGenes = geneValidator.validateHumanGenes(thequery.getGeneList());
+		List<String> newIds = new ArrayList<>(1);
+		String id = addTask(thequery, validGenes, getSourceVersions(), newIds);
+		for (String newId : newIds){
+			_dispatcher.submit(newId);
+		}
+		return id;
+	}
+	
+	/**
+	 * Submits several queries to run as tasks. All queries are checked
+	 * before any task is created so either every query is submitted or
+	 * none are. The gene lists are validated together and the new tasks
+	 * are handed to the dispatcher in one operation
+	 * @param queries queries to run
+	 * @return ids of tasks in same order as {@code queries}
+	 * @throws SearchException if {@code queries} is null or any Query 
+	 *         is null or has a null or empty source list
+	 */
+	@Override
+	public List<String> queryBatch(List<Query> queries) throws SearchException {
+		if (queries == null){
+			throw new SearchException("Query list is null");
+		}
+		List<List<String>> geneLists = new ArrayList<>(queries.size());
+		for (int i = 0; i < queries.size(); i++){
+			try {
+				checkQuery(queries.get(i));
+			} catch(SearchException se){
+				throw new SearchException("Query " + i + " : " + se.getMessage());
+			}
+			geneLists.add(queries.get(i).getGeneList());
+		}
+		_logger.info("Received batch of {} queries", queries.size());
+		List<ValidatedQueryGenes> validGenes = geneValidator.validateHumanGenes(geneLists);
+		Map<String, String> sourceVersions = getSourceVersions();
+		List<String> ids = new ArrayList<>(queries.size());
+		List<String> newIds = new ArrayList<>(queries.size());
+		for (int i = 0; i < queries.size(); i++){
+			ids.add(addTask(queries.get(i), validGenes.get(i), sourceVersions, newIds));
+		}
+		_dispatcher.submitAll(newIds);
+		return ids;
+	}
+	
+	/**
+	 * Checks {@code thequery} can be run
+	 * @param thequery query to check
+	 * @throws SearchException if Query is null or source list is null or empty
+	 */
+	private void checkQuery(Query thequery) throws SearchException {
 		if (thequery == null){
 			throw new SearchException("Query is null");
 		}
 		if (thequery.getSourceList() == null || thequery.getSourceList().isEmpty()) {
 			throw new SearchException("No databases selected");
 		}
-		_logger.info("Received query request {}", thequery.toString());
-		// @TODO get Jing's uuid generator code that can be a poormans cache
+	}
+	
+	/**
+	 * Creates task for {@code thequery} unless an identical reusable 
+	 * task exists. New tasks are not handed to the dispatcher, instead
+	 * their ids are added to {@code newIds}
+	 * @param thequery query to run
+	 * @param validGenes validated genes of query
+	 * @param sourceVersions version of each source
+	 * @param newIds id of task is appended if a new task was created
+	 * @return id of new or existing task
+	 */
+	private String addTask(Query thequery, ValidatedQueryGenes validGenes,
+			Map<String, String> sourceVersions, List<String> newIds){
+		String taskKey = _queryTaskIndex.getKey(validGenes.getQueryGenes(),
+				thequery, sourceVersions);
+		int numberOfNewIds = newIds.size();
+		String id = _queryTaskIndex.getOrAddTask(taskKey, this::isTaskReusable,
+				() -> {
+					String newId = createTask(thequery, validGenes);
+					newIds.add(newId);
+					return newId;
+				});
+		if (newIds.size() == numberOfNewIds){
+			_logger.info("Query matches existing task {}", id);
+		}
+		return id;
+	}
+	
+	/**
+	 * Creates task for {@code thequery} without handing it to the dispatcher
+	 * @param thequery query to run
+	 * @param validGenes validated genes of query
+	 * @return id of new task
+	 */
+	private String createTask(Query thequery, ValidatedQueryGenes validGenes){
 		String id = UUID.randomUUID().toString();
 		_queryTasks.put(id, thequery);
-		_queryTaskIds.add(id);
 		logQuery(id, thequery);
 		QueryResults qr = new QueryResults(System.currentTimeMillis());
-		List<String> originalQueryGenes = thequery.getGeneList();
-		ValidatedQueryGenes validGenes = geneValidator.validateHumanGenes(originalQueryGenes);
 		qr.setValidatedGenes(validGenes);
 		thequery.setGeneList(new ArrayList<>(validGenes.getQueryGenes()));
 		qr.setInputSourceList(thequery.getSourceList());
@@ -392,35 +1192,236 @@ public class BasicSearchEngineImpl implements SearchEngine {
 		_queryResults.merge(id, qr, (oldval, newval) -> newval.updateStartTime(oldval));
 		return id;
 	}
+	
+	/**
+	 * Gets version of each source from the latest SourceResults
+	 * @return map of source name to version
+	 */
+	private Map<String, String> getSourceVersions(){
+		Map<String, String> sourceVersions = new HashMap<>();
+		SourceResults sourceResults = _sourceResults.get();
+		if (sourceResults == null || sourceResults.getResults() == null){
+			return sourceVersions;
+		}
+		for (SourceResult sr : sourceResults.getResults()){
+			sourceVersions.put(sr.getName(), sr.getVersion());
+		}
+		return sourceVersions;
+	}
+	
+	/**
+	 * Tells caller if task with {@code id} can be returned for an
+	 * identical query. Does not change the task index, the caller
+	 * replaces tasks that can not be reused. Only the status of finished
+	 * tasks is loaded, their results are only read if the
+	 * {@link TaskStore} cannot load just the status
+	 * @param id id of task
+	 * @return {@code true} if task still exists and has not failed
+	 */
+	private boolean isTaskReusable(final String id){
+		QueryResults qr = _queryResults.get(id);
+		if (qr == null){
+			try {
+				qr = getFinishedQueryStatus(id);
+			} catch(SearchException se){
+				_logger.warn("Unable to check if task {} can be reused : {}", id, se.getMessage());
+				return false;
+			}
+			if (qr == null){
+				qr = getQueryResultsFromDbOrFilesystem(id);
+			}
+		}
+		if (qr == null){
+			return false;
+		}
+		synchronized(qr){
+			return !QueryResults.FAILED_STATUS.equals(qr.getStatus());
+		}
+	}
+
+	/**
+	 * Starts refresh of every source without waiting for them to finish,
+	 * sources with a refresh already running are left alone
+	 */
+	protected void startSourceRefreshes() {
+		for (SourceConfiguration sourceConfiguration : _sourceConfigurations.get().getSources()){
+			refreshSource(sourceConfiguration);
+		}
+	}
+	
+	/**
+	 * Waits for sources in {@code sourceNames} that have never been
+	 * refreshed, but have a refresh running, to finish that refresh so
+	 * queries are not sent to sources that do not yet know what data they
+	 * have. Waits at most {@link #updateSourceRefreshTimeout(long)}, after
+	 * which sources are queried anyway
+	 * @param sourceNames names of sources about to be queried
+	 */
+	private void waitForFirstSourceRefreshes(Collection<String> sourceNames) {
+		Set<String> refreshedSources = new HashSet<>();
+		SourceResults sourceResults = _sourceResults.get();
+		if (sourceResults != null && sourceResults.getResults() != null){
+			for (SourceResult sr : sourceResults.getResults()){
+				refreshedSources.add(sr.getName());
+			}
+		}
+		long deadline = System.currentTimeMillis() + _sourceRefreshTimeout;
+		for (String sourceName : sourceNames){
+			if (refreshedSources.contains(sourceName)){
+				continue;
+			}
+			CompletableFuture<SourceResult> refresh = _sourceRefreshes.get(sourceName);
+			if (refresh == null){
+				continue;
+			}
+			try {
+				refresh.get(Math.max(0, deadline - System.currentTimeMillis()),
+						TimeUnit.MILLISECONDS);
+			} catch(TimeoutException te){
+				_logger.warn("Source {} has not finished its first refresh within {} ms, querying it anyway",
+						sourceName, _sourceRefreshTimeout);
+			} catch(ExecutionException ee){
+				_logger.debug("First refresh of source {} failed : {}", sourceName,
+						ee.getCause().getMessage());
+			} catch(InterruptedException ie){
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
 
 	/**
 	 * Queries source services to get updated configuration information about 
-	 * what data they contain
+	 * what data they contain. All sources are queried at the same time and
+	 * given {@link #updateSourceRefreshTimeout(long)} to answer. Sources
+	 * that do not answer in time, fail, or answer without a status or with
+	 * {@link #SOURCE_ERROR_STATUS}, keep their previous information with
+	 * status {@link #SOURCE_STALE_STATUS}. A source whose previous
+	 * refresh is still running is not queried again
 	 */
-	private void updateSourceResults() {
+	protected void updateSourceResults() {
 		SourceConfigurations sourceConfigurations = _sourceConfigurations.get();
-		final List<SourceResult> sourceResults = sourceConfigurations.getSources().stream()
-				.map((sourceConfiguration) -> {
-
-					final SourceResult sourceResult = new SourceResult();
-					sourceResult.setName(sourceConfiguration.getName());
-					sourceResult.setUuid(sourceConfiguration.getUuid().toString());
-					sourceResult.setDescription(sourceConfiguration.getDescription());
-					sourceResult.setEndPoint(sourceConfiguration.getEndPoint());
-					String sourceName = sourceConfiguration.getName();
-					_logger.debug("Updating source {}", sourceName);
-					if (_sources.containsKey(sourceName)){
-						_sources.get(sourceName).updateSourceResult(sourceResult);
-					} else {
-						_logger.error("Unknown source {} no update performed", sourceName);
-					}
-					return sourceResult;
-				}).collect(Collectors.toList());
+		List<SourceConfiguration> configs = sourceConfigurations.getSources();
+		List<CompletableFuture<SourceResult>> refreshes = new ArrayList<>(configs.size());
+		for (SourceConfiguration sourceConfiguration : configs){
+			refreshes.add(refreshSource(sourceConfiguration));
+		}
+		Map<String, SourceResult> lastResults = new HashMap<>();
+		SourceResults lastSourceResults = _sourceResults.get();
+		if (lastSourceResults != null && lastSourceResults.getResults() != null){
+			for (SourceResult sr : lastSourceResults.getResults()){
+				lastResults.put(sr.getName(), sr);
+			}
+		}
+		long deadline = System.currentTimeMillis() + _sourceRefreshTimeout;
+		final List<SourceResult> sourceResults = new ArrayList<>(configs.size());
+		for (int i = 0; i < configs.size(); i++){
+			SourceConfiguration sourceConfiguration = configs.get(i);
+			try {
+				SourceResult sourceResult = refreshes.get(i).get(Math.max(0, deadline - System.currentTimeMillis()),
+						TimeUnit.MILLISECONDS);
+				if (isSourceResultValid(sourceResult)){
+					sourceResults.add(sourceResult);
+					continue;
+				}
+				_logger.warn("Source {} failed to refresh with status {}, keeping previous information",
+						sourceConfiguration.getName(), sourceResult.getStatus());
+			} catch(TimeoutException te){
+				_logger.warn("Source {} did not refresh within {} ms, keeping previous information",
+						sourceConfiguration.getName(), _sourceRefreshTimeout);
+			} catch(ExecutionException ee){
+				_logger.error("Caught exception refreshing source "
+						+ sourceConfiguration.getName(), ee.getCause());
+			} catch(InterruptedException ie){
+				_logger.warn("Interrupted while refreshing sources");
+				Thread.currentThread().interrupt();
+				return;
+			}
+			sourceResults.add(getStaleSourceResult(sourceConfiguration,
+					lastResults.get(sourceConfiguration.getName())));
+		}
 		InternalSourceResults internalSourceResults = new InternalSourceResults();
 		internalSourceResults.setResults(sourceResults);
+		
+		// tasks for sources whose version changed can no longer be reused
+		Map<String, String> oldVersions = getSourceVersions();
+		for (SourceResult sr : sourceResults){
+			if (oldVersions.get(sr.getName()) != null
+					&& !Objects.equals(oldVersions.get(sr.getName()), sr.getVersion())){
+				_logger.info("Version of source {} changed from {} to {}",
+						new Object[]{sr.getName(), oldVersions.get(sr.getName()), sr.getVersion()});
+				_queryTaskIndex.invalidateSource(sr.getName());
+			}
+		}
+		_queryTaskIndex.removeExpired();
 		setSourceResults(internalSourceResults);
 	}
 	
+	/**
+	 * Starts refresh of source in {@code sourceConfiguration} unless one
+	 * is already running
+	 * @param sourceConfiguration source to refresh
+	 * @return running refresh of source
+	 */
+	private CompletableFuture<SourceResult> refreshSource(final SourceConfiguration sourceConfiguration){
+		return _sourceRefreshes.compute(sourceConfiguration.getName(), (sourceName, running) -> {
+			if (running != null && running.isDone() == false){
+				_logger.debug("Previous update of source {} still running", sourceName);
+				return running;
+			}
+			final SourceResult sourceResult = getSourceResultFromConfiguration(sourceConfiguration);
+			return CompletableFuture.supplyAsync(() -> {
+				_logger.debug("Updating source {}", sourceName);
+				if (_sources.containsKey(sourceName)){
+					_sources.get(sourceName).updateSourceResult(sourceResult);
+				} else {
+					_logger.error("Unknown source {} no update performed", sourceName);
+				}
+				return sourceResult;
+			}, _sourceQueryExecutor);
+		});
+	}
+	
+	/**
+	 * Tells if refresh of source produced usable information. Sources
+	 * catch their own errors and timeouts leaving the status unset or
+	 * setting it to {@code error}
+	 * @param sourceResult result of refresh
+	 * @return {@code true} if status is set and is not {@code error}
+	 */
+	private boolean isSourceResultValid(final SourceResult sourceResult){
+		return sourceResult.getStatus() != null
+				&& !sourceResult.getStatus().equals(SOURCE_ERROR_STATUS);
+	}
+	
+	private SourceResult getSourceResultFromConfiguration(final SourceConfiguration sourceConfiguration){
+		final SourceResult sourceResult = new SourceResult();
+		sourceResult.setName(sourceConfiguration.getName());
+		sourceResult.setUuid(sourceConfiguration.getUuid().toString());
+		sourceResult.setDescription(sourceConfiguration.getDescription());
+		sourceResult.setEndPoint(sourceConfiguration.getEndPoint());
+		return sourceResult;
+	}
+	
+	/**
+	 * Creates SourceResult for a source whose refresh did not finish in time
+	 * @param sourceConfiguration configuration of source
+	 * @param lastResult information from last refresh of source or {@code null}
+	 * @return copy of {@code lastResult}, or if {@code null} the information in
+	 *         {@code sourceConfiguration}, with status {@link #SOURCE_STALE_STATUS}
+	 */
+	private SourceResult getStaleSourceResult(final SourceConfiguration sourceConfiguration,
+			final SourceResult lastResult){
+		SourceResult sourceResult = getSourceResultFromConfiguration(sourceConfiguration);
+		if (lastResult != null){
+			sourceResult.setVersion(lastResult.getVersion());
+			sourceResult.setNumberOfNetworks(lastResult.getNumberOfNetworks());
+			sourceResult.setDatabases(lastResult.getDatabases());
+		}
+		sourceResult.setStatus(SOURCE_STALE_STATUS);
+		return sourceResult;
+	}
+	
 	/**
 	 * Gets SourceResults
 	 * @return
@@ -445,27 +1446,75 @@ public class BasicSearchEngineImpl implements SearchEngine {
 	 * If the QueryResult has completed it is saved to the file system so future
 	 * calls that load this QueryResult will return quickly
 	 * 
+	 * Concurrent calls for the same task wait for and share a single
+	 * refresh instead of repeating the remote calls.
 	 * 
 	 * @param qr QueryResults object that is updated in place with any updates
 	 */
 	protected void checkAndUpdateQueryResults(final String id, QueryResults qr) {
+		_queryRefreshes.execute(id, () -> {
+			Map<SourceQueryResults, SourceQueryResults> polledSources = pollUnfinishedSources(id, qr);
+			if (updateQueryResults(id, qr, polledSources)){
+				notifyQueryChanged(id);
+			}
+			return Boolean.TRUE;
+		});
+	}
+	
+	/**
+	 * Applies updates polled from sources to {@code qr}
+	 * @param id id of task
+	 * @param qr QueryResults object that is updated in place
+	 * @param polledSources map of original SourceQueryResults to updated copy
+	 * @return {@code true} if status or progress of {@code qr} or status,
+	 *         progress or number of hits of any of its sources changed
+	 */
+	private boolean updateQueryResults(final String id, QueryResults qr,
+			Map<SourceQueryResults, SourceQueryResults> polledSources) {
+		boolean changed;
+		boolean finished;
 		synchronized(qr){
 			// if its complete just return
 			if (qr.getStatus().equals(QueryResults.COMPLETE_STATUS)) {
 				_logger.debug("Returning completed query for task {}", id);
-				return;
+				return false;
 			}
 			if (qr.getStatus().equals(QueryResults.FAILED_STATUS)) {
 				_logger.debug("Returning failed query for task {}", id);
-				return;
+				return false;
 			}
+			changed = applyQueryResultsUpdates(id, qr, polledSources);
+			finished = isQueryDone(qr);
+		}
+		// saved outside of lock on qr since saving can lock other tasks
+		if (finished){
+			saveQueryResultsToFilesystem(id);
+		}
+		return changed;
+	}
+	
+	/**
+	 * Applies updates polled from sources to unfinished {@code qr}, caller
+	 * must hold lock on {@code qr}
+	 * @param id id of task
+	 * @param qr QueryResults object that is updated in place
+	 * @param polledSources map of original SourceQueryResults to updated copy
+	 * @return {@code true} if status or progress of {@code qr} or status,
+	 *         progress or number of hits of any of its sources changed
+	 */
+	private boolean applyQueryResultsUpdates(final String id, QueryResults qr,
+			Map<SourceQueryResults, SourceQueryResults> polledSources) {
+		{
 			long startTime = System.currentTimeMillis();
+			String origStatus = qr.getStatus();
+			int origProgress = qr.getProgress();
+			boolean sourceChanged = false;
 			Set<String> failedSet = new HashSet<>();
 			int hitCount = 0;
 			int numComplete = 0;
 			long wallTime = 0;
 			if (qr.getSources() != null) {
-				Iterator<SourceQueryResults> sIterator = qr.getSources().iterator();
+				ListIterator<SourceQueryResults> sIterator = qr.getSources().listIterator();
 				while (sIterator.hasNext()) {
 					SourceQueryResults sqRes = sIterator.next();
 					_logger.debug("For task {} Examining status of {}", id, sqRes.getSourceName());
@@ -483,7 +1532,12 @@ public class BasicSearchEngineImpl implements SearchEngine {
 						continue;
 					}
 					if (_sources.containsKey(sqRes.getSourceName())){
-						_sources.get(sqRes.getSourceName()).updateSourceQueryResults(sqRes);
+						if (polledSources.containsKey(sqRes)){
+							SourceQueryResults polled = polledSources.get(sqRes);
+							sourceChanged |= hasSourceChanged(sqRes, polled);
+							sqRes = polled;
+							sIterator.set(sqRes);
+						}
 						if (sqRes.getProgress() == 100) {
 							_logger.debug("{} completed processing with status {}",
 									sqRes.getSourceName(), sqRes.getStatus());
@@ -525,7 +1579,7 @@ public class BasicSearchEngineImpl implements SearchEngine {
 							new Object[]{id, qr.getWallTime(), qr.getStatus()});
 					qr.setNumberOfHits(hitCount);
 					updateQueryResultsInDb(id, qr);
-					saveQueryResultsToFilesystem(id);
+					getResultIndex(id, qr);
 				} else {
 					int progress = Math.round(((float) numComplete / (float) qr.getSources().size()) * 100);
 					qr.setProgress(progress);
@@ -538,12 +1592,61 @@ public class BasicSearchEngineImpl implements SearchEngine {
 				qr.setMessage("No sources in result");
 				qr.setProgress(100);
 				updateQueryResultsInDb(id, qr);
-				saveQueryResultsToFilesystem(id);
 			}
 			_logger.debug("For task {} checking for update took {} ms",
 					id, System.currentTimeMillis() - startTime);
+			return sourceChanged || origProgress != qr.getProgress() 
+					|| !origStatus.equals(qr.getStatus());
 		}
 	}
+	
+	/**
+	 * Tells if status, progress or number of hits differ between
+	 * {@code orig} and {@code updated}
+	 * @param orig SourceQueryResults before polling source
+	 * @param updated SourceQueryResults after polling source
+	 * @return {@code true} if they differ
+	 */
+	private boolean hasSourceChanged(SourceQueryResults orig, SourceQueryResults updated){
+		return orig.getProgress() != updated.getProgress()
+				|| orig.getNumberOfHits() != updated.getNumberOfHits()
+				|| !Objects.equals(orig.getStatus(), updated.getStatus());
+	}
+
+	/**
+	 * Asks the sources for updates on each unfinished SourceQueryResults 
+	 * in {@code qr}. The updates are made on copies without holding a lock
+	 * on {@code qr} so readers are not blocked by the remote calls
+	 * 
+	 * @param id id of task
+	 * @param qr QueryResults to poll
+	 * @return map of original SourceQueryResults to updated copy
+	 */
+	private Map<SourceQueryResults, SourceQueryResults> pollUnfinishedSources(final String id,
+			QueryResults qr){
+		Map<SourceQueryResults, SourceQueryResults> polledSources = new IdentityHashMap<>();
+		synchronized(qr){
+			if (isQueryDone(qr) || qr.getSources() == null){
+				return polledSources;
+			}
+			for (SourceQueryResults sqRes : qr.getSources()){
+				if (sqRes.getProgress() == 100 || !_sources.containsKey(sqRes.getSourceName())){
+					continue;
+				}
+				try {
+					polledSources.put(sqRes, copyOf(sqRes, SourceQueryResults.class));
+				} catch(IOException io){
+					_logger.error("For task " + id + " unable to copy results of "
+							+ sqRes.getSourceName() + " skipping update", io);
+				}
+			}
+		}
+		for (SourceQueryResults sqRes : polledSources.values()){
+			_logger.debug("For task {} polling {}", id, sqRes.getSourceName());
+			_sources.get(sqRes.getSourceName()).updateSourceQueryResults(sqRes);
+		}
+		return polledSources;
+	}
 
 	/**
 	 * Filters QueryResults by keeping only SourceQueryResults that exist in source
@@ -595,51 +1698,44 @@ public class BasicSearchEngineImpl implements SearchEngine {
 		}
 		long startTime = System.currentTimeMillis();
 		int counter = 0;
-		List<SourceQueryResult> srcQueryRes = null;
-		Collections.sort(qr.getSources(), _sourceRankSorter);
+		List<SourceQueryResults> sortedSources = new ArrayList<>(qr.getSources());
+		Collections.sort(sortedSources, _sourceRankSorter);
 		
-		for (SourceQueryResults sqr : qr.getSources()) {
+		for (SourceQueryResults sqr : sortedSources) {
 			if (sqr.getResults() == null){
 				_logger.debug("{} results was null. Skipping...",
 						sqr.getSourceName());
 				continue;
 			}
-			Collections.sort(sqr.getResults(), _rankSorter);
-
-			srcQueryRes = null;
-			for (SourceQueryResult sq : sqr.getResults()) {
-
-				if (counter < start) {
-					counter++;
-					continue;
-				}
-				// this is a little complicated but basically
-				// if there is a start offset 'counter' must be
-				// greater then size otherwise it needs to be
-				// equal or greater
-				if (size > 0){ 
-					if (start == 0) {
-						if (counter >= size){
-							break;
-						}
-					} else if (counter > size) {
-						break;
-					}
-				}
-				if (srcQueryRes == null) {
-					srcQueryRes = new LinkedList<>();
-				}
-				srcQueryRes.add(sq);
-				counter++;
-			}
-			if (srcQueryRes != null) {
-				sqr.setResults(srcQueryRes);
-			}
+			List<SourceQueryResult> sortedResults = new ArrayList<>(sqr.getResults());
+			Collections.sort(sortedResults, _rankSorter);
+			sqr.setResults(RankedResultIndex.getSlice(sortedResults, counter, start, size));
+			counter += sortedResults.size();
 		}
+		qr.setSources(sortedSources);
 		_logger.debug("Filtering results took {} ms",
 				System.currentTimeMillis() - startTime);
 	}
 
+	/**
+	 * Builds {@link RankedResultIndex} for task with {@code id} and 
+	 * adds it to the cache of indexes. Concurrent calls for the same task
+	 * share one build
+	 * @param id id of task
+	 * @param qr QueryResults used to build the index, this is not modified
+	 * @return index or {@code null} if task has not finished
+	 */
+	private RankedResultIndex getResultIndex(final String id, QueryResults qr){
+		if (isQueryDone(qr) == false){
+			return null;
+		}
+		return _resultIndexBuilds.execute(id, () -> {
+			RankedResultIndex index = new RankedResultIndex(qr, _mapper);
+			_resultIndexes.put(id, index);
+			return index;
+		});
+	}
+
 	/**
 	 * Returns
 	 * 
@@ -657,22 +1753,40 @@ public class BasicSearchEngineImpl implements SearchEngine {
 	public QueryResults getQueryResults(final String id, final String source, int start, int size)
 			throws SearchException {
 		_logger.debug("Got query results request: {}", id);
-		QueryResults qr = this.getQueryResultsFromDbOrFilesystem(id);
-		if (qr == null) {
-			_logger.debug("No results for id {} found", id);
-			return null;
-		}
 		if (start < 0) {
 			throw new SearchException("start parameter must be value of 0 or greater");
 		}
 		if (size < 0) {
 			throw new SearchException("size parameter must be value of 0 or greater");
 		}
-		checkAndUpdateQueryResults(id, qr);
-		synchronized(qr){
-			filterQueryResultsBySourceList(qr, source);
-			filterQueryResultsByStartAndSize(qr, start, size);
+		RankedResultIndex index = _resultIndexes.get(id);
+		if (index != null){
+			return index.getQueryResults(source, start, size);
+		}
+		if (_queryResults.containsKey(id) == false){
+			try {
+				QueryResults qr = _finishedTaskLoads.execute(id + "/results?source=" + source
+						+ "&start=" + start + "&size=" + size,
+						() -> _taskStore.loadQueryResults(id, source, start, size));
+				if (qr != null){
+					return qr;
+				}
+			} catch(IOException io){
+				throw new SearchException("Unable to read results for task "
+						+ id + " : " + io.getMessage());
+			}
+		}
+		QueryResults qr = this.getQueryResultsSnapshot(id);
+		if (qr == null) {
+			_logger.debug("No results for id {} found", id);
+			return null;
 		}
+		index = getResultIndex(id, qr);
+		if (index != null){
+			return index.getQueryResults(source, start, size);
+		}
+		filterQueryResultsBySourceList(qr, source);
+		filterQueryResultsByStartAndSize(qr, start, size);
 		return qr;
 	}
 
@@ -685,12 +1799,19 @@ public class BasicSearchEngineImpl implements SearchEngine {
 	@Override
 	public QueryStatus getQueryStatus(final String id) throws SearchException {
 		_logger.debug("Got query status request: {}", id);
-		QueryResults qr = this.getQueryResultsFromDbOrFilesystem(id);
+		QueryResults qr = getFinishedQueryStatus(id);
+		if (qr != null){
+			return qr;
+		}
+		qr = this.getQueryResultsSnapshot(id);
 		if (qr == null) {
 			_logger.debug("No results for id {} found", id);
 			return null;
 		}
-		checkAndUpdateQueryResults(id, qr);
+		RankedResultIndex index = getResultIndex(id, qr);
+		if (index != null){
+			return index.getQueryStatus();
+		}
 		if (qr.getSources() != null) {
 			for (SourceQueryResults sqr : qr.getSources()) {
 				sqr.setResults(null);
@@ -699,6 +1820,31 @@ public class BasicSearchEngineImpl implements SearchEngine {
 		return qr;
 	}
 
+	/**
+	 * Gets status of a finished task from the cache of finished tasks or 
+	 * from the {@link TaskStore} without loading any results
+	 * @param id task id
+	 * @return QueryResults without results or {@code null} if task is not
+	 *         cached and the store cannot load just the status
+	 * @throws SearchException if there was an error reading the store
+	 */
+	private QueryResults getFinishedQueryStatus(final String id) throws SearchException {
+		RankedResultIndex index = _resultIndexes.get(id);
+		if (index != null){
+			return index.getQueryStatus();
+		}
+		if (_queryResults.containsKey(id)){
+			return null;
+		}
+		try {
+			return _finishedTaskLoads.execute(id + "/status",
+					() -> _taskStore.loadQueryStatus(id));
+		} catch(IOException io){
+			throw new SearchException("Unable to read status of task "
+					+ id + " : " + io.getMessage());
+		}
+	}
+
 	/**
 	 * Deletes task with {@code id} locally and on remote services. If there
 	 * are any problems an error is logged but
@@ -707,18 +1853,29 @@ public class BasicSearchEngineImpl implements SearchEngine {
 	@Override
 	public void delete(final String id) throws SearchException {
 		_logger.debug("Deleting task " + id);
+		_progressTracker.untrack(id);
+		_queryTaskIndex.removeTask(id);
+		_resultIndexes.remove(id);
 		QueryResults qr = this.getQueryResultsFromDbOrFilesystem(id);
 		if (qr == null) {
 			_logger.error("Can not find task {} to delete", id);
 			return;
 		}
+		_taskPersister.cancel(id);
+		_queryResults.remove(id);
+		notifyQueryChanged(id);
 		
 		List<SearchException> exceptionList = null;
 		if (qr.getSources() != null){
 			for (SourceQueryResults sqr : qr.getSources()) {
 				if (_sources.containsKey(sqr.getSourceName())){
+					if (sqr.getSourceTaskId() == null){
+						_logger.debug("For task {} source {} has no task to delete",
+								id, sqr.getSourceName());
+						continue;
+					}
 					try {
-						_sources.get(sqr.getSourceName()).delete(id);
+						_sources.get(sqr.getSourceName()).delete(sqr.getSourceTaskId());
 					} catch(SearchException se){
 						_logger.info("Adding exception for task {} to "
 								+ "combine and throw later : {}",
@@ -739,20 +1896,32 @@ public class BasicSearchEngineImpl implements SearchEngine {
 			combineSearchExceptionsAndThrow(id, exceptionList);
 		} 
 		
-		//Delete local file system copy
-		File thisTaskDir = new File(_taskDir + File.separator + id);
-		if (thisTaskDir.exists() == true) {
-			_logger.debug("Attempting to delete task from filesystem: {} ",
-					thisTaskDir.getAbsolutePath());
-			if (FileUtils.deleteQuietly(thisTaskDir) == false) {
-				_logger.error("There was a problem deleting the directory: {}",
-						thisTaskDir.getAbsolutePath());
-			}
-			return;
+		//Delete local copy
+		try {
+			_taskStore.delete(id);
+		} catch(IOException io){
+			_logger.error(io.getMessage());
+		}
+	}
+	
+	/**
+	 * Deletes task via {@link #delete(java.lang.String)} and then removes
+	 * the local copy even if the task could not be loaded or deleting it 
+	 * from one or more sources failed
+	 * @param id id of task
+	 */
+	protected void purgeTask(final String id) {
+		try {
+			delete(id);
+		} catch(SearchException se){
+			_logger.warn("Unable to delete task {} from all sources : {}",
+					id, se.getMessage());
+		}
+		try {
+			_taskStore.delete(id);
+		} catch(IOException io){
+			_logger.error(io.getMessage());
 		}
-		
-		_logger.debug("{} directory does not exist",
-						thisTaskDir.getAbsolutePath());
 	}
 	
 	/**
@@ -799,25 +1968,25 @@ public class BasicSearchEngineImpl implements SearchEngine {
 			throw new SearchException("networkUUID cannot be null");
 		}
 		
-		QueryResults qr = this.getQueryResultsFromDbOrFilesystem(id);
+		QueryResults qr = getFinishedQueryStatus(id);
+		if (qr == null){
+			qr = this.getQueryResultsSnapshot(id);
+		}
 		if (qr == null){
 			_logger.info("No task {} found", id);
 			return null;
 		}
-		checkAndUpdateQueryResults(id, qr);
-		synchronized(qr){
-			for (SourceQueryResults sqRes : qr.getSources()) {
-				if ( ! sqRes.getSourceUUID().equals(UUID.fromString(sourceUUID))) {
-					continue;
-				}
-				if (_sources.containsKey(sqRes.getSourceName())){
-					return _sources.get(sqRes.getSourceName()).getOverlaidNetworkAsCXStream(sqRes.getSourceTaskId(),
-							networkUUID);
+		for (SourceQueryResults sqRes : qr.getSources()) {
+			if ( ! sqRes.getSourceUUID().equals(UUID.fromString(sourceUUID))) {
+				continue;
+			}
+			if (_sources.containsKey(sqRes.getSourceName())){
+				return _sources.get(sqRes.getSourceName()).getOverlaidNetworkAsCXStream(sqRes.getSourceTaskId(),
+						networkUUID);
 
-				} else {
-					_logger.error("For task {} no source matching name {} found",
-							id, sqRes.getSourceName());
-				}
+			} else {
+				_logger.error("For task {} no source matching name {} found",
+						id, sqRes.getSourceName());
 			}
 		}
 		_logger.info("For task {} and source {} network {} not found",
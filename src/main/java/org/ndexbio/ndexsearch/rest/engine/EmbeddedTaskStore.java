@@ -0,0 +1,750 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link TaskStore} that keeps all tasks in a single append only log file
+ * with an in memory index of task id to location of the latest results of
+ * the task in the file. Point lookups cost one positional read, writes are
+ * appended to the end of the file and a batch of writes is flushed to disk
+ * once, if flushing is enabled. Space used by replaced and deleted tasks is reclaimed by rewriting
+ * the live tasks to a new file once it exceeds the space used by live tasks.
+ * The rewrite runs in the background without holding the lock, only
+ * records appended during the rewrite are copied while holding the lock
+ * before the new file replaces the old one.
+ *
+ * Each record in the file is laid out as:
+ * <pre>
+ * int magic, byte type, long time saved in milliseconds, int key length,
+ * int value length, key (task id UTF-8), value (QueryResults JSON),
+ * int CRC32 of type through value
+ * </pre>
+ * On open the file is scanned to rebuild the index and any partially
+ * written record at the end of the file is discarded. Records written
+ * by earlier versions lack the time saved and are given the time the
+ * file was last modified, they are rewritten in the current format when
+ * the file is compacted.
+ *
+ * @author churas
+ */
+public class EmbeddedTaskStore implements TaskStore {
+
+	static Logger _logger = LoggerFactory.getLogger(EmbeddedTaskStore.class);
+
+	/**
+	 * Default name of file in task directory
+	 */
+	public static final String DEFAULT_FILE_NAME = "tasks.db";
+
+	/**
+	 * Space used by replaced and deleted tasks in bytes that must be
+	 * exceeded before the file is compacted
+	 */
+	public static final long DEFAULT_MIN_COMPACTION_BYTES = 16777216;
+
+	/**
+	 * Time in milliseconds {@link #close()} waits for a compaction
+	 * in progress to stop
+	 */
+	private static final long COMPACTION_SHUTDOWN_WAIT = 10000;
+
+	private static final int RECORD_MAGIC = 0x4E445453;
+
+	/**
+	 * Magic of records written by earlier versions that do not hold
+	 * the time the record was saved
+	 */
+	private static final int LEGACY_RECORD_MAGIC = 0x4E445452;
+	private static final byte PUT_RECORD = 1;
+	private static final byte DELETE_RECORD = 2;
+
+	/**
+	 * Size of magic, type, time saved, key length and value length
+	 */
+	private static final int HEADER_SIZE = 21;
+
+	/**
+	 * Size of magic, type, key length and value length of records
+	 * written by earlier versions
+	 */
+	private static final int LEGACY_HEADER_SIZE = 13;
+	private static final int CRC_SIZE = 4;
+
+	private final File _file;
+	private final ReentrantReadWriteLock _lock;
+
+	/**
+	 * Map of <task id> => location of value in file
+	 */
+	private final HashMap<String, ValueLocation> _index;
+	private FileChannel _channel;
+	private long _fileSize;
+	private long _liveBytes;
+	private long _minCompactionBytes;
+	private volatile boolean _rawResults;
+	private final boolean _syncWrites;
+	private final ExecutorService _compactor;
+
+	/**
+	 * Set while a compaction is queued or running
+	 */
+	private final AtomicBoolean _compactionPending;
+
+	/**
+	 * Constructor that opens or creates {@code file} and flushes every
+	 * write to disk
+	 * @param file file holding tasks
+	 * @throws IOException if file could not be opened or read
+	 */
+	public EmbeddedTaskStore(final File file) throws IOException {
+		this(file, true);
+	}
+
+	/**
+	 * Constructor that opens or creates {@code file}
+	 * @param file file holding tasks
+	 * @param syncWrites if {@code true} each write is flushed to disk
+	 *        before returning
+	 * @throws IOException if file could not be opened or read
+	 */
+	public EmbeddedTaskStore(final File file, boolean syncWrites) throws IOException {
+		_file = file;
+		_syncWrites = syncWrites;
+		_lock = new ReentrantReadWriteLock();
+		_index = new HashMap<>();
+		_minCompactionBytes = DEFAULT_MIN_COMPACTION_BYTES;
+		_compactionPending = new AtomicBoolean(false);
+		_compactor = Executors.newSingleThreadExecutor((r) -> {
+			Thread t = new Thread(r, "task-store-compactor");
+			t.setDaemon(true);
+			return t;
+		});
+		open();
+	}
+
+	/**
+	 * Sets space in bytes used by replaced and deleted tasks that must be
+	 * exceeded before the file is compacted
+	 * @param minCompactionBytes size in bytes
+	 */
+	public void setMinCompactionBytes(long minCompactionBytes){
+		_minCompactionBytes = minCompactionBytes;
+	}
+
+	/**
+	 * Sets whether structured values in result details of loaded tasks
+	 * are read as {@link org.ndexbio.ndexsearch.rest.RawJson}
+	 * @param rawResults {@code true} to read details as raw JSON
+	 */
+	public void setRawResults(boolean rawResults){
+		_rawResults = rawResults;
+	}
+
+	/**
+	 * Gets size of file in bytes
+	 * @return size in bytes
+	 */
+	public long getFileSize(){
+		_lock.readLock().lock();
+		try {
+			return _fileSize;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets number of tasks in store
+	 * @return number of tasks
+	 */
+	public int size(){
+		_lock.readLock().lock();
+		try {
+			return _index.size();
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Nothing to prepare since all tasks share one file
+	 * @param id id of task
+	 */
+	@Override
+	public void createTask(final String id) {
+	}
+
+	@Override
+	public void save(final String id, QueryResults qr) throws IOException {
+		saveAll(Collections.singletonMap(id, qr));
+	}
+
+	/**
+	 * Appends all tasks to the file with a single write and flush
+	 * @param tasks map of task id to results to save
+	 * @throws IOException if there was an error saving
+	 */
+	@Override
+	public void saveAll(Map<String, QueryResults> tasks) throws IOException {
+		List<String> ids = new ArrayList<>(tasks.size());
+		List<byte[]> values = new ArrayList<>(tasks.size());
+		for (Map.Entry<String, QueryResults> entry : tasks.entrySet()){
+			ids.add(entry.getKey());
+			values.add(SearchJsonProvider.getWriter(QueryResults.class).writeValueAsBytes(entry.getValue()));
+		}
+		append(PUT_RECORD, ids, values);
+	}
+
+	@Override
+	public void saveFinished(final String id, QueryResults qr) throws IOException {
+		save(id, qr);
+	}
+
+	@Override
+	public void saveAllFinished(Map<String, QueryResults> tasks) throws IOException {
+		saveAll(tasks);
+	}
+
+	@Override
+	public QueryResults load(final String id) throws IOException {
+		byte[] value;
+		_lock.readLock().lock();
+		try {
+			if (_channel == null){
+				throw new IOException("Store " + _file.getAbsolutePath() + " is closed");
+			}
+			ValueLocation loc = _index.get(id);
+			if (loc == null){
+				return null;
+			}
+			value = readFully(_channel, loc.getOffset(), loc.getLength());
+		} finally {
+			_lock.readLock().unlock();
+		}
+		return SearchJsonProvider.getReader(QueryResults.class, _rawResults).readValue(value);
+	}
+
+	/**
+	 * Tasks are stored as one value so part of a task cannot be read
+	 * @return {@code null}
+	 */
+	@Override
+	public QueryResults loadQueryResults(final String id, final String source,
+			int start, int size) {
+		return null;
+	}
+
+	/**
+	 * Tasks are stored as one value so part of a task cannot be read
+	 * @return {@code null}
+	 */
+	@Override
+	public QueryResults loadQueryStatus(final String id) {
+		return null;
+	}
+
+	/**
+	 * Gets tasks in store. Tasks saved by earlier versions that did not
+	 * record the time saved are given the time the file was last
+	 * modified before it was opened
+	 * @return map of task id to time in milliseconds task was last saved
+	 */
+	@Override
+	public Map<String, Long> listTasks() {
+		_lock.readLock().lock();
+		try {
+			Map<String, Long> tasks = new HashMap<>();
+			for (Map.Entry<String, ValueLocation> entry : _index.entrySet()){
+				tasks.put(entry.getKey(), entry.getValue().getLastModified());
+			}
+			return tasks;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean delete(final String id) throws IOException {
+		_lock.writeLock().lock();
+		try {
+			if (_index.containsKey(id) == false){
+				return false;
+			}
+			append(DELETE_RECORD, Collections.singletonList(id),
+					Collections.singletonList(new byte[0]));
+			return true;
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Compacts the file if it holds any replaced or deleted tasks and
+	 * waits for the compaction to finish. Unlike the compaction started
+	 * after writes this ignores the minimum set via
+	 * {@link #setMinCompactionBytes(long)}
+	 * @throws IOException if the store is closed or there was an error
+	 *         compacting
+	 */
+	@Override
+	public void reclaimSpace() throws IOException {
+		Future<Boolean> compaction;
+		try {
+			compaction = _compactor.submit(() -> {
+				_lock.readLock().lock();
+				try {
+					if (_fileSize == _liveBytes){
+						return false;
+					}
+				} finally {
+					_lock.readLock().unlock();
+				}
+				return compact();
+			});
+		} catch(RejectedExecutionException ree){
+			throw new IOException("Store " + _file.getAbsolutePath() + " is closed");
+		}
+		try {
+			compaction.get();
+		} catch(InterruptedException ie){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted waiting for compaction of "
+					+ _file.getAbsolutePath());
+		} catch(ExecutionException ee){
+			if (ee.getCause() instanceof IOException){
+				throw (IOException)ee.getCause();
+			}
+			throw new IOException("Unable to compact " + _file.getAbsolutePath()
+					+ " : " + ee.getCause().getMessage(), ee.getCause());
+		}
+	}
+
+	/**
+	 * Closes file, a compaction in progress is abandoned
+	 * @throws IOException if there was an error closing the file
+	 */
+	@Override
+	public void close() throws IOException {
+		_lock.writeLock().lock();
+		try {
+			if (_channel != null){
+				_channel.close();
+				_channel = null;
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+		_compactor.shutdown();
+		try {
+			if (_compactor.awaitTermination(COMPACTION_SHUTDOWN_WAIT, TimeUnit.MILLISECONDS) == false){
+				_logger.warn("Compaction of {} did not stop in time", _file.getAbsolutePath());
+			}
+		} catch(InterruptedException ie){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Appends records to end of file and updates index
+	 * @param type type of records
+	 * @param ids task ids
+	 * @param values values of records
+	 * @throws IOException if there was an error writing
+	 */
+	private void append(byte type, List<String> ids, List<byte[]> values) throws IOException {
+		List<byte[]> keys = new ArrayList<>(ids.size());
+		int totalSize = 0;
+		for (int i = 0; i < ids.size(); i++){
+			byte[] key = ids.get(i).getBytes(StandardCharsets.UTF_8);
+			keys.add(key);
+			totalSize += HEADER_SIZE + key.length + values.get(i).length + CRC_SIZE;
+		}
+		ByteBuffer buf = ByteBuffer.allocate(totalSize);
+		_lock.writeLock().lock();
+		try {
+			if (_channel == null){
+				throw new IOException("Store " + _file.getAbsolutePath() + " is closed");
+			}
+			long offset = _fileSize;
+			long now = System.currentTimeMillis();
+			List<ValueLocation> locations = new ArrayList<>(ids.size());
+			for (int i = 0; i < ids.size(); i++){
+				int recordSize = putRecord(buf, type, now, keys.get(i), values.get(i));
+				locations.add(new ValueLocation(offset + HEADER_SIZE + keys.get(i).length,
+						values.get(i).length, recordSize, now));
+				offset += recordSize;
+			}
+			buf.flip();
+			while (buf.hasRemaining()){
+				_channel.write(buf, _fileSize + buf.position());
+			}
+			if (_syncWrites){
+				_channel.force(false);
+			}
+			_fileSize = offset;
+			for (int i = 0; i < ids.size(); i++){
+				ValueLocation old = _index.remove(ids.get(i));
+				if (old != null){
+					_liveBytes -= old.getRecordSize();
+				}
+				if (type == PUT_RECORD){
+					_index.put(ids.get(i), locations.get(i));
+					_liveBytes += locations.get(i).getRecordSize();
+				}
+			}
+			compactIfNeeded();
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds record to {@code buf}
+	 * @return size of record in bytes
+	 */
+	private int putRecord(ByteBuffer buf, byte type, long lastModified, byte[] key, byte[] value){
+		int start = buf.position();
+		buf.putInt(RECORD_MAGIC);
+		buf.put(type);
+		buf.putLong(lastModified);
+		buf.putInt(key.length);
+		buf.putInt(value.length);
+		buf.put(key);
+		buf.put(value);
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), start + 4, HEADER_SIZE - 4 + key.length + value.length);
+		buf.putInt((int)crc.getValue());
+		return buf.position() - start;
+	}
+
+	/**
+	 * Queues a compaction via {@link #compact()} if space used by replaced
+	 * and deleted tasks exceeds space used by live tasks and the minimum set via
+	 * {@link #setMinCompactionBytes(long)}. Tasks saved or deleted while
+	 * a compaction is pending do not queue another one, so once a compaction
+	 * finishes the check is made again. Caller must hold write lock
+	 */
+	private void compactIfNeeded() {
+		long garbage = _fileSize - _liveBytes;
+		if (garbage <= _minCompactionBytes || garbage <= _liveBytes){
+			return;
+		}
+		if (_compactionPending.compareAndSet(false, true) == false){
+			return;
+		}
+		try {
+			_compactor.execute(() -> {
+				boolean compacted = false;
+				try {
+					compacted = compact();
+				} catch(ClosedChannelException cce){
+					_logger.debug("Store closed during compaction of {}", _file.getAbsolutePath());
+				} catch(IOException io){
+					_logger.error("Unable to compact " + _file.getAbsolutePath(), io);
+				} finally {
+					_compactionPending.set(false);
+				}
+				if (compacted){
+					recheckCompaction();
+				}
+			});
+		} catch(RejectedExecutionException ree){
+			_compactionPending.set(false);
+		}
+	}
+
+	/**
+	 * Queues another compaction if tasks saved or deleted during the
+	 * last one left enough replaced or deleted tasks in the file
+	 */
+	private void recheckCompaction() {
+		_lock.writeLock().lock();
+		try {
+			if (_channel != null){
+				compactIfNeeded();
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rewrites live tasks to a new file. The tasks are copied without
+	 * holding the lock, then while holding the write lock any records
+	 * appended during the copy are added to the new file and the new
+	 * file replaces the old one. If anything fails the old file and
+	 * index are left as they were
+	 * @return {@code true} if file was compacted, {@code false} if the
+	 *         store was closed or replaced its file during compaction
+	 * @throws IOException if there was an error compacting
+	 */
+	protected boolean compact() throws IOException {
+		HashMap<String, ValueLocation> snapshot;
+		FileChannel in;
+		long snapshotSize;
+		_lock.readLock().lock();
+		try {
+			if (_channel == null){
+				return false;
+			}
+			in = _channel;
+			snapshot = new HashMap<>(_index);
+			snapshotSize = _fileSize;
+		} finally {
+			_lock.readLock().unlock();
+		}
+		_logger.info("Compacting {} reclaiming up to {} bytes", _file.getAbsolutePath(),
+				snapshotSize - getLiveBytes(snapshot));
+		File tmpFile = new File(_file.getAbsolutePath() + ".compact");
+		FileChannel out = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		boolean swapped = false;
+		try {
+			HashMap<String, ValueLocation> newIndex = new HashMap<>();
+			long offset = 0;
+			for (Map.Entry<String, ValueLocation> entry : snapshot.entrySet()){
+				byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				byte[] value = readFully(in, entry.getValue().getOffset(),
+						entry.getValue().getLength());
+				ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + key.length + value.length + CRC_SIZE);
+				int recordSize = putRecord(buf, PUT_RECORD,
+						entry.getValue().getLastModified(), key, value);
+				buf.flip();
+				while (buf.hasRemaining()){
+					out.write(buf, offset + buf.position());
+				}
+				newIndex.put(entry.getKey(), new ValueLocation(offset + HEADER_SIZE + key.length,
+						value.length, recordSize, entry.getValue().getLastModified()));
+				offset += recordSize;
+			}
+			_lock.writeLock().lock();
+			try {
+				if (_channel != in){
+					return false;
+				}
+				long tailSize = _fileSize - snapshotSize;
+				long copied = 0;
+				while (copied < tailSize){
+					out.position(offset + copied);
+					copied += in.transferTo(snapshotSize + copied, tailSize - copied, out);
+				}
+				out.force(true);
+				long shift = offset - snapshotSize;
+				HashMap<String, ValueLocation> index = new HashMap<>();
+				for (Map.Entry<String, ValueLocation> entry : _index.entrySet()){
+					ValueLocation loc = entry.getValue();
+					index.put(entry.getKey(), loc.getOffset() >= snapshotSize ?
+							loc.shift(shift) : newIndex.get(entry.getKey()));
+				}
+				Files.move(tmpFile.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+				_channel = out;
+				_index.clear();
+				_index.putAll(index);
+				_fileSize = offset + tailSize;
+				_liveBytes = getLiveBytes(_index);
+				swapped = true;
+			} finally {
+				_lock.writeLock().unlock();
+			}
+		} finally {
+			if (swapped == false){
+				out.close();
+				Files.deleteIfExists(tmpFile.toPath());
+			}
+		}
+		try {
+			in.close();
+		} catch(IOException io){
+			_logger.warn("Unable to close replaced file : " + io.getMessage());
+		}
+		return true;
+	}
+
+	/**
+	 * Gets space used by records of tasks in {@code index}
+	 * @param index index of tasks
+	 * @return size in bytes
+	 */
+	private static long getLiveBytes(Map<String, ValueLocation> index){
+		long liveBytes = 0;
+		for (ValueLocation loc : index.values()){
+			liveBytes += loc.getRecordSize();
+		}
+		return liveBytes;
+	}
+
+	/**
+	 * Opens file and rebuilds index by scanning all records. File is
+	 * truncated after the last intact record
+	 * @throws IOException if file could not be opened
+	 */
+	private void open() throws IOException {
+		_channel = FileChannel.open(_file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long offset = 0;
+		long size = _channel.size();
+		long fileLastModified = _file.lastModified();
+		try (InputStream in = Files.newInputStream(_file.toPath());
+				DataInputStream din = new DataInputStream(new BufferedInputStream(in))){
+			while (offset < size){
+				int recordSize = readRecord(din, offset, size - offset, fileLastModified);
+				if (recordSize < 0){
+					_logger.warn("Discarding {} bytes of incomplete or corrupt data at end of {}",
+							size - offset, _file.getAbsolutePath());
+					_channel.truncate(offset);
+					break;
+				}
+				offset += recordSize;
+			}
+		}
+		_fileSize = offset;
+		_logger.info("Opened {} with {} tasks", _file.getAbsolutePath(), _index.size());
+	}
+
+	/**
+	 * Reads record from {@code din} updating index
+	 * @param din stream positioned at start of record
+	 * @param offset offset of record in file
+	 * @param remaining bytes left in file
+	 * @param fileLastModified time in milliseconds to record as time task
+	 *        was saved for records written by earlier versions which do
+	 *        not hold a time, this is the time the file was last modified
+	 * @return size of record or -1 if record is incomplete or corrupt
+	 * @throws IOException if there was an error reading
+	 */
+	private int readRecord(DataInputStream din, long offset, long remaining,
+			long fileLastModified) throws IOException {
+		try {
+			if (remaining < LEGACY_HEADER_SIZE + CRC_SIZE){
+				return -1;
+			}
+			int magic = din.readInt();
+			if (magic != RECORD_MAGIC && magic != LEGACY_RECORD_MAGIC){
+				return -1;
+			}
+			int headerSize = magic == RECORD_MAGIC ? HEADER_SIZE : LEGACY_HEADER_SIZE;
+			if (remaining < headerSize + CRC_SIZE){
+				return -1;
+			}
+			byte type = din.readByte();
+			long lastModified = magic == RECORD_MAGIC ? din.readLong() : fileLastModified;
+			int keyLength = din.readInt();
+			int valueLength = din.readInt();
+			if (keyLength < 0 || valueLength < 0
+					|| (long)headerSize + keyLength + valueLength + CRC_SIZE > remaining){
+				return -1;
+			}
+			byte[] data = new byte[headerSize - 4 + keyLength + valueLength];
+			ByteBuffer header = ByteBuffer.wrap(data).put(type);
+			if (magic == RECORD_MAGIC){
+				header.putLong(lastModified);
+			}
+			header.putInt(keyLength).putInt(valueLength);
+			din.readFully(data, headerSize - 4, keyLength + valueLength);
+			CRC32 crc = new CRC32();
+			crc.update(data);
+			if ((int)crc.getValue() != din.readInt()){
+				return -1;
+			}
+			String id = new String(data, headerSize - 4, keyLength, StandardCharsets.UTF_8);
+			int recordSize = headerSize + keyLength + valueLength + CRC_SIZE;
+			ValueLocation old = _index.remove(id);
+			if (old != null){
+				_liveBytes -= old.getRecordSize();
+			}
+			if (type == PUT_RECORD){
+				_index.put(id, new ValueLocation(offset + headerSize + keyLength,
+						valueLength, recordSize, lastModified));
+				_liveBytes += recordSize;
+			}
+			return recordSize;
+		} catch(EOFException eof){
+			return -1;
+		}
+	}
+
+	private static byte[] readFully(FileChannel channel, long offset, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		while (buf.hasRemaining()){
+			if (channel.read(buf, offset + buf.position()) < 0){
+				throw new EOFException("Unexpected end of file at offset "
+						+ (offset + buf.position()));
+			}
+		}
+		return buf.array();
+	}
+
+	/**
+	 * Location of value of a task in the file
+	 */
+	private static class ValueLocation {
+		private final long _offset;
+		private final int _length;
+		private final int _recordSize;
+		private final long _lastModified;
+
+		ValueLocation(long offset, int length, int recordSize, long lastModified){
+			_offset = offset;
+			_length = length;
+			_recordSize = recordSize;
+			_lastModified = lastModified;
+		}
+
+		long getLastModified(){
+			return _lastModified;
+		}
+
+		long getOffset(){
+			return _offset;
+		}
+
+		int getLength(){
+			return _length;
+		}
+
+		int getRecordSize(){
+			return _recordSize;
+		}
+
+		/**
+		 * Gets location of same value moved by {@code distance} bytes
+		 * @param distance bytes to move value by
+		 * @return new location
+		 */
+		ValueLocation shift(long distance){
+			return new ValueLocation(_offset + distance, _length, _recordSize, _lastModified);
+		}
+	}
+}
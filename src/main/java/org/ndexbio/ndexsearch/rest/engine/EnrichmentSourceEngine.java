@@ -1,15 +1,27 @@
 package org.ndexbio.ndexsearch.rest.engine;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import org.ndexbio.enrichment.rest.client.EnrichmentRestClient;
 import org.ndexbio.enrichment.rest.model.DatabaseResults;
 import org.ndexbio.enrichment.rest.model.EnrichmentQuery;
 import org.ndexbio.enrichment.rest.model.EnrichmentQueryResult;
 import org.ndexbio.enrichment.rest.model.EnrichmentQueryResults;
+import org.ndexbio.enrichment.rest.model.EnrichmentQueryStatus;
 import org.ndexbio.enrichment.rest.model.exceptions.EnrichmentException;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
 import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
 import org.ndexbio.ndexsearch.rest.model.AlterationData;
 import org.ndexbio.ndexsearch.rest.model.DatabaseResult;
@@ -28,45 +40,302 @@ import org.slf4j.LoggerFactory;
 public class EnrichmentSourceEngine implements SourceEngine {
 
 	static Logger _logger = LoggerFactory.getLogger(EnrichmentSourceEngine.class);
+	
+	/**
+	 * Default maximum number of completed results to cache
+	 */
+	public static final int DEFAULT_RESULT_CACHE_SIZE = 500;
+	
+	/**
+	 * Default time in milliseconds completed results are cached
+	 */
+	public static final long DEFAULT_RESULT_CACHE_TTL = 3600000;
+	
+	/**
+	 * Default time in milliseconds the enrichment service keeps finished
+	 * tasks
+	 */
+	public static final long DEFAULT_REMOTE_TASK_RETENTION = 86400000;
+	
+	/**
+	 * Suffix of file, named after the source, where ids of shared
+	 * enrichment tasks are saved
+	 */
+	public static final String SHARED_TASKS_FILE_SUFFIX = ".sharedtasks";
 
 	private EnrichmentRestClient _enrichClient;
-	private TreeSet<String> _databaseNameSet = new TreeSet<>();
+	private volatile TreeSet<String> _databaseNameSet = new TreeSet<>();
 	private String _sourceName;
 	
+	/**
+	 * Completed results keyed by {@link #getResultCacheKey(java.util.TreeSet, org.ndexbio.ndexsearch.rest.model.Query)}
+	 */
+	private ResultCache<String, SourceQueryResults> _resultCache;
+	
+	/**
+	 * Cache keys of submitted queries keyed by enrichment task id
+	 */
+	private ResultCache<String, String> _pendingCacheKeys;
+	
+	/**
+	 * Ids of enrichment tasks whose results were cached and may be shared
+	 * by several search tasks, these are left for the enrichment service
+	 * to remove
+	 */
+	private ResultCache<String, Boolean> _sharedTaskIds;
+	private long _remoteTaskRetention;
+	
+	/**
+	 * File where {@link #_sharedTaskIds} are saved, one id and the time
+	 * it was shared per line, so they are left alone after a restart.
+	 * {@code null} if not saved
+	 */
+	private File _sharedTaskFile;
+	private volatile ObjectMapper _mapper;
+	private SourceCallRetrier _retrier;
+	private volatile RawEnrichmentResultReader _rawResultReader;
+	
 	public EnrichmentSourceEngine(EnrichmentRestClient enrichClient){
-		_enrichClient = enrichClient;
-		_sourceName = SourceResult.ENRICHMENT_SERVICE;
+		this(enrichClient, SourceResult.ENRICHMENT_SERVICE);
 	}
 	
 	public EnrichmentSourceEngine(EnrichmentRestClient enrichClient,
 			final String sourceName){
 		_enrichClient = enrichClient;
 		_sourceName = sourceName;
+		_mapper = SearchJsonProvider.getObjectMapper();
+		_retrier = new SourceCallRetrier(sourceName, new RetryBudget(), 1, 0, false);
+		updateResultCache(DEFAULT_RESULT_CACHE_SIZE, DEFAULT_RESULT_CACHE_TTL);
+	}
+	
+	/**
+	 * Sets how failed calls to the enrichment service are retried. By
+	 * default calls are not retried
+	 * @param retrier retrier to use
+	 */
+	public void updateRetrier(SourceCallRetrier retrier){
+		_retrier.shutdown();
+		_retrier = retrier;
+	}
+	
+	/**
+	 * Replaces cache of completed results with an empty one using the
+	 * settings passed in and {@link #DEFAULT_REMOTE_TASK_RETENTION}
+	 * @param maxEntries maximum number of results to cache, 0 or less 
+	 *        disables caching
+	 * @param timeToLive time in milliseconds results are cached, 0 or less
+	 *        means results are cached as long as allowed by the retention
+	 */
+	public final void updateResultCache(int maxEntries, long timeToLive){
+		updateResultCache(maxEntries, timeToLive, DEFAULT_REMOTE_TASK_RETENTION);
+	}
+	
+	/**
+	 * Replaces cache of completed results with an empty one using the
+	 * settings passed in. Cached results keep the id of the enrichment task
+	 * that produced them which is needed for network overlays, so results
+	 * are cached for at most half of {@code remoteTaskRetention} leaving
+	 * search tasks served from the cache time to use it
+	 * @param maxEntries maximum number of results to cache, 0 or less 
+	 *        disables caching
+	 * @param timeToLive time in milliseconds results are cached, 0 or less
+	 *        means results are cached as long as allowed by the retention
+	 * @param remoteTaskRetention time in milliseconds the enrichment service
+	 *        keeps finished tasks, 0 or less means tasks are kept forever
+	 */
+	public final void updateResultCache(int maxEntries, long timeToLive,
+			long remoteTaskRetention){
+		long maxTimeToLive = remoteTaskRetention > 0 ? Math.max(remoteTaskRetention / 2, 1) : 0;
+		if (maxTimeToLive > 0 && (timeToLive <= 0 || timeToLive > maxTimeToLive)){
+			timeToLive = maxTimeToLive;
+		}
+		_logger.debug("Result cache for {} set to {} entries with time to live of {} ms",
+				new Object[]{_sourceName, maxEntries, timeToLive});
+		_resultCache = new ResultCache<>(maxEntries, timeToLive);
+		_pendingCacheKeys = new ResultCache<>(Math.max(maxEntries, 0) * 10L, timeToLive);
+		_sharedTaskIds = new ResultCache<>(Math.max(maxEntries, 0) * 10L, 
+				remoteTaskRetention);
+		_remoteTaskRetention = remoteTaskRetention;
+		loadSharedTaskIds();
+	}
+	
+	/**
+	 * Sets file where ids of enrichment tasks shared through the result
+	 * cache are saved and loads any ids saved before. Without it shared
+	 * tasks are only known until a restart, after which deleting a search
+	 * task could delete an enrichment task other saved search tasks use
+	 * @param sharedTaskFile file to save ids in, {@code null} to not save them
+	 */
+	public synchronized void updateSharedTaskFile(File sharedTaskFile){
+		_sharedTaskFile = sharedTaskFile;
+		loadSharedTaskIds();
+	}
+	
+	/**
+	 * Adds ids saved in {@link #_sharedTaskFile} that are still kept by the
+	 * enrichment service to {@link #_sharedTaskIds} and rewrites the file
+	 * with just those ids
+	 */
+	private synchronized void loadSharedTaskIds(){
+		if (_sharedTaskFile == null || _sharedTaskFile.isFile() == false){
+			return;
+		}
+		long now = System.currentTimeMillis();
+		List<String> keptLines = new ArrayList<>();
+		try {
+			for (String line : Files.readAllLines(_sharedTaskFile.toPath(), StandardCharsets.UTF_8)){
+				String[] split = line.split("\t");
+				if (split.length != 2){
+					continue;
+				}
+				try {
+					if (_remoteTaskRetention > 0
+							&& now - Long.parseLong(split[1]) > _remoteTaskRetention){
+						continue;
+					}
+				} catch(NumberFormatException nfe){
+					continue;
+				}
+				_sharedTaskIds.put(split[0], Boolean.TRUE);
+				keptLines.add(line);
+			}
+			File tmpFile = new File(_sharedTaskFile.getAbsolutePath() + ".tmp");
+			Files.write(tmpFile.toPath(), keptLines, StandardCharsets.UTF_8);
+			Files.move(tmpFile.toPath(), _sharedTaskFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			_logger.debug("Loaded {} shared tasks of {} from {}", new Object[]{keptLines.size(),
+				_sourceName, _sharedTaskFile.getAbsolutePath()});
+		} catch(IOException io){
+			_logger.error("Unable to load shared tasks from "
+					+ _sharedTaskFile.getAbsolutePath(), io);
+		}
+	}
+	
+	/**
+	 * Adds {@code id} to {@link #_sharedTaskIds} and appends it to
+	 * {@link #_sharedTaskFile} if set
+	 * @param id id of enrichment task
+	 */
+	private synchronized void addSharedTaskId(final String id){
+		_sharedTaskIds.put(id, Boolean.TRUE);
+		if (_sharedTaskFile == null){
+			return;
+		}
+		try {
+			Files.write(_sharedTaskFile.toPath(), (id + "\t" + System.currentTimeMillis()
+					+ System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch(IOException io){
+			_logger.error("Unable to save shared task " + id + " to "
+					+ _sharedTaskFile.getAbsolutePath(), io);
+		}
+	}
+	
+	/**
+	 * Sets reader used to fetch results of finished tasks as raw JSON that
+	 * is passed through to the search response without being decoded.
+	 * Results then have the same top level fields but their details only
+	 * hold the result from the enrichment service under
+	 * {@link RawEnrichmentResultReader#RAW_RESULT_KEY}, which is kept as
+	 * {@link org.ndexbio.ndexsearch.rest.RawJson} when cached results are copied
+	 * @param rawResultReader reader or {@code null} to convert results
+	 *        returned by the client
+	 */
+	public void updateRawResultReader(RawEnrichmentResultReader rawResultReader){
+		_mapper = SearchJsonProvider.getObjectMapper(rawResultReader != null);
+		_rawResultReader = rawResultReader;
 	}
 	
 	/**
-	 * update database names for enrichment with data from sourceResult
-	 * @return 
+	 * Gets cache of completed results
+	 * @return cache
+	 */
+	public ResultCache<String, SourceQueryResults> getResultCache(){
+		return _resultCache;
+	}
+	
+	/**
+	 * update database names for enrichment with data from sourceResult. 
+	 * If the names differ from the current set, cached results are 
+	 * discarded
 	 */
 	private void updateDatabaseNameSet(final SourceResult sourceResult) {
-		_databaseNameSet.clear();
+		TreeSet<String> databaseNameSet = new TreeSet<>();
 		try {
 			if (sourceResult.getDatabases() == null){
 				throw new SearchException("No databases found in "
 						+ "enrichment service");
 			}
 			for (DatabaseResult dr : sourceResult.getDatabases()) {
-				_databaseNameSet.add(dr.getName());
+				databaseNameSet.add(dr.getName());
 			}
 		} catch (SearchException e) {
 			_logger.error("Exception encountered", e);
 		}
+		if (databaseNameSet.equals(_databaseNameSet) == false){
+			_logger.info("Database list for {} changed, clearing cached results",
+					_sourceName);
+			_resultCache.invalidateAll();
+		}
+		_databaseNameSet = databaseNameSet;
+	}
+	
+	/**
+	 * Builds key for result cache from the database names, genes, 
+	 * gene annotation services and alteration data
+	 * @param databaseNameSet database names
+	 * @param query query
+	 * @return key or {@code null} if one could not be created
+	 */
+	private String getResultCacheKey(TreeSet<String> databaseNameSet, final Query query){
+		StringBuilder sb = new StringBuilder();
+		sb.append(databaseNameSet.toString());
+		sb.append("|");
+		sb.append(new TreeSet<>(query.getGeneList()).toString());
+		sb.append("|");
+		try {
+			if (query.getGeneAnnotationServices() != null){
+				sb.append(_mapper.writeValueAsString(new TreeMap<>(query.getGeneAnnotationServices())));
+			}
+			sb.append("|");
+			if (query.getAlterationData() != null){
+				sb.append(_mapper.writeValueAsString(query.getAlterationData()));
+			}
+		} catch(JsonProcessingException jpe){
+			_logger.error("Unable to create cache key", jpe);
+			return null;
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Creates deep copy of {@code sqRes} so search tasks sharing a cached
+	 * result cannot change each others results
+	 * @param sqRes SourceQueryResults to copy
+	 * @return copy
+	 * @throws IOException if unable to copy
+	 */
+	private SourceQueryResults copySourceQueryResults(SourceQueryResults sqRes) throws IOException {
+		return _mapper.readValue(_mapper.writeValueAsBytes(sqRes), SourceQueryResults.class);
 	}
 	
 	@Override
 	public SourceQueryResults getSourceQueryResults(final Query query) {
+		TreeSet<String> databaseNameSet = _databaseNameSet;
+		String cacheKey = getResultCacheKey(databaseNameSet, query);
+		if (cacheKey != null){
+			SourceQueryResults cachedSqr = _resultCache.get(cacheKey);
+			if (cachedSqr != null){
+				try {
+					_logger.debug("Returning cached result for {}", _sourceName);
+					return copySourceQueryResults(cachedSqr);
+				} catch(IOException io){
+					_logger.error("Unable to copy cached result for " + _sourceName, io);
+				}
+			}
+		}
 		EnrichmentQuery equery = new EnrichmentQuery();
-		equery.setDatabaseList(_databaseNameSet);
+		equery.setDatabaseList(databaseNameSet);
 		equery.setGeneList(new TreeSet<>(query.getGeneList()));
 		equery.setGeneAnnotationServices(query.getGeneAnnotationServices());
 		equery.setAlterationData(query.getAlterationData());
@@ -74,7 +343,9 @@ public class EnrichmentSourceEngine implements SourceEngine {
 		sqr.setSourceName(_sourceName);
 		sqr.setSourceRank(0);
 		try {
-			String enrichTaskId = _enrichClient.query(equery);
+			// query creates a task so it is only retried if it never reached the service
+			String enrichTaskId = _retrier.callNonIdempotent("query",
+					() -> _enrichClient.query(equery));
 			if (enrichTaskId == null) {
 				_logger.error("Query failed");
 				sqr.setMessage("Enrichment failed for unknown reason");
@@ -84,6 +355,9 @@ public class EnrichmentSourceEngine implements SourceEngine {
 			}
 			sqr.setStatus(QueryResults.SUBMITTED_STATUS);
 			sqr.setSourceTaskId(enrichTaskId);
+			if (cacheKey != null){
+				_pendingCacheKeys.put(enrichTaskId, cacheKey);
+			}
 			return sqr;
 		} catch (EnrichmentException ee) {
 			_logger.error("Caught exception running enrichment", ee);
@@ -121,7 +395,8 @@ public class EnrichmentSourceEngine implements SourceEngine {
 	@Override
 	public void updateSourceResult(SourceResult sRes) {
 		try {
-			DatabaseResults dbResults = _enrichClient.getDatabaseResults();
+			DatabaseResults dbResults = _retrier.callIdempotent("getDatabaseResults",
+					() -> _enrichClient.getDatabaseResults());
 			sRes.setDatabases(dbResults.getResults());
 			sRes.setVersion("0.1.0");
 
@@ -145,6 +420,15 @@ public class EnrichmentSourceEngine implements SourceEngine {
 		updateDatabaseNameSet(sRes);
 	}
 
+	/**
+	 * Polls the lightweight status of the enrichment task and only once
+	 * the task reports progress of 100 fetches and converts its full
+	 * results. Since progress is then 100, later calls do nothing so
+	 * results are fetched exactly once. If the status or results still
+	 * can not be obtained after retrying, {@code sqRes} is marked as
+	 * failed so the task does not wait on the source forever
+	 * @param sqRes SourceQueryResults to update
+	 */
 	@Override
 	public void updateSourceQueryResults(SourceQueryResults sqRes) {
 		try {
@@ -152,37 +436,107 @@ public class EnrichmentSourceEngine implements SourceEngine {
 				// nothing needs to be done since progress is 100
 				return;
 			}
-			EnrichmentQueryResults qr = this._enrichClient.getQueryResults(sqRes.getSourceTaskId(), 0, 0);
-			sqRes.setMessage(qr.getMessage());
-			sqRes.setProgress(qr.getProgress());
-			sqRes.setStatus(qr.getStatus());
-
-			sqRes.setWallTime(qr.getWallTime());
-			List<SourceQueryResult> sqResults = new LinkedList<>();
-			if (qr.getResults() != null) {
-				for (EnrichmentQueryResult qRes : qr.getResults()) {
-					SourceQueryResult sqr = new SourceQueryResult();
-					sqr.setDescription(qRes.getDatabaseName() + ": " + qRes.getDescription());
-					sqr.setEdges(qRes.getEdges());
-					sqr.setHitGenes(qRes.getHitGenes());
-					sqr.setNetworkUUID(qRes.getNetworkUUID());
-					sqr.setNodes(qRes.getNodes());
-					sqr.setPercentOverlap(qRes.getPercentOverlap());
-					sqr.setRank(qRes.getRank());
-					sqr.setImageURL(qRes.getImageURL());
-					sqr.setLegendURL(qRes.getLegendURL());
-					sqr.setUrl(qRes.getUrl());
-					sqr.getDetails().put("PValue", Double.valueOf(qRes.getpValue()));
-					sqr.getDetails().put("similarity", Double.valueOf(qRes.getSimilarity()));
-					sqr.getDetails().put("totalNetworkCount", Integer.valueOf(qRes.getTotalNetworkCount()));
-					sqr.setTotalGeneCount(qRes.getTotalGeneCount());
-					sqResults.add(sqr);
+			final String taskId = sqRes.getSourceTaskId();
+			EnrichmentQueryStatus qs = _retrier.callIdempotent("getQueryStatus",
+					() -> _enrichClient.getQueryStatus(taskId));
+			if (qs.getProgress() < 100){
+				sqRes.setMessage(qs.getMessage());
+				sqRes.setProgress(qs.getProgress());
+				sqRes.setStatus(qs.getStatus());
+				sqRes.setWallTime(qs.getWallTime());
+				if (sqRes.getResults() == null){
+					sqRes.setResults(new LinkedList<>());
 				}
+				return;
+			}
+			SourceQueryResults completed = getCompletedResults(taskId);
+			sqRes.setMessage(completed.getMessage());
+			sqRes.setProgress(completed.getProgress());
+			sqRes.setStatus(completed.getStatus());
+			sqRes.setWallTime(completed.getWallTime());
+			sqRes.setResults(completed.getResults());
+			sqRes.setNumberOfHits(completed.getNumberOfHits());
+			if (sqRes.getProgress() == 100){
+				cacheCompletedResult(sqRes);
+			}
+		} catch (EnrichmentException|IOException ee) {
+			// retries are exhausted, most likely the task expired or is
+			// unknown to the service so it will never finish
+			_logger.error("Unable to get progress of " + _sourceName + " task "
+					+ sqRes.getSourceTaskId() + ", marking it as failed", ee);
+			sqRes.setMessage("Unable to get results: " + ee.getMessage());
+			sqRes.setStatus(QueryResults.FAILED_STATUS);
+			sqRes.setProgress(100);
+		}
+	}
+	
+	/**
+	 * Fetches all results of finished enrichment task with {@code taskId}
+	 * as raw JSON if a {@link RawEnrichmentResultReader} is set otherwise
+	 * by converting every result returned by the client
+	 * @param taskId id of enrichment task
+	 * @return results of task
+	 * @throws EnrichmentException if the results could not be fetched
+	 * @throws IOException if raw results could not be parsed
+	 */
+	private SourceQueryResults getCompletedResults(final String taskId) throws EnrichmentException, IOException {
+		RawEnrichmentResultReader rawReader = _rawResultReader;
+		if (rawReader != null){
+			byte[] json = _retrier.callIdempotent("getQueryResults",
+					() -> rawReader.getResultBytes(taskId));
+			return rawReader.parse(json);
+		}
+		EnrichmentQueryResults qr = _retrier.callIdempotent("getQueryResults",
+				() -> _enrichClient.getQueryResults(taskId, 0, 0));
+		SourceQueryResults sqRes = new SourceQueryResults();
+		sqRes.setMessage(qr.getMessage());
+		sqRes.setProgress(qr.getProgress());
+		sqRes.setStatus(qr.getStatus());
+		sqRes.setWallTime(qr.getWallTime());
+		List<SourceQueryResult> sqResults = new LinkedList<>();
+		if (qr.getResults() != null) {
+			for (EnrichmentQueryResult qRes : qr.getResults()) {
+				SourceQueryResult sqr = new SourceQueryResult();
+				sqr.setDescription(qRes.getDatabaseName() + ": " + qRes.getDescription());
+				sqr.setEdges(qRes.getEdges());
+				sqr.setHitGenes(qRes.getHitGenes());
+				sqr.setNetworkUUID(qRes.getNetworkUUID());
+				sqr.setNodes(qRes.getNodes());
+				sqr.setPercentOverlap(qRes.getPercentOverlap());
+				sqr.setRank(qRes.getRank());
+				sqr.setImageURL(qRes.getImageURL());
+				sqr.setLegendURL(qRes.getLegendURL());
+				sqr.setUrl(qRes.getUrl());
+				sqr.getDetails().put("PValue", Double.valueOf(qRes.getpValue()));
+				sqr.getDetails().put("similarity", Double.valueOf(qRes.getSimilarity()));
+				sqr.getDetails().put("totalNetworkCount", Integer.valueOf(qRes.getTotalNetworkCount()));
+				sqr.setTotalGeneCount(qRes.getTotalGeneCount());
+				sqResults.add(sqr);
+			}
+		}
+		sqRes.setResults(sqResults);
+		sqRes.setNumberOfHits(sqResults.size());
+		return sqRes;
+	}
+	
+	/**
+	 * Adds {@code sqRes} to result cache if it completed successfully
+	 * @param sqRes completed SourceQueryResults
+	 */
+	private void cacheCompletedResult(SourceQueryResults sqRes){
+		String cacheKey = _pendingCacheKeys.get(sqRes.getSourceTaskId());
+		if (cacheKey == null){
+			return;
+		}
+		_pendingCacheKeys.remove(sqRes.getSourceTaskId());
+		if (QueryResults.COMPLETE_STATUS.equals(sqRes.getStatus())){
+			try {
+				SourceQueryResults cachedSqr = copySourceQueryResults(sqRes);
+				addSharedTaskId(sqRes.getSourceTaskId());
+				_resultCache.put(cacheKey, cachedSqr);
+			} catch(IOException io){
+				_logger.error("Unable to cache result for " + _sourceName, io);
 			}
-			sqRes.setResults(sqResults);
-			sqRes.setNumberOfHits(sqResults.size());
-		} catch (EnrichmentException ee) {
-			_logger.error("caught exception", ee);
 		}
 	}
 	
@@ -190,18 +544,35 @@ public class EnrichmentSourceEngine implements SourceEngine {
 	public InputStream getOverlaidNetworkAsCXStream(final String id,
 			final String networkId) throws SearchException {
 		try {
-			return _enrichClient.getNetworkOverlayAsCX(id, "", networkId);
+			return _retrier.call("getNetworkOverlayAsCX",
+					() -> _enrichClient.getNetworkOverlayAsCX(id, "", networkId));
 		} catch (EnrichmentException ee) {
 			throw new SearchException("Unable to get network "
 					+ networkId + " from query " + id + " : " + ee.getMessage());
 		}
 	}
 
+	/**
+	 * Deletes enrichment task with {@code id} unless its results were
+	 * cached, in which case other search tasks may still be using it and
+	 * it is left for the enrichment service to remove. Cached tasks are
+	 * known across restarts if {@link #updateSharedTaskFile(java.io.File)}
+	 * was set
+	 * @param id id of enrichment task
+	 * @throws SearchException if the delete failed
+	 */
 	@Override
 	public void delete(final String id) throws SearchException {
+		if (id != null && _sharedTaskIds.get(id) != null){
+			_logger.debug("Not deleting shared enrichment task {}", id);
+			return;
+		}
 		try {
 			_logger.debug("Calling enrichment DELETE on id: {}", id);
-			_enrichClient.delete(id);
+			_retrier.call("delete", () -> {
+				_enrichClient.delete(id);
+				return null;
+			});
 		} catch (EnrichmentException ee) {
 			throw new SearchException("caught error trying to delete enrichment: " + ee.getMessage());
 		}
@@ -210,23 +581,23 @@ public class EnrichmentSourceEngine implements SourceEngine {
 	@Override
 	public Object getDatabases() throws SearchException {
 		try{
-			return _enrichClient.getDatabaseResults();
+			return _retrier.callIdempotent("getDatabaseResults",
+					() -> _enrichClient.getDatabaseResults());
 		} catch(EnrichmentException ee){
 			throw new SearchException("caught error trying to get databases: "
 					+ ee.getMessage());
 		}
 	}
 
+	/**
+	 * Stops retries of calls to the enrichment service. The enrichment
+	 * client is left open since its connections are shared with other
+	 * sources, they are closed by the owner of the transport once all
+	 * sources have stopped
+	 */
 	@Override
 	public void shutdown() {
-		try {
-			if (_enrichClient != null){
-				_enrichClient.shutdown();
-			}
-		} catch(EnrichmentException ee){
-			_logger.error("caught exception invoking shutdown on enrichment client",
-					ee);
-		}
+		_retrier.shutdown();
 	}
 	
 	
@@ -0,0 +1,423 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link TaskStore} that saves each task in its own directory under the
+ * task directory. To keep the number of entries in any one directory small
+ * the directory of a task is nested under two levels of directories named 
+ * after the first four characters of the task id, for example
+ * {@code ab/cd/abcdef12-...}. Tasks saved directly under the task directory
+ * by earlier versions are still found. Running tasks are saved as JSON in
+ * {@link BasicSearchEngineImpl#QR_JSON_FILE} and finished tasks are saved
+ * either as JSON or, if binary format is enabled, in
+ * {@link BasicSearchEngineImpl#QR_BINARY_FILE} via {@link QueryResultsBinaryFile}.
+ * Tasks saved in either format can always be read. Files are written to
+ * a temporary file that is then renamed so readers never see a partially
+ * written file.
+ *
+ * @author churas
+ */
+public class FileSystemTaskStore implements TaskStore {
+
+	static Logger _logger = LoggerFactory.getLogger(FileSystemTaskStore.class);
+
+	private final String _taskDir;
+	private final boolean _binaryFormat;
+	private final boolean _syncWrites;
+	private volatile boolean _rawResults;
+
+	/**
+	 * Held while creating task directories and removing empty nested
+	 * directories so a directory is not removed as a task is created in it
+	 */
+	private final Object _shardLock = new Object();
+
+	/**
+	 * Constructor that saves finished tasks as JSON
+	 * @param taskDir directory where tasks are stored
+	 */
+	public FileSystemTaskStore(final String taskDir){
+		this(taskDir, false);
+	}
+
+	/**
+	 * Constructor
+	 * @param taskDir directory where tasks are stored
+	 * @param binaryFormat if {@code true} finished tasks are saved via
+	 *        {@link QueryResultsBinaryFile} otherwise as JSON
+	 */
+	public FileSystemTaskStore(final String taskDir, boolean binaryFormat){
+		this(taskDir, binaryFormat, false);
+	}
+
+	/**
+	 * Constructor
+	 * @param taskDir directory where tasks are stored
+	 * @param binaryFormat if {@code true} finished tasks are saved via
+	 *        {@link QueryResultsBinaryFile} otherwise as JSON
+	 * @param syncWrites if {@code true} each file is flushed to disk
+	 *        before it is renamed into place
+	 */
+	public FileSystemTaskStore(final String taskDir, boolean binaryFormat,
+			boolean syncWrites){
+		_taskDir = taskDir;
+		_binaryFormat = binaryFormat;
+		_syncWrites = syncWrites;
+	}
+
+	/**
+	 * Sets whether structured values in result details of loaded tasks
+	 * are read as {@link org.ndexbio.ndexsearch.rest.RawJson}
+	 * @param rawResults {@code true} to read details as raw JSON
+	 */
+	public void setRawResults(boolean rawResults){
+		_rawResults = rawResults;
+	}
+
+	/**
+	 * Number of characters of task id used to name each level of
+	 * directories a task directory is nested under
+	 */
+	public static final int SHARD_NAME_LENGTH = 2;
+
+	/**
+	 * Number of levels of directories a task directory is nested under
+	 */
+	public static final int SHARD_DEPTH = 2;
+
+	/**
+	 * Gets directory for task. This is the nested directory unless only
+	 * a directory directly under the task directory exists
+	 * @param id id of task
+	 * @return directory of task
+	 */
+	public File getTaskDirectory(final String id){
+		File shardedDir = getShardedTaskDirectory(id);
+		if (shardedDir.exists()){
+			return shardedDir;
+		}
+		File flatDir = new File(_taskDir + File.separator + id);
+		if (flatDir.exists()){
+			return flatDir;
+		}
+		return shardedDir;
+	}
+
+	/**
+	 * Gets nested directory for task
+	 * @param id id of task
+	 * @return directory of task
+	 */
+	protected File getShardedTaskDirectory(final String id){
+		if (id.length() < SHARD_NAME_LENGTH * SHARD_DEPTH){
+			return new File(_taskDir + File.separator + id);
+		}
+		StringBuilder sb = new StringBuilder(_taskDir);
+		for (int i = 0; i < SHARD_DEPTH; i++){
+			sb.append(File.separator);
+			sb.append(id, i * SHARD_NAME_LENGTH, (i + 1) * SHARD_NAME_LENGTH);
+		}
+		sb.append(File.separator);
+		sb.append(id);
+		return new File(sb.toString());
+	}
+
+	/**
+	 * Gets path to JSON file for task
+	 * @param id id of task
+	 * @return path to file
+	 */
+	public String getQueryResultsFilePath(final String id){
+		return getTaskDirectory(id).getPath() + File.separator + BasicSearchEngineImpl.QR_JSON_FILE;
+	}
+
+	/**
+	 * Gets path to binary file for task
+	 * @param id id of task
+	 * @return path to file
+	 */
+	public String getQueryResultsBinaryFilePath(final String id){
+		return getTaskDirectory(id).getPath() + File.separator + BasicSearchEngineImpl.QR_BINARY_FILE;
+	}
+
+	/**
+	 * Creates directory for task
+	 * @param id id of task
+	 * @throws IOException if directory could not be created
+	 */
+	@Override
+	public void createTask(final String id) throws IOException {
+		File taskDir = getTaskDirectory(id);
+		_logger.debug("Creating new task directory {}", taskDir.getAbsolutePath());
+		synchronized(_shardLock){
+			if (taskDir.mkdirs() == false){
+				throw new IOException("Unable to create task directory: " + taskDir.getAbsolutePath());
+			}
+		}
+	}
+
+	@Override
+	public void save(final String id, QueryResults qr) throws IOException {
+		File destFile = new File(getQueryResultsFilePath(id));
+		File tmpFile = new File(destFile.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+			SearchJsonProvider.getWriter(QueryResults.class).writeValue(out, qr);
+			if (_syncWrites){
+				out.getFD().sync();
+			}
+		}
+		Files.move(tmpFile.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Each task is still written to its own file, the batch just
+	 * saves the caller from making one call per task
+	 * @param tasks map of task id to results to save
+	 * @throws IOException if there was an error saving one or more tasks,
+	 *         the remaining tasks are still saved
+	 */
+	@Override
+	public void saveAll(Map<String, QueryResults> tasks) throws IOException {
+		saveAll(tasks, false);
+	}
+
+	/**
+	 * Each task is still written to its own file, the batch just
+	 * saves the caller from making one call per task
+	 * @param tasks map of task id to results to save
+	 * @throws IOException if there was an error saving one or more tasks,
+	 *         the remaining tasks are still saved
+	 */
+	@Override
+	public void saveAllFinished(Map<String, QueryResults> tasks) throws IOException {
+		saveAll(tasks, true);
+	}
+
+	private void saveAll(Map<String, QueryResults> tasks, boolean finished) throws IOException {
+		IOException firstError = null;
+		for (Map.Entry<String, QueryResults> entry : tasks.entrySet()){
+			try {
+				if (finished){
+					saveFinished(entry.getKey(), entry.getValue());
+				} else {
+					save(entry.getKey(), entry.getValue());
+				}
+			} catch(IOException io){
+				_logger.error("Caught exception saving task " + entry.getKey(), io);
+				if (firstError == null){
+					firstError = io;
+				}
+			}
+		}
+		if (firstError != null){
+			throw firstError;
+		}
+	}
+
+	/**
+	 * Saves finished task as JSON or if binary format is enabled via
+	 * {@link QueryResultsBinaryFile} removing the JSON file written
+	 * while the task was running
+	 * @param id id of task
+	 * @param qr results to save
+	 * @throws IOException if there was an error saving
+	 */
+	@Override
+	public void saveFinished(final String id, QueryResults qr) throws IOException {
+		if (_binaryFormat == false){
+			save(id, qr);
+			return;
+		}
+		new QueryResultsBinaryFile(new File(getQueryResultsBinaryFilePath(id)),
+				SearchJsonProvider.getObjectMapper(_rawResults)).write(qr, _syncWrites);
+		File jsonFile = new File(getQueryResultsFilePath(id));
+		if (jsonFile.exists() && jsonFile.delete() == false){
+			_logger.warn("Unable to remove {}", jsonFile.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Loads task from binary file if it exists otherwise from JSON file
+	 * @param id id of task
+	 * @return results or {@code null} if neither file exists
+	 * @throws IOException if there was an error loading
+	 */
+	@Override
+	public QueryResults load(final String id) throws IOException {
+		QueryResultsBinaryFile binFile = getBinaryFile(id);
+		if (binFile != null){
+			return binFile.read();
+		}
+		File qrFile = new File(getQueryResultsFilePath(id));
+		if (qrFile.isFile() == false) {
+			_logger.error("{} is not a file", qrFile.getAbsolutePath());
+			return null;
+		}
+		return SearchJsonProvider.getReader(QueryResults.class, _rawResults).readValue(qrFile);
+	}
+
+	/**
+	 * Loads page of results if task was saved in binary format
+	 * @return page of results or {@code null} if task was not saved in
+	 *         binary format
+	 */
+	@Override
+	public QueryResults loadQueryResults(final String id, final String source,
+			int start, int size) throws IOException {
+		QueryResultsBinaryFile binFile = getBinaryFile(id);
+		if (binFile == null){
+			return null;
+		}
+		return binFile.readQueryResults(source, start, size);
+	}
+
+	/**
+	 * Loads status of task if task was saved in binary format
+	 * @return status or {@code null} if task was not saved in binary format
+	 */
+	@Override
+	public QueryResults loadQueryStatus(final String id) throws IOException {
+		QueryResultsBinaryFile binFile = getBinaryFile(id);
+		if (binFile == null){
+			return null;
+		}
+		return binFile.readQueryStatus();
+	}
+
+	/**
+	 * Gets tasks in nested directories and tasks with a results file
+	 * directly under the task directory
+	 * @return map of task id to time in milliseconds the results file of
+	 *         the task, or the task directory if there is no results file,
+	 *         was last modified
+	 */
+	@Override
+	public Map<String, Long> listTasks() {
+		Map<String, Long> tasks = new HashMap<>();
+		File[] entries = new File(_taskDir).listFiles();
+		if (entries == null){
+			return tasks;
+		}
+		for (File entry : entries){
+			if (entry.isDirectory() == false){
+				continue;
+			}
+			long lastModified = getResultsLastModified(entry);
+			if (lastModified > 0){
+				tasks.put(entry.getName(), lastModified);
+			} else if (entry.getName().length() == SHARD_NAME_LENGTH){
+				addShardedTasks(entry, 1, tasks);
+			}
+		}
+		return tasks;
+	}
+
+	private void addShardedTasks(File shardDir, int depth, Map<String, Long> tasks){
+		File[] entries = shardDir.listFiles();
+		if (entries == null){
+			return;
+		}
+		for (File entry : entries){
+			if (entry.isDirectory() == false){
+				continue;
+			}
+			if (depth < SHARD_DEPTH){
+				addShardedTasks(entry, depth + 1, tasks);
+				continue;
+			}
+			long lastModified = getResultsLastModified(entry);
+			tasks.put(entry.getName(), lastModified > 0 ? lastModified : entry.lastModified());
+		}
+	}
+
+	/**
+	 * Gets time results file in {@code taskDir} was last modified
+	 * @param taskDir directory of task
+	 * @return time in milliseconds or 0 if there is no results file
+	 */
+	private long getResultsLastModified(File taskDir){
+		File binFile = new File(taskDir, BasicSearchEngineImpl.QR_BINARY_FILE);
+		if (binFile.isFile()){
+			return binFile.lastModified();
+		}
+		File jsonFile = new File(taskDir, BasicSearchEngineImpl.QR_JSON_FILE);
+		if (jsonFile.isFile()){
+			return jsonFile.lastModified();
+		}
+		return 0;
+	}
+
+	/**
+	 * Removes directory of task along with the directories it was nested
+	 * under if they are now empty
+	 * @param id id of task
+	 * @return {@code true} if directory existed and was removed
+	 * @throws IOException if directory could not be removed
+	 */
+	@Override
+	public boolean delete(final String id) throws IOException {
+		File thisTaskDir = getTaskDirectory(id);
+		if (thisTaskDir.exists() == false) {
+			_logger.debug("{} directory does not exist",
+						thisTaskDir.getAbsolutePath());
+			return false;
+		}
+		_logger.debug("Attempting to delete task from filesystem: {} ",
+				thisTaskDir.getAbsolutePath());
+		if (FileUtils.deleteQuietly(thisTaskDir) == false) {
+			throw new IOException("There was a problem deleting the directory: "
+					+ thisTaskDir.getAbsolutePath());
+		}
+		removeEmptyShardDirectories(thisTaskDir);
+		return true;
+	}
+
+	/**
+	 * Removes directories {@code taskDir} was nested under, stopping at the
+	 * first one that is not empty or at the task directory
+	 * @param taskDir directory of removed task
+	 */
+	private void removeEmptyShardDirectories(File taskDir){
+		File topDir = new File(_taskDir).getAbsoluteFile();
+		File shardDir = taskDir.getAbsoluteFile().getParentFile();
+		synchronized(_shardLock){
+			for (int i = 0; i < SHARD_DEPTH && shardDir != null
+					&& shardDir.equals(topDir) == false; i++){
+				String[] entries = shardDir.list();
+				if (entries == null || entries.length > 0 || shardDir.delete() == false){
+					return;
+				}
+				_logger.debug("Removed empty directory {}", shardDir.getPath());
+				shardDir = shardDir.getParentFile();
+			}
+		}
+	}
+
+	/**
+	 * Nothing to release
+	 */
+	@Override
+	public void close() {
+	}
+
+	private QueryResultsBinaryFile getBinaryFile(final String id){
+		File binFile = new File(getQueryResultsBinaryFilePath(id));
+		if (binFile.isFile() == false){
+			return null;
+		}
+		return new QueryResultsBinaryFile(binFile, SearchJsonProvider.getObjectMapper(_rawResults));
+	}
+}
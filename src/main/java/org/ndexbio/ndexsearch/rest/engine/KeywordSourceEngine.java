@@ -2,10 +2,18 @@ package org.ndexbio.ndexsearch.rest.engine;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.ndexbio.model.exceptions.NdexException;
 import org.ndexbio.model.object.NdexStatus;
 import org.ndexbio.model.object.NetworkSearchResult;
@@ -28,11 +36,89 @@ import org.slf4j.LoggerFactory;
 public class KeywordSourceEngine implements SourceEngine {
 
 	static Logger _logger = LoggerFactory.getLogger(KeywordSourceEngine.class);
+	
+	/**
+	 * Default maximum number of networks returned for a query, set
+	 * {@link org.ndexbio.ndexsearch.rest.services.Configuration#KEYWORD_MAX_RESULTS}
+	 * in the configuration to return more
+	 */
+	public static final int DEFAULT_MAX_RESULTS = 100;
+	
+	/**
+	 * Default number of networks requested from NDEx at a time
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	
+	/**
+	 * Default maximum number of page requests running at once
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_PAGES = 4;
+	
+	/**
+	 * Time in milliseconds pages of a query are kept waiting to be merged
+	 */
+	public static final long PAGED_SEARCH_TTL = 3600000;
+	
+	/**
+	 * Maximum number of queries whose pages are kept waiting to be merged
+	 */
+	public static final long MAX_PAGED_SEARCHES = 1000;
+	
+	/**
+	 * Default maximum estimated size in bytes of cached results
+	 */
+	public static final long DEFAULT_RESULT_CACHE_SIZE = 20000000;
+	
+	/**
+	 * Default time in milliseconds results are cached
+	 */
+	public static final long DEFAULT_RESULT_CACHE_TTL = 3600000;
+
+	/**
+	 * Results of a query whose pages after the first are still loading
+	 */
+	private static class PagedSearch {
+		private final String _cacheKey;
+		private final long _cacheGeneration;
+		private final List<SourceQueryResult> _firstPage;
+		private final List<CompletableFuture<List<SourceQueryResult>>> _pages;
+		
+		PagedSearch(final String cacheKey, long cacheGeneration,
+				List<SourceQueryResult> firstPage){
+			_cacheKey = cacheKey;
+			_cacheGeneration = cacheGeneration;
+			_firstPage = firstPage;
+			_pages = new ArrayList<>();
+		}
+	}
 
 	private NdexRestClientModelAccessLayer _keywordclient;
 	private final String _sourceTaskId;
 	private final String _unsetImageURL;
 	private int _rank;
+	private int _maxResults;
+	private int _pageSize;
+	private int _maxConcurrentPages;
+	private ExecutorService _pageExecutor;
+	
+	/**
+	 * Queries with pages still loading keyed by source task id, remaining
+	 * pages of queries dropped from here are cancelled
+	 */
+	private final ResultCache<String, PagedSearch> _pagedSearches;
+	
+	/**
+	 * Completed results keyed by normalized query string
+	 */
+	private ResultCache<String, List<SourceQueryResult>> _resultCache;
+	
+	/**
+	 * Incremented each time cached results are discarded so results of
+	 * queries started before then are not cached
+	 */
+	private final AtomicLong _cacheGeneration;
+	private volatile Long _networkCount;
+	private volatile String _serverVersion;
 	
 	/**
 	 * Constructor
@@ -49,6 +135,129 @@ public class KeywordSourceEngine implements SourceEngine {
 		_sourceTaskId = sourceTaskId;
 		_unsetImageURL = unsetImageURL;
 		_rank = rank;
+		_maxResults = DEFAULT_MAX_RESULTS;
+		_pageSize = DEFAULT_PAGE_SIZE;
+		_maxConcurrentPages = DEFAULT_MAX_CONCURRENT_PAGES;
+		_pagedSearches = new ResultCache<>(MAX_PAGED_SEARCHES, PAGED_SEARCH_TTL,
+				(paged) -> 1L, KeywordSourceEngine::cancelPages);
+		_cacheGeneration = new AtomicLong(0);
+		updateResultCache(DEFAULT_RESULT_CACHE_SIZE, DEFAULT_RESULT_CACHE_TTL);
+	}
+	
+	/**
+	 * Replaces cache of completed results with an empty one using the
+	 * settings passed in. Cached results are also discarded whenever the
+	 * network count or version reported by NDEx changes
+	 * @param maxBytes maximum estimated size in bytes of cached results,
+	 *        0 or less disables caching
+	 * @param timeToLive time in milliseconds results are cached, 0 or less
+	 *        means results never expire
+	 */
+	public final void updateResultCache(long maxBytes, long timeToLive){
+		_logger.debug("Keyword result cache set to {} bytes with time to live of {} ms",
+				maxBytes, timeToLive);
+		_cacheGeneration.incrementAndGet();
+		_resultCache = new ResultCache<>(maxBytes, timeToLive,
+				KeywordSourceEngine::getEstimatedSize);
+	}
+	
+	/**
+	 * Gets cache of completed results
+	 * @return cache
+	 */
+	public ResultCache<String, List<SourceQueryResult>> getResultCache(){
+		return _resultCache;
+	}
+	
+	/**
+	 * Gets a rough estimate of memory in bytes used by {@code results}
+	 * @param results results to measure
+	 * @return estimated size in bytes
+	 */
+	protected static long getEstimatedSize(List<SourceQueryResult> results){
+		long size = 64;
+		for (SourceQueryResult sr : results){
+			size += 160;
+			if (sr.getDescription() != null){
+				size += 2 * sr.getDescription().length();
+			}
+			if (sr.getNetworkUUID() != null){
+				size += 2 * sr.getNetworkUUID().length();
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Caches {@code results} unless cached results were discarded after
+	 * {@code generation}
+	 */
+	private void cacheResults(final String cacheKey, long generation,
+			List<SourceQueryResult> results){
+		ResultCache<String, List<SourceQueryResult>> cache = _resultCache;
+		if (generation != _cacheGeneration.get()){
+			return;
+		}
+		cache.put(cacheKey, new ArrayList<>(results));
+	}
+	
+	/**
+	 * Discards cached results if {@code networkCount} or {@code version}
+	 * differ from what NDEx reported last time
+	 */
+	private void checkServerState(long networkCount, final String version){
+		Long lastCount = _networkCount;
+		String lastVersion = _serverVersion;
+		_networkCount = networkCount;
+		_serverVersion = version;
+		if (lastCount == null){
+			return;
+		}
+		if (lastCount != networkCount || !lastVersion.equals(version)){
+			_logger.info("NDEx changed from {} networks version {} to {} networks"
+					+ " version {}, discarding {} cached keyword results",
+					new Object[]{lastCount, lastVersion, networkCount, version,
+						_resultCache.size()});
+			_cacheGeneration.incrementAndGet();
+			_resultCache.invalidateAll();
+		}
+	}
+	
+	/**
+	 * Sets how many networks are returned for a query and how they are
+	 * fetched. The first page is returned right away and any further pages
+	 * are fetched in the background, at most {@code maxConcurrentPages}
+	 * at a time, and merged in rank order as they arrive. Values less
+	 * then 1 are replaced with their defaults
+	 * @param maxResults maximum number of networks returned for a query
+	 * @param pageSize number of networks requested from NDEx at a time
+	 * @param maxConcurrentPages maximum number of page requests running
+	 *        at once
+	 */
+	public synchronized void updatePaging(int maxResults, int pageSize, int maxConcurrentPages){
+		_maxResults = maxResults < 1 ? DEFAULT_MAX_RESULTS : maxResults;
+		_pageSize = pageSize < 1 ? DEFAULT_PAGE_SIZE : pageSize;
+		_maxConcurrentPages = maxConcurrentPages < 1 ? DEFAULT_MAX_CONCURRENT_PAGES : maxConcurrentPages;
+		_cacheGeneration.incrementAndGet();
+		_resultCache.invalidateAll();
+		_logger.debug("Keyword results limited to {} fetched {} at a time with {} concurrent requests",
+				new Object[]{_maxResults, _pageSize, _maxConcurrentPages});
+		if (_pageExecutor != null){
+			_pageExecutor.shutdown();
+			_pageExecutor = null;
+		}
+	}
+	
+	private synchronized ExecutorService getPageExecutor(){
+		if (_pageExecutor == null){
+			AtomicInteger threadCount = new AtomicInteger(0);
+			_pageExecutor = Executors.newFixedThreadPool(_maxConcurrentPages, (r) -> {
+				Thread t = new Thread(r, "keyword-page-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return _pageExecutor;
 	}
 	
 	/**
@@ -57,10 +266,12 @@ public class KeywordSourceEngine implements SourceEngine {
 	 * are found then an empty list is returned
 	 * 
 	 * @param nrs
+	 * @param firstRank rank of first network
 	 * @return 
 	 */
-	private List<SourceQueryResult> getSourceQueryResultListFromNetworkSearchResult(NetworkSearchResult nrs){
-		int rankCounter = 0;
+	private List<SourceQueryResult> getSourceQueryResultListFromNetworkSearchResult(NetworkSearchResult nrs,
+			int firstRank){
+		int rankCounter = firstRank;
 		List<SourceQueryResult> sqrList = new LinkedList<>();
 		if (nrs.getNetworks() == null){
 			return sqrList;
@@ -79,9 +290,30 @@ public class KeywordSourceEngine implements SourceEngine {
 		return sqrList;
 	}
 	
+	/**
+	 * Fetches networks {@code start} to {@code start + size} of query
+	 * @throws CompletionException wrapping any error
+	 */
+	private List<SourceQueryResult> getPage(final String queryString, int start, int size){
+		try {
+			NetworkSearchResult nrs = _keywordclient.findNetworks(queryString, null, start, size);
+			if (nrs == null){
+				throw new NdexException("failed for unknown reason");
+			}
+			return getSourceQueryResultListFromNetworkSearchResult(nrs, start);
+		} catch(NdexException|IOException ex){
+			throw new CompletionException(ex);
+		}
+	}
+	
 	/**
 	 * Runs query passed in and returns results. The query is submitted to NDEx REST
-	 * service via client passed into the constructor and is always complete or failed
+	 * service via client passed into the constructor. If NDEx has more
+	 * networks then fit in the first page, up to the limit set via
+	 * {@link #updatePaging(int, int, int)}, the first page is returned
+	 * with status processing and the remaining pages are fetched in the
+	 * background and merged by {@link #updateSourceQueryResults(org.ndexbio.ndexsearch.rest.model.SourceQueryResults)}.
+	 * Otherwise the result is complete or failed
 	 * 
 	 * @param query the query to run. In this implementation the gene list is passed
 	 *              to NDEx REST service to find any matching networks
@@ -100,8 +332,28 @@ public class KeywordSourceEngine implements SourceEngine {
 				}
 				sb.append(gene);
 			}
-			_logger.debug("Keyword query string: {}", sb.toString());
-			NetworkSearchResult nrs = _keywordclient.findNetworks(sb.toString(), null, 0, 100);
+			final String queryString = sb.toString();
+			final String cacheKey = queryString.trim().replaceAll("\\s+", " ");
+			long generation = _cacheGeneration.get();
+			List<SourceQueryResult> cachedList = _resultCache.get(cacheKey);
+			if (cachedList != null){
+				_logger.debug("Returning cached result from keyword query");
+				sqr.setResults(new ArrayList<>(cachedList));
+				sqr.setNumberOfHits(cachedList.size());
+				sqr.setProgress(100);
+				sqr.setStatus(QueryResults.COMPLETE_STATUS);
+				sqr.setSourceTaskId(_sourceTaskId);
+				return sqr;
+			}
+			int maxResults;
+			int pageSize;
+			synchronized(this){
+				maxResults = _maxResults;
+				pageSize = _pageSize;
+			}
+			_logger.debug("Keyword query string: {}", queryString);
+			NetworkSearchResult nrs = _keywordclient.findNetworks(queryString, null, 0,
+					Math.min(pageSize, maxResults));
 			if (nrs == null) {
 				_logger.error("Query failed");
 				sqr.setMessage("failed for unknown reason");
@@ -109,13 +361,33 @@ public class KeywordSourceEngine implements SourceEngine {
 				sqr.setProgress(100);
 				return sqr;
 			}
-			List<SourceQueryResult> sqrList = getSourceQueryResultListFromNetworkSearchResult(nrs);
+			List<SourceQueryResult> sqrList = getSourceQueryResultListFromNetworkSearchResult(nrs, 0);
 			sqr.setNumberOfHits(sqrList.size());
-			sqr.setProgress(100);
-			sqr.setStatus(QueryResults.COMPLETE_STATUS);
-			sqr.setSourceTaskId(_sourceTaskId);
 			sqr.setResults(sqrList);
-			_logger.debug("Returning result from keyword query");
+			long total = Math.min(nrs.getNumFound(), maxResults);
+			if (sqrList.size() < pageSize || total <= sqrList.size()){
+				sqr.setProgress(100);
+				sqr.setStatus(QueryResults.COMPLETE_STATUS);
+				sqr.setSourceTaskId(_sourceTaskId);
+				cacheResults(cacheKey, generation, sqrList);
+				_logger.debug("Returning result from keyword query");
+				return sqr;
+			}
+			PagedSearch paged = new PagedSearch(cacheKey, generation, sqrList);
+			ExecutorService executor = getPageExecutor();
+			for (int start = sqrList.size(); start < total; start += pageSize){
+				final int pageStart = start;
+				final int size = (int)Math.min(pageSize, total - start);
+				paged._pages.add(CompletableFuture.supplyAsync(() -> getPage(queryString,
+						pageStart, size), executor));
+			}
+			String pagedTaskId = _sourceTaskId + "-" + UUID.randomUUID().toString();
+			_pagedSearches.put(pagedTaskId, paged);
+			sqr.setSourceTaskId(pagedTaskId);
+			sqr.setStatus(QueryResults.PROCESSING_STATUS);
+			sqr.setProgress(100 / (paged._pages.size() + 1));
+			_logger.debug("Returning first {} of {} results from keyword query",
+					sqrList.size(), total);
 			return sqr;
 		} catch (NdexException|IOException io) {
 			_logger.error("caught ioexception ", io);
@@ -129,7 +401,9 @@ public class KeywordSourceEngine implements SourceEngine {
 
 	/**
 	 * Queries the server status updating network count and
-	 * status field otherwise l
+	 * status field otherwise l. Cached results are discarded if the
+	 * network count or server version changed since the last call and
+	 * pages of queries not merged in time are no longer fetched
 	 * @param sRes 
 	 */
 	@Override
@@ -148,6 +422,12 @@ public class KeywordSourceEngine implements SourceEngine {
 			} else {
 				sRes.setVersion("unknown");
 			}
+			checkServerState(status.getNetworkCount(), sRes.getVersion());
+			_pagedSearches.removeExpired();
+			ResultCache<String, List<SourceQueryResult>> cache = _resultCache;
+			_logger.debug("Keyword result cache has {} entries using about {} bytes"
+					+ " with hit ratio {}", new Object[]{cache.size(),
+						cache.getWeight(), cache.getHitRatio()});
 		} catch(NdexException|IOException ie){
 			_logger.error("Caught exception trying to get status of server", ie);
 			sRes.setStatus("error");
@@ -155,21 +435,91 @@ public class KeywordSourceEngine implements SourceEngine {
 	}
 
 	/**
-	 * Does nothing
-	 * @param sqRes
-	 * @return 
+	 * Merges pages of a query that have arrived since the last call into
+	 * {@code sqRes} in rank order. Once all pages have arrived the result
+	 * is complete, pages that could not be fetched are left out and
+	 * noted in the message. If the pages were discarded, because the
+	 * query was deleted or too many queries are waiting to be merged,
+	 * the result is marked as failed. Does nothing for results that are
+	 * already complete
+	 * @param sqRes result to update
 	 */
 	@Override
 	public void updateSourceQueryResults(final SourceQueryResults sqRes) {
+		if (sqRes.getProgress() == 100 || sqRes.getSourceTaskId() == null){
+			return;
+		}
+		PagedSearch paged = _pagedSearches.get(sqRes.getSourceTaskId());
+		if (paged == null){
+			_logger.warn("Pages of keyword task {} are gone, only {} results arrived",
+					sqRes.getSourceTaskId(), sqRes.getNumberOfHits());
+			sqRes.setMessage(SourceResult.KEYWORD_SERVICE + " failed : only "
+					+ sqRes.getNumberOfHits() + " results arrived before remaining "
+					+ "pages were discarded");
+			sqRes.setStatus(QueryResults.FAILED_STATUS);
+			sqRes.setProgress(100);
+			return;
+		}
+		List<SourceQueryResult> merged = new ArrayList<>(paged._firstPage);
+		int pagesDone = 1;
+		String failure = null;
+		for (CompletableFuture<List<SourceQueryResult>> page : paged._pages){
+			if (page.isDone() == false){
+				continue;
+			}
+			pagesDone++;
+			try {
+				merged.addAll(page.join());
+			} catch(CompletionException|CancellationException ex){
+				Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+				failure = SourceResult.KEYWORD_SERVICE + " failed to get some results : "
+						+ cause.getMessage();
+			}
+		}
+		sqRes.setResults(merged);
+		sqRes.setNumberOfHits(merged.size());
+		sqRes.setMessage(failure);
+		if (pagesDone == paged._pages.size() + 1){
+			_pagedSearches.remove(sqRes.getSourceTaskId());
+			if (failure == null){
+				cacheResults(paged._cacheKey, paged._cacheGeneration, merged);
+			}
+			sqRes.setStatus(QueryResults.COMPLETE_STATUS);
+			sqRes.setProgress(100);
+			return;
+		}
+		sqRes.setProgress(Math.min(99, (pagesDone * 100) / (paged._pages.size() + 1)));
 	}
 
 	/**
-	 * There is nothing to delete so just return
+	 * Stops fetching any remaining pages of the query with source task
+	 * {@code id}, there is nothing to delete in NDEx
 	 * @param id
 	 * @throws SearchException 
 	 */
 	@Override
 	public void delete(String id) throws SearchException {
+		if (id == null){
+			return;
+		}
+		PagedSearch paged = _pagedSearches.get(id);
+		if (paged == null){
+			return;
+		}
+		_pagedSearches.remove(id);
+		cancelPages(paged);
+	}
+	
+	/**
+	 * Stops fetching any remaining pages of {@code paged}, called when the
+	 * query is deleted and when {@link #_pagedSearches} drops the query
+	 * because too many are waiting to be merged or it was not merged in time
+	 * @param paged query whose pages are no longer wanted
+	 */
+	private static void cancelPages(PagedSearch paged){
+		for (CompletableFuture<List<SourceQueryResult>> page : paged._pages){
+			page.cancel(true);
+		}
 	}
 
 	/**
@@ -201,10 +551,13 @@ public class KeywordSourceEngine implements SourceEngine {
 	}
 
 	/**
-	 * Nothing to shutdown so just return
+	 * Stops threads fetching pages
 	 */
 	@Override
-	public void shutdown() {
+	public synchronized void shutdown() {
+		if (_pageExecutor != null){
+			_pageExecutor.shutdownNow();
+		}
 	}
 	
 }
@@ -0,0 +1,182 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically polls outstanding query tasks in the background so
+ * requests for results or status never have to contact the sources
+ * themselves. Each tracked task is polled via the poller passed into
+ * the constructor. The delay between polls of a task starts at the
+ * initial poll interval and doubles after every poll up to the maximum
+ * poll interval. A task is dropped once the poller returns {@code false}
+ *
+ * @author churas
+ */
+public class QueryProgressTracker {
+
+	static Logger _logger = LoggerFactory.getLogger(QueryProgressTracker.class);
+
+	/**
+	 * Default delay in milliseconds before first poll of a task
+	 */
+	public static final long DEFAULT_INITIAL_POLL_INTERVAL = 1000;
+
+	/**
+	 * Default maximum delay in milliseconds between polls of a task
+	 */
+	public static final long DEFAULT_MAX_POLL_INTERVAL = 10000;
+
+	/**
+	 * Default number of threads polling tasks
+	 */
+	public static final int DEFAULT_NUMBER_OF_THREADS = 2;
+
+	/**
+	 * Map of <task id> => delay in milliseconds before next poll
+	 */
+	private final ConcurrentHashMap<String, Long> _tracked;
+	private final Predicate<String> _poller;
+	private long _initialPollInterval;
+	private long _maxPollInterval;
+	private ScheduledExecutorService _executor;
+
+	/**
+	 * Constructor
+	 * @param poller invoked with id of task to poll. Should return
+	 *        {@code true} if task still needs to be tracked
+	 */
+	public QueryProgressTracker(Predicate<String> poller){
+		_tracked = new ConcurrentHashMap<>();
+		_poller = poller;
+		_initialPollInterval = DEFAULT_INITIAL_POLL_INTERVAL;
+		_maxPollInterval = DEFAULT_MAX_POLL_INTERVAL;
+	}
+
+	/**
+	 * Sets delays between polls of a task. Values less then 1 are
+	 * replaced by their defaults
+	 * @param initialPollInterval delay in milliseconds before first poll
+	 * @param maxPollInterval maximum delay in milliseconds between polls
+	 */
+	public void setPollIntervals(long initialPollInterval, long maxPollInterval){
+		_initialPollInterval = initialPollInterval < 1 ? DEFAULT_INITIAL_POLL_INTERVAL : initialPollInterval;
+		_maxPollInterval = maxPollInterval < 1 ? DEFAULT_MAX_POLL_INTERVAL : maxPollInterval;
+		if (_maxPollInterval < _initialPollInterval){
+			_maxPollInterval = _initialPollInterval;
+		}
+	}
+
+	/**
+	 * Starts polling tasks including those added via
+	 * {@link #track(java.lang.String)} prior to this call
+	 */
+	public synchronized void start(){
+		if (_executor != null){
+			return;
+		}
+		_executor = Executors.newScheduledThreadPool(DEFAULT_NUMBER_OF_THREADS, (r) -> {
+			Thread t = new Thread(r, "query-progress-tracker");
+			t.setDaemon(true);
+			return t;
+		});
+		for (String id : _tracked.keySet()){
+			schedule(id, _tracked.get(id));
+		}
+	}
+
+	/**
+	 * Stops polling of all tasks
+	 */
+	public synchronized void shutdown(){
+		if (_executor == null){
+			return;
+		}
+		_executor.shutdownNow();
+		_executor = null;
+	}
+
+	/**
+	 * Adds task to set of tasks to poll. If task is already tracked
+	 * this method does nothing
+	 * @param id id of task
+	 */
+	public synchronized void track(final String id){
+		if (_tracked.putIfAbsent(id, _initialPollInterval) != null){
+			return;
+		}
+		_logger.debug("Tracking progress of task {}", id);
+		if (_executor != null){
+			schedule(id, _initialPollInterval);
+		}
+	}
+
+	/**
+	 * Stops polling task with {@code id}
+	 * @param id id of task
+	 */
+	public void untrack(final String id){
+		_tracked.remove(id);
+	}
+
+	/**
+	 * Tells caller if task is being tracked
+	 * @param id id of task
+	 * @return {@code true} if task is being tracked otherwise {@code false}
+	 */
+	public boolean isTracked(final String id){
+		return _tracked.containsKey(id);
+	}
+
+	/**
+	 * Gets number of tasks being tracked
+	 * @return number of tasks
+	 */
+	public int getNumberOfTrackedTasks(){
+		return _tracked.size();
+	}
+
+	private synchronized void schedule(final String id, long delay){
+		if (_executor == null){
+			return;
+		}
+		try {
+			_executor.schedule(() -> {
+				poll(id);
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch(RejectedExecutionException ree){
+			_logger.debug("Unable to schedule poll of task {} : {}", id,
+					ree.getMessage());
+		}
+	}
+
+	private void poll(final String id){
+		Long delay = _tracked.get(id);
+		if (delay == null){
+			return;
+		}
+		boolean keepTracking;
+		try {
+			keepTracking = _poller.test(id);
+		} catch(Exception ex){
+			_logger.error("Caught exception polling task " + id, ex);
+			keepTracking = true;
+		}
+		if (keepTracking == false){
+			_logger.debug("Done tracking progress of task {}", id);
+			_tracked.remove(id);
+			return;
+		}
+		long nextDelay = Math.min(delay * 2, _maxPollInterval);
+		if (_tracked.replace(id, nextDelay) == null){
+			return;
+		}
+		schedule(id, nextDelay);
+	}
+}
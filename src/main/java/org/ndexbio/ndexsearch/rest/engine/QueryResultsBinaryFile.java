@@ -0,0 +1,349 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+import org.ndexbio.ndexsearch.rest.model.comparators.SourceQueryResultByRank;
+import org.ndexbio.ndexsearch.rest.model.comparators.SourceQueryResultsBySourceRank;
+
+/**
+ * Length prefixed on disk format for a finished
+ * {@link org.ndexbio.ndexsearch.rest.model.QueryResults}. The file is
+ * read with positional reads of a {@link java.nio.channels.FileChannel}
+ * that is closed once the request is answered, so no mapping or handle
+ * outlives the request and keeps a deleted file around. Only the sections
+ * needed to answer a request are decoded, letting
+ * status requests skip all results and page requests decode just the
+ * results in the page. Layout, with all integers big endian:
+ * <pre>
+ * int magic, int version
+ * int length, QueryResults JSON without sources
+ * int number of sources
+ * for each source sorted by source rank:
+ *    int length, SourceQueryResults JSON without results
+ *    int number of results or -1 if results were null
+ *    for each result sorted by rank:
+ *       int length, SourceQueryResult JSON
+ * </pre>
+ *
+ * @author churas
+ */
+public class QueryResultsBinaryFile {
+
+	/**
+	 * First four bytes of file, ASCII for NDXS
+	 */
+	public static final int MAGIC = 0x4E445853;
+
+	/**
+	 * Version of layout
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Size in bytes of the part of the file read at once
+	 */
+	private static final int READ_BUFFER_SIZE = 65536;
+
+	private final File _file;
+	private final ObjectMapper _mapper;
+
+	/**
+	 * Constructor
+	 * @param file file to read or write
+	 * @param mapper used to encode and decode the sections of the file
+	 */
+	public QueryResultsBinaryFile(final File file, ObjectMapper mapper){
+		_file = file;
+		_mapper = mapper;
+	}
+
+	/**
+	 * Gets the file
+	 * @return file
+	 */
+	public File getFile(){
+		return _file;
+	}
+
+	/**
+	 * Writes {@code qr} to file. The data is first written to a temporary
+	 * file in the same directory which is then moved in place so readers
+	 * never see a partially written file
+	 * @param qr QueryResults to write, this object is not modified
+	 * @throws IOException if there was an error writing
+	 */
+	public void write(QueryResults qr) throws IOException {
+		write(qr, false);
+	}
+
+	/**
+	 * Writes {@code qr} to file. The data is first written to a temporary
+	 * file in the same directory which is then moved in place so readers
+	 * never see a partially written file
+	 * @param qr QueryResults to write, this object is not modified
+	 * @param sync if {@code true} temporary file is flushed to disk
+	 *        before it is moved in place
+	 * @throws IOException if there was an error writing
+	 */
+	public void write(QueryResults qr, boolean sync) throws IOException {
+		List<SourceQueryResults> sources = qr.getSources() == null ?
+				Collections.emptyList() : qr.getSources();
+		SourceQueryResults[] sortedSources = sources.toArray(new SourceQueryResults[0]);
+		Arrays.sort(sortedSources, new SourceQueryResultsBySourceRank());
+		SourceQueryResultByRank rankSorter = new SourceQueryResultByRank();
+
+		File tmpFile = new File(_file.getAbsolutePath() + ".tmp");
+		try (FileOutputStream fos = new FileOutputStream(tmpFile);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))){
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeSection(out, RankedResultIndex.getBytesWithoutField(_mapper,
+					_mapper.writeValueAsBytes(qr), "sources"));
+			out.writeInt(sortedSources.length);
+			for (SourceQueryResults sqr : sortedSources){
+				writeSection(out, RankedResultIndex.getBytesWithoutField(_mapper,
+						_mapper.writeValueAsBytes(sqr), "results"));
+				if (sqr.getResults() == null){
+					out.writeInt(-1);
+					continue;
+				}
+				SourceQueryResult[] results = sqr.getResults().toArray(new SourceQueryResult[0]);
+				Arrays.sort(results, rankSorter);
+				out.writeInt(results.length);
+				for (SourceQueryResult res : results){
+					writeSection(out, _mapper.writeValueAsBytes(res));
+				}
+			}
+			out.flush();
+			if (sync){
+				fos.getFD().sync();
+			}
+		}
+		Files.move(tmpFile.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads all of the QueryResults
+	 * @return QueryResults with sources sorted by source rank and
+	 *         results sorted by rank
+	 * @throws IOException if there was an error reading
+	 */
+	public QueryResults read() throws IOException {
+		return readQueryResults(null, 0, 0);
+	}
+
+	/**
+	 * Reads QueryResults with all sources but without any results.
+	 * None of the results in the file are decoded
+	 * @return QueryResults
+	 * @throws IOException if there was an error reading
+	 */
+	public QueryResults readQueryStatus() throws IOException {
+		try (FileChannel channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ)){
+			return readQueryStatus(open(channel));
+		}
+	}
+
+	private QueryResults readQueryStatus(SectionReader buf) throws IOException {
+		QueryResults qr = buf.readSection(QueryResults.class);
+		int numSources = buf.getInt();
+		List<SourceQueryResults> sources = new ArrayList<>(numSources);
+		for (int i = 0; i < numSources; i++){
+			sources.add(buf.readSection(SourceQueryResults.class));
+			int numResults = buf.getInt();
+			for (int j = 0; j < numResults; j++){
+				buf.skipSection();
+			}
+		}
+		qr.setSources(sources);
+		return qr;
+	}
+
+	/**
+	 * Reads a page of the results, only results within the page are
+	 * decoded. The page follows the same rules as
+	 * {@link RankedResultIndex#getQueryResults(java.lang.String, int, int)}
+	 * @param source comma delimited list of sources to return. {@code null}
+	 *               or empty string means all.
+	 * @param start  starting index to return from. Starting index is 0.
+	 * @param size   Number of results to return. If 0 means all from starting index
+	 * @return QueryResults
+	 * @throws IOException if there was an error reading
+	 */
+	public QueryResults readQueryResults(final String source, int start, int size) throws IOException {
+		try (FileChannel channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ)){
+			return readQueryResults(open(channel), RankedResultIndex.getSourceSet(source),
+					start, size);
+		}
+	}
+
+	private QueryResults readQueryResults(SectionReader buf, Set<String> sourceSet,
+			int start, int size) throws IOException {
+		QueryResults qr = buf.readSection(QueryResults.class);
+		int numSources = buf.getInt();
+		List<SourceQueryResults> sources = new ArrayList<>(numSources);
+		int counter = 0;
+		for (int i = 0; i < numSources; i++){
+			SourceQueryResults sqr = buf.readSection(SourceQueryResults.class);
+			int numResults = buf.getInt();
+			if (sourceSet != null && !sourceSet.contains(sqr.getSourceName())){
+				for (int j = 0; j < numResults; j++){
+					buf.skipSection();
+				}
+				continue;
+			}
+			sources.add(sqr);
+			if (numResults < 0){
+				continue;
+			}
+			int[] range = RankedResultIndex.getSliceRange(numResults, counter, start, size);
+			List<SourceQueryResult> results = new ArrayList<>(range[1] - range[0]);
+			for (int j = 0; j < numResults; j++){
+				if (j >= range[0] && j < range[1]){
+					results.add(buf.readSection(SourceQueryResult.class));
+				} else {
+					buf.skipSection();
+				}
+			}
+			sqr.setResults(results);
+			counter += numResults;
+		}
+		qr.setSources(sources);
+		return qr;
+	}
+
+	/**
+	 * Checks the magic number and version of the file open in {@code channel}
+	 * @param channel open file
+	 * @return reader positioned after the version
+	 * @throws IOException if file could not be read or is not in this format
+	 */
+	private SectionReader open(FileChannel channel) throws IOException {
+		SectionReader buf = new SectionReader(channel);
+		if (channel.size() < 8 || buf.getInt() != MAGIC){
+			throw new IOException(_file.getAbsolutePath() + " is not a query results file");
+		}
+		int version = buf.getInt();
+		if (version != VERSION){
+			throw new IOException("Unsupported version " + version + " of "
+					+ _file.getAbsolutePath());
+		}
+		return buf;
+	}
+
+	private void writeSection(DataOutputStream out, byte[] data) throws IOException {
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	/**
+	 * Reads sections of the file in order with positional reads of a
+	 * {@link FileChannel}, a window of the file is kept in a buffer so
+	 * small sections and skipped sections do not each need a read
+	 */
+	private class SectionReader {
+		private final FileChannel _channel;
+		private final long _size;
+		private final ByteBuffer _window;
+
+		/**
+		 * Offset in file of the first byte in {@link #_window}
+		 */
+		private long _windowStart;
+
+		/**
+		 * Offset in file of the next byte to read
+		 */
+		private long _position;
+
+		SectionReader(FileChannel channel) throws IOException {
+			_channel = channel;
+			_size = channel.size();
+			_window = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			_window.limit(0);
+		}
+
+		int getInt() throws IOException {
+			fill(4);
+			int val = _window.getInt((int)(_position - _windowStart));
+			_position += 4;
+			return val;
+		}
+
+		<T> T readSection(Class<T> theClass) throws IOException {
+			int length = getSectionLength();
+			if (length <= _window.capacity()){
+				fill(length);
+				T val = _mapper.readValue(_window.array(),
+						(int)(_position - _windowStart), length, theClass);
+				_position += length;
+				return val;
+			}
+			ByteBuffer section = ByteBuffer.allocate(length);
+			while (section.hasRemaining()){
+				if (_channel.read(section, _position + section.position()) < 0){
+					throw getTruncatedException();
+				}
+			}
+			_position += length;
+			return _mapper.readValue(section.array(), theClass);
+		}
+
+		void skipSection() throws IOException {
+			int length = getSectionLength();
+			_position += length;
+		}
+
+		private int getSectionLength() throws IOException {
+			int length = getInt();
+			if (length < 0 || _position + length > _size){
+				throw getTruncatedException();
+			}
+			return length;
+		}
+
+		/**
+		 * Makes sure the {@code length} bytes at the current position
+		 * are in {@link #_window}, reading from the file if not
+		 */
+		private void fill(int length) throws IOException {
+			if (_position >= _windowStart
+					&& _position + length <= _windowStart + _window.limit()){
+				return;
+			}
+			_window.clear();
+			_windowStart = _position;
+			while (_window.hasRemaining()){
+				if (_channel.read(_window, _windowStart + _window.position()) < 0){
+					break;
+				}
+			}
+			_window.flip();
+			if (_window.limit() < length){
+				throw getTruncatedException();
+			}
+		}
+
+		private IOException getTruncatedException(){
+			return new IOException(_file.getAbsolutePath() + " is truncated or corrupt");
+		}
+	}
+}
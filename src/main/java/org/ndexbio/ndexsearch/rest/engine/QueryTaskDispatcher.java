@@ -0,0 +1,199 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches query tasks to a pool of worker threads. Task ids are placed
+ * on a blocking queue via {@link #submit(java.lang.String)} and each worker
+ * blocks on that queue, passing ids to the processor given in the constructor
+ * as soon as they arrive.
+ *
+ * @author churas
+ */
+public class QueryTaskDispatcher {
+
+	static Logger _logger = LoggerFactory.getLogger(QueryTaskDispatcher.class);
+
+	/**
+	 * Default number of worker threads
+	 */
+	public static final int DEFAULT_NUMBER_OF_WORKERS = 4;
+
+	private static final String SHUTDOWN_TASK = "__shutdown__";
+
+	private final BlockingQueue<String> _taskQueue;
+	private final Consumer<String> _processor;
+	private final AtomicInteger _busyWorkers;
+	private final AtomicLong _tasksDispatched;
+	private final List<Thread> _workers;
+	private int _numberOfWorkers;
+	private volatile boolean _started;
+
+	/**
+	 * Constructor
+	 * @param numberOfWorkers number of worker threads to start. If value is
+	 *        less then 1 {@link #DEFAULT_NUMBER_OF_WORKERS} is used
+	 * @param processor invoked by a worker for each task id taken off the queue
+	 */
+	public QueryTaskDispatcher(int numberOfWorkers, Consumer<String> processor){
+		_taskQueue = new LinkedBlockingQueue<>();
+		_processor = processor;
+		_busyWorkers = new AtomicInteger(0);
+		_tasksDispatched = new AtomicLong(0);
+		_workers = new LinkedList<>();
+		_started = false;
+		setNumberOfWorkers(numberOfWorkers);
+	}
+
+	/**
+	 * Sets number of worker threads. This has no effect if
+	 * {@link #start()} has already been invoked
+	 * @param numberOfWorkers number of workers, if less then 1
+	 *        {@link #DEFAULT_NUMBER_OF_WORKERS} is used
+	 */
+	public final void setNumberOfWorkers(int numberOfWorkers){
+		if (_started){
+			_logger.warn("Dispatcher already started, ignoring request to "
+					+ "set number of workers to {}", numberOfWorkers);
+			return;
+		}
+		if (numberOfWorkers < 1){
+			_numberOfWorkers = DEFAULT_NUMBER_OF_WORKERS;
+			return;
+		}
+		_numberOfWorkers = numberOfWorkers;
+	}
+
+	/**
+	 * Adds task to queue. The task will be picked up by the next
+	 * free worker
+	 * @param id id of task
+	 */
+	public void submit(final String id){
+		_taskQueue.add(id);
+	}
+
+	/**
+	 * Adds tasks to queue in one call. The tasks will be picked up
+	 * in order by the free workers
+	 * @param ids ids of tasks
+	 */
+	public void submitAll(final Collection<String> ids){
+		_taskQueue.addAll(ids);
+	}
+
+	/**
+	 * Starts the worker threads
+	 */
+	public synchronized void start(){
+		if (_started){
+			return;
+		}
+		_started = true;
+		_logger.info("Starting {} dispatcher workers", _numberOfWorkers);
+		for (int i = 0; i < _numberOfWorkers; i++){
+			Thread worker = new Thread(this::workerLoop, "query-dispatcher-" + i);
+			worker.setDaemon(true);
+			_workers.add(worker);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Tells workers to exit once they finish their current task and
+	 * waits up to {@code waitMillis} milliseconds for each of them to do so.
+	 * Any tasks still on the queue are left unprocessed.
+	 * @param waitMillis time to wait for each worker in milliseconds
+	 */
+	public synchronized void shutdown(long waitMillis){
+		_taskQueue.clear();
+		for (int i = 0; i < _workers.size(); i++){
+			_taskQueue.add(SHUTDOWN_TASK);
+		}
+		for (Thread worker : _workers){
+			try {
+				worker.join(waitMillis);
+			} catch(InterruptedException ie){
+				_logger.warn("Interrupted waiting for worker {} to exit",
+						worker.getName());
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		_workers.clear();
+	}
+
+	private void workerLoop(){
+		while (true){
+			String id;
+			try {
+				id = _taskQueue.take();
+			} catch(InterruptedException ie){
+				_logger.info("Worker {} interrupted, exiting",
+						Thread.currentThread().getName());
+				return;
+			}
+			if (SHUTDOWN_TASK.equals(id)){
+				return;
+			}
+			_busyWorkers.incrementAndGet();
+			try {
+				_processor.accept(id);
+			} catch(Exception ex){
+				_logger.error("Caught exception processing task " + id, ex);
+			} finally {
+				_busyWorkers.decrementAndGet();
+				_tasksDispatched.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Gets number of tasks waiting for a free worker
+	 * @return number of tasks on queue
+	 */
+	public int getQueueDepth(){
+		return _taskQueue.size();
+	}
+
+	/**
+	 * Gets number of worker threads
+	 * @return number of workers
+	 */
+	public int getNumberOfWorkers(){
+		return _numberOfWorkers;
+	}
+
+	/**
+	 * Gets number of workers currently processing a task
+	 * @return number of busy workers
+	 */
+	public int getBusyWorkers(){
+		return _busyWorkers.get();
+	}
+
+	/**
+	 * Gets fraction of workers currently processing a task
+	 * @return value between 0 and 1
+	 */
+	public double getWorkerUtilization(){
+		return (double)_busyWorkers.get()/(double)_numberOfWorkers;
+	}
+
+	/**
+	 * Gets number of tasks processed by workers since start
+	 * @return number of tasks processed
+	 */
+	public long getTasksDispatched(){
+		return _tasksDispatched.get();
+	}
+}
@@ -0,0 +1,241 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
+import org.ndexbio.ndexsearch.rest.model.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content addressed index of query tasks that lets identical queries
+ * share a single task. The key for a query is built from the sorted
+ * source list with the version of each source, the sorted normalized
+ * genes, the gene annotation services and the alteration data. Entries
+ * expire after a configurable amount of time or when
+ * {@link #invalidateSource(java.lang.String)} is invoked for one of the
+ * sources in the key.
+ *
+ * @author churas
+ */
+public class QueryTaskIndex {
+
+	static Logger _logger = LoggerFactory.getLogger(QueryTaskIndex.class);
+
+	/**
+	 * Default time in milliseconds a task can be reused for
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 3600000;
+
+	/**
+	 * Separates source list from genes in key
+	 */
+	private static final String KEY_SEPARATOR = "|";
+
+	/**
+	 * Separates source name from its version in key
+	 */
+	private static final String VERSION_SEPARATOR = "@";
+
+	/**
+	 * Map of <key> => task id
+	 */
+	private final ConcurrentHashMap<String, String> _taskIds;
+
+	/**
+	 * Map of <task id> => time in milliseconds task was added
+	 */
+	private final ConcurrentHashMap<String, Long> _creationTimes;
+	private final ObjectMapper _mapper;
+	private long _timeToLive;
+
+	/**
+	 * Constructor
+	 */
+	public QueryTaskIndex(){
+		_taskIds = new ConcurrentHashMap<>();
+		_creationTimes = new ConcurrentHashMap<>();
+		_mapper = SearchJsonProvider.getObjectMapper();
+		_timeToLive = DEFAULT_TIME_TO_LIVE;
+	}
+
+	/**
+	 * Sets time in milliseconds a task can be reused for. A value of 0 or
+	 * less disables reuse
+	 * @param timeToLive time in milliseconds
+	 */
+	public void setTimeToLive(long timeToLive){
+		_timeToLive = timeToLive;
+	}
+
+	/**
+	 * Builds key for query. Sources are trimmed and sorted so their order
+	 * does not matter
+	 * @param genes normalized genes of query
+	 * @param query query whose sources, gene annotation services and
+	 *        alteration data are put in key
+	 * @param sourceVersions map of source name to version of source
+	 * @return key or {@code null} if one could not be created
+	 */
+	public String getKey(Collection<String> genes, final Query query,
+			Map<String, String> sourceVersions){
+		TreeSet<String> sources = new TreeSet<>();
+		if (query.getSourceList() != null){
+			for (String source : query.getSourceList()){
+				if (source != null){
+					sources.add(source.trim());
+				}
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (String source : sources){
+			if (sb.length() > 0){
+				sb.append(",");
+			}
+			sb.append(source);
+			sb.append(VERSION_SEPARATOR);
+			sb.append(sourceVersions.get(source));
+		}
+		sb.append(KEY_SEPARATOR);
+		if (genes != null){
+			sb.append(String.join(",", new TreeSet<>(genes)));
+		}
+		sb.append(KEY_SEPARATOR);
+		try {
+			if (query.getGeneAnnotationServices() != null){
+				sb.append(_mapper.writeValueAsString(new TreeMap<>(query.getGeneAnnotationServices())));
+			}
+			sb.append(KEY_SEPARATOR);
+			if (query.getAlterationData() != null){
+				sb.append(_mapper.writeValueAsString(query.getAlterationData()));
+			}
+		} catch(JsonProcessingException jpe){
+			_logger.error("Unable to create task key", jpe);
+			return null;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets id of task matching {@code key} or, if there is none or it
+	 * can not be reused, adds the task created by {@code newTask}.
+	 * {@code isReusable} is checked before the entry for {@code key} is
+	 * locked, the add is done as one operation with a second lookup so
+	 * identical queries arriving at the same time share one task
+	 * @param key key from {@link #getKey(java.util.Collection, org.ndexbio.ndexsearch.rest.model.Query, java.util.Map)}
+	 *        or {@code null} in which case a new task is always created
+	 * @param isReusable tells if existing task can be reused, must not
+	 *        modify this index
+	 * @param newTask creates a new task returning its id, must be quick
+	 *        since the entry for {@code key} is locked while it runs
+	 * @return id of existing or new task
+	 */
+	public String getOrAddTask(final String key, Predicate<String> isReusable,
+			Supplier<String> newTask){
+		if (_timeToLive <= 0 || key == null){
+			return newTask.get();
+		}
+		final String checkedId = _taskIds.get(key);
+		if (checkedId != null && isCurrent(checkedId) && isReusable.test(checkedId)){
+			return checkedId;
+		}
+		return _taskIds.compute(key, (k, existingId) -> {
+			if (existingId != null){
+				// task added by another query since the check was just
+				// created so it is reused
+				if (!existingId.equals(checkedId) && isCurrent(existingId)){
+					return existingId;
+				}
+				_creationTimes.remove(existingId);
+			}
+			String id = newTask.get();
+			_creationTimes.put(id, System.currentTimeMillis());
+			return id;
+		});
+	}
+
+	/**
+	 * Removes any entries pointing to task with {@code id}
+	 * @param id id of task
+	 */
+	public void removeTask(final String id){
+		if (_creationTimes.remove(id) == null){
+			return;
+		}
+		_taskIds.values().removeIf((val) -> val.equals(id));
+	}
+
+	/**
+	 * Removes all entries whose key contains {@code sourceName}
+	 * @param sourceName name of source
+	 */
+	public void invalidateSource(final String sourceName){
+		Iterator<Map.Entry<String, String>> itr = _taskIds.entrySet().iterator();
+		int removed = 0;
+		while (itr.hasNext()){
+			Map.Entry<String, String> entry = itr.next();
+			if (keyContainsSource(entry.getKey(), sourceName)){
+				itr.remove();
+				_creationTimes.remove(entry.getValue());
+				removed++;
+			}
+		}
+		_logger.debug("Removed {} tasks from index for source {}", removed, sourceName);
+	}
+
+	/**
+	 * Removes all entries that have expired
+	 */
+	public void removeExpired(){
+		Iterator<Map.Entry<String, String>> itr = _taskIds.entrySet().iterator();
+		while (itr.hasNext()){
+			Map.Entry<String, String> entry = itr.next();
+			Long creationTime = _creationTimes.get(entry.getValue());
+			if (creationTime == null || isExpired(creationTime)){
+				itr.remove();
+				_creationTimes.remove(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Gets number of tasks in index
+	 * @return number of tasks
+	 */
+	public int size(){
+		return _taskIds.size();
+	}
+
+	/**
+	 * Tells if task with {@code id} is in the index and has not expired
+	 */
+	private boolean isCurrent(final String id){
+		Long creationTime = _creationTimes.get(id);
+		return creationTime != null && !isExpired(creationTime);
+	}
+
+	private boolean isExpired(long creationTime){
+		return System.currentTimeMillis() - creationTime > _timeToLive;
+	}
+
+	private boolean keyContainsSource(final String key, final String sourceName){
+		int sepIndex = key.indexOf(KEY_SEPARATOR);
+		if (sepIndex < 0){
+			return false;
+		}
+		for (String sourceAndVersion : key.substring(0, sepIndex).split(",")){
+			if (sourceAndVersion.startsWith(sourceName + VERSION_SEPARATOR)){
+				return true;
+			}
+		}
+		return false;
+	}
+}
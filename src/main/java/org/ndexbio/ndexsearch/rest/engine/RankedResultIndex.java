@@ -0,0 +1,460 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+import org.ndexbio.ndexsearch.rest.model.ValidatedQueryGenes;
+import org.ndexbio.ndexsearch.rest.model.comparators.SourceQueryResultByRank;
+import org.ndexbio.ndexsearch.rest.model.comparators.SourceQueryResultsBySourceRank;
+
+/**
+ * Immutable index of a finished {@link org.ndexbio.ndexsearch.rest.model.QueryResults}
+ * with sources sorted by source rank and the results of each source sorted
+ * by rank into arrays. This is built once so requests for a page of results
+ * only cost the size of the page and never sort or modify shared objects.
+ *
+ * The page returned by {@link #getQueryResults(java.lang.String, int, int)}
+ * follows the same rules as
+ * {@link BasicSearchEngineImpl#filterQueryResultsByStartAndSize(org.ndexbio.ndexsearch.rest.model.QueryResults, int, int) }
+ *
+ * @author churas
+ */
+public class RankedResultIndex {
+
+	/**
+	 * QueryResults without sources, never handed out, only copied
+	 */
+	private final QueryResults _header;
+
+	/**
+	 * SourceQueryResults without results sorted by source rank, never
+	 * handed out, only copied
+	 */
+	private final SourceQueryResults[] _sourceHeaders;
+	private final String[] _sourceNames;
+
+	/**
+	 * Results of each source sorted by rank, entry is {@code null}
+	 * if source results were {@code null}
+	 */
+	private final SourceQueryResult[][] _results;
+	private final int _numberOfResults;
+
+	/**
+	 * Rough size in bytes of an object header plus its fields
+	 */
+	private static final long OBJECT_OVERHEAD = 16;
+
+	/**
+	 * Rough size in bytes of a reference
+	 */
+	private static final long REFERENCE_SIZE = 8;
+
+	/**
+	 * Rough size in bytes of a {@link SourceQueryResult} without the
+	 * objects it references
+	 */
+	private static final long RESULT_SIZE = 80;
+
+	/**
+	 * Rough size in bytes of an entry in a hash based set or map
+	 */
+	private static final long HASH_ENTRY_SIZE = 48;
+
+	/**
+	 * Estimated memory in bytes used by the arrays and objects held by this index
+	 */
+	private final long _estimatedSize;
+
+	/**
+	 * Constructor
+	 * @param qr QueryResults to index, this object is not modified
+	 * @param mapper not used, kept so callers need not change
+	 */
+	public RankedResultIndex(QueryResults qr, ObjectMapper mapper) {
+		List<SourceQueryResults> sources = qr.getSources() == null ?
+				Collections.emptyList() : qr.getSources();
+		SourceQueryResults[] sortedSources = sources.toArray(new SourceQueryResults[0]);
+		Arrays.sort(sortedSources, new SourceQueryResultsBySourceRank());
+
+		_header = copyHeader(qr, true);
+		_sourceHeaders = new SourceQueryResults[sortedSources.length];
+		_sourceNames = new String[sortedSources.length];
+		_results = new SourceQueryResult[sortedSources.length][];
+		SourceQueryResultByRank rankSorter = new SourceQueryResultByRank();
+		int numberOfResults = 0;
+		for (int i = 0; i < sortedSources.length; i++){
+			SourceQueryResults sqr = sortedSources[i];
+			_sourceNames[i] = sqr.getSourceName();
+			_sourceHeaders[i] = copySourceHeader(sqr);
+			if (sqr.getResults() != null){
+				_results[i] = sqr.getResults().toArray(new SourceQueryResult[0]);
+				Arrays.sort(_results[i], rankSorter);
+				numberOfResults += _results[i].length;
+			}
+		}
+		_numberOfResults = numberOfResults;
+		_estimatedSize = estimateSize();
+	}
+
+	/**
+	 * Gets total number of results in index
+	 * @return number of results
+	 */
+	public int getNumberOfResults(){
+		return _numberOfResults;
+	}
+
+	/**
+	 * Gets estimated memory used by this index. This is a rough estimate
+	 * of the heap used by the headers and the {@link SourceQueryResult}
+	 * objects held by the index
+	 * @return size in bytes
+	 */
+	public long getEstimatedSize(){
+		return _estimatedSize;
+	}
+
+	/**
+	 * Gets a page of the results
+	 * @param source comma delimited list of sources to return. {@code null}
+	 *               or empty string means all.
+	 * @param start  starting index to return from. Starting index is 0.
+	 * @param size   Number of results to return. If 0 means all from starting index
+	 *               so to get all set both {@code start} and {@code size} to 0.
+	 * @return new QueryResults whose source results, query, input sources
+	 *         and validated genes are read only views of this index
+	 */
+	public QueryResults getQueryResults(final String source, int start, int size) {
+		Set<String> sourceSet = getSourceSet(source);
+		QueryResults qr = copyHeader(_header, false);
+		List<SourceQueryResults> sources = new ArrayList<>(_sourceHeaders.length);
+		int counter = 0;
+		for (int i = 0; i < _sourceHeaders.length; i++){
+			if (sourceSet != null && !sourceSet.contains(_sourceNames[i])){
+				continue;
+			}
+			SourceQueryResults sqr = copySourceHeader(_sourceHeaders[i]);
+			if (_results[i] != null){
+				sqr.setResults(getSlice(Arrays.asList(_results[i]), counter, start, size));
+				counter += _results[i].length;
+			}
+			sources.add(sqr);
+		}
+		qr.setSources(sources);
+		return qr;
+	}
+
+	/**
+	 * Gets QueryResults with all sources but without any results
+	 * @return new QueryResults
+	 */
+	public QueryResults getQueryStatus() {
+		QueryResults qr = copyHeader(_header, false);
+		List<SourceQueryResults> sources = new ArrayList<>(_sourceHeaders.length);
+		for (SourceQueryResults sqr : _sourceHeaders){
+			sources.add(copySourceHeader(sqr));
+		}
+		qr.setSources(sources);
+		return qr;
+	}
+
+	/**
+	 * Gets the part of {@code results} that falls within the page requested.
+	 * If there is a start offset results up to and including index
+	 * {@code size} are kept otherwise {@code size} results are kept
+	 *
+	 * @param results results of a source sorted by rank
+	 * @param counter index of the first element of {@code results} across all sources
+	 * @param start starting index of page
+	 * @param size size of page, 0 means all
+	 * @return read only view of {@code results}
+	 */
+	protected static List<SourceQueryResult> getSlice(List<SourceQueryResult> results,
+			int counter, int start, int size){
+		int[] range = getSliceRange(results.size(), counter, start, size);
+		return Collections.unmodifiableList(results.subList(range[0], range[1]));
+	}
+
+	/**
+	 * Gets range of the results of a source that falls within the page
+	 * requested using the same rules as 
+	 * {@link #getSlice(java.util.List, int, int, int)}
+	 * @param numberOfResults number of results of the source
+	 * @param counter index of the first result of the source across all sources
+	 * @param start starting index of page
+	 * @param size size of page, 0 means all
+	 * @return two element array with index of first result to include
+	 *         and index after last result to include
+	 */
+	protected static int[] getSliceRange(int numberOfResults, int counter, int start, int size){
+		long end = Long.MAX_VALUE;
+		if (size > 0){
+			end = start == 0 ? size : (long)size + 1;
+		}
+		int from = Math.min(Math.max(start - counter, 0), numberOfResults);
+		int to = (int)Math.min(Math.max(end - counter, from), numberOfResults);
+		return new int[]{from, to};
+	}
+
+	/**
+	 * Estimates memory in bytes used by the arrays and objects held by this index
+	 * @return size in bytes
+	 */
+	private long estimateSize(){
+		long size = OBJECT_OVERHEAD + getEstimatedHeaderSize(_header);
+		size += 3 * OBJECT_OVERHEAD + 3 * REFERENCE_SIZE * _sourceHeaders.length;
+		for (int i = 0; i < _sourceHeaders.length; i++){
+			size += getEstimatedSourceHeaderSize(_sourceHeaders[i]);
+			size += getEstimatedStringSize(_sourceNames[i]);
+			if (_results[i] == null){
+				continue;
+			}
+			size += OBJECT_OVERHEAD + REFERENCE_SIZE * _results[i].length;
+			for (SourceQueryResult sr : _results[i]){
+				size += getEstimatedResultSize(sr);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Gets a rough estimate of memory in bytes used by {@code sr} and
+	 * the strings, hit genes and details it references
+	 * @param sr result to measure
+	 * @return estimated size in bytes
+	 */
+	protected static long getEstimatedResultSize(SourceQueryResult sr){
+		if (sr == null){
+			return 0;
+		}
+		long size = RESULT_SIZE;
+		size += getEstimatedStringSize(sr.getDescription());
+		size += getEstimatedStringSize(sr.getNetworkUUID());
+		size += getEstimatedStringSize(sr.getImageURL());
+		size += getEstimatedStringSize(sr.getLegendURL());
+		size += getEstimatedStringSize(sr.getUrl());
+		if (sr.getHitGenes() != null){
+			size += OBJECT_OVERHEAD;
+			for (String gene : sr.getHitGenes()){
+				size += HASH_ENTRY_SIZE + getEstimatedStringSize(gene);
+			}
+		}
+		if (sr.getDetails() != null){
+			size += OBJECT_OVERHEAD;
+			for (Map.Entry<String, Object> entry : sr.getDetails().entrySet()){
+				size += HASH_ENTRY_SIZE + getEstimatedStringSize(entry.getKey());
+				Object value = entry.getValue();
+				if (value instanceof String){
+					size += getEstimatedStringSize((String)value);
+				} else if (value != null){
+					size += OBJECT_OVERHEAD;
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Gets a rough estimate of memory in bytes used by {@code val}
+	 * assuming two bytes per character
+	 * @param val string to measure
+	 * @return estimated size in bytes
+	 */
+	private static long getEstimatedStringSize(final String val){
+		if (val == null){
+			return 0;
+		}
+		return 2 * OBJECT_OVERHEAD + 2L * val.length();
+	}
+
+	/**
+	 * Gets a rough estimate of memory in bytes used by {@code qr}
+	 * ignoring its sources
+	 * @param qr header to measure
+	 * @return estimated size in bytes
+	 */
+	private static long getEstimatedHeaderSize(QueryResults qr){
+		long size = RESULT_SIZE;
+		size += getEstimatedStringSize(qr.getStatus());
+		size += getEstimatedStringSize(qr.getMessage());
+		size += getEstimatedStringSize(qr.getSource());
+		size += getEstimatedStringsSize(qr.getQuery());
+		size += getEstimatedStringsSize(qr.getInputSourceList());
+		ValidatedQueryGenes vqg = qr.getValidatedGenes();
+		if (vqg != null){
+			size += OBJECT_OVERHEAD;
+			size += getEstimatedStringsSize(vqg.getQueryGenes());
+			size += getEstimatedStringsSize(vqg.getInvalid());
+			if (vqg.getNormalizedGenes() != null){
+				size += OBJECT_OVERHEAD;
+				for (Map.Entry<String, String> entry : vqg.getNormalizedGenes().entrySet()){
+					size += HASH_ENTRY_SIZE + getEstimatedStringSize(entry.getKey())
+							+ getEstimatedStringSize(entry.getValue());
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Gets a rough estimate of memory in bytes used by {@code sqr}
+	 * ignoring its results
+	 * @param sqr source header to measure
+	 * @return estimated size in bytes
+	 */
+	private static long getEstimatedSourceHeaderSize(SourceQueryResults sqr){
+		long size = RESULT_SIZE;
+		size += getEstimatedStringSize(sqr.getSourceName());
+		size += getEstimatedStringSize(sqr.getSourceTaskId());
+		size += getEstimatedStringSize(sqr.getStatus());
+		size += getEstimatedStringSize(sqr.getMessage());
+		if (sqr.getSourceUUID() != null){
+			size += 2 * OBJECT_OVERHEAD;
+		}
+		return size;
+	}
+
+	/**
+	 * Gets a rough estimate of memory in bytes used by {@code vals}
+	 * @param vals strings to measure
+	 * @return estimated size in bytes
+	 */
+	private static long getEstimatedStringsSize(Collection<String> vals){
+		if (vals == null){
+			return 0;
+		}
+		long size = OBJECT_OVERHEAD;
+		for (String val : vals){
+			size += HASH_ENTRY_SIZE + getEstimatedStringSize(val);
+		}
+		return size;
+	}
+
+	/**
+	 * Parses comma delimited list of sources
+	 * @param source comma delimited list of sources
+	 * @return set of sources or {@code null} if {@code source} is {@code null}
+	 *         or empty
+	 */
+	protected static Set<String> getSourceSet(final String source){
+		if (source == null || source.trim().isEmpty()) {
+			return null;
+		}
+		return new HashSet<>(Arrays.asList(source.split("\\s*,\\s*")));
+	}
+
+	/**
+	 * Removes field {@code fieldName} from JSON object in {@code json}
+	 * @param mapper used to parse and serialize
+	 * @param json JSON object as bytes
+	 * @param fieldName name of field to leave out
+	 * @return JSON as bytes
+	 * @throws IOException if there was an error parsing or serializing
+	 */
+	protected static byte[] getBytesWithoutField(ObjectMapper mapper, byte[] json,
+			final String fieldName) throws IOException {
+		ObjectNode node = (ObjectNode)mapper.readTree(json);
+		node.remove(fieldName);
+		return mapper.writeValueAsBytes(node);
+	}
+
+	/**
+	 * Copies {@code src} field by field leaving out sources. When
+	 * {@code snapshot} is {@code true} the query, input sources and
+	 * validated genes are copied into read only collections, otherwise
+	 * these are assumed to already be read only and are shared
+	 * @param src QueryResults to copy
+	 * @param snapshot if {@code true} copy the collections held by {@code src}
+	 * @return new QueryResults without sources
+	 */
+	private static QueryResults copyHeader(QueryResults src, boolean snapshot){
+		QueryResults dest = new QueryResults();
+		dest.setStatus(src.getStatus());
+		dest.setMessage(src.getMessage());
+		dest.setProgress(src.getProgress());
+		dest.setWallTime(src.getWallTime());
+		dest.setStartTime(src.getStartTime());
+		dest.setNumberOfHits(src.getNumberOfHits());
+		dest.setStart(src.getStart());
+		dest.setSize(src.getSize());
+		dest.setSource(src.getSource());
+		if (snapshot == false){
+			dest.setQuery(src.getQuery());
+			dest.setInputSourceList(src.getInputSourceList());
+			dest.setValidatedGenes(src.getValidatedGenes() == null ?
+					null : copyValidatedGenes(src.getValidatedGenes(), false));
+			return dest;
+		}
+		dest.setQuery(getReadOnlyList(src.getQuery()));
+		dest.setInputSourceList(getReadOnlyList(src.getInputSourceList()));
+		if (src.getValidatedGenes() != null){
+			dest.setValidatedGenes(copyValidatedGenes(src.getValidatedGenes(), true));
+		}
+		return dest;
+	}
+
+	/**
+	 * Copies {@code src} field by field, when {@code snapshot} is
+	 * {@code true} the sets and map are copied into read only
+	 * collections otherwise they are shared
+	 * @param src ValidatedQueryGenes to copy
+	 * @param snapshot if {@code true} copy the collections held by {@code src}
+	 * @return new ValidatedQueryGenes
+	 */
+	private static ValidatedQueryGenes copyValidatedGenes(ValidatedQueryGenes src,
+			boolean snapshot){
+		ValidatedQueryGenes dest = new ValidatedQueryGenes();
+		if (snapshot == false){
+			dest.setQueryGenes(src.getQueryGenes());
+			dest.setInvalid(src.getInvalid());
+			dest.setNormalizedGenes(src.getNormalizedGenes());
+			return dest;
+		}
+		dest.setQueryGenes(src.getQueryGenes() == null ? null :
+				Collections.unmodifiableSet(new HashSet<>(src.getQueryGenes())));
+		dest.setInvalid(src.getInvalid() == null ? null :
+				Collections.unmodifiableSet(new HashSet<>(src.getInvalid())));
+		dest.setNormalizedGenes(src.getNormalizedGenes() == null ? null :
+				Collections.unmodifiableMap(new HashMap<>(src.getNormalizedGenes())));
+		return dest;
+	}
+
+	private static List<String> getReadOnlyList(List<String> vals){
+		if (vals == null){
+			return null;
+		}
+		return Collections.unmodifiableList(new ArrayList<>(vals));
+	}
+
+	/**
+	 * Copies {@code src} field by field leaving out results
+	 * @param src SourceQueryResults to copy
+	 * @return new SourceQueryResults without results
+	 */
+	private static SourceQueryResults copySourceHeader(SourceQueryResults src){
+		SourceQueryResults dest = new SourceQueryResults();
+		dest.setSourceName(src.getSourceName());
+		dest.setSourceRank(src.getSourceRank());
+		dest.setSourceUUID(src.getSourceUUID());
+		dest.setSourceTaskId(src.getSourceTaskId());
+		dest.setStatus(src.getStatus());
+		dest.setMessage(src.getMessage());
+		dest.setProgress(src.getProgress());
+		dest.setNumberOfHits(src.getNumberOfHits());
+		dest.setWallTime(src.getWallTime());
+		return dest;
+	}
+}
@@ -0,0 +1,204 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.ndexbio.enrichment.rest.model.exceptions.EnrichmentException;
+import org.ndexbio.ndexsearch.rest.RawJson;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+
+/**
+ * Fetches the results of an enrichment task as undecoded JSON and turns
+ * them into {@link org.ndexbio.ndexsearch.rest.model.SourceQueryResults}
+ * without building an object for every field. A single streaming pass
+ * over the response extracts the task status and, for each result, the
+ * top level fields of a {@link org.ndexbio.ndexsearch.rest.model.SourceQueryResult}
+ * such as rank, network UUID, description and hit genes. The result
+ * itself is kept as a {@link org.ndexbio.ndexsearch.rest.RawJson} copy
+ * of its slice of the response body under {@link #RAW_RESULT_KEY} in the
+ * details of the {@link org.ndexbio.ndexsearch.rest.model.SourceQueryResult}
+ * and is copied as is into the search response.
+ *
+ * @author churas
+ */
+public class RawEnrichmentResultReader {
+
+	/**
+	 * Key in {@link org.ndexbio.ndexsearch.rest.model.SourceQueryResult#getDetails()}
+	 * holding the result as returned by the enrichment service
+	 */
+	public static final String RAW_RESULT_KEY = "enrichmentResult";
+
+	private final String _endPoint;
+	private final Client _client;
+	private final JsonFactory _factory;
+
+	/**
+	 * Constructor
+	 * @param endPoint URL of enrichment service
+	 * @param client client used to make requests
+	 */
+	public RawEnrichmentResultReader(final String endPoint, Client client){
+		_endPoint = endPoint;
+		_client = client;
+		_factory = new JsonFactory();
+	}
+
+	/**
+	 * Gets body of results request for task with {@code taskId}
+	 * @param taskId id of enrichment task
+	 * @return undecoded JSON of all results of task
+	 * @throws EnrichmentException if the service did not return the results
+	 */
+	public byte[] getResultBytes(final String taskId) throws EnrichmentException {
+		Response res = _client.target(_endPoint).path(taskId)
+				.queryParam("start", 0).queryParam("size", 0)
+				.request(MediaType.APPLICATION_JSON).get();
+		try {
+			if (res.getStatus() != Response.Status.OK.getStatusCode()){
+				throw new EnrichmentException("Received status " + res.getStatus()
+						+ " getting results of task " + taskId);
+			}
+			return res.readEntity(byte[].class);
+		} finally {
+			res.close();
+		}
+	}
+
+	/**
+	 * Gets results of task with {@code taskId}
+	 * @param taskId id of enrichment task
+	 * @return SourceQueryResults with status, message, progress, wall time
+	 *         and results set
+	 * @throws EnrichmentException if the service did not return the results
+	 * @throws IOException if the results could not be parsed
+	 */
+	public SourceQueryResults getSourceQueryResults(final String taskId) throws EnrichmentException, IOException {
+		return parse(getResultBytes(taskId));
+	}
+
+	/**
+	 * Parses EnrichmentQueryResults JSON
+	 * @param json UTF-8 JSON
+	 * @return SourceQueryResults with status, message, progress, wall time
+	 *         and results set
+	 * @throws IOException if {@code json} is not an EnrichmentQueryResults
+	 */
+	protected SourceQueryResults parse(byte[] json) throws IOException {
+		SourceQueryResults sqRes = new SourceQueryResults();
+		List<SourceQueryResult> results = new LinkedList<>();
+		try (JsonParser p = _factory.createParser(json)){
+			if (p.nextToken() != JsonToken.START_OBJECT){
+				throw new IOException("Expected results to be a JSON object");
+			}
+			while (p.nextToken() == JsonToken.FIELD_NAME){
+				String field = p.getCurrentName();
+				JsonToken value = p.nextToken();
+				switch (field){
+					case "status":
+						sqRes.setStatus(p.getValueAsString());
+						break;
+					case "message":
+						sqRes.setMessage(p.getValueAsString());
+						break;
+					case "progress":
+						sqRes.setProgress(p.getValueAsInt());
+						break;
+					case "wallTime":
+						sqRes.setWallTime(p.getValueAsLong());
+						break;
+					case "results":
+						if (value == JsonToken.START_ARRAY){
+							while (p.nextToken() == JsonToken.START_OBJECT){
+								results.add(parseResult(p, json));
+							}
+						}
+						break;
+					default:
+						p.skipChildren();
+				}
+			}
+		}
+		sqRes.setResults(results);
+		sqRes.setNumberOfHits(results.size());
+		return sqRes;
+	}
+
+	/**
+	 * Reads top level fields of result whose START_OBJECT is the current
+	 * token, leaving {@code p} on its END_OBJECT. Fields are set as they
+	 * are when results are converted by {@link EnrichmentSourceEngine}
+	 */
+	private SourceQueryResult parseResult(JsonParser p, byte[] json) throws IOException {
+		int start = (int)p.getTokenLocation().getByteOffset();
+		SourceQueryResult sqr = new SourceQueryResult();
+		String databaseName = null;
+		String description = null;
+		while (p.nextToken() == JsonToken.FIELD_NAME){
+			String field = p.getCurrentName();
+			JsonToken value = p.nextToken();
+			switch (field){
+				case "rank":
+					sqr.setRank(p.getValueAsInt());
+					break;
+				case "networkUUID":
+					sqr.setNetworkUUID(p.getValueAsString());
+					break;
+				case "nodes":
+					sqr.setNodes(p.getValueAsInt());
+					break;
+				case "edges":
+					sqr.setEdges(p.getValueAsInt());
+					break;
+				case "databaseName":
+					databaseName = p.getValueAsString();
+					break;
+				case "description":
+					description = p.getValueAsString();
+					break;
+				case "percentOverlap":
+					sqr.setPercentOverlap(p.getValueAsInt());
+					break;
+				case "url":
+					sqr.setUrl(p.getValueAsString());
+					break;
+				case "imageURL":
+					sqr.setImageURL(p.getValueAsString());
+					break;
+				case "legendURL":
+					sqr.setLegendURL(p.getValueAsString());
+					break;
+				case "totalGeneCount":
+					sqr.setTotalGeneCount(p.getValueAsInt());
+					break;
+				case "hitGenes":
+					if (value == JsonToken.START_ARRAY){
+						Set<String> hitGenes = new LinkedHashSet<>();
+						while (p.nextToken() != JsonToken.END_ARRAY){
+							hitGenes.add(p.getValueAsString());
+							p.skipChildren();
+						}
+						sqr.setHitGenes(hitGenes);
+					}
+					break;
+				default:
+					p.skipChildren();
+			}
+		}
+		if (databaseName != null || description != null){
+			sqr.setDescription(databaseName + ": " + description);
+		}
+		int end = (int)p.getCurrentLocation().getByteOffset();
+		sqr.getDetails().put(RAW_RESULT_KEY, new RawJson(json, start, end - start));
+		return sqr;
+	}
+}
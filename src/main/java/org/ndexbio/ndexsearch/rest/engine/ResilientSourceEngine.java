@@ -0,0 +1,533 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
+import org.ndexbio.ndexsearch.rest.model.Query;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wraps a {@link SourceEngine} so a slow or broken source cannot tie up
+ * the threads calling it. Every call:
+ * <ul>
+ * <li>other then a query, is run on a thread pool owned by this source
+ *     and is abandoned if it does not finish within the call timeout.
+ *     Queries are run on the calling thread since callers already give
+ *     each source a deadline to answer, such as the source query timeout
+ *     of {@link BasicSearchEngineImpl}, a query taking longer then the
+ *     call timeout counts as failed</li>
+ * <li>is rejected if the maximum number of calls to the source are
+ *     already running, calls that timed out count until they actually
+ *     finish</li>
+ * <li>is rejected while the circuit is open. The circuit opens once the
+ *     failure threshold of consecutive calls have failed or timed out and
+ *     after the open time lets a single trial call through, closing again
+ *     if that call succeeds</li>
+ * </ul>
+ * Rejected or failed queries are reported as a
+ * {@link QueryResults#FAILED_STATUS} {@link SourceQueryResults} saying
+ * why, other calls raise a {@link SearchException}. Progress checks that
+ * are rejected or time out leave the task unchanged so it is checked
+ * again on the next poll, the task is only failed once the task deadline
+ * has passed since it was started.
+ *
+ * @author churas
+ */
+public class ResilientSourceEngine implements SourceEngine {
+
+	static Logger _logger = LoggerFactory.getLogger(ResilientSourceEngine.class);
+
+	/**
+	 * Default time in milliseconds a call is given to finish
+	 */
+	public static final long DEFAULT_CALL_TIMEOUT = 30000;
+
+	/**
+	 * Default maximum number of calls to a source running at once
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_CALLS = 16;
+
+	/**
+	 * Default number of consecutive failed calls that opens the circuit
+	 */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+	/**
+	 * Default time in milliseconds the circuit stays open before a trial
+	 * call is allowed
+	 */
+	public static final long DEFAULT_OPEN_TIME = 30000;
+
+	/**
+	 * Default time in milliseconds a task whose progress cannot be checked
+	 * is kept waiting before it is marked as failed
+	 */
+	public static final long DEFAULT_TASK_DEADLINE = 600000;
+
+	/**
+	 * Maximum number of tasks whose start time is tracked
+	 */
+	static final int MAX_TRACKED_TASKS = 10000;
+
+	/**
+	 * Raised when all permits for concurrent calls are in use
+	 */
+	static class SourceBusyException extends SearchException {
+		private static final long serialVersionUID = 1L;
+
+		SourceBusyException(final String message){
+			super(message);
+		}
+	}
+
+	/**
+	 * Raised when a call is rejected because the circuit is open or
+	 * did not finish within the call timeout
+	 */
+	static class SourceUnavailableException extends SearchException {
+		private static final long serialVersionUID = 1L;
+
+		SourceUnavailableException(final String message){
+			super(message);
+		}
+	}
+
+	private final SourceEngine _delegate;
+	private final String _sourceName;
+	private final long _callTimeout;
+	private final int _maxConcurrentCalls;
+	private final int _failureThreshold;
+	private final long _openTime;
+	private final long _taskDeadline;
+	private final ResultCache<String, Long> _taskStartTimes;
+	private final Semaphore _permits;
+	private final ExecutorService _executor;
+
+	private int _consecutiveFailures;
+	private boolean _open;
+	private long _openedAt;
+	private boolean _trialInProgress;
+
+	/**
+	 * Constructor using default settings
+	 * @param delegate source to wrap
+	 * @param sourceName name of source used in messages
+	 */
+	public ResilientSourceEngine(SourceEngine delegate, final String sourceName){
+		this(delegate, sourceName, DEFAULT_CALL_TIMEOUT, DEFAULT_MAX_CONCURRENT_CALLS,
+				DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_TIME, DEFAULT_TASK_DEADLINE);
+	}
+
+	/**
+	 * Constructor using default task deadline, values less then 1 are
+	 * replaced with the defaults
+	 * @param delegate source to wrap
+	 * @param sourceName name of source used in messages
+	 * @param callTimeout time in milliseconds a call is given to finish
+	 * @param maxConcurrentCalls maximum number of calls running at once
+	 * @param failureThreshold consecutive failed calls that open the circuit
+	 * @param openTime time in milliseconds circuit stays open
+	 */
+	public ResilientSourceEngine(SourceEngine delegate, final String sourceName,
+			long callTimeout, int maxConcurrentCalls, int failureThreshold,
+			long openTime){
+		this(delegate, sourceName, callTimeout, maxConcurrentCalls,
+				failureThreshold, openTime, DEFAULT_TASK_DEADLINE);
+	}
+
+	/**
+	 * Constructor, values less then 1 are replaced with the defaults
+	 * @param delegate source to wrap
+	 * @param sourceName name of source used in messages
+	 * @param callTimeout time in milliseconds a call is given to finish
+	 * @param maxConcurrentCalls maximum number of calls running at once
+	 * @param failureThreshold consecutive failed calls that open the circuit
+	 * @param openTime time in milliseconds circuit stays open
+	 * @param taskDeadline time in milliseconds after a task is started
+	 *        that it is failed if its progress cannot be checked
+	 */
+	public ResilientSourceEngine(SourceEngine delegate, final String sourceName,
+			long callTimeout, int maxConcurrentCalls, int failureThreshold,
+			long openTime, long taskDeadline){
+		_delegate = delegate;
+		_sourceName = sourceName;
+		_callTimeout = callTimeout < 1 ? DEFAULT_CALL_TIMEOUT : callTimeout;
+		_maxConcurrentCalls = maxConcurrentCalls < 1 ? DEFAULT_MAX_CONCURRENT_CALLS : maxConcurrentCalls;
+		_failureThreshold = failureThreshold < 1 ? DEFAULT_FAILURE_THRESHOLD : failureThreshold;
+		_openTime = openTime < 1 ? DEFAULT_OPEN_TIME : openTime;
+		_taskDeadline = taskDeadline < 1 ? DEFAULT_TASK_DEADLINE : taskDeadline;
+		_taskStartTimes = new ResultCache<>(MAX_TRACKED_TASKS, 0);
+		_permits = new Semaphore(_maxConcurrentCalls);
+		AtomicInteger threadCount = new AtomicInteger(0);
+		_executor = Executors.newCachedThreadPool((r) -> {
+			Thread t = new Thread(r, "source-" + sourceName + "-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Gets the wrapped source
+	 * @return source
+	 */
+	public SourceEngine getDelegate(){
+		return _delegate;
+	}
+
+	/**
+	 * Tells caller if calls are currently being rejected due to failures
+	 * @return {@code true} if circuit is open
+	 */
+	public synchronized boolean isCircuitOpen(){
+		return _open;
+	}
+
+	/**
+	 * Gets number of calls to source currently running
+	 * @return number of calls
+	 */
+	public int getNumberOfRunningCalls(){
+		return _maxConcurrentCalls - _permits.availablePermits();
+	}
+
+	@Override
+	public SourceQueryResults getSourceQueryResults(final Query query) {
+		try {
+			SourceQueryResults sqr = callOnCallingThread("query",
+					() -> _delegate.getSourceQueryResults(query),
+					(res) -> res == null || QueryResults.FAILED_STATUS.equals(res.getStatus()));
+			if (sqr != null && sqr.getSourceTaskId() != null && sqr.getProgress() != 100){
+				_taskStartTimes.put(sqr.getSourceTaskId(), System.currentTimeMillis());
+			}
+			return sqr;
+		} catch(SearchException se){
+			_logger.error(se.getMessage());
+			SourceQueryResults sqr = new SourceQueryResults();
+			sqr.setSourceName(_sourceName);
+			sqr.setSourceRank(0);
+			setFailed(sqr, se.getMessage());
+			return sqr;
+		}
+	}
+
+	/**
+	 * Runs update on a copy of {@code sRes} which is copied back once the
+	 * call finishes so a call that times out cannot change {@code sRes}
+	 * later. If the call fails {@code sRes} is left unchanged
+	 * @param sRes SourceResult to update
+	 */
+	@Override
+	public void updateSourceResult(SourceResult sRes) {
+		SourceResult work = copySourceResult(sRes, new SourceResult());
+		try {
+			call("update source", () -> {
+				_delegate.updateSourceResult(work);
+				return work;
+			}, null);
+			copySourceResult(work, sRes);
+		} catch(SearchException se){
+			_logger.error(se.getMessage());
+		}
+	}
+
+	/**
+	 * Runs update on a copy of {@code sqRes} which is copied back once the
+	 * call finishes so a call that times out cannot change {@code sqRes}
+	 * later. If too many calls are running, the call times out or the
+	 * circuit is open {@code sqRes} is left unchanged so it is checked
+	 * again on the next poll unless the task deadline has passed in which
+	 * case {@code sqRes} is marked as failed
+	 * @param sqRes SourceQueryResults to update
+	 */
+	@Override
+	public void updateSourceQueryResults(SourceQueryResults sqRes) {
+		if (sqRes.getProgress() == 100){
+			return;
+		}
+		SourceQueryResults work = copySourceQueryResults(sqRes, new SourceQueryResults());
+		try {
+			call("progress check", () -> {
+				_delegate.updateSourceQueryResults(work);
+				return work;
+			}, null);
+			copySourceQueryResults(work, sqRes);
+			if (sqRes.getProgress() == 100 && sqRes.getSourceTaskId() != null){
+				_taskStartTimes.remove(sqRes.getSourceTaskId());
+			}
+		} catch(SourceBusyException sbe){
+			_logger.warn(sbe.getMessage());
+		} catch(SourceUnavailableException sue){
+			if (isPastTaskDeadline(sqRes.getSourceTaskId()) == false){
+				_logger.warn(sue.getMessage());
+				return;
+			}
+			_logger.error(sue.getMessage() + ", giving up on task after "
+					+ _taskDeadline + " ms");
+			_taskStartTimes.remove(sqRes.getSourceTaskId());
+			setFailed(sqRes, sue.getMessage());
+		} catch(SearchException se){
+			_logger.error(se.getMessage());
+			if (sqRes.getSourceTaskId() != null){
+				_taskStartTimes.remove(sqRes.getSourceTaskId());
+			}
+			setFailed(sqRes, se.getMessage());
+		}
+	}
+
+	@Override
+	public void delete(final String id) throws SearchException {
+		if (id != null){
+			_taskStartTimes.remove(id);
+		}
+		call("delete", () -> {
+			_delegate.delete(id);
+			return null;
+		}, null);
+	}
+
+	@Override
+	public InputStream getOverlaidNetworkAsCXStream(final String id, final String networkId)
+			throws SearchException {
+		return call("network overlay",
+				() -> _delegate.getOverlaidNetworkAsCXStream(id, networkId), null);
+	}
+
+	@Override
+	public Object getDatabases() throws SearchException {
+		return call("databases", () -> _delegate.getDatabases(), null);
+	}
+
+	@Override
+	public void shutdown() {
+		_executor.shutdownNow();
+		_delegate.shutdown();
+	}
+
+	/**
+	 * Runs {@code callable} on the thread pool of this source waiting up to
+	 * the call timeout for it to finish
+	 * @param <T> type of result
+	 * @param operation name of operation for messages
+	 * @param callable the call
+	 * @param isFailure if not {@code null} results for which this returns
+	 *        {@code true} count as a failed call
+	 * @return result of call
+	 * @throws SourceBusyException if too many calls are running
+	 * @throws SourceUnavailableException if the circuit is open or the
+	 *         call timed out
+	 * @throws SearchException if the call raised an exception
+	 */
+	private <T> T call(final String operation, Callable<T> callable,
+			Predicate<T> isFailure) throws SearchException {
+		acquirePermit(operation);
+		Future<T> future;
+		try {
+			future = _executor.submit(() -> {
+				try {
+					return callable.call();
+				} finally {
+					_permits.release();
+				}
+			});
+		} catch(RejectedExecutionException ree){
+			_permits.release();
+			recordFailure();
+			throw new SearchException(_sourceName + " " + operation
+					+ " rejected, source is shut down");
+		}
+		try {
+			T result = future.get(_callTimeout, TimeUnit.MILLISECONDS);
+			if (isFailure != null && isFailure.test(result)){
+				recordFailure();
+			} else {
+				recordSuccess();
+			}
+			return result;
+		} catch(TimeoutException te){
+			future.cancel(true);
+			recordFailure();
+			throw new SourceUnavailableException(_sourceName + " " + operation
+					+ " did not finish within " + _callTimeout + " ms");
+		} catch(ExecutionException ee){
+			recordFailure();
+			Throwable cause = ee.getCause();
+			if (cause instanceof SearchException){
+				throw (SearchException)cause;
+			}
+			throw new SearchException(_sourceName + " " + operation
+					+ " failed : " + cause.getMessage());
+		} catch(InterruptedException ie){
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new SearchException(_sourceName + " " + operation
+					+ " interrupted");
+		}
+	}
+
+	/**
+	 * Runs {@code callable} on the calling thread, the caller is expected
+	 * to give up on the call once its own deadline passes. A call that
+	 * took longer then the call timeout counts as failed
+	 * @param <T> type of result
+	 * @param operation name of operation for messages
+	 * @param callable the call
+	 * @param isFailure if not {@code null} results for which this returns
+	 *        {@code true} count as a failed call
+	 * @return result of call
+	 * @throws SourceBusyException if too many calls are running
+	 * @throws SourceUnavailableException if the circuit is open
+	 * @throws SearchException if the call raised an exception
+	 */
+	private <T> T callOnCallingThread(final String operation, Callable<T> callable,
+			Predicate<T> isFailure) throws SearchException {
+		acquirePermit(operation);
+		long startTime = System.currentTimeMillis();
+		T result;
+		try {
+			result = callable.call();
+		} catch(SearchException se){
+			recordFailure();
+			throw se;
+		} catch(Exception ex){
+			recordFailure();
+			throw new SearchException(_sourceName + " " + operation
+					+ " failed : " + ex.getMessage());
+		} finally {
+			_permits.release();
+		}
+		long duration = System.currentTimeMillis() - startTime;
+		if (duration > _callTimeout){
+			_logger.warn("{} {} took {} ms, longer then call timeout of {} ms",
+					new Object[]{_sourceName, operation, duration, _callTimeout});
+			recordFailure();
+		} else if (isFailure != null && isFailure.test(result)){
+			recordFailure();
+		} else {
+			recordSuccess();
+		}
+		return result;
+	}
+
+	/**
+	 * Takes a permit for a call
+	 * @param operation name of operation for messages
+	 * @throws SourceBusyException if too many calls are running
+	 * @throws SourceUnavailableException if the circuit is open
+	 */
+	private void acquirePermit(final String operation) throws SearchException {
+		if (_permits.tryAcquire() == false){
+			throw new SourceBusyException(_sourceName + " " + operation
+					+ " rejected, " + _maxConcurrentCalls + " calls already running");
+		}
+		if (allowCall() == false){
+			_permits.release();
+			throw new SourceUnavailableException(_sourceName + " " + operation
+					+ " rejected, source is unavailable after "
+					+ _failureThreshold + " consecutive failures");
+		}
+	}
+
+	/**
+	 * Tells caller if a call can be made, if the circuit is open and the
+	 * open time has elapsed a single trial call is allowed
+	 * @return {@code true} if call can be made
+	 */
+	private synchronized boolean allowCall(){
+		if (_open == false){
+			return true;
+		}
+		if (_trialInProgress || System.currentTimeMillis() - _openedAt < _openTime){
+			return false;
+		}
+		_trialInProgress = true;
+		return true;
+	}
+
+	/**
+	 * Tells caller if the task deadline has passed for task with id
+	 * {@code sourceTaskId}. Tasks not started through this object are
+	 * timed from the first time their progress could not be checked
+	 * @param sourceTaskId id of task, if {@code null} the deadline is
+	 *        considered passed since the task cannot be tracked
+	 * @return {@code true} if deadline has passed
+	 */
+	private boolean isPastTaskDeadline(final String sourceTaskId){
+		if (sourceTaskId == null){
+			return true;
+		}
+		long now = System.currentTimeMillis();
+		Long startTime = _taskStartTimes.get(sourceTaskId);
+		if (startTime == null){
+			_taskStartTimes.put(sourceTaskId, now);
+			return false;
+		}
+		return now - startTime >= _taskDeadline;
+	}
+
+	private synchronized void recordSuccess(){
+		if (_open){
+			_logger.info("Circuit for {} closed", _sourceName);
+		}
+		_consecutiveFailures = 0;
+		_open = false;
+		_trialInProgress = false;
+	}
+
+	private synchronized void recordFailure(){
+		_consecutiveFailures++;
+		if (_trialInProgress || (_open == false && _consecutiveFailures >= _failureThreshold)){
+			_logger.warn("Circuit for {} opened after {} consecutive failures",
+					_sourceName, _consecutiveFailures);
+			_open = true;
+			_openedAt = System.currentTimeMillis();
+		}
+		_trialInProgress = false;
+	}
+
+	private void setFailed(SourceQueryResults sqr, final String message){
+		sqr.setMessage(message);
+		sqr.setStatus(QueryResults.FAILED_STATUS);
+		sqr.setProgress(100);
+	}
+
+	private SourceQueryResults copySourceQueryResults(SourceQueryResults src,
+			SourceQueryResults dest){
+		dest.setSourceName(src.getSourceName());
+		dest.setSourceRank(src.getSourceRank());
+		dest.setSourceUUID(src.getSourceUUID());
+		dest.setSourceTaskId(src.getSourceTaskId());
+		dest.setStatus(src.getStatus());
+		dest.setMessage(src.getMessage());
+		dest.setProgress(src.getProgress());
+		dest.setNumberOfHits(src.getNumberOfHits());
+		dest.setWallTime(src.getWallTime());
+		dest.setResults(src.getResults());
+		return dest;
+	}
+
+	private SourceResult copySourceResult(SourceResult src, SourceResult dest){
+		dest.setName(src.getName());
+		dest.setUuid(src.getUuid());
+		dest.setDescription(src.getDescription());
+		dest.setEndPoint(src.getEndPoint());
+		dest.setVersion(src.getVersion());
+		dest.setStatus(src.getStatus());
+		dest.setNumberOfNetworks(src.getNumberOfNetworks());
+		dest.setDatabases(src.getDatabases());
+		return dest;
+	}
+}
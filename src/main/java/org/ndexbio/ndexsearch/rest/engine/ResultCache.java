@@ -0,0 +1,275 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread safe least recently used cache with time based expiration.
+ * Each value is given a weight by the weigher passed into the constructor
+ * and least recently used entries are evicted once the total weight
+ * exceeds the maximum weight. By default every entry has a weight of 1
+ * making the maximum weight the maximum number of entries. An optional
+ * listener is told about values dropped by the cache, that is values
+ * evicted, found expired or too heavy to cache, but not values removed
+ * or replaced by the caller. The listener is called without holding the
+ * lock of the cache.
+ *
+ * @author churas
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+public class ResultCache<K, V> {
+
+	private final LinkedHashMap<K, CacheEntry<V>> _cache;
+	private final ToLongFunction<V> _weigher;
+	private final Consumer<V> _dropListener;
+	private final long _maxWeight;
+	private final long _timeToLive;
+	private long _totalWeight;
+	private final AtomicLong _hitCount;
+	private final AtomicLong _missCount;
+	private final AtomicLong _evictionCount;
+
+	/**
+	 * Constructor where every entry has a weight of 1
+	 * @param maxEntries maximum number of entries. If 0 or less nothing is cached
+	 * @param timeToLive time in milliseconds an entry is valid. If 0 or less
+	 *        entries never expire
+	 */
+	public ResultCache(long maxEntries, long timeToLive){
+		this(maxEntries, timeToLive, (v) -> 1L);
+	}
+
+	/**
+	 * Constructor
+	 * @param maxWeight maximum total weight of entries. If 0 or less nothing is cached
+	 * @param timeToLive time in milliseconds an entry is valid. If 0 or less
+	 *        entries never expire
+	 * @param weigher computes weight of a value
+	 */
+	public ResultCache(long maxWeight, long timeToLive, ToLongFunction<V> weigher){
+		this(maxWeight, timeToLive, weigher, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param maxWeight maximum total weight of entries. If 0 or less nothing is cached
+	 * @param timeToLive time in milliseconds an entry is valid. If 0 or less
+	 *        entries never expire
+	 * @param weigher computes weight of a value
+	 * @param dropListener told about each value dropped by the cache, can
+	 *        be {@code null}
+	 */
+	public ResultCache(long maxWeight, long timeToLive, ToLongFunction<V> weigher,
+			Consumer<V> dropListener){
+		_cache = new LinkedHashMap<>(16, 0.75f, true);
+		_maxWeight = maxWeight;
+		_timeToLive = timeToLive;
+		_weigher = weigher;
+		_dropListener = dropListener;
+		_totalWeight = 0;
+		_hitCount = new AtomicLong(0);
+		_missCount = new AtomicLong(0);
+		_evictionCount = new AtomicLong(0);
+	}
+
+	/**
+	 * Gets value for {@code key}
+	 * @param key key to look up
+	 * @return value or {@code null} if not found or expired
+	 */
+	public V get(final K key){
+		V expired;
+		synchronized(this){
+			CacheEntry<V> entry = _cache.get(key);
+			if (entry == null){
+				_missCount.incrementAndGet();
+				return null;
+			}
+			if (isExpired(entry) == false){
+				_hitCount.incrementAndGet();
+				return entry.getValue();
+			}
+			removeEntry(key);
+			_missCount.incrementAndGet();
+			expired = entry.getValue();
+		}
+		notifyDropped(expired);
+		return null;
+	}
+
+	/**
+	 * Adds {@code value} to cache evicting least recently used entries
+	 * if maximum weight is exceeded. Values heavier then the maximum weight
+	 * are not cached
+	 * @param key key for value
+	 * @param value value to cache
+	 */
+	public void put(final K key, final V value){
+		List<V> dropped = new ArrayList<>();
+		synchronized(this){
+			removeEntry(key);
+			long weight = _weigher.applyAsLong(value);
+			if (weight > _maxWeight){
+				dropped.add(value);
+			} else {
+				_cache.put(key, new CacheEntry<>(value, weight));
+				_totalWeight += weight;
+				Iterator<Map.Entry<K, CacheEntry<V>>> itr = _cache.entrySet().iterator();
+				while (_totalWeight > _maxWeight && itr.hasNext()){
+					Map.Entry<K, CacheEntry<V>> eldest = itr.next();
+					itr.remove();
+					_totalWeight -= eldest.getValue().getWeight();
+					_evictionCount.incrementAndGet();
+					dropped.add(eldest.getValue().getValue());
+				}
+			}
+		}
+		for (V val : dropped){
+			notifyDropped(val);
+		}
+	}
+
+	/**
+	 * Removes all expired entries. Expired entries are otherwise only
+	 * removed when looked up or evicted
+	 */
+	public void removeExpired(){
+		List<V> dropped = new ArrayList<>();
+		synchronized(this){
+			Iterator<CacheEntry<V>> itr = _cache.values().iterator();
+			while (itr.hasNext()){
+				CacheEntry<V> entry = itr.next();
+				if (isExpired(entry)){
+					itr.remove();
+					_totalWeight -= entry.getWeight();
+					dropped.add(entry.getValue());
+				}
+			}
+		}
+		for (V val : dropped){
+			notifyDropped(val);
+		}
+	}
+
+	/**
+	 * Removes entry for {@code key}
+	 * @param key key to remove
+	 */
+	public synchronized void remove(final K key){
+		removeEntry(key);
+	}
+
+	/**
+	 * Removes all entries
+	 */
+	public synchronized void invalidateAll(){
+		_cache.clear();
+		_totalWeight = 0;
+	}
+
+	/**
+	 * Gets number of entries in cache
+	 * @return number of entries
+	 */
+	public synchronized int size(){
+		return _cache.size();
+	}
+
+	/**
+	 * Gets total weight of entries in cache
+	 * @return total weight
+	 */
+	public synchronized long getWeight(){
+		return _totalWeight;
+	}
+
+	/**
+	 * Gets number of successful lookups
+	 * @return number of hits
+	 */
+	public long getHitCount(){
+		return _hitCount.get();
+	}
+
+	/**
+	 * Gets number of failed lookups including those of expired entries
+	 * @return number of misses
+	 */
+	public long getMissCount(){
+		return _missCount.get();
+	}
+
+	/**
+	 * Gets number of entries evicted to stay under maximum weight
+	 * @return number of evictions
+	 */
+	public long getEvictionCount(){
+		return _evictionCount.get();
+	}
+
+	/**
+	 * Gets fraction of lookups that were hits
+	 * @return value between 0 and 1
+	 */
+	public double getHitRatio(){
+		long hits = _hitCount.get();
+		long total = hits + _missCount.get();
+		if (total == 0){
+			return 0.0;
+		}
+		return (double)hits/(double)total;
+	}
+
+	private void removeEntry(final K key){
+		CacheEntry<V> entry = _cache.remove(key);
+		if (entry != null){
+			_totalWeight -= entry.getWeight();
+		}
+	}
+
+	private void notifyDropped(V value){
+		if (_dropListener != null){
+			_dropListener.accept(value);
+		}
+	}
+
+	private boolean isExpired(CacheEntry<V> entry){
+		return _timeToLive > 0
+				&& System.currentTimeMillis() - entry.getCreationTime() > _timeToLive;
+	}
+
+	/**
+	 * Holds cached value along with its weight and creation time
+	 * @param <V> type of value
+	 */
+	private static class CacheEntry<V> {
+		private final V _value;
+		private final long _weight;
+		private final long _creationTime;
+
+		CacheEntry(V value, long weight){
+			_value = value;
+			_weight = weight;
+			_creationTime = System.currentTimeMillis();
+		}
+
+		V getValue(){
+			return _value;
+		}
+
+		long getWeight(){
+			return _weight;
+		}
+
+		long getCreationTime(){
+			return _creationTime;
+		}
+	}
+}
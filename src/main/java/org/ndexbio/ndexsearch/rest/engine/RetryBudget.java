@@ -0,0 +1,76 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+/**
+ * Limits retries, and hedged calls, to a fraction of the calls made so
+ * that retrying can not multiply the load on a source that is already
+ * failing. Every call adds {@code percent/100} of a token to the budget, up
+ * to a maximum, and every retry needs a whole token. The budget starts
+ * full so a few retries are possible right after startup.
+ *
+ * A single budget is meant to be shared by all sources.
+ *
+ * @author churas
+ */
+public class RetryBudget {
+
+	/**
+	 * Default percent of calls that can be retried
+	 */
+	public static final int DEFAULT_PERCENT = 10;
+
+	/**
+	 * Default maximum number of retries that can be saved up
+	 */
+	public static final int DEFAULT_MAX_TOKENS = 10;
+
+	private final double _deposit;
+	private final double _maxTokens;
+	private double _tokens;
+
+	/**
+	 * Constructor using {@link #DEFAULT_PERCENT} and {@link #DEFAULT_MAX_TOKENS}
+	 */
+	public RetryBudget(){
+		this(DEFAULT_PERCENT, DEFAULT_MAX_TOKENS);
+	}
+
+	/**
+	 * Constructor
+	 * @param percent percent of calls that can be retried, values less
+	 *        then 0 are replaced with {@link #DEFAULT_PERCENT}
+	 * @param maxTokens maximum number of retries that can be saved up,
+	 *        values less then 1 are replaced with {@link #DEFAULT_MAX_TOKENS}
+	 */
+	public RetryBudget(int percent, int maxTokens){
+		_deposit = (percent < 0 ? DEFAULT_PERCENT : percent) / 100.0;
+		_maxTokens = maxTokens < 1 ? DEFAULT_MAX_TOKENS : maxTokens;
+		_tokens = _maxTokens;
+	}
+
+	/**
+	 * Records a first attempt of a call, earning part of a retry
+	 */
+	public synchronized void recordCall(){
+		_tokens = Math.min(_maxTokens, _tokens + _deposit);
+	}
+
+	/**
+	 * Takes a retry from the budget if one is available
+	 * @return {@code true} if retry can be made, {@code false} otherwise
+	 */
+	public synchronized boolean tryAcquireRetry(){
+		if (_tokens < 1){
+			return false;
+		}
+		_tokens -= 1;
+		return true;
+	}
+
+	/**
+	 * Gets number of retries that could be made right now
+	 * @return number of retries
+	 */
+	public synchronized int getAvailableRetries(){
+		return (int)_tokens;
+	}
+}
@@ -6,6 +6,9 @@
 package org.ndexbio.ndexsearch.rest.engine;
 
 import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.ndexbio.enrichment.rest.model.DatabaseResults;
 import org.ndexbio.enrichment.rest.model.exceptions.EnrichmentException;
@@ -29,6 +32,15 @@ public interface SearchEngine extends Runnable {
      */
     public String query(Query query) throws SearchException;
     
+    /**
+     * Submits several queries for processing in one call
+     * @param queries queries to process
+     * @return UUID as a string for each query in same order as {@code queries}
+     * @throws SearchException if any query is invalid in which case none
+     *         of the queries are submitted
+     */
+    public List<String> queryBatch(List<Query> queries) throws SearchException;
+    
     /**
      * Gets a summary of databases in engine
      * @return SourceResults object
@@ -55,6 +67,17 @@ public interface SearchEngine extends Runnable {
      */
     public QueryStatus getQueryStatus(final String id) throws SearchException;
     
+    /**
+     * Gets a future that completes the next time the status or progress
+     * of a task, or the status, progress or number of hits of one of its
+     * sources changes. The future is shared by all callers waiting on 
+     * the task and must not be completed by the caller
+     * @param id
+     * @return future that is already complete if the task is finished
+     *         or is not running
+     */
+    public CompletableFuture<Void> getQueryChangeFuture(final String id);
+    
     /**
      * Deletes query
      * @param id
@@ -79,6 +102,13 @@ public interface SearchEngine extends Runnable {
      */
 	public DatabaseResults getEnrichmentDatabases() throws SearchException;
     
+    /**
+     * Gets counters and current values describing the load on the engine,
+     * such as hits and misses of its caches
+     * @return map of metric name to value
+     */
+    public Map<String, Number> getMetrics();
+    
     /**
      * Tells implementing objects to shutdown
      */
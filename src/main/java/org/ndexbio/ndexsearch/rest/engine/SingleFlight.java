@@ -0,0 +1,106 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses concurrent calls for the same key into a single call. The
+ * first caller for a key runs the call while any other callers for that
+ * key arriving before it finishes wait and receive the same result, or
+ * the same exception. Once the call finishes the next caller for the key
+ * runs a new call, nothing is cached. Since callers may receive the
+ * exception thrown by another caller's call, all calls for a key should
+ * declare the same exception type.
+ *
+ * @author churas
+ * @param <K> type of key
+ * @param <V> type of result
+ */
+public class SingleFlight<K, V> {
+
+	/**
+	 * Call whose result can be shared
+	 * @param <V> type of result
+	 * @param <E> type of exception thrown by call
+	 */
+	@FunctionalInterface
+	public interface Call<V, E extends Exception> {
+
+		/**
+		 * Runs the call
+		 * @return result
+		 * @throws E if call failed
+		 */
+		V call() throws E;
+	}
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> _inFlight;
+	private final AtomicLong _sharedCount;
+
+	/**
+	 * Constructor
+	 */
+	public SingleFlight(){
+		_inFlight = new ConcurrentHashMap<>();
+		_sharedCount = new AtomicLong(0);
+	}
+
+	/**
+	 * Runs {@code call} unless a call for {@code key} is already running
+	 * in which case this method waits for that call and returns its result
+	 * @param <E> type of exception thrown by call
+	 * @param key key identifying the call
+	 * @param call the call to run
+	 * @return result of call
+	 * @throws E if the call, run by this thread or another, failed
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends Exception> V execute(final K key, Call<V, E> call) throws E {
+		CompletableFuture<V> mine = new CompletableFuture<>();
+		CompletableFuture<V> running = _inFlight.putIfAbsent(key, mine);
+		if (running != null){
+			_sharedCount.incrementAndGet();
+			try {
+				return running.join();
+			} catch(CompletionException ce){
+				Throwable cause = ce.getCause();
+				if (cause instanceof RuntimeException){
+					throw (RuntimeException)cause;
+				}
+				if (cause instanceof Error){
+					throw (Error)cause;
+				}
+				throw (E)cause;
+			}
+		}
+		try {
+			V result = call.call();
+			mine.complete(result);
+			return result;
+		} catch(Throwable t){
+			mine.completeExceptionally(t);
+			throw t;
+		} finally {
+			_inFlight.remove(key, mine);
+		}
+	}
+
+	/**
+	 * Gets number of calls that received the result of a call run by
+	 * another caller
+	 * @return number of shared calls
+	 */
+	public long getSharedCount(){
+		return _sharedCount.get();
+	}
+
+	/**
+	 * Gets number of calls currently running
+	 * @return number of calls
+	 */
+	public int getInFlightCount(){
+		return _inFlight.size();
+	}
+}
@@ -0,0 +1,394 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.ProcessingException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries calls to a remote source that fail with the exception declared
+ * by the call or with a {@link javax.ws.rs.ProcessingException}, waiting a
+ * random time up to an exponentially growing delay between attempts. Every
+ * retry must be paid for from a {@link RetryBudget} shared by all sources
+ * so retries stop once a large share of calls are failing.
+ *
+ * Calls that must not reach the source twice, such as ones creating a
+ * remote task, are only retried if they failed before the request could
+ * reach the source, for example because no connection could be made.
+ *
+ * Idempotent reads can also be hedged: if an attempt has not finished
+ * after the 95th percentile of recent latencies for that operation a
+ * second identical attempt is started, also paid for from the budget, and
+ * whichever finishes successfully first is used.
+ *
+ * @author churas
+ */
+public class SourceCallRetrier {
+
+	static Logger _logger = LoggerFactory.getLogger(SourceCallRetrier.class);
+
+	/**
+	 * Default maximum number of attempts made for a call
+	 */
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+	/**
+	 * Default delay in milliseconds before first retry, doubled for each
+	 * later retry
+	 */
+	public static final long DEFAULT_BASE_DELAY = 100;
+
+	/**
+	 * Longest delay in milliseconds between two attempts
+	 */
+	public static final long MAX_DELAY = 2000;
+
+	/**
+	 * Percentile of recent latencies after which a read is hedged
+	 */
+	public static final int HEDGE_PERCENTILE = 95;
+
+	/**
+	 * Number of latencies an operation needs before its reads are hedged
+	 */
+	public static final int MIN_HEDGE_SAMPLES = 20;
+
+	/**
+	 * Number of recent latencies kept for each operation
+	 */
+	public static final int LATENCY_WINDOW = 100;
+
+	/**
+	 * Number of causes of an exception examined to find a connect failure
+	 */
+	private static final int MAX_CAUSE_DEPTH = 10;
+
+	/**
+	 * Call to a source
+	 * @param <T> type of result
+	 * @param <E> type of exception thrown by call
+	 */
+	@FunctionalInterface
+	public interface Call<T, E extends Exception> {
+
+		/**
+		 * Runs the call
+		 * @return result
+		 * @throws E if call failed
+		 */
+		T call() throws E;
+	}
+
+	/**
+	 * Most recent latencies of successful attempts of an operation
+	 */
+	private static class LatencyWindow {
+		private final long[] _latencies = new long[LATENCY_WINDOW];
+		private int _count = 0;
+
+		synchronized void add(long latency){
+			_latencies[_count % LATENCY_WINDOW] = latency;
+			_count++;
+		}
+
+		/**
+		 * @return latency at percentile passed in or -1 if there are
+		 *         fewer then {@link #MIN_HEDGE_SAMPLES} latencies
+		 */
+		synchronized long getPercentile(int percentile){
+			int size = Math.min(_count, LATENCY_WINDOW);
+			if (size < MIN_HEDGE_SAMPLES){
+				return -1;
+			}
+			long[] sorted = Arrays.copyOf(_latencies, size);
+			Arrays.sort(sorted);
+			return sorted[Math.min(size - 1, (size * percentile) / 100)];
+		}
+	}
+
+	private final String _sourceName;
+	private final RetryBudget _budget;
+	private final int _maxAttempts;
+	private final long _baseDelay;
+	private final boolean _hedgeReads;
+	private final ConcurrentHashMap<String, LatencyWindow> _latencies;
+	private final AtomicLong _retryCount;
+	private final AtomicLong _hedgeCount;
+	private ExecutorService _hedgeExecutor;
+
+	/**
+	 * Constructor
+	 * @param sourceName name of source, used in log messages
+	 * @param budget budget retries and hedged calls are paid from
+	 * @param maxAttempts maximum number of attempts made for a call, 1
+	 *        disables retries. Values less then 1 are replaced with
+	 *        {@link #DEFAULT_MAX_ATTEMPTS}
+	 * @param baseDelay delay in milliseconds before first retry, values
+	 *        less then 1 are replaced with {@link #DEFAULT_BASE_DELAY}
+	 * @param hedgeReads if {@code true} slow idempotent reads are hedged
+	 */
+	public SourceCallRetrier(final String sourceName, RetryBudget budget,
+			int maxAttempts, long baseDelay, boolean hedgeReads){
+		_sourceName = sourceName;
+		_budget = budget;
+		_maxAttempts = maxAttempts < 1 ? DEFAULT_MAX_ATTEMPTS : maxAttempts;
+		_baseDelay = baseDelay < 1 ? DEFAULT_BASE_DELAY : baseDelay;
+		_hedgeReads = hedgeReads;
+		_latencies = new ConcurrentHashMap<>();
+		_retryCount = new AtomicLong(0);
+		_hedgeCount = new AtomicLong(0);
+	}
+
+	/**
+	 * Runs {@code call} retrying it on failure. Use for calls that are
+	 * not safe to run twice at the same time
+	 * @param <T> type of result
+	 * @param <E> type of exception thrown by call
+	 * @param operation name of operation, used in log messages
+	 * @param call the call
+	 * @return result of call
+	 * @throws E if the last attempt failed
+	 */
+	public <T, E extends Exception> T call(final String operation,
+			Call<T, E> call) throws E {
+		return run(operation, call, false, false);
+	}
+
+	/**
+	 * Runs {@code call} retrying it only if it failed before the request
+	 * reached the source as determined by {@link #isConnectFailure(java.lang.Throwable)}.
+	 * Use for calls that are not idempotent, a failure after the request
+	 * was sent, such as a read timeout, may mean the source already acted
+	 * on it so a retry could, for example, create a duplicate remote task
+	 * @param <T> type of result
+	 * @param <E> type of exception thrown by call
+	 * @param operation name of operation, used in log messages
+	 * @param call the call
+	 * @return result of call
+	 * @throws E if the last attempt failed
+	 */
+	public <T, E extends Exception> T callNonIdempotent(final String operation,
+			Call<T, E> call) throws E {
+		return run(operation, call, false, true);
+	}
+
+	/**
+	 * Runs {@code call} retrying it on failure and, if enabled, hedging
+	 * slow attempts. Use only for calls that can safely be run more then
+	 * once at the same time
+	 * @param <T> type of result
+	 * @param <E> type of exception thrown by call
+	 * @param operation name of operation, used to track latencies
+	 * @param call the call
+	 * @return result of call
+	 * @throws E if the last attempt failed
+	 */
+	public <T, E extends Exception> T callIdempotent(final String operation,
+			Call<T, E> call) throws E {
+		return run(operation, call, _hedgeReads, false);
+	}
+
+	/**
+	 * Tells if {@code ex} or one of its causes shows the request never
+	 * reached the source because no connection could be made
+	 * @param ex exception to examine
+	 * @return {@code true} if this is a connect failure
+	 */
+	protected static boolean isConnectFailure(Throwable ex){
+		Throwable cause = ex;
+		for (int i = 0; cause != null && i < MAX_CAUSE_DEPTH; i++){
+			if (cause instanceof ConnectException
+					|| cause instanceof ConnectTimeoutException
+					|| cause instanceof NoRouteToHostException
+					|| cause instanceof UnknownHostException){
+				return true;
+			}
+			cause = cause.getCause();
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T, E extends Exception> T run(final String operation,
+			Call<T, E> call, boolean hedge, boolean connectFailuresOnly) throws E {
+		_budget.recordCall();
+		int attempt = 1;
+		while (true){
+			try {
+				long hedgeDelay = hedge ? getHedgeDelay(operation) : -1;
+				if (hedgeDelay >= 0){
+					return attemptHedged(operation, call, hedgeDelay);
+				}
+				return timedAttempt(operation, call);
+			} catch(RuntimeException re){
+				if (!(re instanceof ProcessingException)
+						|| (connectFailuresOnly && !isConnectFailure(re))
+						|| !backOff(operation, attempt, re)){
+					throw re;
+				}
+			} catch(Exception ex){
+				if ((connectFailuresOnly && !isConnectFailure(ex))
+						|| !backOff(operation, attempt, ex)){
+					throw (E)ex;
+				}
+			}
+			attempt++;
+		}
+	}
+
+	/**
+	 * Waits before next attempt if another attempt can be made
+	 * @return {@code true} if call should be retried
+	 */
+	private boolean backOff(final String operation, int attempt, Exception ex){
+		if (attempt >= _maxAttempts){
+			return false;
+		}
+		if (!_budget.tryAcquireRetry()){
+			_logger.warn("Not retrying {} {}, retry budget is used up",
+					_sourceName, operation);
+			return false;
+		}
+		long maxDelay = Math.min(MAX_DELAY, _baseDelay << Math.min(attempt - 1, 20));
+		long delay = ThreadLocalRandom.current().nextLong(maxDelay + 1);
+		_logger.info("Attempt {} of {} {} failed ({}), retrying in {} ms",
+				new Object[]{attempt, _sourceName, operation, ex.getMessage(), delay});
+		try {
+			Thread.sleep(delay);
+		} catch(InterruptedException ie){
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		_retryCount.incrementAndGet();
+		return true;
+	}
+
+	private <T, E extends Exception> T timedAttempt(final String operation,
+			Call<T, E> call) throws E {
+		long start = System.currentTimeMillis();
+		T result = call.call();
+		_latencies.computeIfAbsent(operation, (k) -> new LatencyWindow())
+				.add(System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * Gets time in milliseconds after which an attempt of
+	 * {@code operation} is hedged
+	 * @return delay or -1 if not enough latencies have been seen yet
+	 */
+	private long getHedgeDelay(final String operation){
+		LatencyWindow window = _latencies.get(operation);
+		if (window == null){
+			return -1;
+		}
+		return window.getPercentile(HEDGE_PERCENTILE);
+	}
+
+	/**
+	 * Runs an attempt of {@code call} and, if it has not finished after
+	 * {@code hedgeDelay} milliseconds and the budget allows, a second
+	 * attempt returning the first successful result
+	 */
+	@SuppressWarnings("unchecked")
+	private <T, E extends Exception> T attemptHedged(final String operation,
+			Call<T, E> call, long hedgeDelay) throws E {
+		ExecutorCompletionService<T> ecs = new ExecutorCompletionService<>(getHedgeExecutor());
+		List<Future<T>> attempts = new ArrayList<>(2);
+		attempts.add(ecs.submit(() -> timedAttempt(operation, call)));
+		int running = 1;
+		boolean hedged = false;
+		Throwable failure = null;
+		try {
+			while (running > 0){
+				Future<T> done = hedged ? ecs.take() : ecs.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+				if (done == null){
+					hedged = true;
+					if (_budget.tryAcquireRetry()){
+						_logger.debug("Hedging {} {} after {} ms",
+								new Object[]{_sourceName, operation, hedgeDelay});
+						_hedgeCount.incrementAndGet();
+						attempts.add(ecs.submit(() -> timedAttempt(operation, call)));
+						running++;
+					}
+					continue;
+				}
+				running--;
+				try {
+					return done.get();
+				} catch(ExecutionException ee){
+					if (failure == null){
+						failure = ee.getCause();
+					}
+				}
+			}
+		} catch(InterruptedException ie){
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted waiting for "
+					+ _sourceName + " " + operation);
+		} finally {
+			for (Future<T> attempt : attempts){
+				attempt.cancel(true);
+			}
+		}
+		if (failure instanceof Error){
+			throw (Error)failure;
+		}
+		throw (E)failure;
+	}
+
+	private synchronized ExecutorService getHedgeExecutor(){
+		if (_hedgeExecutor == null){
+			AtomicInteger threadCount = new AtomicInteger(0);
+			_hedgeExecutor = Executors.newCachedThreadPool((r) -> {
+				Thread t = new Thread(r, "hedge-" + _sourceName + "-"
+						+ threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return _hedgeExecutor;
+	}
+
+	/**
+	 * Gets number of retries made
+	 * @return number of retries
+	 */
+	public long getRetryCount(){
+		return _retryCount.get();
+	}
+
+	/**
+	 * Gets number of hedged attempts made
+	 * @return number of hedged attempts
+	 */
+	public long getHedgeCount(){
+		return _hedgeCount.get();
+	}
+
+	/**
+	 * Stops threads running hedged attempts
+	 */
+	public synchronized void shutdown(){
+		if (_hedgeExecutor != null){
+			_hedgeExecutor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.client.Client;
+import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP transport shared by all enrichment style sources. Requests go
+ * through a single JAX-RS {@link javax.ws.rs.client.Client} backed by a
+ * pool of keep-alive connections bounded in total and per route, so
+ * connections to a source are reused instead of being set up for every
+ * request. Idle and expired connections are closed in the background.
+ *
+ * @author churas
+ */
+public class SourceHttpTransport implements Closeable {
+
+	static Logger _logger = LoggerFactory.getLogger(SourceHttpTransport.class);
+
+	/**
+	 * Default maximum number of connections in pool
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 100;
+
+	/**
+	 * Default maximum number of connections to a single route
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+
+	/**
+	 * Default time in milliseconds to wait for a connection to be made
+	 * or leased from the pool
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	/**
+	 * Default time in milliseconds to wait for data on a connection, the
+	 * default call timeout of {@link ResilientSourceEngine} less the
+	 * default connect timeout
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 20000;
+
+	/**
+	 * Default time in milliseconds an idle connection is kept, if the
+	 * server does not ask for a shorter time
+	 */
+	public static final long DEFAULT_KEEP_ALIVE = 30000;
+
+	private final PoolingHttpClientConnectionManager _connManager;
+	private final CloseableHttpClient _httpClient;
+	private final Client _client;
+
+	/**
+	 * Constructor using default settings
+	 */
+	public SourceHttpTransport(){
+		this(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+				DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_KEEP_ALIVE);
+	}
+
+	/**
+	 * Constructor, values less then 1 are replaced with their defaults
+	 * @param maxConnections maximum number of connections in pool
+	 * @param maxConnectionsPerRoute maximum number of connections to a
+	 *        single route
+	 * @param connectTimeout time in milliseconds to wait for a connection
+	 *        to be made or leased from the pool
+	 * @param readTimeout time in milliseconds to wait for data
+	 * @param keepAlive time in milliseconds an idle connection is kept
+	 */
+	public SourceHttpTransport(int maxConnections, int maxConnectionsPerRoute,
+			int connectTimeout, int readTimeout, long keepAlive){
+		final long keepAliveMs = keepAlive < 1 ? DEFAULT_KEEP_ALIVE : keepAlive;
+		_connManager = new PoolingHttpClientConnectionManager();
+		_connManager.setMaxTotal(maxConnections < 1 ? DEFAULT_MAX_CONNECTIONS : maxConnections);
+		_connManager.setDefaultMaxPerRoute(maxConnectionsPerRoute < 1 ?
+				DEFAULT_MAX_CONNECTIONS_PER_ROUTE : maxConnectionsPerRoute);
+		_connManager.setValidateAfterInactivity(2000);
+		int connectMs = connectTimeout < 1 ? DEFAULT_CONNECT_TIMEOUT : connectTimeout;
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectMs)
+				.setConnectionRequestTimeout(connectMs)
+				.setSocketTimeout(readTimeout < 1 ? DEFAULT_READ_TIMEOUT : readTimeout)
+				.build();
+		_httpClient = HttpClientBuilder.create()
+				.setConnectionManager(_connManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy((response, context) -> {
+					long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+							.getKeepAliveDuration(response, context);
+					if (serverKeepAlive > 0){
+						return Math.min(serverKeepAlive, keepAliveMs);
+					}
+					return keepAliveMs;
+				})
+				.evictExpiredConnections()
+				.evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS)
+				.build();
+		_client = new ResteasyClientBuilder()
+				.httpEngine(new ApacheHttpClient4Engine(_httpClient, false))
+				.build();
+		_logger.info("Source HTTP pool allows {} connections, {} per route",
+				_connManager.getMaxTotal(), _connManager.getDefaultMaxPerRoute());
+	}
+
+	/**
+	 * Gets time in milliseconds to wait for data on a connection used by
+	 * calls given {@code callTimeout} milliseconds to finish. A read cannot
+	 * be interrupted once a call times out, so reads must end before the
+	 * call timeout to release the thread and permit held by the call
+	 * @param callTimeout time in milliseconds a call is given to finish
+	 * @param connectTimeout time in milliseconds to wait for a connection,
+	 *        if less then 1 {@link #DEFAULT_CONNECT_TIMEOUT} is used
+	 * @param readTimeout configured time in milliseconds to wait for data,
+	 *        if less then 1 it is derived from {@code callTimeout} less
+	 *        {@code connectTimeout}
+	 * @return time in milliseconds to wait for data
+	 * @throws SearchException if {@code readTimeout} is not less then
+	 *         {@code callTimeout}
+	 */
+	public static int getReadTimeout(long callTimeout, int connectTimeout,
+			int readTimeout) throws SearchException {
+		if (readTimeout >= callTimeout){
+			throw new SearchException("Read timeout of " + readTimeout
+					+ " ms must be less then call timeout of " + callTimeout + " ms");
+		}
+		if (readTimeout > 0){
+			return readTimeout;
+		}
+		int connectMs = connectTimeout < 1 ? DEFAULT_CONNECT_TIMEOUT : connectTimeout;
+		if (callTimeout > connectMs){
+			return (int)Math.min(Integer.MAX_VALUE, callTimeout - connectMs);
+		}
+		return (int)Math.max(1, callTimeout / 2);
+	}
+
+	/**
+	 * Gets the shared client. Closing it does not close the pool
+	 * @return client
+	 */
+	public Client getClient(){
+		return _client;
+	}
+
+	/**
+	 * Gets number of leased, pending, available and maximum connections
+	 * of whole pool
+	 * @return statistics of pool
+	 */
+	public PoolStats getPoolStats(){
+		return _connManager.getTotalStats();
+	}
+
+	/**
+	 * Gets pool statistics for each route connections have been made to
+	 * @return statistics keyed by target host of route
+	 */
+	public Map<String, PoolStats> getRouteStats(){
+		Map<String, PoolStats> stats = new LinkedHashMap<>();
+		for (HttpRoute route : _connManager.getRoutes()){
+			stats.put(route.getTargetHost().toURI(), _connManager.getStats(route));
+		}
+		return stats;
+	}
+
+	/**
+	 * Closes the client and all pooled connections
+	 * @throws IOException if there was an error closing
+	 */
+	@Override
+	public void close() throws IOException {
+		_logger.info("Closing source HTTP pool {}", getPoolStats());
+		_client.close();
+		_httpClient.close();
+	}
+}
@@ -0,0 +1,247 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically removes saved tasks in the background. A task is removed
+ * once it is older then the maximum task age or, while the disk holding
+ * the tasks is fuller then the disk high water mark, starting with the
+ * oldest task until usage drops below the mark. Tasks are removed in
+ * batches with a pause between batches so the sources are not flooded
+ * with delete requests. While removing tasks due to disk usage the store
+ * is asked to free the space of removed tasks after each batch so disk
+ * usage is checked against space actually freed. Tasks that are still
+ * active are never removed.
+ *
+ * @author churas
+ */
+public class TaskJanitor {
+
+	static Logger _logger = LoggerFactory.getLogger(TaskJanitor.class);
+
+	/**
+	 * Default time in milliseconds between sweeps
+	 */
+	public static final long DEFAULT_SWEEP_INTERVAL = 600000;
+
+	/**
+	 * Default number of tasks removed before pausing
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 50;
+
+	/**
+	 * Default pause in milliseconds between batches
+	 */
+	public static final long DEFAULT_BATCH_PAUSE = 1000;
+
+	private final TaskStore _store;
+	private final File _diskToWatch;
+	private final Predicate<String> _isActive;
+	private final Consumer<String> _remover;
+	private long _maxTaskAge;
+	private int _diskHighWaterMark;
+	private long _sweepInterval;
+	private int _batchSize;
+	private long _batchPause;
+	private long _tasksRemoved;
+	private ScheduledExecutorService _executor;
+
+	/**
+	 * Constructor, tasks are not removed until
+	 * {@link #setMaxTaskAge(long)} or {@link #setDiskHighWaterMark(int)}
+	 * is invoked with a value greater then 0
+	 * @param store store holding tasks
+	 * @param diskToWatch any file on disk holding the tasks, if {@code null}
+	 *        tasks are never removed due to disk usage
+	 * @param isActive invoked with id of task, should return {@code true}
+	 *        if task must not be removed
+	 * @param remover invoked with id of task to remove
+	 */
+	public TaskJanitor(TaskStore store, File diskToWatch, Predicate<String> isActive,
+			Consumer<String> remover){
+		_store = store;
+		_diskToWatch = diskToWatch;
+		_isActive = isActive;
+		_remover = remover;
+		_sweepInterval = DEFAULT_SWEEP_INTERVAL;
+		_batchSize = DEFAULT_BATCH_SIZE;
+		_batchPause = DEFAULT_BATCH_PAUSE;
+	}
+
+	/**
+	 * Gets percentage of disk holding {@code dir} that is used
+	 * @param dir file on disk
+	 * @return percent of disk used
+	 */
+	public static int getPercentDiskFull(File dir){
+		return 100-(int)Math.round(((double)dir.getFreeSpace()/(double)dir.getTotalSpace())*100);
+	}
+
+	/**
+	 * Sets age in milliseconds after which tasks are removed
+	 * @param maxTaskAge age in milliseconds, values less then 1 mean
+	 *        tasks are never removed due to age
+	 */
+	public void setMaxTaskAge(long maxTaskAge){
+		_maxTaskAge = maxTaskAge < 1 ? 0 : maxTaskAge;
+	}
+
+	/**
+	 * Sets percentage of disk usage above which the oldest tasks are removed
+	 * @param diskHighWaterMark percentage between 1 and 100, other values
+	 *        mean tasks are never removed due to disk usage
+	 */
+	public void setDiskHighWaterMark(int diskHighWaterMark){
+		_diskHighWaterMark = diskHighWaterMark < 1 || diskHighWaterMark > 100 ? 0 : diskHighWaterMark;
+	}
+
+	/**
+	 * Sets time between sweeps, this has no effect if {@link #start()}
+	 * has already been invoked
+	 * @param sweepInterval time in milliseconds, values less then 1 are
+	 *        replaced with {@link #DEFAULT_SWEEP_INTERVAL}
+	 */
+	public void setSweepInterval(long sweepInterval){
+		_sweepInterval = sweepInterval < 1 ? DEFAULT_SWEEP_INTERVAL : sweepInterval;
+	}
+
+	/**
+	 * Sets number of tasks removed between pauses
+	 * @param batchSize number of tasks, values less then 1 are replaced
+	 *        with {@link #DEFAULT_BATCH_SIZE}
+	 * @param batchPause pause in milliseconds, values less then 0 are
+	 *        replaced with {@link #DEFAULT_BATCH_PAUSE}
+	 */
+	public void setBatchSize(int batchSize, long batchPause){
+		_batchSize = batchSize < 1 ? DEFAULT_BATCH_SIZE : batchSize;
+		_batchPause = batchPause < 0 ? DEFAULT_BATCH_PAUSE : batchPause;
+	}
+
+	/**
+	 * Gets number of tasks removed since construction
+	 * @return number of tasks
+	 */
+	public synchronized long getNumberOfTasksRemoved(){
+		return _tasksRemoved;
+	}
+
+	/**
+	 * Starts sweeping in the background
+	 */
+	public synchronized void start(){
+		if (_executor != null){
+			return;
+		}
+		_executor = Executors.newSingleThreadScheduledExecutor((r) -> {
+			Thread t = new Thread(r, "task-janitor");
+			t.setDaemon(true);
+			return t;
+		});
+		_executor.scheduleWithFixedDelay(() -> {
+			try {
+				sweep();
+			} catch(Exception ex){
+				_logger.error("Caught exception removing old tasks", ex);
+			}
+		}, _sweepInterval, _sweepInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops sweeping, a sweep in progress is interrupted
+	 */
+	public synchronized void shutdown(){
+		if (_executor == null){
+			return;
+		}
+		_executor.shutdownNow();
+		_executor = null;
+	}
+
+	/**
+	 * Removes tasks that are older then the maximum task age and, while the
+	 * disk is fuller then the high water mark, the oldest remaining tasks
+	 * @return number of tasks removed
+	 * @throws IOException if tasks could not be listed
+	 */
+	public int sweep() throws IOException {
+		if (_maxTaskAge == 0 && _diskHighWaterMark == 0){
+			return 0;
+		}
+		boolean overHighWaterMark = isOverHighWaterMark();
+		long oldestAllowed = _maxTaskAge == 0 ? 0 : System.currentTimeMillis() - _maxTaskAge;
+		List<Map.Entry<String, Long>> tasks = new ArrayList<>(_store.listTasks().entrySet());
+		tasks.sort(Map.Entry.comparingByValue());
+		int removed = 0;
+		int inBatch = 0;
+		for (Map.Entry<String, Long> task : tasks){
+			if (task.getValue() >= oldestAllowed && overHighWaterMark == false){
+				break;
+			}
+			if (_isActive.test(task.getKey())){
+				continue;
+			}
+			_logger.debug("Removing task {} last saved at {}", task.getKey(), task.getValue());
+			_remover.accept(task.getKey());
+			removed++;
+			synchronized(this){
+				_tasksRemoved++;
+			}
+			if (++inBatch < _batchSize){
+				continue;
+			}
+			inBatch = 0;
+			if (overHighWaterMark){
+				reclaimSpace();
+			}
+			try {
+				Thread.sleep(_batchPause);
+			} catch(InterruptedException ie){
+				Thread.currentThread().interrupt();
+				break;
+			}
+			overHighWaterMark = isOverHighWaterMark();
+		}
+		if (removed > 0){
+			_logger.info("Removed {} tasks, disk is {}% full", removed,
+					getDiskUsagePercent());
+		}
+		return removed;
+	}
+
+	/**
+	 * Gets percentage of disk holding the tasks that is used
+	 * @return percent of disk used
+	 */
+	protected int getDiskUsagePercent(){
+		if (_diskToWatch == null){
+			return 0;
+		}
+		return getPercentDiskFull(_diskToWatch);
+	}
+
+	/**
+	 * Asks store to free space of removed tasks
+	 */
+	private void reclaimSpace(){
+		try {
+			_store.reclaimSpace();
+		} catch(IOException io){
+			_logger.warn("Unable to reclaim space of removed tasks : " + io.getMessage());
+		}
+	}
+
+	private boolean isOverHighWaterMark(){
+		return _diskHighWaterMark > 0 && getDiskUsagePercent() >= _diskHighWaterMark;
+	}
+}
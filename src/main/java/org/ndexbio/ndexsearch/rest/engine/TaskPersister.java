@@ -0,0 +1,392 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Saves tasks to a {@link TaskStore} on a background writer thread so
+ * threads finishing tasks never wait on disk. Ids of tasks to save are
+ * placed on a bounded queue via {@link #persist(java.lang.String, boolean)}
+ * and the writer saves everything waiting on the queue as one batch via
+ * {@link TaskStore#saveAll(java.util.Map)} and
+ * {@link TaskStore#saveAllFinished(java.util.Map)}. A task queued several
+ * times before the writer gets to it is saved once.
+ *
+ * If the writer is not running, or the queue stays full for
+ * {@link #OFFER_TIMEOUT_MILLIS}, only the task passed in is saved on the
+ * calling thread instead. Since saving a task invokes the results getter,
+ * {@link #persist(java.lang.String, boolean)} must not be called while
+ * holding a lock the getter takes for any task.
+ *
+ * Tasks that fail to save are kept waiting to be saved and are queued
+ * again after a delay that doubles with every failed attempt, finished
+ * tasks are only handed to the finished callback once they have been
+ * saved.
+ *
+ * @author churas
+ */
+public class TaskPersister {
+
+	static Logger _logger = LoggerFactory.getLogger(TaskPersister.class);
+
+	/**
+	 * Default maximum number of tasks waiting to be saved
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+	/**
+	 * Default maximum number of tasks saved in one batch
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 128;
+
+	/**
+	 * Time in milliseconds to wait for writer to save remaining tasks
+	 * during shutdown
+	 */
+	private static final long SHUTDOWN_WAIT_MILLIS = 30000;
+
+	/**
+	 * Time in milliseconds to wait for room on a full queue before saving
+	 * on the calling thread
+	 */
+	public static final long OFFER_TIMEOUT_MILLIS = 1000;
+
+	/**
+	 * Default time in milliseconds before a task that failed to save is
+	 * queued again, doubled after every failed attempt
+	 */
+	public static final long DEFAULT_RETRY_BASE_DELAY_MILLIS = 1000;
+
+	/**
+	 * Default maximum time in milliseconds before a task that failed to
+	 * save is queued again
+	 */
+	public static final long DEFAULT_RETRY_MAX_DELAY_MILLIS = 60000;
+
+	private final TaskStore _store;
+	private final Function<String, QueryResults> _resultsGetter;
+	private final Consumer<String> _onFinishedSaved;
+	private final BlockingQueue<String> _queue;
+
+	/**
+	 * Map of <task id> => {@code true} if task is finished for tasks
+	 * waiting to be saved
+	 */
+	private final ConcurrentHashMap<String, Boolean> _pending;
+
+	/**
+	 * Map of <task id> => number of failed attempts to save task
+	 */
+	private final ConcurrentHashMap<String, Integer> _failedAttempts;
+	private final long _retryBaseDelay;
+	private final long _retryMaxDelay;
+
+	/**
+	 * Held while a batch is saved so {@link #cancel(java.lang.String)}
+	 * can wait for a save in progress
+	 */
+	private final Object _writeLock;
+	private Thread _writer;
+	private volatile ScheduledExecutorService _retryExecutor;
+	private volatile boolean _running;
+
+	/**
+	 * Constructor
+	 * @param store where tasks are saved
+	 * @param resultsGetter invoked with id of task to get the results to
+	 *        save. For unfinished tasks this must return a copy that is not
+	 *        modified while it is saved. Should return {@code null} if the
+	 *        task no longer exists
+	 * @param onFinishedSaved invoked with id of finished task once it
+	 *        has been saved
+	 */
+	public TaskPersister(TaskStore store, Function<String, QueryResults> resultsGetter,
+			Consumer<String> onFinishedSaved){
+		this(store, resultsGetter, onFinishedSaved, DEFAULT_RETRY_BASE_DELAY_MILLIS,
+				DEFAULT_RETRY_MAX_DELAY_MILLIS);
+	}
+
+	/**
+	 * Constructor, delays less then 1 are replaced with their defaults
+	 * @param store where tasks are saved
+	 * @param resultsGetter invoked with id of task to get the results to
+	 *        save. For unfinished tasks this must return a copy that is not
+	 *        modified while it is saved. Should return {@code null} if the
+	 *        task no longer exists
+	 * @param onFinishedSaved invoked with id of finished task once it
+	 *        has been saved
+	 * @param retryBaseDelay time in milliseconds before a task that failed
+	 *        to save is queued again, doubled after every failed attempt
+	 * @param retryMaxDelay maximum time in milliseconds before a task that
+	 *        failed to save is queued again
+	 */
+	public TaskPersister(TaskStore store, Function<String, QueryResults> resultsGetter,
+			Consumer<String> onFinishedSaved, long retryBaseDelay, long retryMaxDelay){
+		_store = store;
+		_resultsGetter = resultsGetter;
+		_onFinishedSaved = onFinishedSaved;
+		_queue = new ArrayBlockingQueue<>(DEFAULT_QUEUE_SIZE);
+		_pending = new ConcurrentHashMap<>();
+		_failedAttempts = new ConcurrentHashMap<>();
+		_retryBaseDelay = retryBaseDelay < 1 ? DEFAULT_RETRY_BASE_DELAY_MILLIS : retryBaseDelay;
+		_retryMaxDelay = retryMaxDelay < 1 ? DEFAULT_RETRY_MAX_DELAY_MILLIS : retryMaxDelay;
+		_writeLock = new Object();
+		_running = false;
+	}
+
+	/**
+	 * Starts the writer thread and queues any tasks that failed to save
+	 * before it was started
+	 */
+	public synchronized void start(){
+		if (_writer != null){
+			return;
+		}
+		_retryExecutor = Executors.newSingleThreadScheduledExecutor((r) -> {
+			Thread t = new Thread(r, "task-persister-retry");
+			t.setDaemon(true);
+			return t;
+		});
+		_running = true;
+		_writer = new Thread(() -> {
+			writeLoop();
+		}, "task-persister");
+		_writer.setDaemon(true);
+		_writer.start();
+		for (String id : _pending.keySet()){
+			requeue(id);
+		}
+	}
+
+	/**
+	 * Stops the writer thread after it saves any tasks waiting on the
+	 * queue. Tasks queued after this call are saved on the calling thread
+	 */
+	public synchronized void shutdown(){
+		if (_writer == null){
+			return;
+		}
+		_running = false;
+		_retryExecutor.shutdownNow();
+		_retryExecutor = null;
+		_writer.interrupt();
+		try {
+			_writer.join(SHUTDOWN_WAIT_MILLIS);
+		} catch(InterruptedException ie){
+			_logger.warn("Interrupted waiting for task persister to exit");
+			Thread.currentThread().interrupt();
+		}
+		_writer = null;
+		flush();
+	}
+
+	/**
+	 * Gets number of tasks waiting to be saved
+	 * @return number of tasks
+	 */
+	public int getNumberOfPendingTasks(){
+		return _pending.size();
+	}
+
+	/**
+	 * Queues task to be saved. Must not be called while holding a lock
+	 * taken by the results getter passed into the constructor
+	 * @param id id of task
+	 * @param finished {@code true} if task is finished
+	 */
+	public void persist(final String id, boolean finished){
+		boolean[] alreadyPending = {true};
+		_pending.compute(id, (key, oldval) -> {
+			if (oldval == null){
+				alreadyPending[0] = false;
+				return finished;
+			}
+			return oldval || finished;
+		});
+		if (alreadyPending[0]){
+			return;
+		}
+		if (_running){
+			try {
+				if (_queue.offer(id, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)){
+					return;
+				}
+				_logger.warn("Task persister queue full, saving task {} on caller thread", id);
+			} catch(InterruptedException ie){
+				_logger.warn("Interrupted waiting to queue task {}, saving on caller thread", id);
+				Thread.currentThread().interrupt();
+			}
+		}
+		saveBatch(Collections.singletonList(id));
+	}
+
+	/**
+	 * Removes task from those waiting to be saved and waits for any save
+	 * of the task in progress to finish
+	 * @param id id of task
+	 */
+	public void cancel(final String id){
+		synchronized(_writeLock){
+			_pending.remove(id);
+			_failedAttempts.remove(id);
+		}
+	}
+
+	/**
+	 * Saves all tasks waiting to be saved on calling thread
+	 */
+	public void flush(){
+		List<String> ids = new ArrayList<>();
+		_queue.drainTo(ids);
+		ids.addAll(_pending.keySet());
+		saveBatch(ids);
+	}
+
+	private void writeLoop(){
+		List<String> ids = new ArrayList<>(DEFAULT_MAX_BATCH_SIZE);
+		while (_running){
+			try {
+				ids.add(_queue.take());
+				_queue.drainTo(ids, DEFAULT_MAX_BATCH_SIZE - 1);
+			} catch(InterruptedException ie){
+				break;
+			}
+			try {
+				saveBatch(ids);
+			} catch(RuntimeException re){
+				_logger.error("Caught exception saving tasks", re);
+			}
+			ids.clear();
+		}
+		_logger.debug("Task persister exiting");
+	}
+
+	/**
+	 * Saves tasks in {@code ids} that are still waiting to be saved. Tasks
+	 * that could not be saved are put back to wait to be saved
+	 * @param ids ids of tasks, duplicates are ignored
+	 */
+	private void saveBatch(List<String> ids){
+		List<String> finishedIds = new ArrayList<>();
+		synchronized(_writeLock){
+			Map<String, QueryResults> running = new LinkedHashMap<>();
+			Map<String, QueryResults> finished = new LinkedHashMap<>();
+			for (String id : ids){
+				Boolean isFinished = _pending.remove(id);
+				if (isFinished == null){
+					continue;
+				}
+				QueryResults qr;
+				try {
+					qr = _resultsGetter.apply(id);
+				} catch(RuntimeException re){
+					_logger.error("Caught exception getting task " + id + " to save, skipping it", re);
+					continue;
+				}
+				if (qr == null){
+					continue;
+				}
+				if (isFinished){
+					finished.put(id, qr);
+				} else {
+					running.put(id, qr);
+				}
+			}
+			if (running.isEmpty() && finished.isEmpty()){
+				return;
+			}
+			try {
+				if (running.isEmpty() == false){
+					_store.saveAll(running);
+				}
+				_failedAttempts.keySet().removeAll(running.keySet());
+			} catch(IOException|RuntimeException ex){
+				_logger.error("Caught exception saving " + running.size() + " tasks", ex);
+				retryLater(running.keySet(), false);
+			}
+			try {
+				if (finished.isEmpty() == false){
+					_store.saveAllFinished(finished);
+				}
+				finishedIds.addAll(finished.keySet());
+				_failedAttempts.keySet().removeAll(finished.keySet());
+			} catch(IOException|RuntimeException ex){
+				_logger.error("Caught exception saving " + finished.size()
+						+ " finished tasks, keeping them in memory", ex);
+				retryLater(finished.keySet(), true);
+			}
+		}
+		for (String id : finishedIds){
+			_onFinishedSaved.accept(id);
+		}
+	}
+
+	/**
+	 * Puts tasks that failed to save back to wait to be saved and, if the
+	 * writer is running, schedules them to be queued again once the retry
+	 * delay for their number of failed attempts has passed
+	 */
+	private void retryLater(Collection<String> ids, boolean finished){
+		for (String id : ids){
+			_pending.merge(id, finished, (oldval, newval) -> oldval || newval);
+			int attempts = _failedAttempts.merge(id, 1, Integer::sum);
+			scheduleRequeue(id, getRetryDelay(attempts));
+		}
+	}
+
+	/**
+	 * Gets delay before queueing a task again
+	 * @param attempts number of failed attempts to save task
+	 * @return base retry delay doubled for every attempt after the first
+	 *         up to the maximum retry delay
+	 */
+	private long getRetryDelay(int attempts){
+		if (attempts > 30){
+			return _retryMaxDelay;
+		}
+		return Math.min(_retryMaxDelay, _retryBaseDelay << (attempts - 1));
+	}
+
+	private void scheduleRequeue(final String id, long delay){
+		ScheduledExecutorService retryExecutor = _retryExecutor;
+		if (retryExecutor == null){
+			// saved by flush() during shutdown or once started
+			return;
+		}
+		try {
+			retryExecutor.schedule(() -> requeue(id), delay, TimeUnit.MILLISECONDS);
+		} catch(RejectedExecutionException ree){
+			_logger.debug("Persister shut down, not retrying task {}", id);
+		}
+	}
+
+	/**
+	 * Queues task that failed to save if it is still waiting to be saved,
+	 * if the queue is full it is tried again after the base retry delay
+	 */
+	private void requeue(final String id){
+		if (_pending.containsKey(id) == false || _running == false){
+			return;
+		}
+		if (_queue.offer(id) == false){
+			scheduleRequeue(id, _retryBaseDelay);
+		}
+	}
+}
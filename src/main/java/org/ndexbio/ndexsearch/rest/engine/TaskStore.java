@@ -0,0 +1,118 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.IOException;
+import java.util.Map;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+
+/**
+ * Persists the {@link org.ndexbio.ndexsearch.rest.model.QueryResults} of
+ * query tasks so they survive being removed from memory and restarts
+ * of the service. Implementations must be thread safe and must never
+ * let a reader see partially saved results.
+ *
+ * @author churas
+ */
+public interface TaskStore {
+
+	/**
+	 * Prepares store for a new task
+	 * @param id id of task
+	 * @throws IOException if store could not be prepared for the task
+	 */
+	public void createTask(final String id) throws IOException;
+
+	/**
+	 * Saves results of a task that is still running replacing any
+	 * previously saved results
+	 * @param id id of task
+	 * @param qr results to save
+	 * @throws IOException if there was an error saving
+	 */
+	public void save(final String id, QueryResults qr) throws IOException;
+
+	/**
+	 * Saves results of several tasks that are still running in one batch
+	 * @param tasks map of task id to results to save
+	 * @throws IOException if there was an error saving
+	 */
+	public void saveAll(Map<String, QueryResults> tasks) throws IOException;
+
+	/**
+	 * Saves results of a finished task replacing any previously saved results.
+	 * This is invoked once per task
+	 * @param id id of task
+	 * @param qr results to save
+	 * @throws IOException if there was an error saving
+	 */
+	public void saveFinished(final String id, QueryResults qr) throws IOException;
+
+	/**
+	 * Saves results of several finished tasks in one batch
+	 * @param tasks map of task id to results to save
+	 * @throws IOException if there was an error saving
+	 */
+	public void saveAllFinished(Map<String, QueryResults> tasks) throws IOException;
+
+	/**
+	 * Loads all results of task
+	 * @param id id of task
+	 * @return results or {@code null} if not found
+	 * @throws IOException if there was an error loading
+	 */
+	public QueryResults load(final String id) throws IOException;
+
+	/**
+	 * Loads a page of the results of a finished task without loading all
+	 * the results. The page follows the same rules as
+	 * {@link RankedResultIndex#getQueryResults(java.lang.String, int, int)}
+	 * @param id id of task
+	 * @param source comma delimited list of sources to return. {@code null}
+	 *               or empty string means all.
+	 * @param start  starting index to return from. Starting index is 0.
+	 * @param size   Number of results to return. If 0 means all from starting index
+	 * @return page of results or {@code null} if task was not found or
+	 *         the store cannot read part of a task
+	 * @throws IOException if there was an error loading
+	 */
+	public QueryResults loadQueryResults(final String id, final String source,
+			int start, int size) throws IOException;
+
+	/**
+	 * Loads results of a finished task without any of the source results
+	 * @param id id of task
+	 * @return results without source results or {@code null} if task
+	 *         was not found or the store cannot read part of a task
+	 * @throws IOException if there was an error loading
+	 */
+	public QueryResults loadQueryStatus(final String id) throws IOException;
+
+	/**
+	 * Gets all tasks in store
+	 * @return map of task id to time in milliseconds task was last saved
+	 * @throws IOException if there was an error listing tasks
+	 */
+	public Map<String, Long> listTasks() throws IOException;
+
+	/**
+	 * Removes task
+	 * @param id id of task
+	 * @return {@code true} if task was found and removed
+	 * @throws IOException if there was an error removing the task
+	 */
+	public boolean delete(final String id) throws IOException;
+
+	/**
+	 * Frees disk space still held by tasks removed via
+	 * {@link #delete(java.lang.String)} and waits until it is freed.
+	 * Stores that free space as soon as a task is removed do nothing
+	 * @throws IOException if there was an error freeing space
+	 */
+	public default void reclaimSpace() throws IOException {
+	}
+
+	/**
+	 * Releases any resources held by store
+	 * @throws IOException if there was an error
+	 */
+	public void close() throws IOException;
+}
@@ -18,6 +18,7 @@ import org.ndexbio.rest.client.NdexRestClient;
 import org.ndexbio.rest.client.NdexRestClientModelAccessLayer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.ndexbio.ndexsearch.rest.engine.KeywordSourceEngine;
 import org.ndexbio.ndexsearch.rest.engine.SearchEngine;
 
 /**
@@ -57,6 +58,111 @@ public class Configuration {
     public static final String SOURCE_POLLING_INTERVAL = "source.polling.interval";
     private static final long DEFAULT_SOURCE_POLLING_INTERVAL = 300000;
     
+    public static final String DISPATCHER_WORKERS = "search.dispatcher.workers";
+    private static final int DEFAULT_DISPATCHER_WORKERS = 4;
+    
+    public static final String SOURCE_QUERY_TIMEOUT = "search.source.query.timeout";
+    private static final long DEFAULT_SOURCE_QUERY_TIMEOUT = 30000;
+    
+    public static final String SOURCE_REFRESH_TIMEOUT = "search.source.refresh.timeout";
+    private static final long DEFAULT_SOURCE_REFRESH_TIMEOUT = 30000;
+    
+    public static final String PROGRESS_POLL_INTERVAL = "search.progress.poll.interval";
+    private static final long DEFAULT_PROGRESS_POLL_INTERVAL = 1000;
+    
+    public static final String PROGRESS_MAX_POLL_INTERVAL = "search.progress.max.poll.interval";
+    private static final long DEFAULT_PROGRESS_MAX_POLL_INTERVAL = 10000;
+    
+    public static final String QUERY_REUSE_TTL = "search.query.reuse.ttl";
+    private static final long DEFAULT_QUERY_REUSE_TTL = 3600000;
+    
+    public static final String ENRICHMENT_CACHE_SIZE = "search.enrichment.cache.size";
+    private static final int DEFAULT_ENRICHMENT_CACHE_SIZE = 500;
+    
+    public static final String ENRICHMENT_CACHE_TTL = "search.enrichment.cache.ttl";
+    private static final long DEFAULT_ENRICHMENT_CACHE_TTL = 3600000;
+    
+    public static final String ENRICHMENT_TASK_RETENTION = "search.enrichment.task.retention";
+    private static final long DEFAULT_ENRICHMENT_TASK_RETENTION = 86400000;
+    
+    public static final String COMPLETED_RESULTS_CACHE_SIZE = "search.completed.results.cache.bytes";
+    private static final long DEFAULT_COMPLETED_RESULTS_CACHE_SIZE = 268435456;
+    
+    public static final String TASK_STORAGE_FORMAT = "search.task.storage.format";
+    private static final String DEFAULT_TASK_STORAGE_FORMAT = "json";
+    
+    public static final String TASK_STORE = "search.task.store";
+    private static final String DEFAULT_TASK_STORE = "filesystem";
+    
+    public static final String TASK_SYNC_WRITES = "search.task.sync.writes";
+    private static final String DEFAULT_TASK_SYNC_WRITES = "false";
+    
+    public static final String TASK_MAX_AGE = "search.task.max.age";
+    private static final long DEFAULT_TASK_MAX_AGE = 0;
+    
+    public static final String TASK_DISK_HIGH_WATER_MARK = "search.task.disk.high.water.mark";
+    private static final int DEFAULT_TASK_DISK_HIGH_WATER_MARK = 0;
+    
+    public static final String TASK_JANITOR_INTERVAL = "search.task.janitor.interval";
+    private static final long DEFAULT_TASK_JANITOR_INTERVAL = 600000;
+    
+    public static final String SOURCE_MAX_CONCURRENT_CALLS = "search.source.max.concurrent.calls";
+    private static final int DEFAULT_SOURCE_MAX_CONCURRENT_CALLS = 16;
+    
+    public static final String SOURCE_CIRCUIT_FAILURE_THRESHOLD = "search.source.circuit.failure.threshold";
+    private static final int DEFAULT_SOURCE_CIRCUIT_FAILURE_THRESHOLD = 5;
+    
+    public static final String SOURCE_CIRCUIT_OPEN_TIME = "search.source.circuit.open.time";
+    private static final long DEFAULT_SOURCE_CIRCUIT_OPEN_TIME = 30000;
+    
+    public static final String SOURCE_TASK_DEADLINE = "search.source.task.deadline";
+    private static final long DEFAULT_SOURCE_TASK_DEADLINE = 600000;
+    
+    public static final String SOURCE_RETRY_MAX_ATTEMPTS = "search.source.retry.max.attempts";
+    private static final int DEFAULT_SOURCE_RETRY_MAX_ATTEMPTS = 3;
+    
+    public static final String SOURCE_RETRY_BASE_DELAY = "search.source.retry.base.delay";
+    private static final long DEFAULT_SOURCE_RETRY_BASE_DELAY = 100;
+    
+    public static final String SOURCE_RETRY_BUDGET_PERCENT = "search.source.retry.budget.percent";
+    private static final int DEFAULT_SOURCE_RETRY_BUDGET_PERCENT = 10;
+    
+    public static final String SOURCE_HEDGE_READS = "search.source.hedge.reads";
+    private static final String DEFAULT_SOURCE_HEDGE_READS = "false";
+    
+    public static final String ENRICHMENT_RAW_RESULTS = "search.enrichment.raw.results";
+    private static final String DEFAULT_ENRICHMENT_RAW_RESULTS = "false";
+    
+    public static final String SOURCE_HTTP_MAX_CONNECTIONS = "search.source.http.max.connections";
+    private static final int DEFAULT_SOURCE_HTTP_MAX_CONNECTIONS = 100;
+    
+    public static final String SOURCE_HTTP_MAX_CONNECTIONS_PER_ROUTE = "search.source.http.max.connections.per.route";
+    private static final int DEFAULT_SOURCE_HTTP_MAX_CONNECTIONS_PER_ROUTE = 20;
+    
+    public static final String SOURCE_HTTP_CONNECT_TIMEOUT = "search.source.http.connect.timeout";
+    private static final int DEFAULT_SOURCE_HTTP_CONNECT_TIMEOUT = 10000;
+    
+    public static final String SOURCE_HTTP_READ_TIMEOUT = "search.source.http.read.timeout";
+    private static final int DEFAULT_SOURCE_HTTP_READ_TIMEOUT = 0;
+    
+    public static final String SOURCE_HTTP_KEEP_ALIVE = "search.source.http.keep.alive";
+    private static final long DEFAULT_SOURCE_HTTP_KEEP_ALIVE = 30000;
+    
+    public static final String KEYWORD_MAX_RESULTS = "search.keyword.max.results";
+    private static final int DEFAULT_KEYWORD_MAX_RESULTS = KeywordSourceEngine.DEFAULT_MAX_RESULTS;
+    
+    public static final String KEYWORD_PAGE_SIZE = "search.keyword.page.size";
+    private static final int DEFAULT_KEYWORD_PAGE_SIZE = 100;
+    
+    public static final String KEYWORD_MAX_CONCURRENT_PAGES = "search.keyword.max.concurrent.pages";
+    private static final int DEFAULT_KEYWORD_MAX_CONCURRENT_PAGES = 4;
+    
+    public static final String KEYWORD_CACHE_SIZE = "search.keyword.cache.bytes";
+    private static final long DEFAULT_KEYWORD_CACHE_SIZE = 20000000;
+    
+    public static final String KEYWORD_CACHE_TTL = "search.keyword.cache.ttl";
+    private static final long DEFAULT_KEYWORD_CACHE_TTL = 3600000;
+    
     private static Configuration INSTANCE;
     private static final Logger _logger = LoggerFactory.getLogger(Configuration.class);
     private static String _alternateConfigurationFile;
@@ -73,6 +179,41 @@ public class Configuration {
     private  String _sourceConfiguration;
     private static String _sourcePollingInterval;
     private static String _geneSymbolFile;
+    private static String _dispatcherWorkers;
+    private static String _sourceQueryTimeout;
+    private static String _sourceRefreshTimeout;
+    private static String _progressPollInterval;
+    private static String _progressMaxPollInterval;
+    private static String _queryReuseTimeToLive;
+    private static String _enrichmentCacheSize;
+    private static String _enrichmentCacheTimeToLive;
+    private static String _enrichmentTaskRetention;
+    private static String _completedResultsCacheSize;
+    private static String _taskStorageFormat;
+    private static String _taskStore;
+    private static String _taskSyncWrites;
+    private static String _taskMaxAge;
+    private static String _taskDiskHighWaterMark;
+    private static String _taskJanitorInterval;
+    private static String _sourceMaxConcurrentCalls;
+    private static String _sourceCircuitFailureThreshold;
+    private static String _sourceCircuitOpenTime;
+    private static String _sourceTaskDeadline;
+    private static String _sourceRetryMaxAttempts;
+    private static String _sourceRetryBaseDelay;
+    private static String _sourceRetryBudgetPercent;
+    private static String _sourceHedgeReads;
+    private static String _enrichmentRawResults;
+    private static String _sourceHttpMaxConnections;
+    private static String _sourceHttpMaxConnectionsPerRoute;
+    private static String _sourceHttpConnectTimeout;
+    private static String _sourceHttpReadTimeout;
+    private static String _sourceHttpKeepAlive;
+    private static String _keywordMaxResults;
+    private static String _keywordPageSize;
+    private static String _keywordMaxConcurrentPages;
+    private static String _keywordCacheSize;
+    private static String _keywordCacheTimeToLive;
     
     
     /**
@@ -115,6 +256,60 @@ public class Configuration {
 		
         _sourceConfiguration = props.getProperty(SOURCE_CONFIGURATIONS_JSON_FILE, "source.configurations.json");
         _sourcePollingInterval = props.getProperty(Configuration.SOURCE_POLLING_INTERVAL, Long.toString(DEFAULT_SOURCE_POLLING_INTERVAL));
+        _dispatcherWorkers = props.getProperty(Configuration.DISPATCHER_WORKERS, Integer.toString(DEFAULT_DISPATCHER_WORKERS));
+        _sourceQueryTimeout = props.getProperty(Configuration.SOURCE_QUERY_TIMEOUT, Long.toString(DEFAULT_SOURCE_QUERY_TIMEOUT));
+        _sourceRefreshTimeout = props.getProperty(Configuration.SOURCE_REFRESH_TIMEOUT, Long.toString(DEFAULT_SOURCE_REFRESH_TIMEOUT));
+        _progressPollInterval = props.getProperty(Configuration.PROGRESS_POLL_INTERVAL, Long.toString(DEFAULT_PROGRESS_POLL_INTERVAL));
+        _progressMaxPollInterval = props.getProperty(Configuration.PROGRESS_MAX_POLL_INTERVAL, Long.toString(DEFAULT_PROGRESS_MAX_POLL_INTERVAL));
+        _queryReuseTimeToLive = props.getProperty(Configuration.QUERY_REUSE_TTL, Long.toString(DEFAULT_QUERY_REUSE_TTL));
+        _enrichmentCacheSize = props.getProperty(Configuration.ENRICHMENT_CACHE_SIZE, Integer.toString(DEFAULT_ENRICHMENT_CACHE_SIZE));
+        _enrichmentCacheTimeToLive = props.getProperty(Configuration.ENRICHMENT_CACHE_TTL, Long.toString(DEFAULT_ENRICHMENT_CACHE_TTL));
+        _enrichmentTaskRetention = props.getProperty(Configuration.ENRICHMENT_TASK_RETENTION, Long.toString(DEFAULT_ENRICHMENT_TASK_RETENTION));
+        _completedResultsCacheSize = props.getProperty(Configuration.COMPLETED_RESULTS_CACHE_SIZE, Long.toString(DEFAULT_COMPLETED_RESULTS_CACHE_SIZE));
+        _taskStorageFormat = props.getProperty(Configuration.TASK_STORAGE_FORMAT, DEFAULT_TASK_STORAGE_FORMAT);
+        _taskStore = props.getProperty(Configuration.TASK_STORE, DEFAULT_TASK_STORE);
+        _taskSyncWrites = props.getProperty(Configuration.TASK_SYNC_WRITES, DEFAULT_TASK_SYNC_WRITES);
+        _taskMaxAge = props.getProperty(Configuration.TASK_MAX_AGE, Long.toString(DEFAULT_TASK_MAX_AGE));
+        _taskDiskHighWaterMark = props.getProperty(Configuration.TASK_DISK_HIGH_WATER_MARK,
+                Integer.toString(DEFAULT_TASK_DISK_HIGH_WATER_MARK));
+        _taskJanitorInterval = props.getProperty(Configuration.TASK_JANITOR_INTERVAL,
+                Long.toString(DEFAULT_TASK_JANITOR_INTERVAL));
+        _sourceMaxConcurrentCalls = props.getProperty(Configuration.SOURCE_MAX_CONCURRENT_CALLS,
+                Integer.toString(DEFAULT_SOURCE_MAX_CONCURRENT_CALLS));
+        _sourceCircuitFailureThreshold = props.getProperty(Configuration.SOURCE_CIRCUIT_FAILURE_THRESHOLD,
+                Integer.toString(DEFAULT_SOURCE_CIRCUIT_FAILURE_THRESHOLD));
+        _sourceCircuitOpenTime = props.getProperty(Configuration.SOURCE_CIRCUIT_OPEN_TIME,
+                Long.toString(DEFAULT_SOURCE_CIRCUIT_OPEN_TIME));
+        _sourceTaskDeadline = props.getProperty(Configuration.SOURCE_TASK_DEADLINE,
+                Long.toString(DEFAULT_SOURCE_TASK_DEADLINE));
+        _sourceRetryMaxAttempts = props.getProperty(Configuration.SOURCE_RETRY_MAX_ATTEMPTS,
+                Integer.toString(DEFAULT_SOURCE_RETRY_MAX_ATTEMPTS));
+        _sourceRetryBaseDelay = props.getProperty(Configuration.SOURCE_RETRY_BASE_DELAY,
+                Long.toString(DEFAULT_SOURCE_RETRY_BASE_DELAY));
+        _sourceRetryBudgetPercent = props.getProperty(Configuration.SOURCE_RETRY_BUDGET_PERCENT,
+                Integer.toString(DEFAULT_SOURCE_RETRY_BUDGET_PERCENT));
+        _sourceHedgeReads = props.getProperty(Configuration.SOURCE_HEDGE_READS, DEFAULT_SOURCE_HEDGE_READS);
+        _enrichmentRawResults = props.getProperty(Configuration.ENRICHMENT_RAW_RESULTS, DEFAULT_ENRICHMENT_RAW_RESULTS);
+        _sourceHttpMaxConnections = props.getProperty(Configuration.SOURCE_HTTP_MAX_CONNECTIONS,
+                Integer.toString(DEFAULT_SOURCE_HTTP_MAX_CONNECTIONS));
+        _sourceHttpMaxConnectionsPerRoute = props.getProperty(Configuration.SOURCE_HTTP_MAX_CONNECTIONS_PER_ROUTE,
+                Integer.toString(DEFAULT_SOURCE_HTTP_MAX_CONNECTIONS_PER_ROUTE));
+        _sourceHttpConnectTimeout = props.getProperty(Configuration.SOURCE_HTTP_CONNECT_TIMEOUT,
+                Integer.toString(DEFAULT_SOURCE_HTTP_CONNECT_TIMEOUT));
+        _sourceHttpReadTimeout = props.getProperty(Configuration.SOURCE_HTTP_READ_TIMEOUT,
+                Integer.toString(DEFAULT_SOURCE_HTTP_READ_TIMEOUT));
+        _sourceHttpKeepAlive = props.getProperty(Configuration.SOURCE_HTTP_KEEP_ALIVE,
+                Long.toString(DEFAULT_SOURCE_HTTP_KEEP_ALIVE));
+        _keywordMaxResults = props.getProperty(Configuration.KEYWORD_MAX_RESULTS,
+                Integer.toString(DEFAULT_KEYWORD_MAX_RESULTS));
+        _keywordPageSize = props.getProperty(Configuration.KEYWORD_PAGE_SIZE,
+                Integer.toString(DEFAULT_KEYWORD_PAGE_SIZE));
+        _keywordMaxConcurrentPages = props.getProperty(Configuration.KEYWORD_MAX_CONCURRENT_PAGES,
+                Integer.toString(DEFAULT_KEYWORD_MAX_CONCURRENT_PAGES));
+        _keywordCacheSize = props.getProperty(Configuration.KEYWORD_CACHE_SIZE,
+                Long.toString(DEFAULT_KEYWORD_CACHE_SIZE));
+        _keywordCacheTimeToLive = props.getProperty(Configuration.KEYWORD_CACHE_TTL,
+                Long.toString(DEFAULT_KEYWORD_CACHE_TTL));
         _client = getNDExClient(props);
         
     }
@@ -239,6 +434,480 @@ public class Configuration {
     	}
     	}
     
+    /**
+     * Gets number of worker threads that process submitted queries
+     * @return number of workers as set by {@link #DISPATCHER_WORKERS} or 
+     *         default of 4 if unset or invalid
+     */
+    public int getNumberOfDispatcherWorkers() {
+        try {
+            return Integer.parseInt(_dispatcherWorkers.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + DISPATCHER_WORKERS + " value", e);
+            return DEFAULT_DISPATCHER_WORKERS;
+        }
+    }
+    
+    /**
+     * Gets time each source is given to answer a query submission
+     * @return timeout in milliseconds as set by {@link #SOURCE_QUERY_TIMEOUT} 
+     *         or default of 30000 if unset or invalid
+     */
+    public long getSourceQueryTimeout() {
+        try {
+            return Long.parseLong(_sourceQueryTimeout.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_QUERY_TIMEOUT + " value", e);
+            return DEFAULT_SOURCE_QUERY_TIMEOUT;
+        }
+    }
+    
+    /**
+     * Gets time sources are given to refresh their information
+     * @return timeout in milliseconds as set by {@link #SOURCE_REFRESH_TIMEOUT} 
+     *         or default of 30000 if unset or invalid
+     */
+    public long getSourceRefreshTimeout() {
+        try {
+            return Long.parseLong(_sourceRefreshTimeout.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_REFRESH_TIMEOUT + " value", e);
+            return DEFAULT_SOURCE_REFRESH_TIMEOUT;
+        }
+    }
+    
+    /**
+     * Gets delay before sources of an unfinished query are first polled 
+     * for progress
+     * @return delay in milliseconds as set by {@link #PROGRESS_POLL_INTERVAL} 
+     *         or default of 1000 if unset or invalid
+     */
+    public long getProgressPollInterval() {
+        try {
+            return Long.parseLong(_progressPollInterval.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + PROGRESS_POLL_INTERVAL + " value", e);
+            return DEFAULT_PROGRESS_POLL_INTERVAL;
+        }
+    }
+    
+    /**
+     * Gets maximum delay between polls of sources of an unfinished query
+     * @return delay in milliseconds as set by {@link #PROGRESS_MAX_POLL_INTERVAL} 
+     *         or default of 10000 if unset or invalid
+     */
+    public long getProgressMaxPollInterval() {
+        try {
+            return Long.parseLong(_progressMaxPollInterval.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + PROGRESS_MAX_POLL_INTERVAL + " value", e);
+            return DEFAULT_PROGRESS_MAX_POLL_INTERVAL;
+        }
+    }
+    
+    /**
+     * Gets time an existing task is returned for identical queries
+     * @return time in milliseconds as set by {@link #QUERY_REUSE_TTL} 
+     *         or default of 3600000 if unset or invalid
+     */
+    public long getQueryReuseTimeToLive() {
+        try {
+            return Long.parseLong(_queryReuseTimeToLive.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + QUERY_REUSE_TTL + " value", e);
+            return DEFAULT_QUERY_REUSE_TTL;
+        }
+    }
+    
+    /**
+     * Gets maximum number of completed results each enrichment style 
+     * source caches
+     * @return number of results as set by {@link #ENRICHMENT_CACHE_SIZE} 
+     *         or default of 500 if unset or invalid
+     */
+    public int getEnrichmentCacheSize() {
+        try {
+            return Integer.parseInt(_enrichmentCacheSize.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + ENRICHMENT_CACHE_SIZE + " value", e);
+            return DEFAULT_ENRICHMENT_CACHE_SIZE;
+        }
+    }
+    
+    /**
+     * Gets time completed results are cached by enrichment style sources
+     * @return time in milliseconds as set by {@link #ENRICHMENT_CACHE_TTL} 
+     *         or default of 3600000 if unset or invalid
+     */
+    public long getEnrichmentCacheTimeToLive() {
+        try {
+            return Long.parseLong(_enrichmentCacheTimeToLive.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + ENRICHMENT_CACHE_TTL + " value", e);
+            return DEFAULT_ENRICHMENT_CACHE_TTL;
+        }
+    }
+    
+    /**
+     * Gets time enrichment style sources keep finished tasks
+     * @return time in milliseconds as set by {@link #ENRICHMENT_TASK_RETENTION} 
+     *         or default of 86400000 if unset or invalid
+     */
+    public long getEnrichmentTaskRetention() {
+        try {
+            return Long.parseLong(_enrichmentTaskRetention.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + ENRICHMENT_TASK_RETENTION + " value", e);
+            return DEFAULT_ENRICHMENT_TASK_RETENTION;
+        }
+    }
+    
+    /**
+     * Gets maximum size in bytes of results of finished tasks kept in memory
+     * @return size in bytes as set by {@link #COMPLETED_RESULTS_CACHE_SIZE}
+     *         or default of 268435456 if unset or invalid
+     */
+    public long getCompletedResultsCacheSize() {
+        try {
+            return Long.parseLong(_completedResultsCacheSize.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + COMPLETED_RESULTS_CACHE_SIZE + " value", e);
+            return DEFAULT_COMPLETED_RESULTS_CACHE_SIZE;
+        }
+    }
+    
+    /**
+     * Gets format finished tasks are saved in
+     * @return value of {@link #TASK_STORAGE_FORMAT} or json if unset
+     */
+    public String getTaskStorageFormat() {
+        return _taskStorageFormat.trim();
+    }
+    
+    /**
+     * Gets where tasks are saved
+     * @return value of {@link #TASK_STORE} or filesystem if unset
+     */
+    public String getTaskStore() {
+        return _taskStore.trim();
+    }
+    
+    /**
+     * Tells caller if saved tasks should be flushed to disk before
+     * the save is considered done
+     * @return value of {@link #TASK_SYNC_WRITES} or false if unset
+     */
+    public boolean getTaskSyncWrites() {
+        return Boolean.parseBoolean(_taskSyncWrites.trim());
+    }
+    
+    /**
+     * Gets age in milliseconds after which tasks are removed
+     * @return value of {@link #TASK_MAX_AGE} or 0, meaning never, if unset
+     *         or invalid
+     */
+    public long getTaskMaxAge() {
+        try {
+            return Long.parseLong(_taskMaxAge.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + TASK_MAX_AGE + " value", e);
+            return DEFAULT_TASK_MAX_AGE;
+        }
+    }
+    
+    /**
+     * Gets percentage of disk usage above which the oldest tasks are removed
+     * @return value of {@link #TASK_DISK_HIGH_WATER_MARK} or 0, meaning 
+     *         never, if unset or invalid
+     */
+    public int getTaskDiskHighWaterMark() {
+        try {
+            return Integer.parseInt(_taskDiskHighWaterMark.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + TASK_DISK_HIGH_WATER_MARK + " value", e);
+            return DEFAULT_TASK_DISK_HIGH_WATER_MARK;
+        }
+    }
+    
+    /**
+     * Gets time in milliseconds between checks for tasks to remove
+     * @return value of {@link #TASK_JANITOR_INTERVAL} or 600000 if unset
+     *         or invalid
+     */
+    public long getTaskJanitorInterval() {
+        try {
+            return Long.parseLong(_taskJanitorInterval.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + TASK_JANITOR_INTERVAL + " value", e);
+            return DEFAULT_TASK_JANITOR_INTERVAL;
+        }
+    }
+    
+    /**
+     * Gets maximum number of calls to a single source running at once
+     * @return value of {@link #SOURCE_MAX_CONCURRENT_CALLS} or 16 if unset
+     *         or invalid
+     */
+    public int getSourceMaxConcurrentCalls() {
+        try {
+            return Integer.parseInt(_sourceMaxConcurrentCalls.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_MAX_CONCURRENT_CALLS + " value", e);
+            return DEFAULT_SOURCE_MAX_CONCURRENT_CALLS;
+        }
+    }
+    
+    /**
+     * Gets number of consecutive failed calls to a source after which
+     * calls to that source are rejected
+     * @return value of {@link #SOURCE_CIRCUIT_FAILURE_THRESHOLD} or 5 if
+     *         unset or invalid
+     */
+    public int getSourceCircuitFailureThreshold() {
+        try {
+            return Integer.parseInt(_sourceCircuitFailureThreshold.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_CIRCUIT_FAILURE_THRESHOLD + " value", e);
+            return DEFAULT_SOURCE_CIRCUIT_FAILURE_THRESHOLD;
+        }
+    }
+    
+    /**
+     * Gets time in milliseconds calls to a failing source are rejected
+     * before a trial call is let through
+     * @return value of {@link #SOURCE_CIRCUIT_OPEN_TIME} or 30000 if unset
+     *         or invalid
+     */
+    public long getSourceCircuitOpenTime() {
+        try {
+            return Long.parseLong(_sourceCircuitOpenTime.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_CIRCUIT_OPEN_TIME + " value", e);
+            return DEFAULT_SOURCE_CIRCUIT_OPEN_TIME;
+        }
+    }
+    
+    /**
+     * Gets time in milliseconds a source task whose progress cannot be
+     * checked is kept waiting before it is marked as failed
+     * @return value of {@link #SOURCE_TASK_DEADLINE} or 600000 if unset
+     *         or invalid
+     */
+    public long getSourceTaskDeadline() {
+        try {
+            return Long.parseLong(_sourceTaskDeadline.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_TASK_DEADLINE + " value", e);
+            return DEFAULT_SOURCE_TASK_DEADLINE;
+        }
+    }
+    
+    /**
+     * Gets maximum number of attempts made for a call to a source
+     * @return value of {@link #SOURCE_RETRY_MAX_ATTEMPTS} or 3 if unset
+     *         or invalid
+     */
+    public int getSourceRetryMaxAttempts() {
+        try {
+            return Integer.parseInt(_sourceRetryMaxAttempts.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_RETRY_MAX_ATTEMPTS + " value", e);
+            return DEFAULT_SOURCE_RETRY_MAX_ATTEMPTS;
+        }
+    }
+    
+    /**
+     * Gets delay in milliseconds before the first retry of a call to a
+     * source, later retries wait exponentially longer
+     * @return value of {@link #SOURCE_RETRY_BASE_DELAY} or 100 if unset
+     *         or invalid
+     */
+    public long getSourceRetryBaseDelay() {
+        try {
+            return Long.parseLong(_sourceRetryBaseDelay.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_RETRY_BASE_DELAY + " value", e);
+            return DEFAULT_SOURCE_RETRY_BASE_DELAY;
+        }
+    }
+    
+    /**
+     * Gets percent of calls to sources that can be retried or hedged
+     * @return value of {@link #SOURCE_RETRY_BUDGET_PERCENT} or 10 if unset
+     *         or invalid
+     */
+    public int getSourceRetryBudgetPercent() {
+        try {
+            return Integer.parseInt(_sourceRetryBudgetPercent.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_RETRY_BUDGET_PERCENT + " value", e);
+            return DEFAULT_SOURCE_RETRY_BUDGET_PERCENT;
+        }
+    }
+    
+    /**
+     * Tells caller if slow reads from sources should be hedged
+     * @return value of {@link #SOURCE_HEDGE_READS} or false if unset
+     */
+    public boolean getSourceHedgeReads() {
+        return Boolean.parseBoolean(_sourceHedgeReads.trim());
+    }
+    
+    /**
+     * Tells caller if results of enrichment style sources should be
+     * passed through as the raw JSON returned by the source
+     * @return value of {@link #ENRICHMENT_RAW_RESULTS} or false if unset
+     */
+    public boolean getEnrichmentRawResults() {
+        return Boolean.parseBoolean(_enrichmentRawResults.trim());
+    }
+    
+    /**
+     * Gets maximum number of pooled HTTP connections to all sources
+     * @return value of {@link #SOURCE_HTTP_MAX_CONNECTIONS} or 100 if unset
+     *         or invalid
+     */
+    public int getSourceHttpMaxConnections() {
+        try {
+            return Integer.parseInt(_sourceHttpMaxConnections.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_HTTP_MAX_CONNECTIONS + " value", e);
+            return DEFAULT_SOURCE_HTTP_MAX_CONNECTIONS;
+        }
+    }
+    
+    /**
+     * Gets maximum number of pooled HTTP connections to a single source
+     * host
+     * @return value of {@link #SOURCE_HTTP_MAX_CONNECTIONS_PER_ROUTE} or 20
+     *         if unset or invalid
+     */
+    public int getSourceHttpMaxConnectionsPerRoute() {
+        try {
+            return Integer.parseInt(_sourceHttpMaxConnectionsPerRoute.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_HTTP_MAX_CONNECTIONS_PER_ROUTE + " value", e);
+            return DEFAULT_SOURCE_HTTP_MAX_CONNECTIONS_PER_ROUTE;
+        }
+    }
+    
+    /**
+     * Gets time in milliseconds to wait for an HTTP connection to a source
+     * to be made or leased from the pool
+     * @return value of {@link #SOURCE_HTTP_CONNECT_TIMEOUT} or 10000 if
+     *         unset or invalid
+     */
+    public int getSourceHttpConnectTimeout() {
+        try {
+            return Integer.parseInt(_sourceHttpConnectTimeout.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_HTTP_CONNECT_TIMEOUT + " value", e);
+            return DEFAULT_SOURCE_HTTP_CONNECT_TIMEOUT;
+        }
+    }
+    
+    /**
+     * Gets time in milliseconds to wait for data from a source, must be
+     * less then {@link #SOURCE_QUERY_TIMEOUT}
+     * @return value of {@link #SOURCE_HTTP_READ_TIMEOUT} or 0 if unset
+     *         or invalid meaning it is derived from {@link #SOURCE_QUERY_TIMEOUT}
+     */
+    public int getSourceHttpReadTimeout() {
+        try {
+            return Integer.parseInt(_sourceHttpReadTimeout.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_HTTP_READ_TIMEOUT + " value", e);
+            return DEFAULT_SOURCE_HTTP_READ_TIMEOUT;
+        }
+    }
+    
+    /**
+     * Gets time in milliseconds an idle HTTP connection to a source is kept
+     * @return value of {@link #SOURCE_HTTP_KEEP_ALIVE} or 30000 if unset
+     *         or invalid
+     */
+    public long getSourceHttpKeepAlive() {
+        try {
+            return Long.parseLong(_sourceHttpKeepAlive.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + SOURCE_HTTP_KEEP_ALIVE + " value", e);
+            return DEFAULT_SOURCE_HTTP_KEEP_ALIVE;
+        }
+    }
+    
+    /**
+     * Gets maximum number of networks returned by keyword source for a query.
+     * To return more set {@link #KEYWORD_MAX_RESULTS} in the configuration,
+     * networks past the first page are fetched from NDEx in the background
+     * @return value of {@link #KEYWORD_MAX_RESULTS} or
+     *         {@link KeywordSourceEngine#DEFAULT_MAX_RESULTS} if unset
+     *         or invalid
+     */
+    public int getKeywordMaxResults() {
+        try {
+            return Integer.parseInt(_keywordMaxResults.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + KEYWORD_MAX_RESULTS + " value", e);
+            return DEFAULT_KEYWORD_MAX_RESULTS;
+        }
+    }
+    
+    /**
+     * Gets number of networks keyword source requests from NDEx at a time
+     * @return value of {@link #KEYWORD_PAGE_SIZE} or 100 if unset
+     *         or invalid
+     */
+    public int getKeywordPageSize() {
+        try {
+            return Integer.parseInt(_keywordPageSize.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + KEYWORD_PAGE_SIZE + " value", e);
+            return DEFAULT_KEYWORD_PAGE_SIZE;
+        }
+    }
+    
+    /**
+     * Gets maximum number of page requests keyword source runs at once
+     * @return value of {@link #KEYWORD_MAX_CONCURRENT_PAGES} or 4 if unset
+     *         or invalid
+     */
+    public int getKeywordMaxConcurrentPages() {
+        try {
+            return Integer.parseInt(_keywordMaxConcurrentPages.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + KEYWORD_MAX_CONCURRENT_PAGES + " value", e);
+            return DEFAULT_KEYWORD_MAX_CONCURRENT_PAGES;
+        }
+    }
+    
+    /**
+     * Gets maximum estimated size in bytes of results cached by keyword source
+     * @return value of {@link #KEYWORD_CACHE_SIZE} or 20000000 if unset
+     *         or invalid
+     */
+    public long getKeywordCacheSize() {
+        try {
+            return Long.parseLong(_keywordCacheSize.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + KEYWORD_CACHE_SIZE + " value", e);
+            return DEFAULT_KEYWORD_CACHE_SIZE;
+        }
+    }
+    
+    /**
+     * Gets time results are cached by keyword source
+     * @return time in milliseconds as set by {@link #KEYWORD_CACHE_TTL}
+     *         or default of 3600000 if unset or invalid
+     */
+    public long getKeywordCacheTimeToLive() {
+        try {
+            return Long.parseLong(_keywordCacheTimeToLive.trim());
+        } catch (NumberFormatException e) {
+            _logger.error("caught exception parsing " + KEYWORD_CACHE_TTL + " value", e);
+            return DEFAULT_KEYWORD_CACHE_TTL;
+        }
+    }
+    
     /**
      * Using configuration create 
      * @return ndex client
@@ -0,0 +1,38 @@
+package org.ndexbio.ndexsearch.rest.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
+
+/**
+ * Writes an object as JSON directly to the response output stream
+ * instead of first building the JSON as a String
+ * @author churas
+ */
+public class JsonStreamingOutput implements StreamingOutput {
+
+    private final Object _obj;
+
+    /**
+     * Constructor
+     * @param obj object to write as JSON
+     */
+    public JsonStreamingOutput(Object obj) {
+        _obj = obj;
+    }
+
+    /**
+     * Writes object passed in via constructor to {@code out} as JSON
+     * using the shared writer from {@link SearchJsonProvider}. The 
+     * output stream is left open for the container to close
+     * @param out stream to write to
+     * @throws IOException if there is an error writing
+     * @throws WebApplicationException never thrown
+     */
+    @Override
+    public void write(OutputStream out) throws IOException, WebApplicationException {
+        SearchJsonProvider.getWriter(_obj.getClass()).writeValue(out, _obj);
+    }
+}
@@ -16,6 +16,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import org.ndexbio.enrichment.rest.model.ErrorResponse;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
 import org.ndexbio.ndexsearch.rest.model.GeneList;
 import org.ndexbio.ndexsearch.rest.model.MutationFrequencies;
 import org.slf4j.Logger;
@@ -49,7 +50,7 @@ public class MockMutationFrequency {
 	public Response requestMutationFrequency(@RequestBody(description="Query", required = true,
 			content = @Content(schema = @Schema(implementation = MutationFrequencies.class))) final String geneListStr){
 
-		ObjectMapper omappy = new ObjectMapper();
+		ObjectMapper omappy = SearchJsonProvider.getObjectMapper();
 		try {
 			GeneList gList = omappy.readValue(geneListStr, GeneList.class);
 			MutationFrequencies mFreqs = new MutationFrequencies();
@@ -2,29 +2,45 @@ package org.ndexbio.ndexsearch.rest.services; // Note your package will be {{ gr
 
 import java.net.URI;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.headers.Header;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import org.ndexbio.enrichment.rest.model.Task;
 import org.ndexbio.enrichment.rest.model.ErrorResponse;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
 import org.ndexbio.ndexsearch.rest.engine.SearchEngine;
 import org.ndexbio.ndexsearch.rest.model.Query;
 import org.ndexbio.ndexsearch.rest.model.QueryResults;
@@ -41,6 +57,38 @@ public class Search {
     
     static Logger logger = LoggerFactory.getLogger(Search.class);
     
+    /**
+     * Longest time in milliseconds a request will wait for a task to change
+     */
+    public static final long MAX_WAIT_MS = 60000;
+    
+    /**
+     * Media type of newline delimited JSON
+     */
+    public static final String NDJSON = "application/x-ndjson";
+    
+    /**
+     * Number of threads building responses for requests that waited
+     * on a task and sending task events
+     */
+    public static final int RESPONSE_THREADS = 8;
+    
+    /**
+     * Builds responses for requests that waited on a task and sends task
+     * events so loading and serializing results never runs on the JVM
+     * wide common pool or holds a container thread
+     */
+    private static final ScheduledExecutorService RESPONSE_EXECUTOR = createResponseExecutor();
+    
+    private static ScheduledExecutorService createResponseExecutor() {
+        AtomicInteger threadCount = new AtomicInteger(0);
+        return Executors.newScheduledThreadPool(RESPONSE_THREADS, (r) -> {
+            Thread t = new Thread(r, "search-response-" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
     /**
      * Returns status of server 
      * @return {@link org.ndexbio.ndexsearch.rest.model.ServerStatus} as JSON
@@ -65,14 +113,8 @@ public class Search {
                                 schema = @Schema(implementation = ErrorResponse.class)))
                })
     public Response requestQuery(@RequestBody(description="Query", required = true,
-                                                   content = @Content(schema = @Schema(implementation = Query.class))) final String query) {
-        ObjectMapper omappy = new ObjectMapper();
-
+                                                   content = @Content(schema = @Schema(implementation = Query.class))) final Query bquery) {
         try {
-            // not sure why but I cannot get resteasy and jackson to worktogether to
-            // automatically translate json to Query class so I'm doing it after the
-            // fact
-            Query bquery = omappy.readValue(query, Query.class);
             SearchEngine searcher = Configuration.getInstance().getSearchEngine();
             if (searcher == null){
                 ErrorResponse er = new ErrorResponse();
@@ -97,7 +139,7 @@ public class Search {
             		.status(202)
             		.location(new URI(Configuration.getInstance().getHostURL() + Configuration.V_ONE_PATH + "/" + id))
             		.type(MediaType.APPLICATION_JSON)
-            		.entity(omappy.writeValueAsString(t))
+            		.entity(SearchJsonProvider.getObjectMapper().writeValueAsString(t))
             		.build();
         } catch(Exception ex){
             ErrorResponse er = new ErrorResponse("Error requesting search", ex);
@@ -106,6 +148,81 @@ public class Search {
         }
     }
 
+    @POST 
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Submits several queries",
+               description="Payload in JSON is a list of queries in the same format accepted by POST of a single query.\n" +
+"The service returns 202 and a JSON list of task ids in the same order as the queries. If any query\n" +
+"is invalid none of the queries are submitted",
+               responses = {
+                   @ApiResponse(responseCode = "202",
+                           description = "The tasks were successfully submitted to the service",
+                           content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                array = @ArraySchema(schema = @Schema(implementation = String.class)))),
+                   @ApiResponse(responseCode = "500", description = "Server Error",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class)))
+               })
+    public Response requestQueryBatch(@RequestBody(description="Queries", required = true,
+                                                   content = @Content(array = @ArraySchema(schema = @Schema(implementation = Query.class)))) final List<Query> queries) {
+        return submitQueryBatch(queries);
+    }
+    
+    @POST 
+    @Path("/batch")
+    @Consumes(NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Submits several queries as newline delimited JSON",
+               description="Same as POST of a JSON list of queries except each query is on its own line",
+               responses = {
+                   @ApiResponse(responseCode = "202",
+                           description = "The tasks were successfully submitted to the service",
+                           content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                array = @ArraySchema(schema = @Schema(implementation = String.class)))),
+                   @ApiResponse(responseCode = "500", description = "Server Error",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class)))
+               })
+    public Response requestQueryBatchAsNdjson(@RequestBody(description="Queries, one per line", required = true) final InputStream in) {
+        List<Query> queries;
+        try (MappingIterator<Query> queryIt = SearchJsonProvider.getReader(Query.class).readValues(in)){
+            queries = queryIt.readAll();
+        } catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error parsing queries", ex);
+            logger.error("Caught exception parsing batch of queries: " + er.asJson(), ex);
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }
+        return submitQueryBatch(queries);
+    }
+    
+    private Response submitQueryBatch(final List<Query> queries) {
+        try {
+            SearchEngine searcher = Configuration.getInstance().getSearchEngine();
+            if (searcher == null){
+                ErrorResponse er = new ErrorResponse();
+                er.setMessage("Configuration error");
+                er.setDescription("SearchEngine is null, which is most likely due to configuration error");
+                er.setErrorCode("search7");
+                return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+            }
+            List<String> ids = searcher.queryBatch(queries);
+            if (ids == null){
+                throw new NullPointerException("No ids returned from search engine");
+            }
+            return Response
+            		.status(202)
+            		.type(MediaType.APPLICATION_JSON)
+            		.entity(SearchJsonProvider.getObjectMapper().writeValueAsString(ids))
+            		.build();
+        } catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error requesting batch search", ex);
+			logger.error("Caught exception running batch of queries: " + er.asJson(), ex);
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }
+    }
+
     @GET 
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -123,14 +240,56 @@ public class Search {
                                 content = @Content(mediaType = MediaType.APPLICATION_JSON,
                                 schema = @Schema(implementation = ErrorResponse.class)))
                })
-    public Response getQueryResults(@PathParam("id") final String id,
+    public void getQueryResults(@PathParam("id") final String id,
             @Parameter(description = "Starting index of result, should be an integer 0 or larger") @QueryParam("start") int start,
             @Parameter(description = "Number of results to return, 0 for all") @QueryParam("size") int size,
             @Parameter(description = "Comma delimited list of sources to return results from For "
                     + "start/size argument, results will be returned in order of listed sources "
-                    + "or by order in original query") @QueryParam("source") final String source) {
-        ObjectMapper omappy = new ObjectMapper();
-
+                    + "or by order in original query") @QueryParam("source") final String source,
+            @Parameter(description = "If greater then 0, wait up to this many milliseconds "
+                    + "(max " + MAX_WAIT_MS + ") for the task to change status or progress "
+                    + "before responding") @QueryParam("waitMs") long waitMs,
+            @Suspended final AsyncResponse asyncResponse) {
+        resumeOnChange(id, waitMs, asyncResponse, () -> {
+            return getQueryResultsResponse(id, start, size, source);
+        });
+    }
+    
+    /**
+     * Resumes {@code asyncResponse} with response from {@code responder}
+     * once the task changes or {@code waitMs} elapses. No thread is held
+     * while waiting and the response is built on a thread owned by this
+     * resource
+     * @param id id of task
+     * @param waitMs time in milliseconds to wait, if 0 or less
+     *        {@code asyncResponse} is resumed immediately
+     * @param asyncResponse response to resume
+     * @param responder creates the response
+     */
+    private void resumeOnChange(final String id, long waitMs, final AsyncResponse asyncResponse,
+            Supplier<Response> responder) {
+        SearchEngine searcher = Configuration.getInstance().getSearchEngine();
+        if (waitMs <= 0 || searcher == null){
+            asyncResponse.resume(responder.get());
+            return;
+        }
+        CompletableFuture<Void> change;
+        try {
+            change = searcher.getQueryChangeFuture(id);
+        } catch(Exception ex){
+            logger.error("Caught exception waiting on task " + id, ex);
+            asyncResponse.resume(responder.get());
+            return;
+        }
+        change.copy()
+                .completeOnTimeout(null, Math.min(waitMs, MAX_WAIT_MS), TimeUnit.MILLISECONDS)
+                .thenRunAsync(() -> {
+                    asyncResponse.resume(responder.get());
+                }, RESPONSE_EXECUTOR);
+    }
+    
+    private Response getQueryResultsResponse(final String id, int start, int size,
+            final String source) {
         try {
             SearchEngine searcher = Configuration.getInstance().getSearchEngine();
             if (searcher == null){
@@ -144,7 +303,7 @@ public class Search {
             if (qr == null){
                 return Response.status(410).build();
             }
-            return Response.ok().type(MediaType.APPLICATION_JSON).entity(omappy.writeValueAsString(qr)).build();
+            return Response.ok().type(MediaType.APPLICATION_JSON).entity(new JsonStreamingOutput(qr)).build();
         }
         catch(Exception ex){
             ErrorResponse er = new ErrorResponse("Error querying for results", ex);
@@ -169,9 +328,17 @@ public class Search {
                                 content = @Content(mediaType = MediaType.APPLICATION_JSON,
                                 schema = @Schema(implementation = ErrorResponse.class)))
                })
-    public Response getQueryStatus(@PathParam("id") final String id) {
-        ObjectMapper omappy = new ObjectMapper();
-
+    public void getQueryStatus(@PathParam("id") final String id,
+            @Parameter(description = "If greater then 0, wait up to this many milliseconds "
+                    + "(max " + MAX_WAIT_MS + ") for the task to change status or progress "
+                    + "before responding") @QueryParam("waitMs") long waitMs,
+            @Suspended final AsyncResponse asyncResponse) {
+        resumeOnChange(id, waitMs, asyncResponse, () -> {
+            return getQueryStatusResponse(id);
+        });
+    }
+    
+    private Response getQueryStatusResponse(final String id) {
         try {
             SearchEngine searcher = Configuration.getInstance().getSearchEngine();
             if (searcher == null){
@@ -185,7 +352,7 @@ public class Search {
             if (eqs ==  null){
               return Response.status(410).build();
             }
-            return Response.ok().type(MediaType.APPLICATION_JSON).entity(omappy.writeValueAsString(eqs)).build();
+            return Response.ok().type(MediaType.APPLICATION_JSON).entity(new JsonStreamingOutput(eqs)).build();
         }
         catch(Exception ex){
 			
@@ -195,7 +362,67 @@ public class Search {
         }
     }
 
-    @DELETE 
+    @GET
+    @Path("/{id}/events")
+    @Produces(TaskEventStream.SERVER_SENT_EVENTS)
+    @Operation(summary = "Streams progress of query as Server-Sent Events",
+               description="A 'progress' event is sent with the status, progress and number of hits\n" +
+"of the query and of each source, and again every time any of these change. Once the\n" +
+"query is finished a 'done' event with the final values is sent and the stream ends.\n" +
+"Streams are closed after " + TaskEventStream.DEFAULT_MAX_DURATION_MS + " milliseconds, clients\n" +
+"should reconnect if the query is not finished",
+               responses = {
+                   @ApiResponse(responseCode = "200",
+                           description = "Success",
+                           content = @Content(mediaType = TaskEventStream.SERVER_SENT_EVENTS)),
+                   @ApiResponse(responseCode = "410",
+                           description = "Task not found"),
+                   @ApiResponse(responseCode = "500", description = "Server Error",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class)))
+               })
+    public void getQueryEvents(@PathParam("id") final String id,
+            @Context final HttpServletRequest request,
+            @Suspended final AsyncResponse asyncResponse) {
+        try {
+            SearchEngine searcher = Configuration.getInstance().getSearchEngine();
+            if (searcher == null){
+                ErrorResponse er = new ErrorResponse();
+                er.setMessage("Configuration error");
+                er.setDescription("SearchEngine is null, which is most likely due to configuration error");
+                er.setErrorCode("search6");
+                asyncResponse.resume(Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build());
+                return;
+            }
+            QueryStatus eqs = searcher.getQueryStatus(id);
+            if (eqs ==  null){
+                asyncResponse.resume(Response.status(410).build());
+                return;
+            }
+            if (request == null || request.isAsyncStarted() == false){
+                throw new IllegalStateException("Request is not in asynchronous mode");
+            }
+            
+            // events are written straight to the suspended servlet response
+            AsyncContext context = request.getAsyncContext();
+            context.setTimeout(0);
+            HttpServletResponse response = (HttpServletResponse)context.getResponse();
+            response.setStatus(200);
+            response.setContentType(TaskEventStream.SERVER_SENT_EVENTS);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.setHeader("Cache-Control", "no-cache");
+            new TaskEventStream(searcher, id, TaskEventStream.DEFAULT_HEARTBEAT_MS,
+                    TaskEventStream.DEFAULT_MAX_DURATION_MS, RESPONSE_EXECUTOR,
+                    new ServletEventSink(context)).start(eqs);
+        }
+        catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error streaming query events", ex);
+            logger.error("Caught exception streaming query events: " + er.asJson(), ex);
+            asyncResponse.resume(Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build());
+        }
+    }
+
+    @DELETE
     @Path("/{id}")
     @Operation(summary = "Deletes task associated with {id} passed in",
                description="",
@@ -224,7 +451,6 @@ public class Search {
         }
         catch(Exception ex){
 			
-            ObjectMapper omappy = new ObjectMapper();
             ErrorResponse er = new ErrorResponse("Error deleting search result", ex);
             logger.error("Caught exception deleting result: " + er.asJson(), ex);
 			return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
@@ -246,7 +472,6 @@ public class Search {
                })
     public Response getOverlayNetwork(@PathParam("id") final String id, @Parameter(description="UUID of source", required = true) @QueryParam("sourceUUID") final String sourceUUID,
             @Parameter(description="UUID of network", required = true) @QueryParam("networkUUID") final String networkUUID) {
-        ObjectMapper omappy = new ObjectMapper();
         InputStream in = null;
         try {
             SearchEngine searcher = Configuration.getInstance().getSearchEngine();
@@ -6,7 +6,7 @@ import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
-import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
+import org.jboss.resteasy.plugins.server.servlet.HttpServlet30Dispatcher;
 import org.ndexbio.ndexsearch.rest.engine.BasicSearchEngineFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +15,7 @@ import org.ndexbio.ndexsearch.rest.engine.SearchEngine;
  *
  * @author churas
  */
-public class SearchHttpServletDispatcher extends HttpServletDispatcher {
+public class SearchHttpServletDispatcher extends HttpServlet30Dispatcher {
     
     static Logger _logger = LoggerFactory.getLogger(SearchHttpServletDispatcher.class.getSimpleName());
 
@@ -6,7 +6,6 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -48,8 +47,6 @@ public class SearchSource {
                                   schema = @Schema(implementation = ErrorResponse.class)))
                })
     public Response getSourceResults() {
-        ObjectMapper omappy = new ObjectMapper();
-
         try {
             SearchEngine searcher = Configuration.getInstance().getSearchEngine();
             if (searcher == null){
@@ -67,7 +64,7 @@ public class SearchSource {
                 er.setErrorCode("searchsource2");
                 return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
            }
-           return Response.ok(omappy.writeValueAsString(sr), MediaType.APPLICATION_JSON).build();
+           return Response.ok(new JsonStreamingOutput(sr), MediaType.APPLICATION_JSON).build();
         }
         catch(Exception ex){
             ErrorResponse er = new ErrorResponse("Error querying for source information", ex);
@@ -93,7 +90,6 @@ public class SearchSource {
                                     schema = @Schema(implementation = ErrorResponse.class)))
                })
     public Response getSourceObjects(@PathParam("uuid") final String uuid) {
-    	ObjectMapper omappy = new ObjectMapper();
     	try {
     		SearchEngine searcher = Configuration.getInstance().getSearchEngine();
     		if (searcher == null){
@@ -116,7 +112,7 @@ public class SearchSource {
                 return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
     		}    		
     		if (service.equals(SourceResult.ENRICHMENT_SERVICE)) {
-    			return Response.ok(omappy.writeValueAsString(searcher.getEnrichmentDatabases()), MediaType.APPLICATION_JSON).build();
+    			return Response.ok(new JsonStreamingOutput(searcher.getEnrichmentDatabases()), MediaType.APPLICATION_JSON).build();
     		} else {
     			ErrorResponse er = new ErrorResponse();
     			er.setMessage("Error querying for source information");
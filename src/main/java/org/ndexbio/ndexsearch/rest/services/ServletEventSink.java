@@ -0,0 +1,140 @@
+package org.ndexbio.ndexsearch.rest.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link TaskEventStream.EventSink} that writes to the response of a
+ * request in asynchronous mode using non blocking writes. Text is queued
+ * and written whenever the container reports the response can take more,
+ * so no thread ever blocks on a slow client. Once closed the queued text
+ * is written and the request is completed.
+ *
+ * @author churas
+ */
+public class ServletEventSink implements TaskEventStream.EventSink, WriteListener, AsyncListener {
+
+    static Logger logger = LoggerFactory.getLogger(ServletEventSink.class);
+
+    private final AsyncContext _context;
+    private final ServletOutputStream _out;
+    private final ArrayDeque<byte[]> _pending;
+    private boolean _flushNeeded;
+    private boolean _closing;
+    private boolean _closed;
+
+    /**
+     * Constructor, registers with {@code context} and its response
+     * output stream to be told when writing is possible and when the
+     * request ends
+     * @param context context of request in asynchronous mode
+     * @throws IOException if the output stream could not be obtained
+     */
+    public ServletEventSink(AsyncContext context) throws IOException {
+        _context = context;
+        _out = context.getResponse().getOutputStream();
+        _pending = new ArrayDeque<>();
+        _context.addListener(this);
+        _out.setWriteListener(this);
+    }
+
+    @Override
+    public synchronized boolean send(final String text) {
+        if (_closed || _closing){
+            return false;
+        }
+        _pending.add(text.getBytes(StandardCharsets.UTF_8));
+        write();
+        return _closed == false;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (_closed || _closing){
+            return;
+        }
+        _closing = true;
+        write();
+    }
+
+    @Override
+    public synchronized void onWritePossible() {
+        write();
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        logger.debug("Error writing events : {}", t.getMessage());
+        complete();
+    }
+
+    @Override
+    public synchronized void onComplete(AsyncEvent event) {
+        _closed = true;
+        _pending.clear();
+    }
+
+    @Override
+    public synchronized void onTimeout(AsyncEvent event) {
+        complete();
+    }
+
+    @Override
+    public synchronized void onError(AsyncEvent event) {
+        complete();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    /**
+     * Writes and flushes queued text for as long as the output stream is
+     * ready, completing the request if closed and nothing is left to write
+     */
+    private void write() {
+        if (_closed){
+            return;
+        }
+        try {
+            while (_out.isReady()){
+                if (_pending.isEmpty() == false){
+                    _out.write(_pending.poll());
+                    _flushNeeded = true;
+                } else if (_flushNeeded){
+                    _out.flush();
+                    _flushNeeded = false;
+                } else {
+                    if (_closing){
+                        complete();
+                    }
+                    return;
+                }
+            }
+        } catch(IOException | IllegalStateException ex){
+            logger.debug("Unable to write events : {}", ex.getMessage());
+            complete();
+        }
+    }
+
+    private void complete() {
+        if (_closed){
+            return;
+        }
+        _closed = true;
+        _pending.clear();
+        try {
+            _context.complete();
+        } catch(IllegalStateException ise){
+            logger.debug("Request already completed : {}", ise.getMessage());
+        }
+    }
+}
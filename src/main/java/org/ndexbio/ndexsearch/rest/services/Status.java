@@ -7,15 +7,19 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.File;
 import java.lang.management.OperatingSystemMXBean;
 import javax.ws.rs.core.Response;
 import org.ndexbio.enrichment.rest.model.ErrorResponse;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
+import org.ndexbio.ndexsearch.rest.engine.SearchEngine;
+import org.ndexbio.ndexsearch.rest.engine.TaskJanitor;
 import org.ndexbio.ndexsearch.rest.model.ServerStatus;
 
 /**
@@ -28,17 +32,23 @@ public class Status {
     
     public static final String STATUS_PATH = "/status";
     
+    /**
+     * Field of status holding the metrics of the search engine
+     */
+    public static final String METRICS_FIELD = "metrics";
+    
     static Logger _logger = LoggerFactory.getLogger(Status.class);
     
     /**
-     * Returns status of server 
+     * Returns status of server along with the metrics of the search
+     * engine, if it is running, under {@link #METRICS_FIELD}
      * @return {@link org.ndexbio.ndexsearch.rest.model.ServerStatus} as JSON
      */
     @GET // This annotation indicates GET request
     @Path(STATUS_PATH)
     @Produces(MediaType.APPLICATION_JSON)
     @Operation(summary = "Gets server status",
-               description="Gets version, load, and diskusage of server",
+               description="Gets version, load, diskusage and metrics of server",
                responses = {
                    @ApiResponse(responseCode = "200", description = "Server Status",
                            content = @Content(mediaType = MediaType.APPLICATION_JSON,
@@ -48,8 +58,6 @@ public class Status {
                                 schema = @Schema(implementation = ErrorResponse.class)))
                })
     public Response status() {
-        ObjectMapper omappy = new ObjectMapper();
-
         try {
             String version = "unknown";
             ServerStatus sObj = new ServerStatus();
@@ -59,8 +67,14 @@ public class Status {
             Configuration config = Configuration.getInstance();
             File taskDir = new File(config.getSearchTaskDirectory());
             
-            sObj.setPcDiskFull(100-(int)Math.round(((double)taskDir.getFreeSpace()/(double)taskDir.getTotalSpace())*100));
-            return Response.ok().type(MediaType.APPLICATION_JSON).entity(omappy.writeValueAsString(sObj)).build();
+            sObj.setPcDiskFull(TaskJanitor.getPercentDiskFull(taskDir));
+            ObjectMapper mapper = SearchJsonProvider.getObjectMapper();
+            ObjectNode statusNode = (ObjectNode)mapper.readTree(mapper.writeValueAsString(sObj));
+            SearchEngine searcher = config.getSearchEngine();
+            if (searcher != null){
+                statusNode.putPOJO(METRICS_FIELD, searcher.getMetrics());
+            }
+            return Response.ok().type(MediaType.APPLICATION_JSON).entity(mapper.writeValueAsString(statusNode)).build();
         }
         catch(Exception ex){
             ErrorResponse er = new ErrorResponse("Error querying for source information", ex);
@@ -0,0 +1,282 @@
+package org.ndexbio.ndexsearch.rest.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
+import org.ndexbio.ndexsearch.rest.engine.SearchEngine;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.QueryStatus;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends progress of a task as a stream of Server-Sent Events. A
+ * {@value #PROGRESS_EVENT} event is sent with the current state of
+ * the task and again every time the status, progress or number of hits
+ * of the task or any of its sources changes. Once the task is finished
+ * a {@value #DONE_EVENT} event is sent and the stream ends. If the
+ * task disappears while streaming a {@value #GONE_EVENT} event is sent
+ * and the stream ends.
+ *
+ * No thread is held while waiting, events are sent from the future
+ * returned by {@link SearchEngine#getQueryChangeFuture(java.lang.String)}
+ * and a comment is sent every heartbeat interval by a scheduled task so
+ * proxies keep the connection open and a closed connection is noticed.
+ * The stream ends once it has been open for the maximum duration, clients
+ * following the Server-Sent Events spec will reconnect.
+ * @author churas
+ */
+public class TaskEventStream {
+
+    static Logger logger = LoggerFactory.getLogger(TaskEventStream.class);
+
+    /**
+     * Media type of Server-Sent Events
+     */
+    public static final String SERVER_SENT_EVENTS = "text/event-stream";
+
+    /**
+     * Name of event sent while task is running
+     */
+    public static final String PROGRESS_EVENT = "progress";
+
+    /**
+     * Name of terminal event sent once task is finished
+     */
+    public static final String DONE_EVENT = "done";
+
+    /**
+     * Name of terminal event sent if task no longer exists
+     */
+    public static final String GONE_EVENT = "gone";
+
+    /**
+     * Default time in milliseconds between heartbeat comments
+     */
+    public static final long DEFAULT_HEARTBEAT_MS = 15000;
+
+    /**
+     * Default time in milliseconds a stream stays open
+     */
+    public static final long DEFAULT_MAX_DURATION_MS = 1800000;
+
+    /**
+     * Destination of the text of the stream
+     */
+    public interface EventSink {
+
+        /**
+         * Queues {@code text} to be written without blocking
+         * @param text text to write
+         * @return {@code false} if the sink is closed, most likely because
+         *         the client disconnected
+         */
+        public boolean send(final String text);
+
+        /**
+         * Ends the stream once all queued text is written
+         */
+        public void close();
+    }
+
+    private final SearchEngine _searcher;
+    private final String _id;
+    private final long _heartbeatMs;
+    private final long _maxDurationMs;
+    private final ScheduledExecutorService _executor;
+    private final EventSink _sink;
+    private String _lastData;
+    private boolean _closed;
+    private ScheduledFuture<?> _heartbeat;
+    private ScheduledFuture<?> _expiry;
+
+    /**
+     * Constructor
+     * @param searcher engine to get task status from
+     * @param id id of task
+     * @param heartbeatMs time in milliseconds between heartbeat comments
+     * @param maxDurationMs time in milliseconds after which the stream ends
+     * @param executor runs heartbeats, the end of the stream and the
+     *        lookups of the task once it changes
+     * @param sink where events are sent
+     */
+    public TaskEventStream(SearchEngine searcher, final String id,
+            long heartbeatMs, long maxDurationMs, ScheduledExecutorService executor,
+            EventSink sink) {
+        _searcher = searcher;
+        _id = id;
+        _heartbeatMs = heartbeatMs;
+        _maxDurationMs = maxDurationMs;
+        _executor = executor;
+        _sink = sink;
+    }
+
+    /**
+     * Sends first event and returns, the rest of the events are sent in
+     * the background until the task is finished, no longer exists, the
+     * client disconnects or the maximum duration elapses
+     * @param initialStatus status of task to send as first event
+     */
+    public synchronized void start(QueryStatus initialStatus) {
+        _heartbeat = _executor.scheduleAtFixedRate(this::sendHeartbeat,
+                _heartbeatMs, _heartbeatMs, TimeUnit.MILLISECONDS);
+        _expiry = _executor.schedule(this::expire, _maxDurationMs,
+                TimeUnit.MILLISECONDS);
+        update(initialStatus);
+    }
+
+    /**
+     * Tells if stream has ended
+     * @return {@code true} if no more events will be sent
+     */
+    public synchronized boolean isClosed() {
+        return _closed;
+    }
+
+    /**
+     * Sends event for {@code qs} and, unless the stream ended, waits for
+     * the next change of the task without holding a thread
+     * @param qs current status of task
+     */
+    private synchronized void update(QueryStatus qs) {
+        if (_closed){
+            return;
+        }
+        try {
+            if (qs == null){
+                sendEvent(GONE_EVENT, "{}");
+                close();
+                return;
+            }
+            String data = getEventData(qs);
+            if (isFinished(qs)){
+                sendEvent(DONE_EVENT, data);
+                close();
+                return;
+            }
+            if (!data.equals(_lastData)){
+                if (sendEvent(PROGRESS_EVENT, data) == false){
+                    return;
+                }
+                _lastData = data;
+            }
+            _searcher.getQueryChangeFuture(_id).whenCompleteAsync((v, t) -> {
+                onChange();
+            }, _executor);
+        } catch(Exception ex){
+            logger.error("Caught exception streaming events for task " + _id, ex);
+            close();
+        }
+    }
+
+    /**
+     * Gets status of task once it changed and sends it
+     */
+    private void onChange() {
+        if (isClosed()){
+            return;
+        }
+        QueryStatus qs;
+        try {
+            qs = _searcher.getQueryStatus(_id);
+        } catch(Exception ex){
+            logger.error("Caught exception getting status of task " + _id, ex);
+            close();
+            return;
+        }
+        update(qs);
+    }
+
+    private synchronized void sendHeartbeat() {
+        if (_closed){
+            return;
+        }
+        if (_sink.send(":\n\n") == false){
+            logger.debug("Event stream for task {} closed by client", _id);
+            close();
+        }
+    }
+
+    private synchronized void expire() {
+        if (_closed){
+            return;
+        }
+        logger.debug("Event stream for task {} open for {} ms, closing", _id,
+                _maxDurationMs);
+        close();
+    }
+
+    /**
+     * Stops heartbeats and ends the stream
+     */
+    private synchronized void close() {
+        if (_closed){
+            return;
+        }
+        _closed = true;
+        if (_heartbeat != null){
+            _heartbeat.cancel(false);
+        }
+        if (_expiry != null){
+            _expiry.cancel(false);
+        }
+        _sink.close();
+    }
+
+    private boolean isFinished(QueryStatus qs){
+        return qs.getProgress() == 100
+                || QueryStatus.COMPLETE_STATUS.equals(qs.getStatus())
+                || QueryStatus.FAILED_STATUS.equals(qs.getStatus());
+    }
+
+    /**
+     * Builds JSON with status, progress and number of hits of the task
+     * and, if available, each of its sources
+     * @param qs status of task
+     * @return JSON on a single line
+     * @throws IOException if there is an error building the JSON
+     */
+    private String getEventData(QueryStatus qs) throws IOException {
+        ObjectMapper mapper = SearchJsonProvider.getObjectMapper();
+        ObjectNode data = mapper.createObjectNode();
+        data.put("status", qs.getStatus());
+        data.put("message", qs.getMessage());
+        data.put("progress", qs.getProgress());
+        data.put("numberOfHits", qs.getNumberOfHits());
+        data.put("wallTime", qs.getWallTime());
+        if (qs instanceof QueryResults && ((QueryResults)qs).getSources() != null){
+            ArrayNode sources = data.putArray("sources");
+            for (SourceQueryResults sqr : ((QueryResults)qs).getSources()){
+                ObjectNode source = sources.addObject();
+                source.put("sourceName", sqr.getSourceName());
+                source.put("status", sqr.getStatus());
+                source.put("message", sqr.getMessage());
+                source.put("progress", sqr.getProgress());
+                source.put("numberOfHits", sqr.getNumberOfHits());
+            }
+        }
+        return mapper.writeValueAsString(data);
+    }
+
+    /**
+     * Sends event, if the sink is closed the stream is ended
+     * @return {@code false} if the sink is closed
+     */
+    private boolean sendEvent(final String event, final String data) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("event: ").append(event).append("\n");
+        sb.append("data: ").append(data).append("\n\n");
+        if (_sink.send(sb.toString())){
+            return true;
+        }
+        logger.debug("Event stream for task {} closed by client", _id);
+        close();
+        return false;
+    }
+}
@@ -52,5 +52,22 @@ public class TestGeneValidator {
 	
 	}
 
-
-}
\ No newline at end of file
+	@Test
+	public void testValidateSeveralGeneLists() throws URISyntaxException {
+		GeneValidator validator = new GeneValidator(new File(
+		getClass().getClassLoader().getResource("test_genes.tsv").toURI()));
+		List<String> first = Arrays.asList("A1BG", "CPAMD5", "foo");
+		List<String> second = Arrays.asList("cpamd5", "A2MP1");
+		List<ValidatedQueryGenes> results = validator.validateHumanGenes(
+				Arrays.asList(first, second, Arrays.asList("A1BG", "CPAMD5", "foo")));
+		assertEquals(3, results.size());
+		for (int i = 0; i < 2; i++){
+			ValidatedQueryGenes expected = validator.validateHumanGenes(i == 0 ? first : second);
+			assertEquals(expected.getQueryGenes(), results.get(i).getQueryGenes());
+			assertEquals(expected.getInvalid(), results.get(i).getInvalid());
+			assertEquals(expected.getNormalizedGenes(), results.get(i).getNormalizedGenes());
+		}
+		assertTrue(results.get(0) == results.get(2));
+		assertEquals("CPAMD5", results.get(1).getNormalizedGenes().get("A2M"));
+	}
+}
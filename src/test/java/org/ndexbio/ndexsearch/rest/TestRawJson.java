@@ -0,0 +1,86 @@
+package org.ndexbio.ndexsearch.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestRawJson {
+    
+    @Test
+    public void testSliceWrittenAsIs() throws Exception {
+        byte[] buffer = "xx{\"a\" : [1, 2],  \"b\":\"\\u00e9\"}yy".getBytes(StandardCharsets.UTF_8);
+        RawJson raw = new RawJson(buffer, 2, buffer.length - 4);
+        assertEquals("{\"a\" : [1, 2],  \"b\":\"\\u00e9\"}", raw.getValue());
+        
+        SourceQueryResult sqr = new SourceQueryResult();
+        sqr.setRank(1);
+        sqr.getDetails().put("raw", raw);
+        ObjectMapper mapper = SearchJsonProvider.getObjectMapper();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mapper.writeValue(out, sqr);
+        String json = out.toString("UTF-8");
+        assertTrue(json, json.contains("\"raw\":{\"a\" : [1, 2],  \"b\":\"\\u00e9\"}"));
+        
+        // String based writers get the same output
+        assertEquals(json, mapper.writeValueAsString(sqr));
+    }
+    
+    @Test
+    public void testSliceIsCopied() throws Exception {
+        byte[] buffer = "xx[1]yy".getBytes(StandardCharsets.UTF_8);
+        RawJson raw = new RawJson(buffer, 2, 3);
+        buffer[3] = '2';
+        assertEquals("[1]", raw.getValue());
+    }
+    
+    @Test
+    public void testDetailsReadAsObjectsWithRawResultsOff() throws Exception {
+        SourceQueryResult sqr = new SourceQueryResult();
+        sqr.getDetails().put("raw", new RawJson("{\"x\":1}".getBytes(StandardCharsets.UTF_8)));
+        ObjectMapper mapper = SearchJsonProvider.getObjectMapper();
+        SourceQueryResult res = mapper.readValue(mapper.writeValueAsBytes(sqr),
+                SourceQueryResult.class);
+        assertTrue(res.getDetails().get("raw") instanceof Map);
+        assertEquals(1, ((Map<?, ?>)res.getDetails().get("raw")).get("x"));
+    }
+    
+    @Test
+    public void testDetailsRoundTrip() throws Exception {
+        SourceQueryResult sqr = new SourceQueryResult();
+        sqr.getDetails().put("raw", new RawJson("{\"x\":[1,{\"y\":2}]}".getBytes(StandardCharsets.UTF_8)));
+        sqr.getDetails().put("PValue", 0.5);
+        sqr.getDetails().put("totalNetworkCount", 3);
+        SourceQueryResults sources = new SourceQueryResults();
+        sources.setResults(Arrays.asList(sqr));
+        QueryResults qr = new QueryResults();
+        qr.setSources(Arrays.asList(sources));
+        
+        ObjectMapper mapper = SearchJsonProvider.getObjectMapper(true);
+        byte[] json = mapper.writeValueAsBytes(qr);
+        QueryResults res = SearchJsonProvider.getReader(QueryResults.class, true).readValue(json);
+        SourceQueryResult resSqr = res.getSources().get(0).getResults().get(0);
+        assertTrue(resSqr.getDetails().get("raw") instanceof RawJson);
+        assertEquals("{\"x\":[1,{\"y\":2}]}", resSqr.getDetails().get("raw").toString());
+        assertEquals(0.5, resSqr.getDetails().get("PValue"));
+        assertEquals(3, resSqr.getDetails().get("totalNetworkCount"));
+        assertArrayEquals(json, mapper.writeValueAsBytes(res));
+        
+        // provider reads raw only if created with raw results enabled
+        assertSame(mapper, new SearchJsonProvider(true).getContext(QueryResults.class));
+        assertSame(SearchJsonProvider.getObjectMapper(),
+                new SearchJsonProvider().getContext(QueryResults.class));
+        res = SearchJsonProvider.getReader(QueryResults.class).readValue(json);
+        assertTrue(res.getSources().get(0).getResults().get(0).getDetails().get("raw") instanceof Map);
+    }
+}
@@ -19,7 +19,8 @@ public class TestSearchApplication {
     public void testCreation(){
         SearchApplication sa = new SearchApplication();
         Set<Object> objSet = sa.getSingletons();
-        assertEquals(0, objSet.size());
+        assertEquals(1, objSet.size());
+        assertTrue(objSet.iterator().next() instanceof SearchJsonProvider);
         
         Set<Class<?>> classSet = sa.getClasses();
         assertEquals(6, classSet.size());
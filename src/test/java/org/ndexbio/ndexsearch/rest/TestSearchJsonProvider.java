@@ -0,0 +1,60 @@
+package org.ndexbio.ndexsearch.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import javax.ws.rs.core.MediaType;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.ndexbio.ndexsearch.rest.model.Query;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.QueryStatus;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestSearchJsonProvider {
+    
+    @Test
+    public void testSharedReadersAndWriters(){
+        assertSame(SearchJsonProvider.getReader(Query.class),
+                SearchJsonProvider.getReader(Query.class));
+        assertSame(SearchJsonProvider.getWriter(QueryResults.class),
+                SearchJsonProvider.getWriter(QueryResults.class));
+        assertNotNull(SearchJsonProvider.getReader(String.class));
+        assertNotNull(SearchJsonProvider.getWriter(String.class));
+        SearchJsonProvider provider = new SearchJsonProvider();
+        assertSame(SearchJsonProvider.getObjectMapper(), provider.getContext(Query.class));
+    }
+    
+    @Test
+    public void testReadFrom() throws Exception {
+        Query query = new Query();
+        query.setGeneList(Arrays.asList("gene1", "gene2"));
+        byte[] json = SearchJsonProvider.getObjectMapper().writeValueAsBytes(query);
+        SearchJsonProvider provider = new SearchJsonProvider();
+        Class<Object> theClass = (Class)Query.class;
+        Query res = (Query)provider.readFrom(theClass, Query.class, null,
+                MediaType.APPLICATION_JSON_TYPE, null, new ByteArrayInputStream(json));
+        assertEquals(Arrays.asList("gene1", "gene2"), res.getGeneList());
+    }
+    
+    @Test
+    public void testWriteToQueryResultsDeclaredAsQueryStatus() throws Exception {
+        QueryResults qr = new QueryResults();
+        qr.setStatus(QueryResults.COMPLETE_STATUS);
+        SourceQueryResults sqr = new SourceQueryResults();
+        sqr.setSourceName("foo");
+        qr.setSources(Arrays.asList(sqr));
+        SearchJsonProvider provider = new SearchJsonProvider();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(qr, QueryStatus.class, QueryStatus.class, null,
+                MediaType.APPLICATION_JSON_TYPE, null, out);
+        QueryResults res = SearchJsonProvider.getObjectMapper().readValue(out.toByteArray(),
+                QueryResults.class);
+        assertEquals(QueryResults.COMPLETE_STATUS, res.getStatus());
+        assertEquals("foo", res.getSources().get(0).getSourceName());
+    }
+}
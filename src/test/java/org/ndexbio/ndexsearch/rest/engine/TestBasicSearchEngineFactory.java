@@ -78,6 +78,13 @@ public class TestBasicSearchEngineFactory {
 		assertTrue(sources.containsKey(SourceResult.ENRICHMENT_SERVICE));
 		assertTrue(sources.containsKey(SourceResult.INTERACTOME_GENEASSOCIATION_SERVICE));
 		assertTrue(sources.containsKey(SourceResult.INTERACTOME_PPI_SERVICE));
+		for (SourceEngine source : sources.values()){
+			assertTrue(source instanceof ResilientSourceEngine);
+		}
+		assertTrue(((ResilientSourceEngine)sources.get(SourceResult.KEYWORD_SERVICE)).getDelegate()
+				instanceof KeywordSourceEngine);
+		assertTrue(((ResilientSourceEngine)sources.get(SourceResult.ENRICHMENT_SERVICE)).getDelegate()
+				instanceof EnrichmentSourceEngine);
 	}
 
 	
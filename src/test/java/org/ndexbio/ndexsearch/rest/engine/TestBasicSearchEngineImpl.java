@@ -1,7 +1,9 @@
 package org.ndexbio.ndexsearch.rest.engine;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,6 +16,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.mockito.Mockito.*;
 
@@ -24,7 +31,10 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.ndexbio.model.exceptions.NdexException;
+import org.ndexbio.model.object.NetworkSearchResult;
+import org.ndexbio.model.object.network.NetworkSummary;
 import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
+import org.ndexbio.ndexsearch.rest.model.AlterationData;
 import org.ndexbio.ndexsearch.rest.model.Query;
 import org.ndexbio.ndexsearch.rest.model.QueryResults;
 import org.ndexbio.ndexsearch.rest.model.QueryStatus;
@@ -33,6 +43,7 @@ import org.ndexbio.ndexsearch.rest.model.SourceConfigurations;
 import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
 import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
 import org.ndexbio.ndexsearch.rest.model.SourceResult;
+import org.ndexbio.rest.client.NdexRestClientModelAccessLayer;
 
 
 /**
@@ -82,17 +93,22 @@ public class TestBasicSearchEngineImpl {
 	}
 	
 	@Test
-	public void testThreadSleepAndUpdateThreadSleepTime() throws SearchException {
+	public void testUpdateNumberOfDispatcherWorkersAndQueueDepth() throws SearchException {
 		BasicSearchEngineImpl engine = new BasicSearchEngineImpl("/dbdir", "/task",
                                                                  null, 0,
 				new HashMap<String,SourceEngine>(),geneSymbolFile);
-		engine.updateThreadSleepTime(0L);
-		engine.threadSleep();
+		engine.updateNumberOfDispatcherWorkers(2);
+		assertEquals(0, engine.getQueryQueueDepth());
+		assertEquals(0.0, engine.getDispatcherWorkerUtilization(), 0.001);
+		Map<String, Number> metrics = engine.getMetrics();
+		assertEquals(0, metrics.get(BasicSearchEngineImpl.QUERY_QUEUE_DEPTH_METRIC));
+		assertEquals(0.0, metrics.get(BasicSearchEngineImpl.DISPATCHER_WORKER_UTILIZATION_METRIC)
+				.doubleValue(), 0.001);
 	}
 	
 	/**
 	 * NOTE: This test is relying on the assumption that setting polling interval to 600
-	 * seconds mean updateSourceResults() will NOT be called by the service poll executor
+	 * seconds mean updateSourceResults() is only called once by the service poll executor
 	 */
 	@Test
 	public void testRunWithShutdownAlreadyInvoked() throws SearchException {
@@ -224,6 +240,101 @@ public class TestBasicSearchEngineImpl {
 		assertEquals("A2M", qr.getQuery().get(0));
 	}
 	
+	@Test
+	public void testQueryReusesTaskForIdenticalQuery() throws SearchException {
+		BasicSearchEngineImpl engine = new BasicSearchEngineImpl("/db", 
+					"/task", null, 0, new HashMap<String,SourceEngine>(),geneSymbolFile);
+		Query q = new Query();
+		q.setSourceList(Arrays.asList("db1"));
+		q.setGeneList(Arrays.asList("A2M", "A1BG"));
+		String id = engine.query(q);
+		
+		Query sameQuery = new Query();
+		sameQuery.setSourceList(Arrays.asList("db1"));
+		sameQuery.setGeneList(Arrays.asList("A1BG", "A2M"));
+		assertEquals(id, engine.query(sameQuery));
+		
+		Query otherSources = new Query();
+		otherSources.setSourceList(Arrays.asList("db2"));
+		otherSources.setGeneList(Arrays.asList("A1BG", "A2M"));
+		assertNotEquals(id, engine.query(otherSources));
+		
+		// order of sources does not matter
+		Query twoSources = new Query();
+		twoSources.setSourceList(Arrays.asList("db1", "db2"));
+		twoSources.setGeneList(Arrays.asList("A1BG", "A2M"));
+		String twoSourcesId = engine.query(twoSources);
+		Query twoSourcesReversed = new Query();
+		twoSourcesReversed.setSourceList(Arrays.asList("db2", "db1"));
+		twoSourcesReversed.setGeneList(Arrays.asList("A1BG", "A2M"));
+		assertEquals(twoSourcesId, engine.query(twoSourcesReversed));
+		
+		// alteration data is part of query
+		AlterationData ad = new AlterationData();
+		ad.setGene("A2M");
+		ad.setData(Arrays.asList("1"));
+		Query altered = new Query();
+		altered.setSourceList(Arrays.asList("db1"));
+		altered.setGeneList(Arrays.asList("A1BG", "A2M"));
+		altered.setAlterationData(Arrays.asList(ad));
+		assertNotEquals(id, engine.query(altered));
+		
+		// failed tasks are not reused
+		engine.getQueryResultsFromDb(id).setStatus(QueryResults.FAILED_STATUS);
+		Query retryQuery = new Query();
+		retryQuery.setSourceList(Arrays.asList("db1"));
+		retryQuery.setGeneList(Arrays.asList("A1BG", "A2M"));
+		assertNotEquals(id, engine.query(retryQuery));
+		
+		// reuse disabled
+		engine.updateQueryReuseTimeToLive(0);
+		String newId = engine.query(sameQuery);
+		assertNotEquals(newId, engine.query(sameQuery));
+	}
+	
+	@Test
+	public void testQueryBatch() throws SearchException {
+		BasicSearchEngineImpl engine = new BasicSearchEngineImpl("/db",
+					"/task", null, 0, new HashMap<String,SourceEngine>(),geneSymbolFile);
+		try {
+			engine.queryBatch(null);
+			fail("Expected SearchException");
+		} catch(SearchException se){
+			assertEquals("Query list is null", se.getMessage());
+		}
+
+		Query q = new Query();
+		q.setSourceList(Arrays.asList("db1"));
+		q.setGeneList(Arrays.asList("A2M", "A1BG"));
+
+		// nothing is submitted if any query is invalid
+		try {
+			engine.queryBatch(Arrays.asList(q, new Query()));
+			fail("Expected SearchException");
+		} catch(SearchException se){
+			assertEquals("Query 1 : No databases selected", se.getMessage());
+		}
+		// gene list is replaced with the sorted valid genes once a task is made
+		assertEquals(Arrays.asList("A2M", "A1BG"), q.getGeneList());
+
+		Query sameQuery = new Query();
+		sameQuery.setSourceList(Arrays.asList("db1"));
+		sameQuery.setGeneList(Arrays.asList("A2M", "A1BG"));
+		Query otherQuery = new Query();
+		otherQuery.setSourceList(Arrays.asList("db1"));
+		otherQuery.setGeneList(Arrays.asList("A2M"));
+		List<String> ids = engine.queryBatch(Arrays.asList(q, sameQuery, otherQuery));
+		assertEquals(3, ids.size());
+		assertEquals(ids.get(0), ids.get(1));
+		assertNotEquals(ids.get(0), ids.get(2));
+		QueryResults qr = engine.getQueryResultsFromDb(ids.get(2));
+		assertEquals(QueryResults.SUBMITTED_STATUS, qr.getStatus());
+		assertEquals(Arrays.asList("A2M"), qr.getQuery());
+
+		// single query reuses task created by batch
+		assertEquals(ids.get(0), engine.query(q));
+	}
+
 	@Test
 	public void testProcessQueryErrorMakingTaskDirectory() throws Exception {
 		File tempDir = _folder.newFolder();
@@ -390,6 +501,408 @@ public class TestBasicSearchEngineImpl {
 		}
 	}
 	
+	@Test
+	public void testProcessQueryMultipleSourceWhereOneSourceTimesOut() throws Exception {
+		File tempDir = _folder.newFolder();
+		try {
+			File taskDir = new File(tempDir.getAbsolutePath() + File.separator + "task");
+			assertTrue(taskDir.mkdirs());
+			UUID sourceUUID = UUID.randomUUID();
+			SourceConfiguration srcConfig = new SourceConfiguration();
+			srcConfig.setUuid(sourceUUID.toString());
+			srcConfig.setName("source1");
+			
+			UUID sourceUUID2 = UUID.randomUUID();
+			SourceConfiguration srcConfig2 = new SourceConfiguration();
+			srcConfig2.setUuid(sourceUUID2.toString());
+			srcConfig2.setName("source2");
+			
+			SourceConfigurations sc = new SourceConfigurations();
+			sc.setSources(Arrays.asList(srcConfig, srcConfig2));
+			
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			
+			SourceEngine mockSrcEngine = mock(SourceEngine.class);
+			SourceQueryResults sqRes = new SourceQueryResults();
+			sqRes.setMessage("myres");
+			sqRes.setStatus(QueryResults.PROCESSING_STATUS);
+			when(mockSrcEngine.getSourceQueryResults(any(Query.class))).thenReturn(sqRes);
+			sourceEngines.put("source1", mockSrcEngine);
+			
+			SourceEngine mockSrcEngine2 = mock(SourceEngine.class);
+			when(mockSrcEngine2.getSourceQueryResults(any(Query.class))).thenAnswer((invocation) -> {
+				Thread.sleep(10000);
+				return null;
+			});
+			sourceEngines.put("source2", mockSrcEngine2);
+			
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+					taskDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			engine.updateSourceQueryTimeout(200L);
+			Query query = new Query();
+			query.setGeneList(Arrays.asList("gene1","gene2"));
+			query.setSourceList(Arrays.asList("source1", "source2"));
+			engine.processQuery("queryid", query);
+			
+			QueryResults res = engine.getQueryResultsFromDbOrFilesystem("queryid");
+			assertNotNull(res);
+			List<SourceQueryResults> sqResList = res.getSources();
+			assertEquals(2, sqResList.size());
+			
+			// source that answered is recorded first
+			assertEquals("myres", sqResList.get(0).getMessage());
+			assertEquals(sourceUUID.toString(), sqResList.get(0).getSourceUUID().toString());
+
+			assertEquals("Source source2 did not respond within 200 ms",
+					sqResList.get(1).getMessage());
+			assertEquals(100, sqResList.get(1).getProgress());
+			assertEquals(QueryResults.FAILED_STATUS, sqResList.get(1).getStatus());
+			assertEquals(sourceUUID2.toString(), sqResList.get(1).getSourceUUID().toString());
+		} finally {
+			_folder.delete();
+		}
+	}
+	
+	@Test
+	public void testProcessQueryResultVisibleWhileOtherSourceRuns() throws Exception {
+		File tempDir = _folder.newFolder();
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			File taskDir = new File(tempDir.getAbsolutePath() + File.separator + "task");
+			assertTrue(taskDir.mkdirs());
+			SourceConfiguration srcConfig = new SourceConfiguration();
+			srcConfig.setUuid(UUID.randomUUID().toString());
+			srcConfig.setName("source1");
+			
+			SourceConfiguration srcConfig2 = new SourceConfiguration();
+			srcConfig2.setUuid(UUID.randomUUID().toString());
+			srcConfig2.setName("source2");
+			
+			SourceConfigurations sc = new SourceConfigurations();
+			sc.setSources(Arrays.asList(srcConfig, srcConfig2));
+			
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			SourceEngine mockSrcEngine = mock(SourceEngine.class);
+			SourceQueryResults sqRes = new SourceQueryResults();
+			sqRes.setMessage("myres");
+			sqRes.setStatus(QueryResults.PROCESSING_STATUS);
+			when(mockSrcEngine.getSourceQueryResults(any(Query.class))).thenReturn(sqRes);
+			sourceEngines.put("source1", mockSrcEngine);
+			
+			SourceEngine mockSrcEngine2 = mock(SourceEngine.class);
+			SourceQueryResults sqRes2 = new SourceQueryResults();
+			sqRes2.setMessage("slowres");
+			sqRes2.setStatus(QueryResults.PROCESSING_STATUS);
+			when(mockSrcEngine2.getSourceQueryResults(any(Query.class))).thenAnswer((invocation) -> {
+				release.await(10, TimeUnit.SECONDS);
+				return sqRes2;
+			});
+			sourceEngines.put("source2", mockSrcEngine2);
+			
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+					taskDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			engine.updateSourceQueryTimeout(10000L);
+			Query query = new Query();
+			query.setGeneList(Arrays.asList("gene1","gene2"));
+			query.setSourceList(Arrays.asList("source1", "source2"));
+			Thread processor = new Thread(() -> engine.processQuery("queryid", query));
+			processor.start();
+			
+			// answer of fast source can be read while slow source is running
+			long giveUp = System.currentTimeMillis() + 10000;
+			QueryResults snapshot = null;
+			while (System.currentTimeMillis() < giveUp){
+				snapshot = engine.getQueryResultsSnapshot("queryid");
+				if (snapshot != null && snapshot.getSources().size() == 1){
+					break;
+				}
+				Thread.sleep(10);
+			}
+			assertNotNull(snapshot);
+			assertEquals(1, snapshot.getSources().size());
+			assertEquals("myres", snapshot.getSources().get(0).getMessage());
+			assertTrue(processor.isAlive());
+			
+			release.countDown();
+			processor.join(10000);
+			QueryResults res = engine.getQueryResultsFromDbOrFilesystem("queryid");
+			assertEquals(2, res.getSources().size());
+			assertEquals("slowres", res.getSources().get(1).getMessage());
+		} finally {
+			release.countDown();
+			_folder.delete();
+		}
+	}
+	
+	@Test
+	public void testProcessQueryWaitsForFirstSourceRefresh() throws Exception {
+		File tempDir = _folder.newFolder();
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			File taskDir = new File(tempDir.getAbsolutePath() + File.separator + "task");
+			assertTrue(taskDir.mkdirs());
+			SourceConfiguration srcConfig = new SourceConfiguration();
+			srcConfig.setUuid(UUID.randomUUID().toString());
+			srcConfig.setName("source1");
+			SourceConfigurations sc = new SourceConfigurations();
+			sc.setSources(Arrays.asList(srcConfig));
+			
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			SourceEngine mockSrcEngine = mock(SourceEngine.class);
+			AtomicInteger refreshed = new AtomicInteger(0);
+			doAnswer((invocation) -> {
+				release.await(10, TimeUnit.SECONDS);
+				SourceResult sr = invocation.getArgument(0);
+				sr.setStatus("ok");
+				refreshed.incrementAndGet();
+				return null;
+			}).when(mockSrcEngine).updateSourceResult(any(SourceResult.class));
+			when(mockSrcEngine.getSourceQueryResults(any(Query.class))).thenAnswer((invocation) -> {
+				SourceQueryResults sqRes = new SourceQueryResults();
+				sqRes.setStatus(QueryResults.PROCESSING_STATUS);
+				sqRes.setMessage("refreshed " + refreshed.get());
+				return sqRes;
+			});
+			sourceEngines.put("source1", mockSrcEngine);
+			
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+					taskDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			engine.startSourceRefreshes();
+			Query query = new Query();
+			query.setGeneList(Arrays.asList("gene1","gene2"));
+			query.setSourceList(Arrays.asList("source1"));
+			Thread processor = new Thread(() -> engine.processQuery("queryid", query));
+			processor.start();
+			
+			// query waits on refresh of source
+			Thread.sleep(100);
+			assertTrue(processor.isAlive());
+			verify(mockSrcEngine, never()).getSourceQueryResults(any(Query.class));
+			
+			release.countDown();
+			processor.join(10000);
+			QueryResults res = engine.getQueryResultsFromDbOrFilesystem("queryid");
+			assertEquals(1, res.getSources().size());
+			assertEquals("refreshed 1", res.getSources().get(0).getMessage());
+			
+			// refresh that does not finish in time is not waited on past timeout
+			CountDownLatch hang = new CountDownLatch(1);
+			BasicSearchEngineImpl slowEngine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+					taskDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			doAnswer((invocation) -> {
+				hang.await(10, TimeUnit.SECONDS);
+				return null;
+			}).when(mockSrcEngine).updateSourceResult(any(SourceResult.class));
+			slowEngine.updateSourceRefreshTimeout(100L);
+			slowEngine.startSourceRefreshes();
+			long start = System.currentTimeMillis();
+			slowEngine.processQuery("queryid2", query);
+			assertTrue(System.currentTimeMillis() - start < 5000);
+			hang.countDown();
+			assertEquals(1, slowEngine.getQueryResultsFromDbOrFilesystem("queryid2").getSources().size());
+		} finally {
+			release.countDown();
+			_folder.delete();
+		}
+	}
+	
+	@Test
+	public void testSourcesQueriedOnNamedDaemonThreads() throws Exception {
+		File tempDir = _folder.newFolder();
+		try {
+			File taskDir = new File(tempDir.getAbsolutePath() + File.separator + "task");
+			assertTrue(taskDir.mkdirs());
+			SourceConfiguration srcConfig = new SourceConfiguration();
+			srcConfig.setUuid(UUID.randomUUID().toString());
+			srcConfig.setName("source1");
+			SourceConfigurations sc = new SourceConfigurations();
+			sc.setSources(Arrays.asList(srcConfig));
+			
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			SourceEngine mockSrcEngine = mock(SourceEngine.class);
+			AtomicReference<Thread> queryThread = new AtomicReference<>();
+			when(mockSrcEngine.getSourceQueryResults(any(Query.class))).thenAnswer((invocation) -> {
+				queryThread.set(Thread.currentThread());
+				SourceQueryResults sqRes = new SourceQueryResults();
+				sqRes.setStatus(QueryResults.COMPLETE_STATUS);
+				return sqRes;
+			});
+			sourceEngines.put("source1", mockSrcEngine);
+			
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+					taskDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			Query query = new Query();
+			query.setGeneList(Arrays.asList("gene1","gene2"));
+			query.setSourceList(Arrays.asList("source1"));
+			engine.processQuery("queryid", query);
+			
+			assertNotNull(queryThread.get());
+			assertTrue(queryThread.get().getName().startsWith("source-query-"));
+			assertTrue(queryThread.get().isDaemon());
+		} finally {
+			_folder.delete();
+		}
+	}
+	
+	@Test
+	public void testUpdateSourceResultsSlowSourceMarkedStale() throws Exception {
+		UUID sourceUUID = UUID.randomUUID();
+		SourceConfiguration srcConfig = new SourceConfiguration();
+		srcConfig.setUuid(sourceUUID.toString());
+		srcConfig.setName("source1");
+
+		UUID sourceUUID2 = UUID.randomUUID();
+		SourceConfiguration srcConfig2 = new SourceConfiguration();
+		srcConfig2.setUuid(sourceUUID2.toString());
+		srcConfig2.setName("source2");
+
+		SourceConfigurations sc = new SourceConfigurations();
+		sc.setSources(Arrays.asList(srcConfig, srcConfig2));
+
+		Map<String,SourceEngine> sourceEngines = new HashMap<>();
+		SourceEngine mockSrcEngine = mock(SourceEngine.class);
+		doAnswer((invocation) -> {
+			SourceResult sr = invocation.getArgument(0);
+			sr.setStatus("ok");
+			sr.setVersion("1.0");
+			return null;
+		}).when(mockSrcEngine).updateSourceResult(any(SourceResult.class));
+		sourceEngines.put("source1", mockSrcEngine);
+
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger source2Calls = new AtomicInteger(0);
+		SourceEngine mockSrcEngine2 = mock(SourceEngine.class);
+		doAnswer((invocation) -> {
+			SourceResult sr = invocation.getArgument(0);
+			sr.setStatus("ok");
+			sr.setVersion("2.0");
+			sr.setNumberOfNetworks(5);
+			// every refresh after the first hangs
+			if (source2Calls.incrementAndGet() > 1){
+				release.await(10, TimeUnit.SECONDS);
+			}
+			return null;
+		}).when(mockSrcEngine2).updateSourceResult(any(SourceResult.class));
+		sourceEngines.put("source2", mockSrcEngine2);
+
+		BasicSearchEngineImpl engine = new BasicSearchEngineImpl("/dbdir",
+				"/taskdir", sc, 0, sourceEngines, geneSymbolFile);
+		engine.updateSourceRefreshTimeout(200L);
+		try {
+			engine.updateSourceResults();
+			List<SourceResult> srList = engine.getSourceResults().getResults();
+			assertEquals(2, srList.size());
+			assertEquals("ok", srList.get(1).getStatus());
+			assertEquals("2.0", srList.get(1).getVersion());
+
+			long start = System.currentTimeMillis();
+			engine.updateSourceResults();
+			assertTrue(System.currentTimeMillis() - start < 5000);
+			srList = engine.getSourceResults().getResults();
+			assertEquals("ok", srList.get(0).getStatus());
+			assertEquals("1.0", srList.get(0).getVersion());
+			assertEquals("source2", srList.get(1).getName());
+			assertEquals(sourceUUID2.toString(), srList.get(1).getUuid());
+			assertEquals(BasicSearchEngineImpl.SOURCE_STALE_STATUS, srList.get(1).getStatus());
+			assertEquals("2.0", srList.get(1).getVersion());
+			assertEquals(5, srList.get(1).getNumberOfNetworks());
+
+			// refresh still running is not started again
+			engine.updateSourceResults();
+			assertEquals(2, source2Calls.get());
+			assertEquals(BasicSearchEngineImpl.SOURCE_STALE_STATUS,
+					engine.getSourceResults().getResults().get(1).getStatus());
+
+			release.countDown();
+			for (int i = 0; i < 100 && source2Calls.get() < 3; i++){
+				engine.updateSourceResults();
+				Thread.sleep(10);
+			}
+			srList = engine.getSourceResults().getResults();
+			assertEquals("ok", srList.get(1).getStatus());
+		} finally {
+			release.countDown();
+			engine.shutdown();
+		}
+	}
+	
+	@Test
+	public void testUpdateSourceResultsThroughResilientSourceEngine() throws Exception {
+		UUID sourceUUID = UUID.randomUUID();
+		SourceConfiguration srcConfig = new SourceConfiguration();
+		srcConfig.setUuid(sourceUUID.toString());
+		srcConfig.setName("source1");
+
+		UUID sourceUUID2 = UUID.randomUUID();
+		SourceConfiguration srcConfig2 = new SourceConfiguration();
+		srcConfig2.setUuid(sourceUUID2.toString());
+		srcConfig2.setName("source2");
+
+		SourceConfigurations sc = new SourceConfigurations();
+		sc.setSources(Arrays.asList(srcConfig, srcConfig2));
+
+		// source1 hangs after first refresh, source2 reports error
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger source1Calls = new AtomicInteger(0);
+		SourceEngine mockSrcEngine = mock(SourceEngine.class);
+		doAnswer((invocation) -> {
+			SourceResult sr = invocation.getArgument(0);
+			if (source1Calls.incrementAndGet() > 1){
+				release.await(10, TimeUnit.SECONDS);
+			}
+			sr.setStatus("ok");
+			sr.setVersion("1.0");
+			sr.setNumberOfNetworks(3);
+			return null;
+		}).when(mockSrcEngine).updateSourceResult(any(SourceResult.class));
+
+		AtomicInteger source2Calls = new AtomicInteger(0);
+		SourceEngine mockSrcEngine2 = mock(SourceEngine.class);
+		doAnswer((invocation) -> {
+			SourceResult sr = invocation.getArgument(0);
+			if (source2Calls.incrementAndGet() > 1){
+				sr.setStatus(BasicSearchEngineImpl.SOURCE_ERROR_STATUS);
+				return null;
+			}
+			sr.setStatus("ok");
+			sr.setVersion("2.0");
+			return null;
+		}).when(mockSrcEngine2).updateSourceResult(any(SourceResult.class));
+
+		Map<String,SourceEngine> sourceEngines = new HashMap<>();
+		ResilientSourceEngine resilient = new ResilientSourceEngine(mockSrcEngine,
+				"source1", 100, 0, 0, 0);
+		ResilientSourceEngine resilient2 = new ResilientSourceEngine(mockSrcEngine2,
+				"source2", 100, 0, 0, 0);
+		sourceEngines.put("source1", resilient);
+		sourceEngines.put("source2", resilient2);
+
+		BasicSearchEngineImpl engine = new BasicSearchEngineImpl("/dbdir",
+				"/taskdir", sc, 0, sourceEngines, geneSymbolFile);
+		engine.updateSourceRefreshTimeout(5000L);
+		try {
+			engine.updateSourceResults();
+			List<SourceResult> srList = engine.getSourceResults().getResults();
+			assertEquals("ok", srList.get(0).getStatus());
+			assertEquals("ok", srList.get(1).getStatus());
+
+			// wrapper times out source1 so its refresh finishes without a status
+			engine.updateSourceResults();
+			srList = engine.getSourceResults().getResults();
+			assertEquals(BasicSearchEngineImpl.SOURCE_STALE_STATUS, srList.get(0).getStatus());
+			assertEquals("1.0", srList.get(0).getVersion());
+			assertEquals(3, srList.get(0).getNumberOfNetworks());
+			assertEquals(sourceUUID.toString(), srList.get(0).getUuid());
+			assertEquals(BasicSearchEngineImpl.SOURCE_STALE_STATUS, srList.get(1).getStatus());
+			assertEquals("2.0", srList.get(1).getVersion());
+		} finally {
+			release.countDown();
+			resilient.shutdown();
+			resilient2.shutdown();
+			engine.shutdown();
+		}
+	}
+	
 	@Test
 	public void testcheckAndUpdateQueryResults_ResultIsComplete() throws SearchException {
 		Map<String,SourceEngine> sourceEngines = new HashMap<>();
@@ -1160,6 +1673,200 @@ public class TestBasicSearchEngineImpl {
 		}
 	}
 	
+	@Test
+	public void testGetQueryStatusDoesNotPollSourcesOrAlterStoredResults() throws SearchException, IOException {
+		File tempDir = _folder.newFolder();
+		try {
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			SourceEngine mockSrcEngine = mock(SourceEngine.class);
+			sourceEngines.put(SourceResult.ENRICHMENT_SERVICE, mockSrcEngine);
+			SourceConfigurations sc = new SourceConfigurations();
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+						tempDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			Query thequery = new Query();
+			thequery.setSourceList(Arrays.asList(SourceResult.ENRICHMENT_SERVICE));
+			thequery.setGeneList(Arrays.asList("gene1", "gene2"));
+			String id = engine.query(thequery);
+			QueryResults qr = engine.getQueryResultsFromDb(id);
+			qr.setStatus(QueryResults.PROCESSING_STATUS);
+			SourceQueryResults sqr = new SourceQueryResults();
+			sqr.setSourceName(SourceResult.ENRICHMENT_SERVICE);
+			sqr.setProgress(50);
+			sqr.setResults(Arrays.asList(new SourceQueryResult()));
+			qr.setSources(Arrays.asList(sqr));
+			
+			QueryResults res = (QueryResults)engine.getQueryStatus(id);
+			assertEquals(50, res.getSources().get(0).getProgress());
+			assertNull(res.getSources().get(0).getResults());
+			
+			// stored results should still be there
+			assertEquals(1, sqr.getResults().size());
+			
+			QueryResults fullRes = engine.getQueryResults(id, "somesource", 0, 0);
+			assertEquals(0, fullRes.getSources().size());
+			assertEquals(1, qr.getSources().size());
+			
+			verify(mockSrcEngine, never()).updateSourceQueryResults(any(SourceQueryResults.class));
+		} finally {
+			_folder.delete();
+		}
+	}
+	
+	@Test
+	public void testGetQueryResultsAdoptsUnfinishedTaskFromFilesystem() throws SearchException, IOException {
+		File tempDir = _folder.newFolder();
+		try {
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			SourceConfigurations sc = new SourceConfigurations();
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+						tempDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			Query thequery = new Query();
+			thequery.setSourceList(Arrays.asList("foosource"));
+			thequery.setGeneList(Arrays.asList("gene1", "gene2"));
+			String id = engine.query(thequery);
+			QueryResults qr = engine.getQueryResultsFromDb(id);
+			qr.setStatus(QueryResults.PROCESSING_STATUS);
+			qr.setMessage("myquery");
+			File taskDir = new File(tempDir.getAbsolutePath() + File.separator + id);
+			assertTrue(taskDir.mkdirs());
+			engine.saveQueryResultsToFilesystem(id);
+			assertEquals(0, engine.getNumberOfTrackedQueries());
+			
+			QueryResults res = engine.getQueryResults(id, null, 0, 0);
+			assertEquals("myquery", res.getMessage());
+			assertEquals(1, engine.getNumberOfTrackedQueries());
+			
+			// completed tasks are not adopted
+			engine.delete(id);
+			assertEquals(0, engine.getNumberOfTrackedQueries());
+		} finally {
+			_folder.delete();
+		}
+	}
+	
+	@Test
+	public void testGetQueryResultsSnapshotOfFinishedTaskIsCopy() throws Exception {
+		QueryResults loaded = new QueryResults();
+		loaded.setStatus(QueryResults.COMPLETE_STATUS);
+		SourceQueryResults sqr1 = new SourceQueryResults();
+		sqr1.setSourceName("source1");
+		SourceQueryResults sqr2 = new SourceQueryResults();
+		sqr2.setSourceName("source2");
+		loaded.setSources(new ArrayList<>(Arrays.asList(sqr1, sqr2)));
+		
+		// store hands out the same object as happens for concurrent loads
+		TaskStore mockStore = mock(TaskStore.class);
+		when(mockStore.load("task1")).thenReturn(loaded);
+		BasicSearchEngineImpl engine = new BasicSearchEngineImpl("/db", "/task",
+				new SourceConfigurations(), 0, new HashMap<>(), geneSymbolFile,
+				mockStore);
+		QueryResults snapshot = engine.getQueryResultsSnapshot("task1");
+		assertNotSame(loaded, snapshot);
+		assertEquals(2, snapshot.getSources().size());
+		snapshot.getSources().remove(1);
+		
+		QueryResults res = engine.getQueryResults("task1", "source2", 0, 0);
+		assertEquals(1, res.getSources().size());
+		assertEquals("source2", res.getSources().get(0).getSourceName());
+		assertEquals(2, loaded.getSources().size());
+	}
+	
+	@Test
+	public void testGetQueryResultsOfCompletedTaskServedFromMemory() throws SearchException, IOException {
+		File tempDir = _folder.newFolder();
+		try {
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			SourceConfigurations sc = new SourceConfigurations();
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+						tempDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			String id = "task1";
+			File taskDir = new File(tempDir.getAbsolutePath() + File.separator + id);
+			assertTrue(taskDir.mkdirs());
+			QueryResults qr = new QueryResults();
+			qr.setStatus(QueryResults.COMPLETE_STATUS);
+			qr.setMessage("myquery");
+			engine.updateQueryResultsInDb(id, qr);
+			engine.saveQueryResultsToFilesystem(id);
+			
+			// first request loads results from filesystem
+			assertEquals("myquery", engine.getQueryResults(id, null, 0, 0).getMessage());
+			assertEquals(0, engine.getCompletedResultsCacheHitCount());
+			assertEquals(1, engine.getCompletedResultsCacheMissCount());
+			assertTrue(engine.getCompletedResultsCacheWeight() > 0);
+			
+			// later requests never touch the filesystem
+			assertTrue(new File(engine.getQueryResultsFilePath(id)).delete());
+			assertEquals("myquery", engine.getQueryResults(id, null, 0, 0).getMessage());
+			assertEquals(QueryResults.COMPLETE_STATUS, engine.getQueryStatus(id).getStatus());
+			assertEquals(2, engine.getCompletedResultsCacheHitCount());
+			assertEquals(0, engine.getCompletedResultsCacheEvictionCount());
+			Map<String, Number> metrics = engine.getMetrics();
+			assertEquals(2L, metrics.get(BasicSearchEngineImpl.COMPLETED_RESULTS_CACHE_HITS_METRIC));
+			assertEquals(1L, metrics.get(BasicSearchEngineImpl.COMPLETED_RESULTS_CACHE_MISSES_METRIC));
+			assertEquals(0L, metrics.get(BasicSearchEngineImpl.COMPLETED_RESULTS_CACHE_EVICTIONS_METRIC));
+			assertEquals(engine.getCompletedResultsCacheWeight(),
+					metrics.get(BasicSearchEngineImpl.COMPLETED_RESULTS_CACHE_BYTES_METRIC));
+			
+			// a cache too small for the results holds nothing
+			engine.updateCompletedResultsCacheSize(1);
+			assertNull(engine.getQueryResults(id, null, 0, 0));
+			assertEquals(0, engine.getCompletedResultsCacheWeight());
+		} finally {
+			_folder.delete();
+		}
+	}
+	
+	@Test
+	public void testBinaryTaskStorageFormat() throws SearchException, IOException {
+		File tempDir = _folder.newFolder();
+		try {
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			SourceConfigurations sc = new SourceConfigurations();
+			FileSystemTaskStore store = new FileSystemTaskStore(tempDir.getAbsolutePath(), true);
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+						tempDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile, store);
+			
+			// task saved as json before binary format was enabled
+			File jsonTaskDir = new File(tempDir.getAbsolutePath() + File.separator + "jsontask");
+			assertTrue(jsonTaskDir.mkdirs());
+			QueryResults qr = new QueryResults();
+			qr.setStatus(QueryResults.COMPLETE_STATUS);
+			qr.setMessage("jsonquery");
+			try (FileOutputStream out = new FileOutputStream(engine.getQueryResultsFilePath("jsontask"))){
+				new ObjectMapper().writeValue(out, qr);
+			}
+			
+			String id = "bintask";
+			File taskDir = new File(tempDir.getAbsolutePath() + File.separator + id);
+			assertTrue(taskDir.mkdirs());
+			qr = new QueryResults();
+			qr.setStatus(QueryResults.COMPLETE_STATUS);
+			qr.setMessage("binquery");
+			SourceQueryResults sqr = new SourceQueryResults();
+			sqr.setSourceName("foo");
+			SourceQueryResult res1 = new SourceQueryResult();
+			res1.setDescription("res1");
+			sqr.setResults(Arrays.asList(res1));
+			qr.setSources(Arrays.asList(sqr));
+			engine.updateQueryResultsInDb(id, qr);
+			engine.saveQueryResultsToFilesystem(id);
+			assertFalse(new File(engine.getQueryResultsFilePath(id)).exists());
+			assertTrue(new File(store.getQueryResultsBinaryFilePath(id)).isFile());
+			
+			QueryResults res = engine.getQueryResults(id, null, 0, 0);
+			assertEquals("binquery", res.getMessage());
+			assertEquals("res1", res.getSources().get(0).getResults().get(0).getDescription());
+			QueryResults status = (QueryResults)engine.getQueryStatus(id);
+			assertEquals("foo", status.getSources().get(0).getSourceName());
+			assertNull(status.getSources().get(0).getResults());
+			assertEquals("binquery", engine.getQueryResultsFromDbOrFilesystem(id).getMessage());
+			
+			assertEquals("jsonquery", engine.getQueryResults("jsontask", null, 0, 0).getMessage());
+		} finally {
+			_folder.delete();
+		}
+	}
+	
 	@Test
 	public void testcombineSearchExceptionsAndThrow() throws SearchException {
 		Map<String,SourceEngine> sourceEngines = new HashMap<>();
@@ -1273,14 +1980,21 @@ public class TestBasicSearchEngineImpl {
 			
 			SourceQueryResults sqr2 = new SourceQueryResults();
 			sqr2.setSourceName(SourceResult.ENRICHMENT_SERVICE);
+			sqr2.setSourceTaskId("enrichtask");
 			
 			SourceQueryResults sqr3 = new SourceQueryResults();
 			sqr3.setSourceName(SourceResult.INTERACTOME_GENEASSOCIATION_SERVICE);
+			sqr3.setSourceTaskId("genetask");
 
 			SourceQueryResults sqr4 = new SourceQueryResults();
 			sqr4.setSourceName(SourceResult.INTERACTOME_PPI_SERVICE);
+			sqr4.setSourceTaskId("ppitask");
+			
+			// source without a task has nothing to delete
+			SourceQueryResults sqr5 = new SourceQueryResults();
+			sqr5.setSourceName(SourceResult.INTERACTOME_PPI_SERVICE);
 
-			qr.setSources(Arrays.asList(sqr1, sqr2, sqr3, sqr4));
+			qr.setSources(Arrays.asList(sqr1, sqr2, sqr3, sqr4, sqr5));
 			engine.updateQueryResultsInDb(id, qr);
 			
 			try {
@@ -1292,11 +2006,68 @@ public class TestBasicSearchEngineImpl {
 				assertTrue(se.getMessage().contains("enrich"));
 				assertTrue(se.getMessage().contains("gene"));				
 			}
+			verify(mockEnrichEngine).delete("enrichtask");
+			verify(mockGeneEngine).delete("genetask");
+			verify(mockPPIEngine).delete("ppitask");
+			verifyNoMoreInteractions(mockPPIEngine);
 		} finally {
 			_folder.delete();
 		}
 	}
 	
+	@Test
+	public void testDeleteStopsPagedKeywordQuery() throws Exception {
+		File tempDir = _folder.newFolder();
+		NdexRestClientModelAccessLayer mockClient = mock(NdexRestClientModelAccessLayer.class);
+		CountDownLatch release = new CountDownLatch(1);
+		NetworkSearchResult firstPage = new NetworkSearchResult();
+		firstPage.setNumFound(4);
+		List<NetworkSummary> networks = new ArrayList<>();
+		for (int i = 0; i < 2; i++){
+			NetworkSummary ns = new NetworkSummary();
+			ns.setName("name" + i);
+			ns.setExternalId(UUID.randomUUID());
+			networks.add(ns);
+		}
+		firstPage.setNetworks(networks);
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(0), eq(2))).thenReturn(firstPage);
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(2), eq(2))).thenAnswer((inv) -> {
+			release.await(10, TimeUnit.SECONDS);
+			return firstPage;
+		});
+		KeywordSourceEngine keywordEngine = new KeywordSourceEngine(mockClient,
+				"keywordtask", "imageurl", 1);
+		keywordEngine.updatePaging(5, 2, 2);
+		try {
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			sourceEngines.put(SourceResult.KEYWORD_SERVICE, keywordEngine);
+			SourceConfigurations sc = new SourceConfigurations();
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+						tempDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			Query thequery = new Query();
+			thequery.setSourceList(Arrays.asList(SourceResult.KEYWORD_SERVICE));
+			thequery.setGeneList(Arrays.asList("gene1", "gene2"));
+			String id = engine.query(thequery);
+			
+			SourceQueryResults sqr = keywordEngine.getSourceQueryResults(thequery);
+			assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+			QueryResults qr = engine.getQueryResultsFromDb(id);
+			qr.setSources(Arrays.asList(sqr));
+			engine.updateQueryResultsInDb(id, qr);
+			
+			engine.delete(id);
+			
+			// remaining pages were discarded by delete
+			keywordEngine.updateSourceQueryResults(sqr);
+			assertEquals(QueryResults.FAILED_STATUS, sqr.getStatus());
+			assertEquals(2, sqr.getNumberOfHits());
+		} finally {
+			release.countDown();
+			keywordEngine.shutdown();
+			_folder.delete();
+		}
+	}
+	
 	@Test
 	public void testgetNetworkOverlayAsCXNullSourceNetwork() throws SearchException,
 			NdexException, IOException {
@@ -1411,4 +2182,40 @@ public class TestBasicSearchEngineImpl {
 		}
 	}
 	
+	@Test
+	public void testGetQueryChangeFuture() throws SearchException, IOException {
+		File tempDir = _folder.newFolder();
+		try {
+			Map<String,SourceEngine> sourceEngines = new HashMap<>();
+			SourceConfigurations sc = new SourceConfigurations();
+			BasicSearchEngineImpl engine = new BasicSearchEngineImpl(tempDir.getAbsolutePath(), 
+						tempDir.getAbsolutePath(), sc, 0, sourceEngines,geneSymbolFile);
+			
+			// unknown task
+			assertTrue(engine.getQueryChangeFuture("nope").isDone());
+			
+			String id = "task1";
+			QueryResults qr = new QueryResults();
+			qr.setStatus(QueryResults.PROCESSING_STATUS);
+			engine.updateQueryResultsInDb(id, qr);
+			CompletableFuture<Void> change = engine.getQueryChangeFuture(id);
+			assertFalse(change.isDone());
+			assertSame(change, engine.getQueryChangeFuture(id));
+			
+			qr.setProgress(50);
+			engine.updateQueryResultsInDb(id, qr);
+			assertTrue(change.isDone());
+			
+			// finished task
+			change = engine.getQueryChangeFuture(id);
+			assertFalse(change.isDone());
+			qr.setStatus(QueryResults.COMPLETE_STATUS);
+			engine.updateQueryResultsInDb(id, qr);
+			assertTrue(change.isDone());
+			assertTrue(engine.getQueryChangeFuture(id).isDone());
+		} finally {
+			_folder.delete();
+		}
+	}
+	
 }
@@ -0,0 +1,335 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestEmbeddedTaskStore {
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private QueryResults getQueryResults(final String message){
+		QueryResults qr = new QueryResults();
+		qr.setStatus(QueryResults.COMPLETE_STATUS);
+		qr.setMessage(message);
+		SourceQueryResults sqr = new SourceQueryResults();
+		sqr.setSourceName("a_source");
+		SourceQueryResult res = new SourceQueryResult();
+		res.setDescription("res");
+		sqr.setResults(Arrays.asList(res));
+		qr.setSources(Arrays.asList(sqr));
+		return qr;
+	}
+
+	@Test
+	public void testSaveLoadAndDelete() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f);
+		try {
+			store.createTask("1");
+			assertNull(store.load("1"));
+			store.save("1", getQueryResults("first"));
+			store.saveFinished("1", getQueryResults("second"));
+			QueryResults res = store.load("1");
+			assertEquals("second", res.getMessage());
+			assertEquals("res", res.getSources().get(0).getResults().get(0).getDescription());
+			assertNull(store.loadQueryResults("1", null, 0, 0));
+			assertNull(store.loadQueryStatus("1"));
+
+			Map<String, QueryResults> tasks = new HashMap<>();
+			tasks.put("2", getQueryResults("two"));
+			tasks.put("3", getQueryResults("three"));
+			store.saveAll(tasks);
+			assertEquals(3, store.size());
+			assertEquals("three", store.load("3").getMessage());
+
+			assertTrue(store.delete("2"));
+			assertFalse(store.delete("2"));
+			assertNull(store.load("2"));
+			assertEquals(2, store.size());
+		} finally {
+			store.close();
+		}
+		try {
+			store.load("1");
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertTrue(io.getMessage().endsWith("is closed"));
+		}
+	}
+
+	@Test
+	public void testReopenRecoversTasksAndDiscardsPartialRecord() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f);
+		store.save("1", getQueryResults("one"));
+		store.save("2", getQueryResults("two"));
+		store.delete("2");
+		long size = store.getFileSize();
+		store.close();
+
+		// simulate a crash part way through a write
+		try (FileOutputStream out = new FileOutputStream(f, true)){
+			out.write(new byte[]{0x4E, 0x44, 0x54, 0x53, 1, 0, 0});
+		}
+		assertEquals(size + 7, f.length());
+
+		store = new EmbeddedTaskStore(f);
+		try {
+			assertEquals(size, store.getFileSize());
+			assertEquals(size, f.length());
+			assertEquals(1, store.size());
+			assertEquals("one", store.load("1").getMessage());
+			assertNull(store.load("2"));
+			store.save("3", getQueryResults("three"));
+		} finally {
+			store.close();
+		}
+		store = new EmbeddedTaskStore(f);
+		try {
+			assertEquals(2, store.size());
+			assertEquals("three", store.load("3").getMessage());
+		} finally {
+			store.close();
+		}
+	}
+
+	private void waitForFileSizeBelow(EmbeddedTaskStore store, long size) throws Exception {
+		for (int i = 0; i < 500 && store.getFileSize() >= size; i++){
+			Thread.sleep(10);
+		}
+		assertTrue(store.getFileSize() < size);
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f);
+		try {
+			store.save("1", getQueryResults("one"));
+			long oneRecord = store.getFileSize();
+			store.setMinCompactionBytes(0);
+			for (int i = 0; i < 10; i++){
+				store.save("1", getQueryResults("one"));
+			}
+			store.save("2", getQueryResults("two"));
+			
+			// compaction leaves at most as much garbage as live data
+			// so the 12 records written shrink to at most 4
+			waitForFileSizeBelow(store, oneRecord * 5);
+			assertEquals("one", store.load("1").getMessage());
+			assertEquals("two", store.load("2").getMessage());
+		} finally {
+			store.close();
+		}
+		store = new EmbeddedTaskStore(f);
+		try {
+			assertEquals(2, store.size());
+			assertEquals("two", store.load("2").getMessage());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testReopenKeepsTimeTaskWasSaved() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f);
+		long beforeSave = System.currentTimeMillis();
+		store.save("1", getQueryResults("one"));
+		long saved = store.listTasks().get("1");
+		assertTrue(saved >= beforeSave);
+		store.close();
+
+		// file modified much later then the task was saved
+		assertTrue(f.setLastModified(saved + 3600000L));
+		store = new EmbeddedTaskStore(f);
+		try {
+			assertEquals(saved, (long)store.listTasks().get("1"));
+			store.setMinCompactionBytes(0);
+			Thread.sleep(5);
+			store.save("2", getQueryResults("two"));
+			for (int i = 0; i < 10; i++){
+				store.save("2", getQueryResults("two"));
+			}
+		} finally {
+			store.close();
+		}
+		store = new EmbeddedTaskStore(f);
+		try {
+			Map<String, Long> tasks = store.listTasks();
+			assertEquals(saved, (long)tasks.get("1"));
+			assertTrue(tasks.get("2") > saved);
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testReadRecordWrittenByEarlierVersion() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		byte[] key = "old".getBytes(StandardCharsets.UTF_8);
+		byte[] value = "{\"message\":\"legacy\"}".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buf = ByteBuffer.allocate(13 + key.length + value.length + 4);
+		buf.putInt(0x4E445452).put((byte)1).putInt(key.length).putInt(value.length);
+		buf.put(key).put(value);
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 4, 9 + key.length + value.length);
+		buf.putInt((int)crc.getValue());
+		try (FileOutputStream out = new FileOutputStream(f)){
+			out.write(buf.array());
+		}
+		assertTrue(f.setLastModified(1000000L));
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f);
+		try {
+			assertEquals("legacy", store.load("old").getMessage());
+			assertEquals(1000000L, (long)store.listTasks().get("old"));
+			store.save("new", getQueryResults("new"));
+			assertEquals("new", store.load("new").getMessage());
+		} finally {
+			store.close();
+		}
+		store = new EmbeddedTaskStore(f);
+		try {
+			assertEquals(2, store.size());
+			assertEquals("legacy", store.load("old").getMessage());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testCompactKeepsRecordsAppendedDuringCompaction() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f){
+			private boolean _appended = false;
+			@Override
+			protected boolean compact() throws IOException {
+				if (_appended == false){
+					_appended = true;
+					save("3", getQueryResults("three"));
+					delete("1");
+				}
+				return super.compact();
+			}
+		};
+		try {
+			store.save("1", getQueryResults("one"));
+			for (int i = 0; i < 5; i++){
+				store.save("2", getQueryResults("two"));
+			}
+			long sizeBefore = store.getFileSize();
+			assertTrue(store.compact());
+			assertTrue(store.getFileSize() < sizeBefore);
+			assertEquals(2, store.size());
+			assertNull(store.load("1"));
+			assertEquals("two", store.load("2").getMessage());
+			assertEquals("three", store.load("3").getMessage());
+			store.save("4", getQueryResults("four"));
+		} finally {
+			store.close();
+		}
+		assertFalse(new File(f.getAbsolutePath() + ".compact").exists());
+		store = new EmbeddedTaskStore(f);
+		try {
+			assertEquals(3, store.size());
+			assertNull(store.load("1"));
+			assertEquals("three", store.load("3").getMessage());
+			assertEquals("four", store.load("4").getMessage());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testCompactAfterCloseLeavesFileAlone() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f);
+		store.save("1", getQueryResults("one"));
+		store.save("1", getQueryResults("one"));
+		long size = store.getFileSize();
+		store.close();
+		assertFalse(store.compact());
+		assertEquals(size, f.length());
+	}
+
+	@Test
+	public void testFailedCompactionLeavesStoreUsable() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		// directory in place of the temporary file makes compaction fail
+		assertTrue(new File(f.getAbsolutePath() + ".compact").mkdirs());
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f);
+		try {
+			store.save("1", getQueryResults("one"));
+			store.save("1", getQueryResults("one"));
+			long size = store.getFileSize();
+			try {
+				store.compact();
+				fail("Expected IOException");
+			} catch(IOException io){
+				// expected
+			}
+			assertEquals(size, store.getFileSize());
+			assertEquals("one", store.load("1").getMessage());
+			store.save("2", getQueryResults("two"));
+			assertEquals("two", store.load("2").getMessage());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testReclaimSpace() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f);
+		try {
+			store.save("1", getQueryResults("one"));
+			long oneRecord = store.getFileSize();
+			store.save("2", getQueryResults("two"));
+			store.save("3", getQueryResults("three"));
+			store.delete("2");
+			store.delete("3");
+
+			// deleted tasks still use space until it is reclaimed
+			assertTrue(store.getFileSize() > oneRecord * 3);
+			store.reclaimSpace();
+			assertEquals(oneRecord, store.getFileSize());
+			assertEquals(oneRecord, f.length());
+			assertEquals("one", store.load("1").getMessage());
+
+			// nothing to reclaim
+			store.reclaimSpace();
+			assertEquals(oneRecord, store.getFileSize());
+		} finally {
+			store.close();
+		}
+		try {
+			store.reclaimSpace();
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertTrue(io.getMessage().endsWith("is closed"));
+		}
+	}
+}
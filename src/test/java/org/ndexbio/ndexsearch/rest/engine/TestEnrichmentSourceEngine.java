@@ -2,10 +2,14 @@ package org.ndexbio.ndexsearch.rest.engine;
 
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
 import java.util.Arrays;
 import java.util.Set;
 import java.util.TreeSet;
+import javax.ws.rs.ProcessingException;
 import org.checkerframework.checker.units.qual.s;
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
@@ -18,6 +22,7 @@ import org.ndexbio.enrichment.rest.model.DatabaseResults;
 import org.ndexbio.enrichment.rest.model.EnrichmentQuery;
 import org.ndexbio.enrichment.rest.model.EnrichmentQueryResult;
 import org.ndexbio.enrichment.rest.model.EnrichmentQueryResults;
+import org.ndexbio.enrichment.rest.model.EnrichmentQueryStatus;
 import org.ndexbio.enrichment.rest.model.exceptions.EnrichmentException;
 import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
 import org.ndexbio.ndexsearch.rest.model.DatabaseResult;
@@ -38,6 +43,13 @@ public class TestEnrichmentSourceEngine {
 	@Rule
 	public TemporaryFolder _folder = new TemporaryFolder();
 	
+	private EnrichmentQueryStatus getQueryStatus(final String status, int progress){
+		EnrichmentQueryStatus eqs = new EnrichmentQueryStatus();
+		eqs.setStatus(status);
+		eqs.setProgress(progress);
+		return eqs;
+	}
+	
 	@Test
 	public void testgetSourceQueryResultsQueryThrowsException() throws EnrichmentException {
 		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
@@ -187,20 +199,11 @@ public class TestEnrichmentSourceEngine {
 	}
 	
 	@Test
-	public void testShutdownClientThrowsException() throws EnrichmentException {
+	public void testShutdownLeavesSharedClientOpen() throws EnrichmentException {
 		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
-		doThrow(new EnrichmentException("error")).when(mockClient).shutdown();
 		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
 		engine.shutdown();
-		verify(mockClient).shutdown();
-	}
-	
-	@Test
-	public void testShutdownClientSuccess() throws EnrichmentException {
-		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
-		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
-		engine.shutdown();
-		verify(mockClient).shutdown();
+		verify(mockClient, never()).shutdown();
 	}
 	
 	@Test
@@ -281,10 +284,11 @@ public class TestEnrichmentSourceEngine {
 		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
 		EnrichmentQueryResults eqr = new EnrichmentQueryResults();
 		eqr.setMessage("message");
-		eqr.setProgress(50);
+		eqr.setProgress(100);
 		eqr.setStatus("status");
 		eqr.setWallTime(1);
 		
+		when(mockClient.getQueryStatus("id")).thenReturn(getQueryStatus("status", 100));
 		when(mockClient.getQueryResults(any(String.class), eq(0), eq(0))).thenReturn(eqr);
 		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
 		
@@ -300,12 +304,73 @@ public class TestEnrichmentSourceEngine {
 		verify(mockClient).getQueryResults("id", 0, 0);
 	}
 	
+	@Test
+	public void testUpdateSourceQueryResultsFailsOnceRetriesExhausted() throws EnrichmentException {
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		when(mockClient.getQueryStatus("id")).thenThrow(new EnrichmentException("task not found"));
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		engine.updateRetrier(new SourceCallRetrier("foo", new RetryBudget(), 2, 1, false));
+		
+		SourceQueryResults sqr = new SourceQueryResults();
+		sqr.setSourceTaskId("id");
+		sqr.setProgress(50);
+		engine.updateSourceQueryResults(sqr);
+		assertEquals(QueryResults.FAILED_STATUS, sqr.getStatus());
+		assertEquals(100, sqr.getProgress());
+		assertTrue(sqr.getMessage().contains("task not found"));
+		verify(mockClient, times(2)).getQueryStatus("id");
+		
+		// failed task is not checked again
+		engine.updateSourceQueryResults(sqr);
+		verify(mockClient, times(2)).getQueryStatus("id");
+	}
+	
+	@Test
+	public void testUpdateSourceQueryResultsPollsStatusUntilDone() throws EnrichmentException {
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		EnrichmentQueryStatus running = getQueryStatus(QueryResults.PROCESSING_STATUS, 50);
+		running.setMessage("running");
+		running.setWallTime(2);
+		when(mockClient.getQueryStatus("id")).thenReturn(running,
+				getQueryStatus(QueryResults.COMPLETE_STATUS, 100));
+		EnrichmentQueryResults eqr = new EnrichmentQueryResults();
+		eqr.setProgress(100);
+		eqr.setStatus(QueryResults.COMPLETE_STATUS);
+		EnrichmentQueryResult eOne = new EnrichmentQueryResult();
+		eOne.setDatabaseName("dbname");
+		eOne.setNetworkUUID("netid");
+		eqr.setResults(Arrays.asList(eOne));
+		when(mockClient.getQueryResults("id", 0, 0)).thenReturn(eqr);
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		
+		SourceQueryResults sqr = new SourceQueryResults();
+		sqr.setSourceTaskId("id");
+		engine.updateSourceQueryResults(sqr);
+		assertEquals("running", sqr.getMessage());
+		assertEquals(50, sqr.getProgress());
+		assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+		assertEquals(2, sqr.getWallTime());
+		assertEquals(0, sqr.getResults().size());
+		verify(mockClient, never()).getQueryResults(any(String.class), anyInt(), anyInt());
+		
+		engine.updateSourceQueryResults(sqr);
+		assertEquals(100, sqr.getProgress());
+		assertEquals(QueryResults.COMPLETE_STATUS, sqr.getStatus());
+		assertEquals(1, sqr.getNumberOfHits());
+		assertEquals("netid", sqr.getResults().get(0).getNetworkUUID());
+		
+		// finished so nothing more is fetched
+		engine.updateSourceQueryResults(sqr);
+		verify(mockClient, times(2)).getQueryStatus("id");
+		verify(mockClient, times(1)).getQueryResults("id", 0, 0);
+	}
+	
 	@Test
 	public void testUpdateSourceQueryResultsSuccess() throws EnrichmentException, SearchException {
 		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
 		EnrichmentQueryResults eqr = new EnrichmentQueryResults();
 		eqr.setMessage("message");
-		eqr.setProgress(50);
+		eqr.setProgress(100);
 		eqr.setStatus("status");
 		eqr.setWallTime(1);
 		EnrichmentQueryResult eOne = new EnrichmentQueryResult();
@@ -327,6 +392,7 @@ public class TestEnrichmentSourceEngine {
 		
 		eqr.setResults(Arrays.asList(eOne));
 		
+		when(mockClient.getQueryStatus("id")).thenReturn(getQueryStatus("status", 100));
 		when(mockClient.getQueryResults(any(String.class), eq(0), eq(0))).thenReturn(eqr);
 		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
 		
@@ -356,4 +422,244 @@ public class TestEnrichmentSourceEngine {
 		
 		verify(mockClient).getQueryResults("id", 0, 0);
 	}
+	
+	@Test
+	public void testRepeatedQueryServedFromCache() throws Exception {
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		when(mockClient.query(any(EnrichmentQuery.class))).thenReturn("taskid");
+		EnrichmentQueryResults eqr = new EnrichmentQueryResults();
+		eqr.setStatus(QueryResults.COMPLETE_STATUS);
+		eqr.setProgress(100);
+		EnrichmentQueryResult eOne = new EnrichmentQueryResult();
+		eOne.setDatabaseName("dbname");
+		eOne.setNetworkUUID("netid");
+		eqr.setResults(Arrays.asList(eOne));
+		when(mockClient.getQueryStatus("taskid")).thenReturn(getQueryStatus(QueryResults.COMPLETE_STATUS, 100));
+		when(mockClient.getQueryResults("taskid", 0, 0)).thenReturn(eqr);
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene2", "gene1"));
+		SourceQueryResults sqr = engine.getSourceQueryResults(query);
+		assertEquals(QueryResults.SUBMITTED_STATUS, sqr.getStatus());
+		engine.updateSourceQueryResults(sqr);
+		assertEquals(1, engine.getResultCache().size());
+		
+		// same genes in different order should not trigger a remote call
+		Query sameQuery = new Query();
+		sameQuery.setGeneList(Arrays.asList("gene1", "gene2"));
+		SourceQueryResults cachedSqr = engine.getSourceQueryResults(sameQuery);
+		assertEquals(QueryResults.COMPLETE_STATUS, cachedSqr.getStatus());
+		assertEquals(100, cachedSqr.getProgress());
+		assertEquals("taskid", cachedSqr.getSourceTaskId());
+		assertEquals(1, cachedSqr.getNumberOfHits());
+		assertEquals("netid", cachedSqr.getResults().get(0).getNetworkUUID());
+		assertNotSame(sqr.getResults(), cachedSqr.getResults());
+		assertNotSame(sqr.getResults().get(0), cachedSqr.getResults().get(0));
+		engine.updateSourceQueryResults(cachedSqr);
+		
+		// changes to one copy are not seen by later cache hits
+		cachedSqr.getResults().get(0).setNetworkUUID("changed");
+		assertEquals("netid", engine.getSourceQueryResults(sameQuery)
+				.getResults().get(0).getNetworkUUID());
+		
+		// task shared through the cache is left for the service to remove
+		engine.delete("taskid");
+		verify(mockClient, times(0)).delete(any(String.class));
+		
+		verify(mockClient, times(1)).query(any(EnrichmentQuery.class));
+		verify(mockClient, times(1)).getQueryResults("taskid", 0, 0);
+	}
+	
+	@Test
+	public void testSharedTasksKeptAcrossRestart() throws Exception {
+		File sharedTaskFile = new File(_folder.newFolder(), "enrichment"
+				+ EnrichmentSourceEngine.SHARED_TASKS_FILE_SUFFIX);
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		when(mockClient.query(any(EnrichmentQuery.class))).thenReturn("taskid");
+		EnrichmentQueryResults eqr = new EnrichmentQueryResults();
+		eqr.setStatus(QueryResults.COMPLETE_STATUS);
+		eqr.setProgress(100);
+		when(mockClient.getQueryStatus("taskid")).thenReturn(getQueryStatus(QueryResults.COMPLETE_STATUS, 100));
+		when(mockClient.getQueryResults("taskid", 0, 0)).thenReturn(eqr);
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		engine.updateSharedTaskFile(sharedTaskFile);
+		
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene1"));
+		engine.updateSourceQueryResults(engine.getSourceQueryResults(query));
+		assertTrue(sharedTaskFile.isFile());
+		
+		// new engine, as after a restart, still leaves shared task alone
+		EnrichmentSourceEngine restarted = new EnrichmentSourceEngine(mockClient);
+		restarted.updateSharedTaskFile(sharedTaskFile);
+		restarted.delete("taskid");
+		restarted.delete("othertaskid");
+		verify(mockClient, times(0)).delete("taskid");
+		verify(mockClient, times(1)).delete("othertaskid");
+		
+		// tasks past the retention of the service are forgotten
+		Thread.sleep(5);
+		EnrichmentSourceEngine expired = new EnrichmentSourceEngine(mockClient);
+		expired.updateResultCache(10, 0, 1);
+		expired.updateSharedTaskFile(sharedTaskFile);
+		expired.delete("taskid");
+		verify(mockClient, times(1)).delete("taskid");
+		assertEquals(0, sharedTaskFile.length());
+	}
+	
+	@Test
+	public void testResultCacheTimeToLiveLimitedByTaskRetention() throws Exception {
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		when(mockClient.query(any(EnrichmentQuery.class))).thenReturn("taskid", "taskid2");
+		EnrichmentQueryResults eqr = new EnrichmentQueryResults();
+		eqr.setStatus(QueryResults.COMPLETE_STATUS);
+		eqr.setProgress(100);
+		when(mockClient.getQueryStatus(any(String.class))).thenReturn(getQueryStatus(QueryResults.COMPLETE_STATUS, 100));
+		when(mockClient.getQueryResults(any(String.class), eq(0), eq(0))).thenReturn(eqr);
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		engine.updateResultCache(10, 3600000, 200);
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene1"));
+		engine.updateSourceQueryResults(engine.getSourceQueryResults(query));
+		assertEquals(QueryResults.COMPLETE_STATUS, engine.getSourceQueryResults(query).getStatus());
+		
+		// cached result expires after half the retention
+		Thread.sleep(150);
+		SourceQueryResults sqr = engine.getSourceQueryResults(query);
+		assertEquals(QueryResults.SUBMITTED_STATUS, sqr.getStatus());
+		assertEquals("taskid2", sqr.getSourceTaskId());
+		
+		// task not served from cache is deleted
+		engine.delete("taskid2");
+		verify(mockClient).delete("taskid2");
+	}
+	
+	@Test
+	public void testFailedResultNotCachedAndDatabaseChangeClearsCache() throws EnrichmentException {
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		when(mockClient.query(any(EnrichmentQuery.class))).thenReturn("taskid", "taskid2");
+		EnrichmentQueryResults failedEqr = new EnrichmentQueryResults();
+		failedEqr.setStatus(QueryResults.FAILED_STATUS);
+		failedEqr.setProgress(100);
+		when(mockClient.getQueryStatus("taskid")).thenReturn(getQueryStatus(QueryResults.FAILED_STATUS, 100));
+		when(mockClient.getQueryResults("taskid", 0, 0)).thenReturn(failedEqr);
+		EnrichmentQueryResults eqr = new EnrichmentQueryResults();
+		eqr.setStatus(QueryResults.COMPLETE_STATUS);
+		eqr.setProgress(100);
+		when(mockClient.getQueryStatus("taskid2")).thenReturn(getQueryStatus(QueryResults.COMPLETE_STATUS, 100));
+		when(mockClient.getQueryResults("taskid2", 0, 0)).thenReturn(eqr);
+		
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene1"));
+		engine.updateSourceQueryResults(engine.getSourceQueryResults(query));
+		assertEquals(0, engine.getResultCache().size());
+		
+		engine.updateSourceQueryResults(engine.getSourceQueryResults(query));
+		assertEquals(1, engine.getResultCache().size());
+		
+		DatabaseResults dbResults = new DatabaseResults();
+		DatabaseResult dr = new DatabaseResult();
+		dr.setName("newdb");
+		dbResults.setResults(Arrays.asList(dr));
+		when(mockClient.getDatabaseResults()).thenReturn(dbResults);
+		engine.updateSourceResult(new SourceResult());
+		assertEquals(0, engine.getResultCache().size());
+	}
+	
+	@Test
+	public void testResultCacheDisabled() throws EnrichmentException {
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		when(mockClient.query(any(EnrichmentQuery.class))).thenReturn("taskid");
+		EnrichmentQueryResults eqr = new EnrichmentQueryResults();
+		eqr.setStatus(QueryResults.COMPLETE_STATUS);
+		eqr.setProgress(100);
+		when(mockClient.getQueryStatus("taskid")).thenReturn(getQueryStatus(QueryResults.COMPLETE_STATUS, 100));
+		when(mockClient.getQueryResults("taskid", 0, 0)).thenReturn(eqr);
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		engine.updateResultCache(0, 0);
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene1"));
+		engine.updateSourceQueryResults(engine.getSourceQueryResults(query));
+		assertEquals(QueryResults.SUBMITTED_STATUS, engine.getSourceQueryResults(query).getStatus());
+		verify(mockClient, times(2)).query(any(EnrichmentQuery.class));
+	}
+	
+	@Test
+	public void testTransientFailuresRetried() throws EnrichmentException {
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		when(mockClient.query(any(EnrichmentQuery.class)))
+				.thenThrow(new ProcessingException(new ConnectException("refused")))
+				.thenReturn("taskid");
+		EnrichmentQueryResults eqr = new EnrichmentQueryResults();
+		eqr.setStatus(QueryResults.COMPLETE_STATUS);
+		eqr.setProgress(100);
+		when(mockClient.getQueryStatus("taskid")).thenReturn(getQueryStatus(QueryResults.COMPLETE_STATUS, 100));
+		when(mockClient.getQueryResults("taskid", 0, 0))
+				.thenThrow(new EnrichmentException("busy"))
+				.thenThrow(new EnrichmentException("busy"))
+				.thenReturn(eqr);
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		engine.updateRetrier(new SourceCallRetrier("foo", new RetryBudget(), 3, 1, false));
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene1"));
+		SourceQueryResults sqr = engine.getSourceQueryResults(query);
+		assertEquals(QueryResults.SUBMITTED_STATUS, sqr.getStatus());
+		assertEquals("taskid", sqr.getSourceTaskId());
+		engine.updateSourceQueryResults(sqr);
+		assertEquals(QueryResults.COMPLETE_STATUS, sqr.getStatus());
+		verify(mockClient, times(2)).query(any(EnrichmentQuery.class));
+		verify(mockClient, times(3)).getQueryResults("taskid", 0, 0);
+	}
+	
+	@Test
+	public void testQueryNotRetriedAfterRequestSent() throws EnrichmentException {
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		when(mockClient.query(any(EnrichmentQuery.class)))
+				.thenThrow(new ProcessingException(new SocketTimeoutException("Read timed out")))
+				.thenReturn("taskid");
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		engine.updateRetrier(new SourceCallRetrier("foo", new RetryBudget(), 3, 1, false));
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene1"));
+		try {
+			engine.getSourceQueryResults(query);
+			fail("Expected ProcessingException");
+		} catch(ProcessingException pe){
+			assertTrue(pe.getCause() instanceof SocketTimeoutException);
+		}
+		verify(mockClient, times(1)).query(any(EnrichmentQuery.class));
+
+		when(mockClient.query(any(EnrichmentQuery.class)))
+				.thenThrow(new EnrichmentException("server error"))
+				.thenReturn("taskid");
+		SourceQueryResults sqr = engine.getSourceQueryResults(query);
+		assertEquals(QueryResults.FAILED_STATUS, sqr.getStatus());
+		verify(mockClient, times(2)).query(any(EnrichmentQuery.class));
+	}
+	
+	@Test
+	public void testUpdateSourceQueryResultsRawResults() throws Exception {
+		EnrichmentRestClient mockClient = mock(EnrichmentRestClient.class);
+		when(mockClient.getQueryStatus("id")).thenReturn(getQueryStatus(QueryResults.COMPLETE_STATUS, 100));
+		RawEnrichmentResultReader reader = spy(new RawEnrichmentResultReader("http://foo", null));
+		doReturn(("{\"status\":\"complete\",\"progress\":100,\"results\":"
+				+ "[{\"rank\":3,\"networkUUID\":\"netid\",\"pValue\":0.5}]}").getBytes("UTF-8"))
+				.when(reader).getResultBytes("id");
+		EnrichmentSourceEngine engine = new EnrichmentSourceEngine(mockClient);
+		engine.updateRawResultReader(reader);
+		
+		SourceQueryResults sqr = new SourceQueryResults();
+		sqr.setSourceTaskId("id");
+		engine.updateSourceQueryResults(sqr);
+		assertEquals(QueryResults.COMPLETE_STATUS, sqr.getStatus());
+		assertEquals(100, sqr.getProgress());
+		assertEquals(1, sqr.getNumberOfHits());
+		assertEquals(3, sqr.getResults().get(0).getRank());
+		assertEquals("netid", sqr.getResults().get(0).getNetworkUUID());
+		assertEquals("{\"rank\":3,\"networkUUID\":\"netid\",\"pValue\":0.5}",
+				sqr.getResults().get(0).getDetails().get(RawEnrichmentResultReader.RAW_RESULT_KEY).toString());
+		verify(mockClient, never()).getQueryResults(any(String.class), anyInt(), anyInt());
+	}
 }
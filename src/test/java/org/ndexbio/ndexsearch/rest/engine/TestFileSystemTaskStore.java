@@ -0,0 +1,122 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.ndexsearch.rest.RawJson;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestFileSystemTaskStore {
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private QueryResults getQueryResults(final String message){
+		QueryResults qr = new QueryResults();
+		qr.setStatus(QueryResults.COMPLETE_STATUS);
+		qr.setMessage(message);
+		return qr;
+	}
+
+	@Test
+	public void testShardedLayout() throws Exception {
+		File tempDir = _folder.newFolder();
+		FileSystemTaskStore store = new FileSystemTaskStore(tempDir.getAbsolutePath());
+		String id = "abcdef12-3456";
+		store.createTask(id);
+		File expectedDir = new File(tempDir, "ab" + File.separator + "cd" + File.separator + id);
+		assertTrue(expectedDir.isDirectory());
+		assertEquals(expectedDir.getAbsolutePath(), store.getTaskDirectory(id).getAbsolutePath());
+		store.save(id, getQueryResults("sharded"));
+		assertTrue(new File(expectedDir, BasicSearchEngineImpl.QR_JSON_FILE).isFile());
+		assertFalse(new File(expectedDir, BasicSearchEngineImpl.QR_JSON_FILE + ".tmp").exists());
+		assertEquals("sharded", store.load(id).getMessage());
+
+		// ids too short to shard are saved directly under task directory
+		store.createTask("xyz");
+		assertTrue(new File(tempDir, "xyz").isDirectory());
+
+		// shard directory still holding another task is kept
+		String otherId = "abcdff12-3456";
+		store.createTask(otherId);
+		assertTrue(store.delete(id));
+		assertFalse(expectedDir.exists());
+		assertNull(store.load(id));
+		assertTrue(new File(tempDir, "ab").isDirectory());
+
+		// empty shard directories are removed with last task
+		assertTrue(store.delete(otherId));
+		assertFalse(new File(tempDir, "ab").exists());
+		assertTrue(tempDir.isDirectory());
+		assertTrue(new File(tempDir, "xyz").isDirectory());
+	}
+
+	@Test
+	public void testRawResults() throws Exception {
+		File tempDir = _folder.newFolder();
+		SourceQueryResult sr = new SourceQueryResult();
+		sr.getDetails().put("raw", new RawJson("{\"x\":1}".getBytes(StandardCharsets.UTF_8)));
+		SourceQueryResults sqr = new SourceQueryResults();
+		sqr.setResults(Arrays.asList(sr));
+		QueryResults qr = getQueryResults("raw");
+		qr.setSources(Arrays.asList(sqr));
+		for (boolean binaryFormat : new boolean[]{false, true}){
+			FileSystemTaskStore store = new FileSystemTaskStore(tempDir.getAbsolutePath(),
+					binaryFormat);
+			String id = "task" + binaryFormat;
+			store.createTask(id);
+			store.saveFinished(id, qr);
+			assertTrue(getDetail(store.load(id)) instanceof Map);
+			store.setRawResults(true);
+			assertTrue(getDetail(store.load(id)) instanceof RawJson);
+			assertEquals("{\"x\":1}", getDetail(store.load(id)).toString());
+		}
+	}
+
+	private Object getDetail(QueryResults qr){
+		return qr.getSources().get(0).getResults().get(0).getDetails().get("raw");
+	}
+
+	@Test
+	public void testLegacyFlatLayoutAndListTasks() throws Exception {
+		File tempDir = _folder.newFolder();
+		FileSystemTaskStore store = new FileSystemTaskStore(tempDir.getAbsolutePath(), true);
+		String legacyId = "legacytask";
+		File legacyDir = new File(tempDir, legacyId);
+		assertTrue(legacyDir.mkdirs());
+		assertEquals(legacyDir.getAbsolutePath(), store.getTaskDirectory(legacyId).getAbsolutePath());
+		store.saveFinished(legacyId, getQueryResults("legacy"));
+		assertTrue(new File(legacyDir, BasicSearchEngineImpl.QR_BINARY_FILE).isFile());
+		assertEquals("legacy", store.load(legacyId).getMessage());
+
+		String id = "newtask";
+		store.createTask(id);
+		store.save(id, getQueryResults("new"));
+
+		// directories without results directly under task directory are not tasks
+		assertTrue(new File(tempDir, "notatask").mkdirs());
+
+		Map<String, Long> tasks = store.listTasks();
+		assertEquals(2, tasks.size());
+		assertTrue(tasks.get(legacyId) > 0);
+		assertTrue(tasks.get(id) > 0);
+
+		assertTrue(store.delete(legacyId));
+		assertFalse(legacyDir.exists());
+		assertEquals(1, store.listTasks().size());
+	}
+}
@@ -3,8 +3,12 @@ package org.ndexbio.ndexsearch.rest.engine;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 
@@ -244,4 +248,242 @@ public class TestKeywordSourceEngine {
 		engine.updateSourceQueryResults(new SourceQueryResults());
 		verifyNoInteractions(mockClient);
 	}
+	
+	private NetworkSearchResult getNetworkSearchResult(long numFound, int numNetworks){
+		NetworkSearchResult nrs = new NetworkSearchResult();
+		nrs.setNumFound(numFound);
+		List<NetworkSummary> networks = new ArrayList<>();
+		for (int i = 0; i < numNetworks; i++){
+			NetworkSummary ns = new NetworkSummary();
+			ns.setName("name" + i);
+			ns.setExternalId(UUID.randomUUID());
+			networks.add(ns);
+		}
+		nrs.setNetworks(networks);
+		return nrs;
+	}
+	
+	private void waitForCompletion(KeywordSourceEngine engine, SourceQueryResults sqr) throws Exception {
+		for (int i = 0; i < 500 && sqr.getProgress() < 100; i++){
+			engine.updateSourceQueryResults(sqr);
+			if (sqr.getProgress() < 100){
+				Thread.sleep(10);
+			}
+		}
+		assertEquals(100, sqr.getProgress());
+	}
+	
+	@Test
+	public void testGetSourceQueryResultsFirstPageOnlyWhenAllFound() throws Exception {
+		NdexRestClientModelAccessLayer mockClient = mock(NdexRestClientModelAccessLayer.class);
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(0), eq(2))).thenReturn(getNetworkSearchResult(2, 2));
+		
+		KeywordSourceEngine engine = new KeywordSourceEngine(mockClient, "srcTaskid", "imageurl", 1);
+		engine.updatePaging(5, 2, 2);
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene1"));
+		SourceQueryResults sqr = engine.getSourceQueryResults(query);
+		assertEquals(QueryResults.COMPLETE_STATUS, sqr.getStatus());
+		assertEquals(100, sqr.getProgress());
+		assertEquals("srcTaskid", sqr.getSourceTaskId());
+		assertEquals(2, sqr.getNumberOfHits());
+		verify(mockClient).findNetworks(" gene1", null, 0, 2);
+		verifyNoMoreInteractions(mockClient);
+		engine.shutdown();
+	}
+	
+	@Test
+	public void testGetSourceQueryResultsPagedUpToMaxResults() throws Exception {
+		NdexRestClientModelAccessLayer mockClient = mock(NdexRestClientModelAccessLayer.class);
+		CountDownLatch release = new CountDownLatch(1);
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(0), eq(2))).thenReturn(getNetworkSearchResult(10, 2));
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(2), eq(2))).thenAnswer((inv) -> {
+			release.await(10, TimeUnit.SECONDS);
+			return getNetworkSearchResult(10, 2);
+		});
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(4), eq(1))).thenReturn(getNetworkSearchResult(10, 1));
+		
+		KeywordSourceEngine engine = new KeywordSourceEngine(mockClient, "srcTaskid", "imageurl", 1);
+		engine.updatePaging(5, 2, 2);
+		try {
+			Query query = new Query();
+			query.setGeneList(Arrays.asList("gene1"));
+			SourceQueryResults sqr = engine.getSourceQueryResults(query);
+			assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+			assertEquals(33, sqr.getProgress());
+			assertTrue(sqr.getSourceTaskId().startsWith("srcTaskid-"));
+			assertEquals(2, sqr.getNumberOfHits());
+			
+			// second page is held back so it can not be merged yet
+			engine.updateSourceQueryResults(sqr);
+			assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+			assertTrue(sqr.getProgress() < 100);
+			
+			release.countDown();
+			waitForCompletion(engine, sqr);
+			assertEquals(QueryResults.COMPLETE_STATUS, sqr.getStatus());
+			assertEquals(null, sqr.getMessage());
+			assertEquals(5, sqr.getNumberOfHits());
+			for (int i = 0; i < 5; i++){
+				assertEquals(i, sqr.getResults().get(i).getRank());
+			}
+			verify(mockClient).findNetworks(" gene1", null, 0, 2);
+			verify(mockClient).findNetworks(" gene1", null, 2, 2);
+			verify(mockClient).findNetworks(" gene1", null, 4, 1);
+			verifyNoMoreInteractions(mockClient);
+		} finally {
+			engine.shutdown();
+		}
+	}
+	
+	@Test
+	public void testGetSourceQueryResultsPageFails() throws Exception {
+		NdexRestClientModelAccessLayer mockClient = mock(NdexRestClientModelAccessLayer.class);
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(0), eq(2))).thenReturn(getNetworkSearchResult(4, 2));
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(2), eq(2))).thenThrow(new NdexException("error"));
+		
+		KeywordSourceEngine engine = new KeywordSourceEngine(mockClient, "srcTaskid", "imageurl", 1);
+		engine.updatePaging(5, 2, 2);
+		try {
+			Query query = new Query();
+			query.setGeneList(Arrays.asList("gene1"));
+			SourceQueryResults sqr = engine.getSourceQueryResults(query);
+			assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+			waitForCompletion(engine, sqr);
+			assertEquals(QueryResults.COMPLETE_STATUS, sqr.getStatus());
+			assertEquals(SourceResult.KEYWORD_SERVICE + " failed to get some results : error",
+					sqr.getMessage());
+			assertEquals(2, sqr.getNumberOfHits());
+		} finally {
+			engine.shutdown();
+		}
+	}
+	
+	@Test
+	public void testDeleteStopsPagedQuery() throws Exception {
+		NdexRestClientModelAccessLayer mockClient = mock(NdexRestClientModelAccessLayer.class);
+		CountDownLatch release = new CountDownLatch(1);
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(0), eq(2))).thenReturn(getNetworkSearchResult(4, 2));
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(2), eq(2))).thenAnswer((inv) -> {
+			release.await(10, TimeUnit.SECONDS);
+			return getNetworkSearchResult(4, 2);
+		});
+		
+		KeywordSourceEngine engine = new KeywordSourceEngine(mockClient, "srcTaskid", "imageurl", 1);
+		engine.updatePaging(5, 2, 2);
+		try {
+			Query query = new Query();
+			query.setGeneList(Arrays.asList("gene1"));
+			SourceQueryResults sqr = engine.getSourceQueryResults(query);
+			assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+			engine.delete(sqr.getSourceTaskId());
+			
+			// pages of deleted query are gone so the query did not finish
+			engine.updateSourceQueryResults(sqr);
+			assertEquals(QueryResults.FAILED_STATUS, sqr.getStatus());
+			assertEquals(100, sqr.getProgress());
+			assertEquals(2, sqr.getNumberOfHits());
+			assertEquals(SourceResult.KEYWORD_SERVICE + " failed : only 2 results "
+					+ "arrived before remaining pages were discarded", sqr.getMessage());
+		} finally {
+			release.countDown();
+			engine.shutdown();
+		}
+	}
+	
+	@Test
+	public void testGetSourceQueryResultsCached() throws Exception {
+		NdexRestClientModelAccessLayer mockClient = mock(NdexRestClientModelAccessLayer.class);
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(0), eq(100))).thenReturn(getNetworkSearchResult(2, 2));
+		
+		KeywordSourceEngine engine = new KeywordSourceEngine(mockClient, "srcTaskid", "imageurl", 1);
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene1", "gene2"));
+		SourceQueryResults sqr = engine.getSourceQueryResults(query);
+		assertEquals(2, sqr.getNumberOfHits());
+		
+		// same genes with extra whitespace is answered from cache
+		query.setGeneList(Arrays.asList("gene1", " gene2 "));
+		SourceQueryResults cachedSqr = engine.getSourceQueryResults(query);
+		assertEquals(QueryResults.COMPLETE_STATUS, cachedSqr.getStatus());
+		assertEquals(100, cachedSqr.getProgress());
+		assertEquals("srcTaskid", cachedSqr.getSourceTaskId());
+		assertEquals(2, cachedSqr.getNumberOfHits());
+		assertEquals(sqr.getResults().get(1).getNetworkUUID(),
+				cachedSqr.getResults().get(1).getNetworkUUID());
+		assertNotSame(sqr.getResults(), cachedSqr.getResults());
+		
+		assertEquals(1, engine.getResultCache().getHitCount());
+		assertEquals(1, engine.getResultCache().size());
+		assertTrue(engine.getResultCache().getWeight() > 0);
+		verify(mockClient).findNetworks(" gene1 gene2", null, 0, 100);
+		verifyNoMoreInteractions(mockClient);
+		
+		// disabling cache means every query goes to NDEx
+		engine.updateResultCache(0, 0);
+		engine.getSourceQueryResults(query);
+		engine.getSourceQueryResults(query);
+		verify(mockClient, times(2)).findNetworks(" gene1  gene2 ", null, 0, 100);
+	}
+	
+	@Test
+	public void testCacheInvalidatedWhenNetworkCountOrVersionChanges() throws Exception {
+		NdexRestClientModelAccessLayer mockClient = mock(NdexRestClientModelAccessLayer.class);
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(0), eq(100))).thenReturn(getNetworkSearchResult(2, 2));
+		NdexStatus status = new NdexStatus();
+		status.setMessage("Online");
+		status.getProperties().put("ServerVersion", "2.5.0");
+		status.setNetworkCount(500);
+		when(mockClient.getServerStatus()).thenReturn(status);
+		
+		KeywordSourceEngine engine = new KeywordSourceEngine(mockClient, "srcTaskid", "imageurl", 1);
+		engine.updateSourceResult(new SourceResult());
+		Query query = new Query();
+		query.setGeneList(Arrays.asList("gene1"));
+		engine.getSourceQueryResults(query);
+		assertEquals(1, engine.getResultCache().size());
+		
+		// nothing changed
+		engine.updateSourceResult(new SourceResult());
+		assertEquals(1, engine.getResultCache().size());
+		
+		status.setNetworkCount(501);
+		engine.updateSourceResult(new SourceResult());
+		assertEquals(0, engine.getResultCache().size());
+		
+		engine.getSourceQueryResults(query);
+		assertEquals(1, engine.getResultCache().size());
+		status.getProperties().put("ServerVersion", "2.5.1");
+		engine.updateSourceResult(new SourceResult());
+		assertEquals(0, engine.getResultCache().size());
+		verify(mockClient, times(2)).findNetworks(" gene1", null, 0, 100);
+	}
+	
+	@Test
+	public void testPagedResultsCachedOnceComplete() throws Exception {
+		NdexRestClientModelAccessLayer mockClient = mock(NdexRestClientModelAccessLayer.class);
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(0), eq(2))).thenReturn(getNetworkSearchResult(3, 2));
+		when(mockClient.findNetworks(any(String.class), eq(null), eq(2), eq(1))).thenReturn(getNetworkSearchResult(3, 1));
+		
+		KeywordSourceEngine engine = new KeywordSourceEngine(mockClient, "srcTaskid", "imageurl", 1);
+		engine.updatePaging(3, 2, 1);
+		try {
+			Query query = new Query();
+			query.setGeneList(Arrays.asList("gene1"));
+			SourceQueryResults sqr = engine.getSourceQueryResults(query);
+			assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+			assertEquals(0, engine.getResultCache().size());
+			waitForCompletion(engine, sqr);
+			assertEquals(1, engine.getResultCache().size());
+			
+			SourceQueryResults cachedSqr = engine.getSourceQueryResults(query);
+			assertEquals(QueryResults.COMPLETE_STATUS, cachedSqr.getStatus());
+			assertEquals(3, cachedSqr.getNumberOfHits());
+			verify(mockClient).findNetworks(" gene1", null, 0, 2);
+			verify(mockClient).findNetworks(" gene1", null, 2, 1);
+			verifyNoMoreInteractions(mockClient);
+		} finally {
+			engine.shutdown();
+		}
+	}
 }
@@ -0,0 +1,65 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class TestQueryProgressTracker {
+
+	@Test
+	public void testTrackBeforeStartDoesNotPoll() throws Exception {
+		AtomicInteger pollCount = new AtomicInteger(0);
+		QueryProgressTracker tracker = new QueryProgressTracker((id) -> {
+			pollCount.incrementAndGet();
+			return true;
+		});
+		tracker.setPollIntervals(1, 1);
+		tracker.track("1");
+		tracker.track("1");
+		assertTrue(tracker.isTracked("1"));
+		assertEquals(1, tracker.getNumberOfTrackedTasks());
+		Thread.sleep(50);
+		assertEquals(0, pollCount.get());
+		tracker.untrack("1");
+		assertFalse(tracker.isTracked("1"));
+	}
+
+	@Test
+	public void testPollUntilDone() throws Exception {
+		ConcurrentHashMap<String, AtomicInteger> polls = new ConcurrentHashMap<>();
+		CountDownLatch latch = new CountDownLatch(2);
+		QueryProgressTracker tracker = new QueryProgressTracker((id) -> {
+			int count = polls.computeIfAbsent(id, (k) -> new AtomicInteger(0)).incrementAndGet();
+			if (id.equals("bad") && count == 1){
+				throw new RuntimeException("some error");
+			}
+			if (count < 3){
+				return true;
+			}
+			latch.countDown();
+			return false;
+		});
+		tracker.setPollIntervals(1, 4);
+		tracker.track("1");
+		try {
+			tracker.start();
+			tracker.track("bad");
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			Thread.sleep(50);
+			assertEquals(3, polls.get("1").get());
+			assertEquals(3, polls.get("bad").get());
+			assertEquals(0, tracker.getNumberOfTrackedTasks());
+		} finally {
+			tracker.shutdown();
+		}
+	}
+}
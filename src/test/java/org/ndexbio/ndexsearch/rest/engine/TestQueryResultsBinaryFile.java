@@ -0,0 +1,162 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestQueryResultsBinaryFile {
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private QueryResults getQueryResults(){
+		QueryResults qr = new QueryResults();
+		qr.setStatus(QueryResults.COMPLETE_STATUS);
+		qr.setMessage("hi");
+		SourceQueryResults sqr = new SourceQueryResults();
+		sqr.setSourceName("a_source");
+		sqr.setSourceRank(2);
+		SourceQueryResult res1 = new SourceQueryResult();
+		res1.setRank(5);
+		res1.setDescription("res1");
+		SourceQueryResult res2 = new SourceQueryResult();
+		res2.setRank(4);
+		res2.setDescription("res2");
+		sqr.setResults(Arrays.asList(res1, res2));
+
+		SourceQueryResults sqr2 = new SourceQueryResults();
+		sqr2.setSourceName("b_source");
+		sqr2.setSourceRank(1);
+		SourceQueryResult res3 = new SourceQueryResult();
+		res3.setRank(0);
+		res3.setDescription("res3");
+		sqr2.setResults(Arrays.asList(res3));
+
+		SourceQueryResults sqr3 = new SourceQueryResults();
+		sqr3.setSourceName("c_source");
+		sqr3.setSourceRank(3);
+		qr.setSources(Arrays.asList(sqr, sqr2, sqr3));
+		return qr;
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		File f = new File(_folder.newFolder(), "qr.bin");
+		QueryResultsBinaryFile binFile = new QueryResultsBinaryFile(f, new ObjectMapper());
+		binFile.write(getQueryResults());
+		assertTrue(f.isFile());
+		assertFalse(new File(f.getAbsolutePath() + ".tmp").exists());
+
+		QueryResults res = binFile.read();
+		assertEquals("hi", res.getMessage());
+		assertEquals(3, res.getSources().size());
+		assertEquals("b_source", res.getSources().get(0).getSourceName());
+		assertEquals("a_source", res.getSources().get(1).getSourceName());
+		assertEquals("res2", res.getSources().get(1).getResults().get(0).getDescription());
+		assertEquals("res1", res.getSources().get(1).getResults().get(1).getDescription());
+		assertNull(res.getSources().get(2).getResults());
+
+		res = binFile.readQueryStatus();
+		assertEquals(QueryResults.COMPLETE_STATUS, res.getStatus());
+		assertEquals(3, res.getSources().size());
+		for (SourceQueryResults sqr : res.getSources()){
+			assertNull(sqr.getResults());
+		}
+	}
+
+	@Test
+	public void testPagesMatchRankedResultIndex() throws Exception {
+		File f = new File(_folder.newFolder(), "qr.bin");
+		ObjectMapper mapper = new ObjectMapper();
+		QueryResultsBinaryFile binFile = new QueryResultsBinaryFile(f, mapper);
+		binFile.write(getQueryResults());
+		RankedResultIndex index = new RankedResultIndex(getQueryResults(), mapper);
+		for (String source : Arrays.asList(null, "a_source", "c_source,b_source")){
+			for (int start = 0; start < 4; start++){
+				for (int size = 0; size < 4; size++){
+					assertEquals(mapper.writeValueAsString(index.getQueryResults(source, start, size)),
+							mapper.writeValueAsString(binFile.readQueryResults(source, start, size)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testReadSectionsLargerThenReadBuffer() throws Exception {
+		File f = new File(_folder.newFolder(), "qr.bin");
+		QueryResultsBinaryFile binFile = new QueryResultsBinaryFile(f, new ObjectMapper());
+		QueryResults qr = getQueryResults();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++){
+			sb.append((char)('a' + (i % 26)));
+		}
+		String bigDescription = sb.toString();
+		List<SourceQueryResult> results = new ArrayList<>();
+		for (int i = 0; i < 3; i++){
+			SourceQueryResult res = new SourceQueryResult();
+			res.setRank(i);
+			res.setDescription(i == 1 ? bigDescription : "small" + i);
+			results.add(res);
+		}
+		qr.getSources().get(2).setResults(results);
+		binFile.write(qr);
+
+		QueryResults res = binFile.read();
+		List<SourceQueryResult> resResults = res.getSources().get(2).getResults();
+		assertEquals("small0", resResults.get(0).getDescription());
+		assertEquals(bigDescription, resResults.get(1).getDescription());
+		assertEquals("small2", resResults.get(2).getDescription());
+		assertEquals("small2", binFile.readQueryResults("c_source", 2, 0)
+				.getSources().get(0).getResults().get(0).getDescription());
+		assertEquals(3, binFile.readQueryStatus().getSources().size());
+
+		// file can be removed right after a read
+		assertTrue(f.delete());
+	}
+
+	@Test
+	public void testReadInvalidFiles() throws Exception {
+		File f = new File(_folder.newFolder(), "qr.bin");
+		QueryResultsBinaryFile binFile = new QueryResultsBinaryFile(f, new ObjectMapper());
+		try (FileOutputStream out = new FileOutputStream(f)){
+			out.write("{}".getBytes());
+		}
+		try {
+			binFile.read();
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertTrue(io.getMessage().endsWith("is not a query results file"));
+		}
+
+		binFile.write(getQueryResults());
+		byte[] truncated = java.nio.file.Files.readAllBytes(f.toPath());
+		try (FileOutputStream out = new FileOutputStream(f)){
+			out.write(truncated, 0, truncated.length - 10);
+		}
+		try {
+			binFile.readQueryStatus();
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertTrue(io.getMessage().endsWith("is truncated or corrupt"));
+		}
+	}
+}
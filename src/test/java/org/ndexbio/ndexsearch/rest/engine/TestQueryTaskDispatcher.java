@@ -0,0 +1,63 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class TestQueryTaskDispatcher {
+	
+	@Test
+	public void testSetNumberOfWorkers(){
+		QueryTaskDispatcher dispatcher = new QueryTaskDispatcher(0, (id) -> {});
+		assertEquals(QueryTaskDispatcher.DEFAULT_NUMBER_OF_WORKERS,
+				dispatcher.getNumberOfWorkers());
+		dispatcher.setNumberOfWorkers(3);
+		assertEquals(3, dispatcher.getNumberOfWorkers());
+		dispatcher.start();
+		dispatcher.setNumberOfWorkers(5);
+		assertEquals(3, dispatcher.getNumberOfWorkers());
+		dispatcher.shutdown(1000);
+	}
+	
+	@Test
+	public void testSubmitBeforeStart(){
+		QueryTaskDispatcher dispatcher = new QueryTaskDispatcher(1, (id) -> {});
+		dispatcher.submit("1");
+		dispatcher.submit("2");
+		assertEquals(2, dispatcher.getQueueDepth());
+		assertEquals(0, dispatcher.getBusyWorkers());
+		assertEquals(0.0, dispatcher.getWorkerUtilization(), 0.001);
+	}
+	
+	@Test
+	public void testTasksProcessedAndShutdown() throws Exception {
+		ConcurrentLinkedQueue<String> processed = new ConcurrentLinkedQueue<>();
+		CountDownLatch latch = new CountDownLatch(3);
+		QueryTaskDispatcher dispatcher = new QueryTaskDispatcher(2, (id) -> {
+			if (id.equals("bad")){
+				throw new RuntimeException("some error");
+			}
+			processed.add(id);
+			latch.countDown();
+		});
+		dispatcher.start();
+		dispatcher.submit("1");
+		dispatcher.submit("bad");
+		dispatcher.submit("2");
+		dispatcher.submit("3");
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(3, processed.size());
+		assertTrue(processed.contains("1"));
+		assertTrue(processed.contains("2"));
+		assertTrue(processed.contains("3"));
+		dispatcher.shutdown(5000);
+		assertEquals(0, dispatcher.getQueueDepth());
+	}
+}
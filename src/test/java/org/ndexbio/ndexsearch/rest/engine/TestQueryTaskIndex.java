@@ -0,0 +1,193 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.Test;
+import org.ndexbio.ndexsearch.rest.model.AlterationData;
+import org.ndexbio.ndexsearch.rest.model.Query;
+
+/**
+ *
+ * @author churas
+ */
+public class TestQueryTaskIndex {
+	
+	@Test
+	public void testGetKey(){
+		QueryTaskIndex index = new QueryTaskIndex();
+		Map<String, String> versions = new HashMap<>();
+		versions.put("enrichment", "1.0");
+		Query query = new Query();
+		query.setSourceList(Arrays.asList("keyword", "enrichment"));
+		assertEquals("enrichment@1.0,keyword@null|A,B||",
+				index.getKey(Arrays.asList("B", "A"), query, versions));
+		query.setSourceList(Arrays.asList("enrichment"));
+		assertEquals("enrichment@1.0|||",
+				index.getKey(null, query, versions));
+	}
+	
+	@Test
+	public void testGetKeySourceOrderDoesNotMatter(){
+		QueryTaskIndex index = new QueryTaskIndex();
+		Map<String, String> versions = new HashMap<>();
+		Query query = new Query();
+		query.setSourceList(Arrays.asList("enrichment", "keyword"));
+		Query otherQuery = new Query();
+		otherQuery.setSourceList(Arrays.asList(" keyword", "enrichment"));
+		assertEquals(index.getKey(Arrays.asList("A"), query, versions),
+				index.getKey(Arrays.asList("A"), otherQuery, versions));
+	}
+	
+	@Test
+	public void testGetKeyIncludesAnnotationServicesAndAlterationData(){
+		QueryTaskIndex index = new QueryTaskIndex();
+		Map<String, String> versions = new HashMap<>();
+		Query query = new Query();
+		query.setSourceList(Arrays.asList("enrichment"));
+		String plainKey = index.getKey(Arrays.asList("A"), query, versions);
+		
+		Map<String, String> annotations = new HashMap<>();
+		annotations.put("mutation", "cbioportal");
+		query.setGeneAnnotationServices(annotations);
+		String annotatedKey = index.getKey(Arrays.asList("A"), query, versions);
+		assertNotEquals(plainKey, annotatedKey);
+		
+		AlterationData ad = new AlterationData();
+		ad.setGene("A");
+		ad.setData(Arrays.asList("1"));
+		query.setAlterationData(Arrays.asList(ad));
+		String alteredKey = index.getKey(Arrays.asList("A"), query, versions);
+		assertNotEquals(annotatedKey, alteredKey);
+		
+		ad.setData(Arrays.asList("2"));
+		assertNotEquals(alteredKey, index.getKey(Arrays.asList("A"), query, versions));
+	}
+	
+	@Test
+	public void testGetOrAddTask(){
+		QueryTaskIndex index = new QueryTaskIndex();
+		AtomicInteger created = new AtomicInteger(0);
+		assertEquals("id1", index.getOrAddTask("key", (id) -> true,
+				() -> "id" + created.incrementAndGet()));
+		assertEquals("id1", index.getOrAddTask("key", (id) -> true,
+				() -> "id" + created.incrementAndGet()));
+		assertEquals(1, created.get());
+		
+		// task that can not be reused is replaced
+		assertEquals("id2", index.getOrAddTask("key", (id) -> false,
+				() -> "id" + created.incrementAndGet()));
+		assertEquals("id2", getOrAddTask(index, "key", "new"));
+		assertEquals(1, index.size());
+		
+		// null key is never indexed
+		assertEquals("id3", index.getOrAddTask(null, (id) -> true,
+				() -> "id" + created.incrementAndGet()));
+		assertEquals(1, index.size());
+	}
+	
+	@Test
+	public void testGetOrAddTaskChecksReuseOutsideUpdate(){
+		QueryTaskIndex index = new QueryTaskIndex();
+		assertEquals("id1", index.getOrAddTask("key", (id) -> true, () -> "id1"));
+		
+		// while the check runs an identical query replaces the task, the
+		// replacement is used instead of creating yet another task
+		assertEquals("id2", index.getOrAddTask("key", (id) -> {
+			assertEquals("id2", index.getOrAddTask("key", (other) -> false, () -> "id2"));
+			return false;
+		}, () -> "id3"));
+		assertEquals("id2", index.getOrAddTask("key", (id) -> true, () -> "id4"));
+		assertEquals(1, index.size());
+	}
+	
+	@Test
+	public void testGetOrAddTaskConcurrentCallsShareTask() throws Exception {
+		QueryTaskIndex index = new QueryTaskIndex();
+		AtomicInteger created = new AtomicInteger(0);
+		ExecutorService es = Executors.newFixedThreadPool(8);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<String>> ids = new ArrayList<>();
+			for (int i = 0; i < 8; i++){
+				ids.add(es.submit(() -> {
+					start.await();
+					return index.getOrAddTask("key", (id) -> true, () -> {
+						return "id" + created.incrementAndGet();
+					});
+				}));
+			}
+			start.countDown();
+			for (Future<String> id : ids){
+				assertEquals("id1", id.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, created.get());
+		} finally {
+			es.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testRemoveTask(){
+		QueryTaskIndex index = new QueryTaskIndex();
+		assertEquals("id1", getOrAddTask(index, "key", "id1"));
+		assertEquals(1, index.size());
+		index.removeTask("id1");
+		assertEquals(0, index.size());
+		assertEquals("id2", getOrAddTask(index, "key", "id2"));
+	}
+	
+	@Test
+	public void testReuseDisabled(){
+		QueryTaskIndex index = new QueryTaskIndex();
+		index.setTimeToLive(0);
+		assertEquals("id1", getOrAddTask(index, "key", "id1"));
+		assertEquals("id2", getOrAddTask(index, "key", "id2"));
+		assertEquals(0, index.size());
+	}
+	
+	@Test
+	public void testExpired() throws Exception {
+		QueryTaskIndex index = new QueryTaskIndex();
+		index.setTimeToLive(1);
+		getOrAddTask(index, "key", "id1");
+		getOrAddTask(index, "key2", "id2");
+		Thread.sleep(10);
+		assertEquals("id3", getOrAddTask(index, "key", "id3"));
+		assertEquals(2, index.size());
+		Thread.sleep(10);
+		index.removeExpired();
+		assertEquals(0, index.size());
+	}
+	
+	@Test
+	public void testInvalidateSource(){
+		QueryTaskIndex index = new QueryTaskIndex();
+		getOrAddTask(index, "enrichment@1.0,keyword@2|A", "id1");
+		getOrAddTask(index, "keyword@2|A", "id2");
+		getOrAddTask(index, "enrichment-other@1|A", "id3");
+		index.invalidateSource("enrichment");
+		assertEquals(2, index.size());
+		assertEquals("new", getOrAddTask(index, "enrichment@1.0,keyword@2|A", "new"));
+		assertEquals("id2", getOrAddTask(index, "keyword@2|A", "new"));
+		assertEquals("id3", getOrAddTask(index, "enrichment-other@1|A", "new"));
+	}
+	
+	/**
+	 * Gets id of reusable task for {@code key} adding {@code newId} if
+	 * there is none
+	 */
+	private String getOrAddTask(QueryTaskIndex index, final String key, final String newId){
+		return index.getOrAddTask(key, (id) -> true, () -> newId);
+	}
+}
@@ -0,0 +1,187 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestRankedResultIndex {
+
+	private QueryResults getQueryResults(){
+		QueryResults qr = new QueryResults();
+		qr.setQuery(Arrays.asList("gene1"));
+		SourceQueryResults sqr = new SourceQueryResults();
+		sqr.setSourceName("a_source");
+		sqr.setSourceRank(2);
+		SourceQueryResult res1 = new SourceQueryResult();
+		res1.setRank(5);
+		res1.setDescription("res1");
+		SourceQueryResult res2 = new SourceQueryResult();
+		res2.setRank(4);
+		res2.setDescription("res2");
+		sqr.setResults(Arrays.asList(res1, res2));
+
+		SourceQueryResults sqr2 = new SourceQueryResults();
+		sqr2.setSourceName("b_source");
+		sqr2.setSourceRank(1);
+		SourceQueryResult res3 = new SourceQueryResult();
+		res3.setRank(0);
+		res3.setDescription("res3");
+		sqr2.setResults(Arrays.asList(res3));
+
+		SourceQueryResults sqr3 = new SourceQueryResults();
+		sqr3.setSourceName("c_source");
+		sqr3.setSourceRank(3);
+		qr.setSources(Arrays.asList(sqr, sqr2, sqr3));
+		return qr;
+	}
+
+	@Test
+	public void testGetQueryResultsAll() throws Exception {
+		QueryResults qr = getQueryResults();
+		RankedResultIndex index = new RankedResultIndex(qr, new ObjectMapper());
+		assertEquals(3, index.getNumberOfResults());
+
+		QueryResults res = index.getQueryResults(null, 0, 0);
+		assertEquals(Arrays.asList("gene1"), res.getQuery());
+		assertEquals(3, res.getSources().size());
+		assertEquals("b_source", res.getSources().get(0).getSourceName());
+		assertEquals("a_source", res.getSources().get(1).getSourceName());
+		assertEquals("c_source", res.getSources().get(2).getSourceName());
+		assertEquals("res3", res.getSources().get(0).getResults().get(0).getDescription());
+		assertEquals("res2", res.getSources().get(1).getResults().get(0).getDescription());
+		assertEquals("res1", res.getSources().get(1).getResults().get(1).getDescription());
+		assertNull(res.getSources().get(2).getResults());
+
+		// original object is left untouched
+		assertEquals("a_source", qr.getSources().get(0).getSourceName());
+		assertEquals("res1", qr.getSources().get(0).getResults().get(0).getDescription());
+	}
+
+	@Test
+	public void testGetQueryResultsPageAndSourceFilter() throws Exception {
+		RankedResultIndex index = new RankedResultIndex(getQueryResults(), new ObjectMapper());
+		QueryResults res = index.getQueryResults(null, 0, 2);
+		assertEquals(1, res.getSources().get(0).getResults().size());
+		assertEquals(1, res.getSources().get(1).getResults().size());
+		assertEquals("res2", res.getSources().get(1).getResults().get(0).getDescription());
+
+		res = index.getQueryResults(null, 2, 1);
+		assertEquals(0, res.getSources().get(0).getResults().size());
+		assertEquals(0, res.getSources().get(1).getResults().size());
+
+		res = index.getQueryResults("a_source, c_source", 0, 0);
+		assertEquals(2, res.getSources().size());
+		assertEquals("a_source", res.getSources().get(0).getSourceName());
+		assertEquals(2, res.getSources().get(0).getResults().size());
+		try {
+			res.getSources().get(0).getResults().clear();
+			fail("Expected UnsupportedOperationException");
+		} catch(UnsupportedOperationException uoe){
+			// expected
+		}
+		assertEquals(2, index.getQueryResults("a_source", 0, 0).getSources().get(0).getResults().size());
+	}
+
+	@Test
+	public void testGetQueryStatus() throws Exception {
+		RankedResultIndex index = new RankedResultIndex(getQueryResults(), new ObjectMapper());
+		QueryResults res = index.getQueryStatus();
+		assertEquals(3, res.getSources().size());
+		for (SourceQueryResults sqr : res.getSources()){
+			assertNull(sqr.getResults());
+		}
+	}
+
+	@Test
+	public void testHeadersCopiedPerRequest() throws Exception {
+		QueryResults qr = getQueryResults();
+		qr.setStatus(QueryResults.COMPLETE_STATUS);
+		RankedResultIndex index = new RankedResultIndex(qr, new ObjectMapper());
+		qr.setStatus(QueryResults.FAILED_STATUS);
+		qr.getSources().get(1).setSourceName("changed");
+
+		QueryResults res = index.getQueryResults(null, 0, 0);
+		QueryResults res2 = index.getQueryResults(null, 0, 0);
+		assertNotSame(res, res2);
+		assertNotSame(res.getSources().get(0), res2.getSources().get(0));
+		assertEquals(QueryResults.COMPLETE_STATUS, res.getStatus());
+		assertEquals("b_source", res.getSources().get(0).getSourceName());
+
+		res.setStatus(QueryResults.FAILED_STATUS);
+		res.getSources().get(0).setSourceName("changed");
+		res.getSources().get(0).setProgress(50);
+		try {
+			res.getQuery().clear();
+			fail("Expected UnsupportedOperationException");
+		} catch(UnsupportedOperationException uoe){
+			// expected
+		}
+		QueryResults status = index.getQueryStatus();
+		assertEquals(QueryResults.COMPLETE_STATUS, status.getStatus());
+		assertEquals(Arrays.asList("gene1"), status.getQuery());
+		assertEquals("b_source", status.getSources().get(0).getSourceName());
+		assertEquals(0, status.getSources().get(0).getProgress());
+	}
+
+	@Test
+	public void testGetSlice(){
+		SourceQueryResult res1 = new SourceQueryResult();
+		SourceQueryResult res2 = new SourceQueryResult();
+		SourceQueryResult res3 = new SourceQueryResult();
+		List<SourceQueryResult> results = Arrays.asList(res1, res2, res3);
+		assertEquals(3, RankedResultIndex.getSlice(results, 0, 0, 0).size());
+		assertEquals(2, RankedResultIndex.getSlice(results, 0, 0, 2).size());
+		assertEquals(2, RankedResultIndex.getSlice(results, 0, 1, 2).size());
+		assertEquals(res2, RankedResultIndex.getSlice(results, 0, 1, 2).get(0));
+		assertEquals(0, RankedResultIndex.getSlice(results, 5, 0, 2).size());
+		assertTrue(RankedResultIndex.getSlice(results, 0, 10, 0).isEmpty());
+	}
+
+	@Test
+	public void testGetEstimatedResultSize() throws Exception {
+		assertEquals(0, RankedResultIndex.getEstimatedResultSize(null));
+		SourceQueryResult sr = new SourceQueryResult();
+		long emptySize = RankedResultIndex.getEstimatedResultSize(sr);
+		assertTrue(emptySize > 0);
+
+		sr.setDescription("some description");
+		long descSize = RankedResultIndex.getEstimatedResultSize(sr);
+		assertTrue(descSize > emptySize);
+
+		sr.setHitGenes(new HashSet<>(Arrays.asList("gene1", "gene2")));
+		long genesSize = RankedResultIndex.getEstimatedResultSize(sr);
+		assertTrue(genesSize > descSize);
+
+		sr.getDetails().put("key", "value");
+		sr.getDetails().put("num", 5);
+		assertTrue(RankedResultIndex.getEstimatedResultSize(sr) > genesSize);
+	}
+
+	@Test
+	public void testGetEstimatedSizeWeighsObjectsNotJson() throws Exception {
+		QueryResults qr = getQueryResults();
+		ObjectMapper mapper = new ObjectMapper();
+		RankedResultIndex index = new RankedResultIndex(qr, mapper);
+		assertTrue(index.getEstimatedSize() > mapper.writeValueAsBytes(qr).length);
+
+		long sizeBefore = index.getEstimatedSize();
+		qr.getSources().get(0).getResults().get(0).setHitGenes(
+				new HashSet<>(Arrays.asList("gene1", "gene2", "gene3")));
+		index = new RankedResultIndex(qr, mapper);
+		assertTrue(index.getEstimatedSize() > sizeBefore);
+	}
+}
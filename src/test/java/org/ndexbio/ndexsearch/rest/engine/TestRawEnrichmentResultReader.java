@@ -0,0 +1,94 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.ndexbio.ndexsearch.rest.SearchJsonProvider;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResult;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestRawEnrichmentResultReader {
+
+	private static final String RESULT_ONE = "{\"databaseName\":\"db\",\"rank\":0,"
+			+ "\"hitGenes\":[\"a\",\"b\"],\"networkUUID\":\"uuid1\",\"nodes\":5,"
+			+ "\"edges\":6,\"pValue\":0.001,\"details\":{\"x\":{\"y\":[1]}},"
+			+ "\"description\":\"desc\",\"percentOverlap\":40,\"url\":\"http://url\","
+			+ "\"imageURL\":\"http://image\",\"legendURL\":\"http://legend\","
+			+ "\"totalGeneCount\":9}";
+
+	private static final String RESULT_TWO = "{ \"rank\" : 1, \"networkUUID\" : \"uuid2\" }";
+
+	@Test
+	public void testParse() throws Exception {
+		String json = "{\"status\":\"complete\",\"startTime\":5,\"message\":null,"
+				+ "\"results\":[" + RESULT_ONE + ", " + RESULT_TWO + "],"
+				+ "\"progress\":100,\"wallTime\":7,\"numberOfHits\":2}";
+		RawEnrichmentResultReader reader = new RawEnrichmentResultReader("http://foo", null);
+		SourceQueryResults sqRes = reader.parse(json.getBytes(StandardCharsets.UTF_8));
+		assertEquals(QueryResults.COMPLETE_STATUS, sqRes.getStatus());
+		assertNull(sqRes.getMessage());
+		assertEquals(100, sqRes.getProgress());
+		assertEquals(7, sqRes.getWallTime());
+		assertEquals(2, sqRes.getNumberOfHits());
+
+		SourceQueryResult one = sqRes.getResults().get(0);
+		assertEquals(0, one.getRank());
+		assertEquals("uuid1", one.getNetworkUUID());
+		assertEquals(5, one.getNodes());
+		assertEquals(6, one.getEdges());
+		assertEquals(Arrays.asList("a", "b"), new ArrayList<>(one.getHitGenes()));
+		assertEquals("db: desc", one.getDescription());
+		assertEquals(40, one.getPercentOverlap());
+		assertEquals("http://url", one.getUrl());
+		assertEquals("http://image", one.getImageURL());
+		assertEquals("http://legend", one.getLegendURL());
+		assertEquals(9, one.getTotalGeneCount());
+		assertEquals(RESULT_ONE, one.getDetails()
+				.get(RawEnrichmentResultReader.RAW_RESULT_KEY).toString());
+
+		SourceQueryResult two = sqRes.getResults().get(1);
+		assertEquals(1, two.getRank());
+		assertEquals("uuid2", two.getNetworkUUID());
+		assertNull(two.getHitGenes());
+		assertNull(two.getDescription());
+		assertEquals(RESULT_TWO, two.getDetails()
+				.get(RawEnrichmentResultReader.RAW_RESULT_KEY).toString());
+
+		// raw result is spliced into output as is
+		String out = SearchJsonProvider.getObjectMapper().writeValueAsString(one);
+		assertEquals(true, out.contains("\"" + RawEnrichmentResultReader.RAW_RESULT_KEY
+				+ "\":" + RESULT_ONE));
+	}
+
+	@Test
+	public void testParseNoResults() throws Exception {
+		RawEnrichmentResultReader reader = new RawEnrichmentResultReader("http://foo", null);
+		SourceQueryResults sqRes = reader.parse("{\"status\":\"failed\",\"message\":\"oops\",\"progress\":100,\"results\":null}"
+				.getBytes(StandardCharsets.UTF_8));
+		assertEquals(QueryResults.FAILED_STATUS, sqRes.getStatus());
+		assertEquals("oops", sqRes.getMessage());
+		assertEquals(0, sqRes.getResults().size());
+		assertEquals(0, sqRes.getNumberOfHits());
+	}
+
+	@Test
+	public void testParseNotAnObject() throws Exception {
+		RawEnrichmentResultReader reader = new RawEnrichmentResultReader("http://foo", null);
+		try {
+			reader.parse("[]".getBytes(StandardCharsets.UTF_8));
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertEquals("Expected results to be a JSON object", io.getMessage());
+		}
+	}
+}
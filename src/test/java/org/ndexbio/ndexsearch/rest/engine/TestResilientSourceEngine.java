@@ -0,0 +1,250 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
+import org.ndexbio.ndexsearch.rest.model.Query;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestResilientSourceEngine {
+
+	private SourceQueryResults getSourceQueryResults(final String status){
+		SourceQueryResults sqr = new SourceQueryResults();
+		sqr.setSourceName("foo");
+		sqr.setStatus(status);
+		return sqr;
+	}
+
+	@Test
+	public void testGetSourceQueryResultsSuccess() throws Exception {
+		SourceEngine delegate = mock(SourceEngine.class);
+		SourceQueryResults sqr = getSourceQueryResults(QueryResults.SUBMITTED_STATUS);
+		Query q = new Query();
+		when(delegate.getSourceQueryResults(q)).thenReturn(sqr);
+		ResilientSourceEngine engine = new ResilientSourceEngine(delegate, "foo");
+		try {
+			assertTrue(sqr == engine.getSourceQueryResults(q));
+			assertEquals(0, engine.getNumberOfRunningCalls());
+			assertFalse(engine.isCircuitOpen());
+		} finally {
+			engine.shutdown();
+		}
+		verify(delegate).shutdown();
+	}
+
+	@Test
+	public void testCallTimesOut() throws Exception {
+		SourceEngine delegate = mock(SourceEngine.class);
+		CountDownLatch release = new CountDownLatch(1);
+		when(delegate.getDatabases()).thenAnswer((inv) -> {
+			release.await(10, TimeUnit.SECONDS);
+			return "databases";
+		});
+		ResilientSourceEngine engine = new ResilientSourceEngine(delegate, "foo",
+				50, 1, 5, 30000);
+		try {
+			engine.getDatabases();
+			fail("Expected SearchException");
+		} catch(SearchException se){
+			assertEquals("foo databases did not finish within 50 ms", se.getMessage());
+		} finally {
+			release.countDown();
+			engine.shutdown();
+		}
+	}
+
+	@Test
+	public void testQueryRunsOnCallingThread() throws Exception {
+		SourceEngine delegate = mock(SourceEngine.class);
+		when(delegate.getSourceQueryResults(any())).thenAnswer((inv) -> {
+			SourceQueryResults sqr = getSourceQueryResults(QueryResults.SUBMITTED_STATUS);
+			sqr.setMessage(Thread.currentThread().getName());
+			Thread.sleep(100);
+			return sqr;
+		});
+		ResilientSourceEngine engine = new ResilientSourceEngine(delegate, "foo",
+				50, 1, 1, 30000);
+		try {
+			SourceQueryResults sqr = engine.getSourceQueryResults(new Query());
+			assertEquals(QueryResults.SUBMITTED_STATUS, sqr.getStatus());
+			assertEquals(Thread.currentThread().getName(), sqr.getMessage());
+			assertEquals(0, engine.getNumberOfRunningCalls());
+
+			// query slower then call timeout counts as failure
+			assertTrue(engine.isCircuitOpen());
+			sqr = engine.getSourceQueryResults(new Query());
+			assertEquals(QueryResults.FAILED_STATUS, sqr.getStatus());
+			assertEquals(100, sqr.getProgress());
+			assertEquals("foo query rejected, source is unavailable after 1 consecutive failures",
+					sqr.getMessage());
+			verify(delegate, times(1)).getSourceQueryResults(any());
+		} finally {
+			engine.shutdown();
+		}
+	}
+
+	@Test
+	public void testTooManyConcurrentCalls() throws Exception {
+		SourceEngine delegate = mock(SourceEngine.class);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		doAnswer((inv) -> {
+			started.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return null;
+		}).when(delegate).delete("1");
+		ResilientSourceEngine engine = new ResilientSourceEngine(delegate, "foo",
+				10000, 1, 5, 30000);
+		try {
+			Thread deleter = new Thread(() -> {
+				try {
+					engine.delete("1");
+				} catch(SearchException se){
+					// not expected
+				}
+			});
+			deleter.start();
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			assertEquals(1, engine.getNumberOfRunningCalls());
+
+			// progress check is left unchanged so it is retried later
+			SourceQueryResults sqr = getSourceQueryResults(QueryResults.PROCESSING_STATUS);
+			sqr.setProgress(50);
+			engine.updateSourceQueryResults(sqr);
+			assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+			assertEquals(50, sqr.getProgress());
+
+			try {
+				engine.delete("2");
+				fail("Expected SearchException");
+			} catch(SearchException se){
+				assertEquals("foo delete rejected, 1 calls already running", se.getMessage());
+			}
+			release.countDown();
+			deleter.join(10000);
+			assertEquals(0, engine.getNumberOfRunningCalls());
+			assertFalse(engine.isCircuitOpen());
+		} finally {
+			release.countDown();
+			engine.shutdown();
+		}
+	}
+
+	@Test
+	public void testCircuitOpensAndCloses() throws Exception {
+		SourceEngine delegate = mock(SourceEngine.class);
+		doThrow(new SearchException("down")).when(delegate).delete("1");
+		when(delegate.getSourceQueryResults(any()))
+				.thenReturn(getSourceQueryResults(QueryResults.FAILED_STATUS))
+				.thenReturn(getSourceQueryResults(QueryResults.SUBMITTED_STATUS));
+		ResilientSourceEngine engine = new ResilientSourceEngine(delegate, "foo",
+				10000, 4, 2, 100);
+		try {
+			// failed result counts as failure
+			assertEquals(QueryResults.FAILED_STATUS,
+					engine.getSourceQueryResults(new Query()).getStatus());
+			assertFalse(engine.isCircuitOpen());
+			try {
+				engine.delete("1");
+				fail("Expected SearchException");
+			} catch(SearchException se){
+				assertEquals("down", se.getMessage());
+			}
+			assertTrue(engine.isCircuitOpen());
+
+			// calls fail fast while open, progress check is left unchanged
+			SourceQueryResults sqr = getSourceQueryResults(QueryResults.PROCESSING_STATUS);
+			sqr.setSourceTaskId("task");
+			sqr.setProgress(50);
+			engine.updateSourceQueryResults(sqr);
+			assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+			assertEquals(50, sqr.getProgress());
+			verify(delegate, times(0)).updateSourceQueryResults(any());
+
+			// trial call after open time closes circuit
+			Thread.sleep(150);
+			assertEquals(QueryResults.SUBMITTED_STATUS,
+					engine.getSourceQueryResults(new Query()).getStatus());
+			assertFalse(engine.isCircuitOpen());
+		} finally {
+			engine.shutdown();
+		}
+	}
+
+	@Test
+	public void testProgressCheckTimeoutFailsOnlyAfterTaskDeadline() throws Exception {
+		SourceEngine delegate = mock(SourceEngine.class);
+		CountDownLatch release = new CountDownLatch(1);
+		SourceQueryResults started = getSourceQueryResults(QueryResults.SUBMITTED_STATUS);
+		started.setSourceTaskId("task");
+		when(delegate.getSourceQueryResults(any())).thenReturn(started);
+		doAnswer((inv) -> {
+			release.await(10, TimeUnit.SECONDS);
+			return null;
+		}).when(delegate).updateSourceQueryResults(any());
+		ResilientSourceEngine engine = new ResilientSourceEngine(delegate, "foo",
+				50, 4, 100, 30000, 300);
+		try {
+			SourceQueryResults sqr = engine.getSourceQueryResults(new Query());
+			sqr.setStatus(QueryResults.PROCESSING_STATUS);
+			sqr.setProgress(10);
+
+			// timed out progress check is retried on next poll
+			engine.updateSourceQueryResults(sqr);
+			assertEquals(QueryResults.PROCESSING_STATUS, sqr.getStatus());
+			assertEquals(10, sqr.getProgress());
+
+			// once deadline has passed task is failed
+			Thread.sleep(300);
+			engine.updateSourceQueryResults(sqr);
+			assertEquals(QueryResults.FAILED_STATUS, sqr.getStatus());
+			assertEquals(100, sqr.getProgress());
+			assertEquals("foo progress check did not finish within 50 ms",
+					sqr.getMessage());
+		} finally {
+			release.countDown();
+			engine.shutdown();
+		}
+	}
+
+	@Test
+	public void testUpdateSourceQueryResultsCopiesBack() throws Exception {
+		SourceEngine delegate = mock(SourceEngine.class);
+		doAnswer((inv) -> {
+			SourceQueryResults work = inv.getArgument(0);
+			work.setProgress(100);
+			work.setStatus(QueryResults.COMPLETE_STATUS);
+			work.setNumberOfHits(3);
+			return null;
+		}).when(delegate).updateSourceQueryResults(any());
+		ResilientSourceEngine engine = new ResilientSourceEngine(delegate, "foo");
+		try {
+			SourceQueryResults sqr = getSourceQueryResults(QueryResults.PROCESSING_STATUS);
+			sqr.setSourceTaskId("task");
+			engine.updateSourceQueryResults(sqr);
+			assertEquals(QueryResults.COMPLETE_STATUS, sqr.getStatus());
+			assertEquals(100, sqr.getProgress());
+			assertEquals(3, sqr.getNumberOfHits());
+			assertEquals("task", sqr.getSourceTaskId());
+		} finally {
+			engine.shutdown();
+		}
+	}
+}
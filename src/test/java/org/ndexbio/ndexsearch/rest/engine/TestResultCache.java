@@ -0,0 +1,116 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class TestResultCache {
+	
+	@Test
+	public void testGetAndPutWithLruEviction(){
+		ResultCache<String, String> cache = new ResultCache<>(2, 0);
+		assertNull(cache.get("a"));
+		cache.put("a", "1");
+		cache.put("b", "2");
+		assertEquals("1", cache.get("a"));
+		cache.put("c", "3");
+		
+		// b was least recently used
+		assertNull(cache.get("b"));
+		assertEquals("1", cache.get("a"));
+		assertEquals("3", cache.get("c"));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(3, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(0.6, cache.getHitRatio(), 0.001);
+		
+		cache.remove("a");
+		assertNull(cache.get("a"));
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+	
+	@Test
+	public void testWeightedEviction(){
+		ResultCache<String, String> cache = new ResultCache<>(10, 0, (v) -> v.length());
+		cache.put("a", "12345");
+		cache.put("b", "1234");
+		assertEquals(9, cache.getWeight());
+		cache.put("c", "123");
+		assertNull(cache.get("a"));
+		assertEquals(7, cache.getWeight());
+		
+		// too heavy to cache
+		cache.put("d", "12345678901");
+		assertNull(cache.get("d"));
+		assertEquals(2, cache.size());
+		
+		// replacing a value updates weight
+		cache.put("b", "1");
+		assertEquals(4, cache.getWeight());
+	}
+	
+	@Test
+	public void testExpiration() throws Exception {
+		ResultCache<String, String> cache = new ResultCache<>(10, 1);
+		cache.put("a", "1");
+		Thread.sleep(10);
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+	}
+	
+	@Test
+	public void testCachingDisabled(){
+		ResultCache<String, String> cache = new ResultCache<>(0, 0);
+		cache.put("a", "1");
+		assertNull(cache.get("a"));
+	}
+	
+	@Test
+	public void testDropListener() throws Exception {
+		List<String> dropped = new ArrayList<>();
+		ResultCache<String, String> cache = new ResultCache<>(10, 0,
+				(v) -> v.length(), dropped::add);
+		cache.put("a", "12345");
+		cache.put("b", "1234");
+		cache.put("c", "123");
+		assertEquals(Arrays.asList("12345"), dropped);
+		
+		// too heavy to cache
+		cache.put("d", "12345678901");
+		assertEquals(Arrays.asList("12345", "12345678901"), dropped);
+		
+		// removed or replaced by caller is not a drop
+		cache.put("b", "1");
+		cache.remove("c");
+		assertEquals(2, dropped.size());
+	}
+	
+	@Test
+	public void testDropListenerExpiration() throws Exception {
+		List<String> dropped = new ArrayList<>();
+		ResultCache<String, String> cache = new ResultCache<>(10, 1,
+				(v) -> 1L, dropped::add);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		Thread.sleep(10);
+		assertNull(cache.get("a"));
+		assertEquals(Arrays.asList("1"), dropped);
+		cache.removeExpired();
+		assertEquals(Arrays.asList("1", "2"), dropped);
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+		cache.removeExpired();
+		assertTrue(dropped.size() == 2);
+	}
+}
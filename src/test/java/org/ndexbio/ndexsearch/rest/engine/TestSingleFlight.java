@@ -0,0 +1,106 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class TestSingleFlight {
+
+	@Test
+	public void testSequentialCallsAreNotShared() throws Exception {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		AtomicInteger calls = new AtomicInteger(0);
+		assertEquals(1, (int)flight.execute("a", () -> calls.incrementAndGet()));
+		assertEquals(2, (int)flight.execute("a", () -> calls.incrementAndGet()));
+		assertEquals(0, flight.getSharedCount());
+		assertEquals(0, flight.getInFlightCount());
+	}
+
+	@Test
+	public void testConcurrentCallsShareResult() throws Exception {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		AtomicInteger calls = new AtomicInteger(0);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService es = Executors.newFixedThreadPool(5);
+		try {
+			Future<Integer> leader = es.submit(() -> flight.execute("a", () -> {
+				started.countDown();
+				release.await(10, TimeUnit.SECONDS);
+				return calls.incrementAndGet();
+			}));
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			List<Future<Integer>> waiters = new ArrayList<>();
+			for (int i = 0; i < 4; i++){
+				waiters.add(es.submit(() -> flight.execute("a", () -> calls.incrementAndGet())));
+			}
+			// call for another key is not held up
+			assertEquals(1, (int)flight.execute("b", () -> 1));
+			while (flight.getSharedCount() < 4){
+				Thread.sleep(10);
+			}
+			release.countDown();
+			assertEquals(1, (int)leader.get());
+			for (Future<Integer> waiter : waiters){
+				assertEquals(1, (int)waiter.get());
+			}
+			assertEquals(1, calls.get());
+			assertEquals(0, flight.getInFlightCount());
+		} finally {
+			es.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testConcurrentCallsShareException() throws Exception {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService es = Executors.newFixedThreadPool(2);
+		try {
+			Future<Integer> leader = es.submit(() -> flight.execute("a", () -> {
+				started.countDown();
+				release.await(10, TimeUnit.SECONDS);
+				throw new IOException("read failed");
+			}));
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			Future<String> waiter = es.submit(() -> {
+				try {
+					flight.<IOException>execute("a", () -> 2);
+					return "no exception";
+				} catch(IOException io){
+					return io.getMessage();
+				}
+			});
+			while (flight.getSharedCount() < 1){
+				Thread.sleep(10);
+			}
+			release.countDown();
+			assertEquals("read failed", waiter.get());
+			try {
+				leader.get();
+				fail("Expected exception");
+			} catch(Exception ex){
+				assertTrue(ex.getCause() instanceof IOException);
+			}
+			// next call runs again
+			assertEquals(3, (int)flight.execute("a", () -> 3));
+		} finally {
+			es.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.ProcessingException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class TestSourceCallRetrier {
+
+	@Test
+	public void testRetryBudget(){
+		RetryBudget budget = new RetryBudget(50, 2);
+		assertEquals(2, budget.getAvailableRetries());
+		assertTrue(budget.tryAcquireRetry());
+		assertTrue(budget.tryAcquireRetry());
+		assertEquals(false, budget.tryAcquireRetry());
+		budget.recordCall();
+		assertEquals(false, budget.tryAcquireRetry());
+		budget.recordCall();
+		assertTrue(budget.tryAcquireRetry());
+
+		// can not save up more then max
+		for (int i = 0; i < 10; i++){
+			budget.recordCall();
+		}
+		assertEquals(2, budget.getAvailableRetries());
+	}
+
+	@Test
+	public void testCallSucceedsAfterRetries() throws Exception {
+		SourceCallRetrier retrier = new SourceCallRetrier("foo", new RetryBudget(), 3, 1, false);
+		AtomicInteger calls = new AtomicInteger(0);
+		String res = retrier.call("op", () -> {
+			if (calls.incrementAndGet() < 3){
+				throw new IOException("fail " + calls.get());
+			}
+			return "ok";
+		});
+		assertEquals("ok", res);
+		assertEquals(3, calls.get());
+		assertEquals(2, retrier.getRetryCount());
+	}
+
+	@Test
+	public void testCallFailsAfterMaxAttempts() throws Exception {
+		SourceCallRetrier retrier = new SourceCallRetrier("foo", new RetryBudget(), 2, 1, false);
+		AtomicInteger calls = new AtomicInteger(0);
+		try {
+			retrier.call("op", () -> {
+				throw new IOException("fail " + calls.incrementAndGet());
+			});
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertEquals("fail 2", io.getMessage());
+		}
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void testCallNonIdempotentRetriesOnlyConnectFailures() throws Exception {
+		SourceCallRetrier retrier = new SourceCallRetrier("foo", new RetryBudget(), 3, 1, false);
+		AtomicInteger calls = new AtomicInteger(0);
+		assertEquals("ok", retrier.callNonIdempotent("op", () -> {
+			if (calls.incrementAndGet() == 1){
+				throw new ProcessingException(new ConnectException("Connection refused"));
+			}
+			return "ok";
+		}));
+		assertEquals(2, calls.get());
+
+		// request may have reached the source so it is not sent again
+		calls.set(0);
+		try {
+			retrier.callNonIdempotent("op", () -> {
+				calls.incrementAndGet();
+				throw new ProcessingException(new SocketTimeoutException("Read timed out"));
+			});
+			fail("Expected ProcessingException");
+		} catch(ProcessingException pe){
+			assertTrue(pe.getCause() instanceof SocketTimeoutException);
+		}
+		assertEquals(1, calls.get());
+
+		calls.set(0);
+		try {
+			retrier.callNonIdempotent("op", () -> {
+				throw new IOException("fail " + calls.incrementAndGet());
+			});
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertEquals("fail 1", io.getMessage());
+		}
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void testIsConnectFailure(){
+		assertTrue(SourceCallRetrier.isConnectFailure(new ConnectException("refused")));
+		assertTrue(SourceCallRetrier.isConnectFailure(
+				new ProcessingException(new IOException(new ConnectException("refused")))));
+		assertEquals(false, SourceCallRetrier.isConnectFailure(
+				new ProcessingException(new SocketTimeoutException("Read timed out"))));
+		assertEquals(false, SourceCallRetrier.isConnectFailure(new IOException("fail")));
+	}
+
+	@Test
+	public void testProcessingExceptionRetriedOtherRuntimeExceptionsNot() throws Exception {
+		SourceCallRetrier retrier = new SourceCallRetrier("foo", new RetryBudget(), 3, 1, false);
+		AtomicInteger calls = new AtomicInteger(0);
+		assertEquals("ok", retrier.call("op", () -> {
+			if (calls.incrementAndGet() == 1){
+				throw new ProcessingException("connection refused");
+			}
+			return "ok";
+		}));
+		assertEquals(2, calls.get());
+
+		calls.set(0);
+		try {
+			retrier.call("op", () -> {
+				calls.incrementAndGet();
+				throw new IllegalArgumentException("bad");
+			});
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException iae){
+			assertEquals("bad", iae.getMessage());
+		}
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void testRetriesStopWhenBudgetUsedUp() throws Exception {
+		RetryBudget budget = new RetryBudget(0, 1);
+		SourceCallRetrier retrier = new SourceCallRetrier("foo", budget, 5, 1, false);
+		AtomicInteger calls = new AtomicInteger(0);
+		for (int i = 0; i < 2; i++){
+			try {
+				retrier.call("op", () -> {
+					calls.incrementAndGet();
+					throw new IOException("down");
+				});
+				fail("Expected IOException");
+			} catch(IOException io){
+				assertEquals("down", io.getMessage());
+			}
+		}
+		// first call used the only retry, second call was not retried
+		assertEquals(3, calls.get());
+		assertEquals(1, retrier.getRetryCount());
+	}
+
+	@Test
+	public void testSlowReadIsHedged() throws Exception {
+		SourceCallRetrier retrier = new SourceCallRetrier("foo", new RetryBudget(), 1, 1, true);
+		try {
+			for (int i = 0; i < SourceCallRetrier.MIN_HEDGE_SAMPLES; i++){
+				assertEquals("fast", retrier.callIdempotent("read", () -> "fast"));
+			}
+			assertEquals(0, retrier.getHedgeCount());
+
+			CountDownLatch release = new CountDownLatch(1);
+			AtomicInteger calls = new AtomicInteger(0);
+			String res = retrier.callIdempotent("read", () -> {
+				if (calls.incrementAndGet() == 1){
+					release.await(10, TimeUnit.SECONDS);
+					return "slow";
+				}
+				return "hedge";
+			});
+			assertEquals("hedge", res);
+			assertEquals(2, calls.get());
+			assertEquals(1, retrier.getHedgeCount());
+
+			// writes are never hedged
+			calls.set(0);
+			assertEquals("fast", retrier.call("read", () -> {
+				calls.incrementAndGet();
+				return "fast";
+			}));
+			assertEquals(1, calls.get());
+			release.countDown();
+		} finally {
+			retrier.shutdown();
+		}
+	}
+}
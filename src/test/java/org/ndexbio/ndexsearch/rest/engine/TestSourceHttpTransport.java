@@ -0,0 +1,91 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.core.Response;
+import org.apache.http.pool.PoolStats;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
+
+/**
+ *
+ * @author churas
+ */
+public class TestSourceHttpTransport {
+
+	@Test
+	public void testInvalidSettingsReplacedWithDefaults() throws Exception {
+		SourceHttpTransport transport = new SourceHttpTransport(0, -1, 0, 0, 0);
+		try {
+			PoolStats stats = transport.getPoolStats();
+			assertEquals(SourceHttpTransport.DEFAULT_MAX_CONNECTIONS, stats.getMax());
+			assertEquals(0, stats.getLeased());
+			assertTrue(transport.getRouteStats().isEmpty());
+		} finally {
+			transport.close();
+		}
+	}
+
+	@Test
+	public void testGetReadTimeout() throws Exception {
+		assertEquals(20000, SourceHttpTransport.getReadTimeout(30000, 0, 0));
+		assertEquals(25000, SourceHttpTransport.getReadTimeout(30000, 5000, -1));
+		assertEquals(15000, SourceHttpTransport.getReadTimeout(30000, 5000, 15000));
+		assertEquals(500, SourceHttpTransport.getReadTimeout(1000, 0, 0));
+		assertEquals(SourceHttpTransport.DEFAULT_READ_TIMEOUT,
+				SourceHttpTransport.getReadTimeout(ResilientSourceEngine.DEFAULT_CALL_TIMEOUT,
+						SourceHttpTransport.DEFAULT_CONNECT_TIMEOUT, 0));
+		try {
+			SourceHttpTransport.getReadTimeout(30000, 0, 30000);
+			fail("Expected SearchException");
+		} catch(SearchException se){
+			assertEquals("Read timeout of 30000 ms must be less then call timeout of 30000 ms",
+					se.getMessage());
+		}
+	}
+
+	@Test
+	public void testConnectionsReused() throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		AtomicInteger requests = new AtomicInteger(0);
+		server.createContext("/", (exchange) -> {
+			requests.incrementAndGet();
+			byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()){
+				out.write(body);
+			}
+		});
+		server.start();
+		SourceHttpTransport transport = new SourceHttpTransport(10, 2, 5000, 5000, 30000);
+		try {
+			String url = "http://localhost:" + server.getAddress().getPort();
+			for (int i = 0; i < 5; i++){
+				Response res = transport.getClient().target(url).path("task" + i)
+						.request().get();
+				assertEquals(200, res.getStatus());
+				assertEquals("{}", res.readEntity(String.class));
+				res.close();
+			}
+			assertEquals(5, requests.get());
+			Map<String, PoolStats> routeStats = transport.getRouteStats();
+			assertEquals(1, routeStats.size());
+			PoolStats stats = routeStats.get(url);
+			assertEquals(2, stats.getMax());
+			assertEquals(0, stats.getLeased());
+			// one kept alive connection served all requests
+			assertEquals(1, stats.getAvailable());
+		} finally {
+			transport.close();
+			server.stop(0);
+		}
+	}
+}
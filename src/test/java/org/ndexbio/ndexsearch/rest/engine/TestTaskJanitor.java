@@ -0,0 +1,121 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author churas
+ */
+public class TestTaskJanitor {
+
+	private TaskStore getStore(long now) throws Exception {
+		Map<String, Long> tasks = new HashMap<>();
+		tasks.put("old", now - 10000);
+		tasks.put("older", now - 20000);
+		tasks.put("active", now - 30000);
+		tasks.put("new", now);
+		TaskStore store = mock(TaskStore.class);
+		when(store.listTasks()).thenReturn(tasks);
+		return store;
+	}
+
+	@Test
+	public void testGetPercentDiskFull(){
+		int pc = TaskJanitor.getPercentDiskFull(new File(System.getProperty("java.io.tmpdir")));
+		assertTrue(pc >= 0 && pc <= 100);
+	}
+
+	@Test
+	public void testSweepDisabledByDefault() throws Exception {
+		TaskStore store = getStore(System.currentTimeMillis());
+		List<String> removed = new ArrayList<>();
+		TaskJanitor janitor = new TaskJanitor(store, new File("."), (id) -> false, removed::add);
+		assertEquals(0, janitor.sweep());
+		assertTrue(removed.isEmpty());
+		verify(store, never()).listTasks();
+	}
+
+	@Test
+	public void testSweepByAgeOldestFirstSkippingActive() throws Exception {
+		TaskStore store = getStore(System.currentTimeMillis());
+		List<String> removed = new ArrayList<>();
+		TaskJanitor janitor = new TaskJanitor(store, new File("."),
+				(id) -> id.equals("active"), removed::add);
+		janitor.setMaxTaskAge(5000);
+		janitor.setBatchSize(1, 0);
+		assertEquals(2, janitor.sweep());
+		assertEquals(Arrays.asList("older", "old"), removed);
+		assertEquals(2, janitor.getNumberOfTasksRemoved());
+	}
+
+	@Test
+	public void testSweepByDiskHighWaterMark() throws Exception {
+		TaskStore store = getStore(System.currentTimeMillis());
+		List<String> removed = new ArrayList<>();
+		int[] diskUsage = {95};
+		TaskJanitor janitor = new TaskJanitor(store, new File("."),
+				(id) -> id.equals("active"), (id) -> {
+					removed.add(id);
+					diskUsage[0] -= 5;
+				}){
+			@Override
+			protected int getDiskUsagePercent(){
+				return diskUsage[0];
+			}
+		};
+		janitor.setDiskHighWaterMark(90);
+		janitor.setBatchSize(1, 0);
+		assertEquals(2, janitor.sweep());
+		assertEquals(Arrays.asList("older", "old"), removed);
+
+		// nothing removed once below the mark
+		removed.clear();
+		assertEquals(0, janitor.sweep());
+		assertTrue(removed.isEmpty());
+	}
+
+	@Test
+	public void testSweepByDiskHighWaterMarkReclaimsSpaceAfterEachBatch() throws Exception {
+		TaskStore store = getStore(System.currentTimeMillis());
+		List<String> removed = new ArrayList<>();
+		int[] diskUsage = {95};
+		// like a store that only frees space when asked to
+		doAnswer((invocation) -> {
+			diskUsage[0] -= 5 * removed.size();
+			removed.clear();
+			return null;
+		}).when(store).reclaimSpace();
+		TaskJanitor janitor = new TaskJanitor(store, new File("."),
+				(id) -> id.equals("active"), removed::add){
+			@Override
+			protected int getDiskUsagePercent(){
+				return diskUsage[0];
+			}
+		};
+		janitor.setDiskHighWaterMark(90);
+		janitor.setBatchSize(1, 0);
+		assertEquals(2, janitor.sweep());
+		verify(store, times(2)).reclaimSpace();
+		assertEquals(85, diskUsage[0]);
+	}
+
+	@Test
+	public void testSweepByAgeDoesNotReclaimSpace() throws Exception {
+		TaskStore store = getStore(System.currentTimeMillis());
+		TaskJanitor janitor = new TaskJanitor(store, new File("."),
+				(id) -> false, (id) -> {});
+		janitor.setMaxTaskAge(5000);
+		janitor.setBatchSize(1, 0);
+		assertEquals(3, janitor.sweep());
+		verify(store, never()).reclaimSpace();
+	}
+}
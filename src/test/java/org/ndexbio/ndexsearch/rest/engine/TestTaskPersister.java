@@ -0,0 +1,213 @@
+package org.ndexbio.ndexsearch.rest.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestTaskPersister {
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private QueryResults getQueryResults(final String message){
+		QueryResults qr = new QueryResults();
+		qr.setStatus(QueryResults.COMPLETE_STATUS);
+		qr.setMessage(message);
+		return qr;
+	}
+
+	@Test
+	public void testPersistWhenNotStartedSavesOnCallerThread() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f, false);
+		Map<String, QueryResults> tasks = new ConcurrentHashMap<>();
+		tasks.put("1", getQueryResults("one"));
+		Set<String> saved = Collections.newSetFromMap(new ConcurrentHashMap<>());
+		TaskPersister persister = new TaskPersister(store, tasks::get, saved::add);
+		try {
+			persister.persist("1", false);
+			assertEquals("one", store.load("1").getMessage());
+			assertTrue(saved.isEmpty());
+
+			persister.persist("1", true);
+			assertTrue(saved.contains("1"));
+			assertEquals(0, persister.getNumberOfPendingTasks());
+
+			// task no longer exists so nothing is saved
+			persister.persist("2", true);
+			assertNull(store.load("2"));
+			assertFalse(saved.contains("2"));
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testPersistInBackground() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f, false);
+		Map<String, QueryResults> tasks = new ConcurrentHashMap<>();
+		for (int i = 0; i < 10; i++){
+			tasks.put(Integer.toString(i), getQueryResults("task" + i));
+		}
+		CountDownLatch latch = new CountDownLatch(10);
+		TaskPersister persister = new TaskPersister(store, tasks::get, (id) -> {
+			latch.countDown();
+		});
+		persister.start();
+		try {
+			for (int i = 0; i < 10; i++){
+				persister.persist(Integer.toString(i), false);
+				persister.persist(Integer.toString(i), true);
+			}
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			assertEquals(10, store.size());
+			assertEquals("task7", store.load("7").getMessage());
+		} finally {
+			persister.shutdown();
+			store.close();
+		}
+	}
+
+	@Test
+	public void testShutdownSavesPendingTasks() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f, false);
+		Map<String, QueryResults> tasks = new ConcurrentHashMap<>();
+		tasks.put("1", getQueryResults("one"));
+		tasks.put("2", getQueryResults("two"));
+		CountDownLatch writerBusy = new CountDownLatch(1);
+		CountDownLatch neverReleased = new CountDownLatch(1);
+		TaskPersister persister = new TaskPersister(store, (id) -> {
+			if (id.equals("1")){
+				writerBusy.countDown();
+				try {
+					neverReleased.await(10, TimeUnit.SECONDS);
+				} catch(InterruptedException ie){
+					// shutdown interrupts writer
+				}
+			}
+			return tasks.get(id);
+		}, (id) -> {});
+		persister.start();
+		try {
+			persister.persist("1", true);
+			assertTrue(writerBusy.await(10, TimeUnit.SECONDS));
+			persister.persist("2", true);
+			assertEquals(1, persister.getNumberOfPendingTasks());
+		} finally {
+			persister.shutdown();
+		}
+		try {
+			assertEquals(0, persister.getNumberOfPendingTasks());
+			assertEquals("one", store.load("1").getMessage());
+			assertEquals("two", store.load("2").getMessage());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testFailedSaveKeepsFinishedTaskAndRetries() throws Exception {
+		TaskStore store = mock(TaskStore.class);
+		doThrow(new IOException("disk full")).doNothing()
+				.when(store).saveAllFinished(anyMap());
+		Map<String, QueryResults> tasks = new ConcurrentHashMap<>();
+		tasks.put("1", getQueryResults("one"));
+		Set<String> saved = Collections.newSetFromMap(new ConcurrentHashMap<>());
+		TaskPersister persister = new TaskPersister(store, tasks::get, saved::add, 10, 100);
+
+		// not started so saved on caller thread, which fails
+		persister.persist("1", true);
+		assertFalse(saved.contains("1"));
+		assertEquals(1, persister.getNumberOfPendingTasks());
+
+		// writer retries task once started
+		persister.start();
+		try {
+			for (int i = 0; i < 500 && saved.isEmpty(); i++){
+				Thread.sleep(10);
+			}
+			assertTrue(saved.contains("1"));
+			assertEquals(0, persister.getNumberOfPendingTasks());
+			verify(store, times(2)).saveAllFinished(anyMap());
+		} finally {
+			persister.shutdown();
+		}
+	}
+
+	@Test
+	public void testFailedSaveRetriedWithBackoffWhileWriterBusy() throws Exception {
+		TaskStore store = mock(TaskStore.class);
+		doThrow(new IOException("disk full")).doThrow(new IOException("disk full"))
+				.doNothing().when(store).saveAllFinished(anyMap());
+		Map<String, QueryResults> tasks = new ConcurrentHashMap<>();
+		tasks.put("1", getQueryResults("one"));
+		tasks.put("2", getQueryResults("two"));
+		Set<String> saved = Collections.newSetFromMap(new ConcurrentHashMap<>());
+		TaskPersister persister = new TaskPersister(store, tasks::get, saved::add, 50, 100);
+		persister.start();
+		try {
+			long startTime = System.currentTimeMillis();
+			persister.persist("1", true);
+
+			// task waiting on retry is not queued again by persist
+			persister.persist("1", true);
+
+			// other tasks keep the writer busy, failed task is still retried
+			for (int i = 0; i < 500 && saved.contains("1") == false; i++){
+				persister.persist("2", false);
+				Thread.sleep(10);
+			}
+			assertTrue(saved.contains("1"));
+			// waited 50 then 100 ms before the two retries
+			assertTrue(System.currentTimeMillis() - startTime >= 150);
+			verify(store, times(3)).saveAllFinished(anyMap());
+		} finally {
+			persister.shutdown();
+		}
+	}
+
+	@Test
+	public void testWriterSurvivesRuntimeException() throws Exception {
+		File f = new File(_folder.newFolder(), EmbeddedTaskStore.DEFAULT_FILE_NAME);
+		EmbeddedTaskStore store = new EmbeddedTaskStore(f, false);
+		Map<String, QueryResults> tasks = new ConcurrentHashMap<>();
+		tasks.put("2", getQueryResults("two"));
+		CountDownLatch savedLatch = new CountDownLatch(1);
+		TaskPersister persister = new TaskPersister(store, (id) -> {
+			if (id.equals("1")){
+				throw new IllegalStateException("bad task");
+			}
+			return tasks.get(id);
+		}, (id) -> savedLatch.countDown());
+		persister.start();
+		try {
+			persister.persist("1", true);
+			persister.persist("2", true);
+			assertTrue(savedLatch.await(10, TimeUnit.SECONDS));
+			assertEquals("two", store.load("2").getMessage());
+		} finally {
+			persister.shutdown();
+			store.close();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package org.ndexbio.ndexsearch.rest.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+import org.ndexbio.ndexsearch.rest.model.QueryResults;
+
+/**
+ *
+ * @author churas
+ */
+public class TestJsonStreamingOutput {
+    
+    @Test
+    public void testWrite() throws Exception {
+        QueryResults qr = new QueryResults();
+        qr.setStatus(QueryResults.COMPLETE_STATUS);
+        qr.setQuery(Arrays.asList("gene1", "gene2"));
+        final boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        JsonStreamingOutput jso = new JsonStreamingOutput(qr);
+        jso.write(out);
+        assertFalse(closed[0]);
+        
+        ObjectMapper mapper = new ObjectMapper();
+        QueryResults res = mapper.readValue(out.toByteArray(), QueryResults.class);
+        assertEquals(QueryResults.COMPLETE_STATUS, res.getStatus());
+        assertEquals(Arrays.asList("gene1", "gene2"), res.getQuery());
+    }
+}
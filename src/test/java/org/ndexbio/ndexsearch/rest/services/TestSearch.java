@@ -2,19 +2,36 @@ package org.ndexbio.ndexsearch.rest.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.notNull;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import org.jboss.resteasy.core.Dispatcher;
+import org.jboss.resteasy.core.SynchronousDispatcher;
+import org.jboss.resteasy.core.SynchronousExecutionContext;
 import org.jboss.resteasy.mock.MockDispatcherFactory;
 import org.jboss.resteasy.mock.MockHttpRequest;
 import org.jboss.resteasy.mock.MockHttpResponse;
@@ -31,6 +48,7 @@ import org.ndexbio.ndexsearch.rest.exceptions.SearchException;
 import org.ndexbio.ndexsearch.rest.model.Query;
 import org.ndexbio.ndexsearch.rest.model.QueryResults;
 import org.ndexbio.ndexsearch.rest.model.QueryStatus;
+import org.ndexbio.ndexsearch.rest.model.SourceQueryResults;
 
 /**
  *
@@ -42,6 +60,19 @@ public class TestSearch {
     @Rule
     public TemporaryFolder _folder= new TemporaryFolder();
     
+    /**
+     * Invokes request with an asynchronous context so resource methods
+     * taking an {@link javax.ws.rs.container.AsyncResponse} can be called
+     * via the mock dispatcher
+     */
+    private void invokeAsync(Dispatcher dispatcher,
+            MockHttpRequest request, MockHttpResponse response) {
+        SynchronousExecutionContext context = new SynchronousExecutionContext(
+                (SynchronousDispatcher)dispatcher, request, response);
+        request.setAsynchronousContext(context);
+        dispatcher.invoke(request, response);
+    }
+    
     @Test
     public void testRequestQueryNoSearchEngine() throws Exception {
         File tempDir = _folder.newFolder();
@@ -165,6 +196,97 @@ public class TestSearch {
         }
     }
     
+    @Test
+    public void testRequestQueryBatchSuccess() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "my.conf");
+            FileWriter fw = new FileWriter(confFile);
+            fw.write(App.generateExampleConfiguration());
+            fw.flush();
+            fw.close();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            
+            SearchEngine mockEngine = createMock(SearchEngine.class);
+            Capture<List<Query>> queries = EasyMock.newCapture();
+            expect(mockEngine.queryBatch(EasyMock.capture(queries))).andReturn(Arrays.asList("1", "2"));
+            replay(mockEngine);
+            Configuration.getInstance().setSearchEngine(mockEngine);
+
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new Search());
+
+            MockHttpRequest request = MockHttpRequest.post(Configuration.V_ONE_PATH + "/batch");
+            
+            Query query = new Query();
+            query.setGeneList(Arrays.asList("hi"));
+            Query queryTwo = new Query();
+            queryTwo.setGeneList(Arrays.asList("bye"));
+            request.contentType(MediaType.APPLICATION_JSON);
+            ObjectMapper omappy = new ObjectMapper();
+            request.content(omappy.writeValueAsBytes(Arrays.asList(query, queryTwo)));
+            
+            MockHttpResponse response = new MockHttpResponse();
+            dispatcher.invoke(request, response);
+            assertEquals(202, response.getStatus());
+            ObjectMapper mapper = new ObjectMapper();
+            String[] ids = mapper.readValue(response.getOutput(), String[].class);
+            assertEquals("1", ids[0]);
+            assertEquals("2", ids[1]);
+            assertEquals(2, queries.getValue().size());
+            assertEquals("bye", queries.getValue().get(1).getGeneList().get(0));
+            verify(mockEngine);
+        } finally {
+            _folder.delete();
+            Configuration.getInstance().setSearchEngine(null);
+        }
+    }
+    
+    @Test
+    public void testRequestQueryBatchAsNdjson() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "my.conf");
+            FileWriter fw = new FileWriter(confFile);
+            fw.write(App.generateExampleConfiguration());
+            fw.flush();
+            fw.close();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            
+            SearchEngine mockEngine = createMock(SearchEngine.class);
+            Capture<List<Query>> queries = EasyMock.newCapture();
+            expect(mockEngine.queryBatch(EasyMock.capture(queries))).andThrow(new SearchException("yoyo"));
+            replay(mockEngine);
+            Configuration.getInstance().setSearchEngine(mockEngine);
+
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new Search());
+
+            MockHttpRequest request = MockHttpRequest.post(Configuration.V_ONE_PATH + "/batch");
+            request.contentType(Search.NDJSON);
+            request.content(("{\"geneList\":[\"hi\"]}\n"
+                    + "{\"geneList\":[\"bye\"]}\n"
+                    + "{\"geneList\":[\"what\"]}\n").getBytes(StandardCharsets.UTF_8));
+            
+            MockHttpResponse response = new MockHttpResponse();
+            dispatcher.invoke(request, response);
+            assertEquals(500, response.getStatus());
+            ObjectMapper mapper = new ObjectMapper();
+            ErrorResponse er = mapper.readValue(response.getOutput(),
+                    ErrorResponse.class);
+            assertEquals("Error requesting batch search", er.getMessage());
+            assertEquals("yoyo", er.getDescription());
+            assertEquals(3, queries.getValue().size());
+            assertEquals("what", queries.getValue().get(2).getGeneList().get(0));
+            verify(mockEngine);
+        } finally {
+            _folder.delete();
+            Configuration.getInstance().setSearchEngine(null);
+        }
+    }
+    
     @Test
     public void testRequestQuerySuccessWebURLUnset() throws Exception {
         File tempDir = _folder.newFolder();
@@ -232,7 +354,7 @@ public class TestSearch {
             MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345");
             
             MockHttpResponse response = new MockHttpResponse();
-            dispatcher.invoke(request, response);
+            invokeAsync(dispatcher, request, response);
             assertEquals(500, response.getStatus());
             ObjectMapper mapper = new ObjectMapper();
             ErrorResponse er = mapper.readValue(response.getOutput(),
@@ -267,7 +389,7 @@ public class TestSearch {
             MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345?source=source&start=1&size=2");
             
             MockHttpResponse response = new MockHttpResponse();
-            dispatcher.invoke(request, response);
+            invokeAsync(dispatcher, request, response);
             assertEquals(410, response.getStatus());
             verify(mockEngine);
         } finally {
@@ -300,7 +422,7 @@ public class TestSearch {
             MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345");
             
             MockHttpResponse response = new MockHttpResponse();
-            dispatcher.invoke(request, response);
+            invokeAsync(dispatcher, request, response);
             assertEquals(500, response.getStatus());
             ObjectMapper mapper = new ObjectMapper();
             ErrorResponse er = mapper.readValue(response.getOutput(),
@@ -341,7 +463,7 @@ public class TestSearch {
             MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345");
             
             MockHttpResponse response = new MockHttpResponse();
-            dispatcher.invoke(request, response);
+            invokeAsync(dispatcher, request, response);
             assertEquals(200, response.getStatus());
             ObjectMapper mapper = new ObjectMapper();
             QueryResults res = mapper.readValue(response.getOutput(),
@@ -375,7 +497,7 @@ public class TestSearch {
             MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345/status");
             
             MockHttpResponse response = new MockHttpResponse();
-            dispatcher.invoke(request, response);
+            invokeAsync(dispatcher, request, response);
             assertEquals(500, response.getStatus());
             ObjectMapper mapper = new ObjectMapper();
             ErrorResponse er = mapper.readValue(response.getOutput(),
@@ -410,7 +532,7 @@ public class TestSearch {
             MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345/status");
             
             MockHttpResponse response = new MockHttpResponse();
-            dispatcher.invoke(request, response);
+            invokeAsync(dispatcher, request, response);
             assertEquals(410, response.getStatus());
             verify(mockEngine);
         } finally {
@@ -443,7 +565,7 @@ public class TestSearch {
             MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345/status");
             
             MockHttpResponse response = new MockHttpResponse();
-            dispatcher.invoke(request, response);
+            invokeAsync(dispatcher, request, response);
             assertEquals(500, response.getStatus());
             ObjectMapper mapper = new ObjectMapper();
             ErrorResponse er = mapper.readValue(response.getOutput(),
@@ -484,7 +606,7 @@ public class TestSearch {
             MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345/status");
             
             MockHttpResponse response = new MockHttpResponse();
-            dispatcher.invoke(request, response);
+            invokeAsync(dispatcher, request, response);
             assertEquals(200, response.getStatus());
             ObjectMapper mapper = new ObjectMapper();
             QueryStatus res = mapper.readValue(response.getOutput(),
@@ -499,6 +621,272 @@ public class TestSearch {
         }
     }
     
+    @Test
+    public void testgetQueryStatusWaitsForChange() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "my.conf");
+            FileWriter fw = new FileWriter(confFile);
+            fw.write(App.generateExampleConfiguration());
+            fw.flush();
+            fw.close();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            SearchEngine mockEngine = createMock(SearchEngine.class);
+            CompletableFuture<Void> change = new CompletableFuture<>();
+            QueryStatus qs = new QueryStatus();
+            qs.setProgress(100);
+            expect(mockEngine.getQueryChangeFuture("12345")).andReturn(change);
+            expect(mockEngine.getQueryStatus("12345")).andReturn(qs);
+            replay(mockEngine);
+            Configuration.getInstance().setSearchEngine(mockEngine);
+
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new Search());
+
+            MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345/status?waitMs=30000");
+            
+            MockHttpResponse response = new MockHttpResponse();
+            // mock dispatcher blocks until the response is resumed
+            Thread invoker = new Thread(() -> {
+                invokeAsync(dispatcher, request, response);
+            });
+            invoker.start();
+            
+            // response is not sent until the task changes
+            Thread.sleep(100);
+            assertEquals(0, response.getOutput().length);
+            change.complete(null);
+            invoker.join(10000);
+            assertEquals(200, response.getStatus());
+            ObjectMapper mapper = new ObjectMapper();
+            QueryStatus res = mapper.readValue(response.getOutput(),
+                    QueryStatus.class);
+            assertEquals(100, res.getProgress());
+            verify(mockEngine);
+        } finally {
+            _folder.delete();
+            Configuration.getInstance().setSearchEngine(null);
+        }
+    }
+    
+    @Test
+    public void testgetQueryResultsWaitTimesOut() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "my.conf");
+            FileWriter fw = new FileWriter(confFile);
+            fw.write(App.generateExampleConfiguration());
+            fw.flush();
+            fw.close();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            SearchEngine mockEngine = createMock(SearchEngine.class);
+            QueryResults qr = new QueryResults();
+            qr.setProgress(50);
+            String[] responderThread = new String[1];
+            expect(mockEngine.getQueryChangeFuture("12345")).andReturn(new CompletableFuture<>());
+            expect(mockEngine.getQueryResults("12345", null, 0, 0)).andAnswer(() -> {
+                responderThread[0] = Thread.currentThread().getName();
+                return qr;
+            });
+            replay(mockEngine);
+            Configuration.getInstance().setSearchEngine(mockEngine);
+
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new Search());
+
+            MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345?waitMs=50");
+            
+            MockHttpResponse response = new MockHttpResponse();
+            invokeAsync(dispatcher, request, response);
+            assertEquals(200, response.getStatus());
+            ObjectMapper mapper = new ObjectMapper();
+            QueryResults res = mapper.readValue(response.getOutput(),
+                    QueryResults.class);
+            assertEquals(50, res.getProgress());
+            assertTrue(responderThread[0].startsWith("search-response-"));
+            verify(mockEngine);
+        } finally {
+            _folder.delete();
+            Configuration.getInstance().setSearchEngine(null);
+        }
+    }
+    
+    @Test
+    public void testgetQueryEventsTaskNotFound() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "my.conf");
+            FileWriter fw = new FileWriter(confFile);
+            fw.write(App.generateExampleConfiguration());
+            fw.flush();
+            fw.close();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            SearchEngine mockEngine = createMock(SearchEngine.class);
+            expect(mockEngine.getQueryStatus("12345")).andReturn(null);
+            replay(mockEngine);
+            Configuration.getInstance().setSearchEngine(mockEngine);
+
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new Search());
+
+            MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345/events");
+
+            MockHttpResponse response = new MockHttpResponse();
+            invokeAsync(dispatcher, request, response);
+            assertEquals(410, response.getStatus());
+            verify(mockEngine);
+        } finally {
+            _folder.delete();
+            Configuration.getInstance().setSearchEngine(null);
+        }
+    }
+
+    @Test
+    public void testgetQueryEventsWithoutServletRequest() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "my.conf");
+            FileWriter fw = new FileWriter(confFile);
+            fw.write(App.generateExampleConfiguration());
+            fw.flush();
+            fw.close();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            SearchEngine mockEngine = createMock(SearchEngine.class);
+            expect(mockEngine.getQueryStatus("12345")).andReturn(new QueryStatus());
+            replay(mockEngine);
+            Configuration.getInstance().setSearchEngine(mockEngine);
+
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new Search());
+
+            MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH + "/12345/events");
+
+            MockHttpResponse response = new MockHttpResponse();
+            invokeAsync(dispatcher, request, response);
+            assertEquals(500, response.getStatus());
+            ObjectMapper mapper = new ObjectMapper();
+            ErrorResponse er = mapper.readValue(response.getOutput(),
+                    ErrorResponse.class);
+            assertEquals("Error streaming query events", er.getMessage());
+            verify(mockEngine);
+        } finally {
+            _folder.delete();
+            Configuration.getInstance().setSearchEngine(null);
+        }
+    }
+
+    /**
+     * Output stream of a response that is always ready to be written to
+     */
+    private static class ReadyOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream _written = new ByteArrayOutputStream();
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            _written.write(b);
+        }
+
+        synchronized String getWritten() {
+            return new String(_written.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testgetQueryEventsStreamsUntilDone() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "my.conf");
+            FileWriter fw = new FileWriter(confFile);
+            fw.write(App.generateExampleConfiguration());
+            fw.flush();
+            fw.close();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            SearchEngine mockEngine = createMock(SearchEngine.class);
+            QueryResults running = new QueryResults();
+            running.setStatus(QueryResults.PROCESSING_STATUS);
+            running.setProgress(0);
+            SourceQueryResults sqr = new SourceQueryResults();
+            sqr.setSourceName("enrichment");
+            sqr.setStatus(QueryResults.PROCESSING_STATUS);
+            running.setSources(Arrays.asList(sqr));
+
+            QueryResults sourceDone = new QueryResults();
+            sourceDone.setStatus(QueryResults.PROCESSING_STATUS);
+            sourceDone.setProgress(0);
+            SourceQueryResults doneSqr = new SourceQueryResults();
+            doneSqr.setSourceName("enrichment");
+            doneSqr.setStatus(QueryResults.COMPLETE_STATUS);
+            doneSqr.setProgress(100);
+            doneSqr.setNumberOfHits(5);
+            sourceDone.setSources(Arrays.asList(doneSqr));
+
+            QueryResults complete = new QueryResults();
+            complete.setStatus(QueryResults.COMPLETE_STATUS);
+            complete.setProgress(100);
+            complete.setNumberOfHits(5);
+
+            expect(mockEngine.getQueryStatus("12345")).andReturn(running);
+            expect(mockEngine.getQueryChangeFuture("12345")).andReturn(CompletableFuture.completedFuture(null));
+            expect(mockEngine.getQueryStatus("12345")).andReturn(sourceDone);
+            expect(mockEngine.getQueryChangeFuture("12345")).andReturn(CompletableFuture.completedFuture(null));
+            expect(mockEngine.getQueryStatus("12345")).andReturn(complete);
+            replay(mockEngine);
+            Configuration.getInstance().setSearchEngine(mockEngine);
+
+            ReadyOutputStream out = new ReadyOutputStream();
+            HttpServletResponse servletResponse = createMock(HttpServletResponse.class);
+            servletResponse.setStatus(200);
+            servletResponse.setContentType(TaskEventStream.SERVER_SENT_EVENTS);
+            servletResponse.setCharacterEncoding("UTF-8");
+            servletResponse.setHeader("Cache-Control", "no-cache");
+            expect(servletResponse.getOutputStream()).andReturn(out);
+            CountDownLatch completed = new CountDownLatch(1);
+            AsyncContext context = createMock(AsyncContext.class);
+            context.setTimeout(0);
+            expect(context.getResponse()).andReturn(servletResponse).times(2);
+            context.addListener(EasyMock.anyObject(AsyncListener.class));
+            context.complete();
+            expectLastCall().andAnswer(() -> {
+                completed.countDown();
+                return null;
+            });
+            HttpServletRequest servletRequest = createMock(HttpServletRequest.class);
+            expect(servletRequest.isAsyncStarted()).andReturn(true);
+            expect(servletRequest.getAsyncContext()).andReturn(context);
+            AsyncResponse asyncResponse = createMock(AsyncResponse.class);
+            replay(servletResponse, context, servletRequest, asyncResponse);
+
+            new Search().getQueryEvents("12345", servletRequest, asyncResponse);
+            assertTrue(completed.await(10, TimeUnit.SECONDS));
+            String[] events = out.getWritten().split("\n\n");
+            assertEquals(3, events.length);
+            assertTrue(events[0].startsWith("event: progress\ndata: {"));
+            assertTrue(events[0].contains("\"sourceName\":\"enrichment\""));
+            assertTrue(events[1].startsWith("event: progress\n"));
+            assertTrue(events[1].contains("\"numberOfHits\":5"));
+            assertTrue(events[2].startsWith("event: done\n"));
+            assertTrue(events[2].contains("\"status\":\"complete\""));
+            verify(mockEngine, servletResponse, context, servletRequest, asyncResponse);
+        } finally {
+            _folder.delete();
+            Configuration.getInstance().setSearchEngine(null);
+        }
+    }
+
     @Test
     public void testDeleteNoSearchEngine() throws Exception {
         File tempDir = _folder.newFolder();
@@ -0,0 +1,136 @@
+package org.ndexbio.ndexsearch.rest.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class TestServletEventSink {
+
+    /**
+     * Output stream whose readiness is controlled by the test
+     */
+    private static class FakeOutputStream extends ServletOutputStream {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        WriteListener listener;
+        boolean ready = true;
+        boolean fail = false;
+        int flushes = 0;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            listener = writeListener;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (fail){
+                throw new IOException("closed");
+            }
+            written.write(b);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        String getWritten() {
+            return new String(written.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private AsyncContext getContext(FakeOutputStream out, boolean expectComplete) throws Exception {
+        ServletResponse response = createMock(ServletResponse.class);
+        expect(response.getOutputStream()).andReturn(out);
+        AsyncContext context = createMock(AsyncContext.class);
+        expect(context.getResponse()).andReturn(response);
+        context.addListener(anyObject(AsyncListener.class));
+        if (expectComplete){
+            context.complete();
+            expectLastCall();
+        }
+        replay(response, context);
+        return context;
+    }
+
+    @Test
+    public void testWritesAndFlushesThenCompletesOnClose() throws Exception {
+        FakeOutputStream out = new FakeOutputStream();
+        AsyncContext context = getContext(out, true);
+        ServletEventSink sink = new ServletEventSink(context);
+        assertTrue(out.listener == sink);
+        assertTrue(sink.send("event: a\n\n"));
+        assertEquals("event: a\n\n", out.getWritten());
+        assertEquals(1, out.flushes);
+        sink.close();
+        assertFalse(sink.send("event: b\n\n"));
+        assertEquals("event: a\n\n", out.getWritten());
+        verify(context);
+    }
+
+    @Test
+    public void testQueuesWhileNotReady() throws Exception {
+        FakeOutputStream out = new FakeOutputStream();
+        AsyncContext context = getContext(out, true);
+        ServletEventSink sink = new ServletEventSink(context);
+        out.ready = false;
+        assertTrue(sink.send("event: a\n\n"));
+        assertTrue(sink.send("event: b\n\n"));
+        sink.close();
+        assertEquals("", out.getWritten());
+
+        // container says response can take more
+        out.ready = true;
+        sink.onWritePossible();
+        assertEquals("event: a\n\nevent: b\n\n", out.getWritten());
+        assertEquals(1, out.flushes);
+        verify(context);
+    }
+
+    @Test
+    public void testWriteErrorClosesSink() throws Exception {
+        FakeOutputStream out = new FakeOutputStream();
+        AsyncContext context = getContext(out, true);
+        ServletEventSink sink = new ServletEventSink(context);
+        out.fail = true;
+        assertFalse(sink.send("event: a\n\n"));
+        assertFalse(sink.send("event: b\n\n"));
+        verify(context);
+    }
+
+    @Test
+    public void testRequestCompletedElsewhere() throws Exception {
+        FakeOutputStream out = new FakeOutputStream();
+        AsyncContext context = getContext(out, false);
+        ServletEventSink sink = new ServletEventSink(context);
+        sink.onComplete(null);
+        assertFalse(sink.send("event: a\n\n"));
+        sink.close();
+        assertEquals("", out.getWritten());
+        verify(context);
+    }
+}
@@ -1,20 +1,26 @@
 package org.ndexbio.ndexsearch.rest.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.FileWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import org.jboss.resteasy.core.Dispatcher;
 import org.jboss.resteasy.mock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.ndexbio.enrichment.rest.model.ErrorResponse;
 import org.ndexbio.ndexsearch.App;
+import org.ndexbio.ndexsearch.rest.engine.SearchEngine;
 
 import org.ndexbio.ndexsearch.rest.model.ServerStatus;
 
@@ -43,6 +49,7 @@ public class TestStatus {
             fw.close();
             Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
             Configuration.reloadConfiguration();
+            Configuration.getInstance().setSearchEngine(null);
             Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
             dispatcher.getRegistry().addSingletonResource(new Status());
 
@@ -60,6 +67,46 @@ public class TestStatus {
         }
     }
     
+    @Test
+    public void testGetSuccessWithEngineMetrics() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "my.conf");
+            FileWriter fw = new FileWriter(confFile);
+            fw.write(App.generateExampleConfiguration());
+            fw.flush();
+            fw.close();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            Map<String, Number> metrics = new LinkedHashMap<>();
+            metrics.put("completedResultsCacheHits", 5L);
+            metrics.put("completedResultsCacheBytes", 1024L);
+            SearchEngine mockEngine = createMock(SearchEngine.class);
+            expect(mockEngine.getMetrics()).andReturn(metrics);
+            replay(mockEngine);
+            Configuration.getInstance().setSearchEngine(mockEngine);
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new Status());
+
+            MockHttpRequest request = MockHttpRequest.get(URIHelper.removeDuplicateSlashes(Configuration.V_ONE_PATH + "/" + Status.STATUS_PATH));
+
+            MockHttpResponse response = new MockHttpResponse();
+            dispatcher.invoke(request, response);
+            assertEquals(200, response.getStatus());
+            JsonNode status = new ObjectMapper().readTree(response.getOutput());
+            assertEquals(ServerStatus.OK_STATUS, status.get("status").asText());
+            assertTrue(status.has("pcDiskFull"));
+            JsonNode metricsNode = status.get(Status.METRICS_FIELD);
+            assertEquals(5, metricsNode.get("completedResultsCacheHits").asLong());
+            assertEquals(1024, metricsNode.get("completedResultsCacheBytes").asLong());
+            assertNull(metricsNode.get("unknown"));
+            verify(mockEngine);
+        } finally {
+            Configuration.getInstance().setSearchEngine(null);
+            _folder.delete();
+        }
+    }
+    
     @Test
     public void testGetError() throws Exception {
         File tempDir = _folder.newFolder();
@@ -0,0 +1,214 @@
+package org.ndexbio.ndexsearch.rest.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.ndexbio.ndexsearch.rest.engine.SearchEngine;
+import org.ndexbio.ndexsearch.rest.model.QueryStatus;
+
+/**
+ *
+ * @author churas
+ */
+public class TestTaskEventStream {
+
+    private ScheduledExecutorService _executor;
+
+    /**
+     * Sink that keeps everything sent
+     */
+    private static class ListSink implements TaskEventStream.EventSink {
+        private final List<String> _sent = new ArrayList<>();
+        private boolean _open = true;
+        private boolean _closed = false;
+
+        @Override
+        public synchronized boolean send(final String text) {
+            if (_open == false){
+                return false;
+            }
+            _sent.add(text);
+            notifyAll();
+            return true;
+        }
+
+        @Override
+        public synchronized void close() {
+            _closed = true;
+            notifyAll();
+        }
+
+        synchronized List<String> getSent() {
+            return new ArrayList<>(_sent);
+        }
+
+        synchronized void disconnect() {
+            _open = false;
+        }
+
+        synchronized boolean waitForClose(long waitMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + waitMs;
+            while (_closed == false && System.currentTimeMillis() < deadline){
+                wait(10);
+            }
+            return _closed;
+        }
+
+        synchronized void waitForSent(int count, long waitMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + waitMs;
+            while (_sent.size() < count && System.currentTimeMillis() < deadline){
+                wait(10);
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        _executor = Executors.newScheduledThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        _executor.shutdownNow();
+    }
+
+    private QueryStatus getStatus(final String status, int progress) {
+        QueryStatus qs = new QueryStatus();
+        qs.setStatus(status);
+        qs.setProgress(progress);
+        return qs;
+    }
+
+    @Test
+    public void testStartWithFinishedTask() throws Exception {
+        SearchEngine mockEngine = createMock(SearchEngine.class);
+        replay(mockEngine);
+        QueryStatus qs = getStatus(QueryStatus.FAILED_STATUS, 100);
+        qs.setMessage("oops");
+        ListSink sink = new ListSink();
+        TaskEventStream stream = new TaskEventStream(mockEngine, "12345", 1000,
+                60000, _executor, sink);
+        stream.start(qs);
+        assertTrue(stream.isClosed());
+        assertTrue(sink.waitForClose(0));
+        List<String> sent = sink.getSent();
+        assertEquals(1, sent.size());
+        assertTrue(sent.get(0).startsWith("event: done\ndata: {"));
+        assertTrue(sent.get(0).contains("\"message\":\"oops\""));
+        assertTrue(sent.get(0).endsWith("}\n\n"));
+        verify(mockEngine);
+    }
+
+    @Test
+    public void testSendsEventsOnChangeUntilDone() throws Exception {
+        SearchEngine mockEngine = createMock(SearchEngine.class);
+        CompletableFuture<Void> firstChange = new CompletableFuture<>();
+        CompletableFuture<Void> secondChange = new CompletableFuture<>();
+        expect(mockEngine.getQueryChangeFuture("12345")).andReturn(firstChange);
+        expect(mockEngine.getQueryStatus("12345")).andReturn(getStatus(QueryStatus.PROCESSING_STATUS, 50));
+        expect(mockEngine.getQueryChangeFuture("12345")).andReturn(secondChange);
+        expect(mockEngine.getQueryStatus("12345")).andReturn(getStatus(QueryStatus.COMPLETE_STATUS, 100));
+        replay(mockEngine);
+        ListSink sink = new ListSink();
+        TaskEventStream stream = new TaskEventStream(mockEngine, "12345", 60000,
+                60000, _executor, sink);
+        stream.start(getStatus(QueryStatus.PROCESSING_STATUS, 0));
+
+        // start returns without waiting for the task
+        assertFalse(stream.isClosed());
+        assertEquals(1, sink.getSent().size());
+        firstChange.complete(null);
+        sink.waitForSent(2, 5000);
+        secondChange.complete(null);
+        assertTrue(sink.waitForClose(5000));
+        List<String> sent = sink.getSent();
+        assertEquals(3, sent.size());
+        assertTrue(sent.get(0).startsWith("event: progress\n"));
+        assertTrue(sent.get(1).startsWith("event: progress\n"));
+        assertTrue(sent.get(1).contains("\"progress\":50"));
+        assertTrue(sent.get(2).startsWith("event: done\n"));
+        assertTrue(stream.isClosed());
+        verify(mockEngine);
+    }
+
+    @Test
+    public void testHeartbeatAndTaskGone() throws Exception {
+        SearchEngine mockEngine = createMock(SearchEngine.class);
+        CompletableFuture<Void> change = new CompletableFuture<>();
+        expect(mockEngine.getQueryChangeFuture("12345")).andReturn(change);
+        expect(mockEngine.getQueryStatus("12345")).andReturn(null);
+        replay(mockEngine);
+        ListSink sink = new ListSink();
+        TaskEventStream stream = new TaskEventStream(mockEngine, "12345", 10,
+                60000, _executor, sink);
+        stream.start(getStatus(QueryStatus.PROCESSING_STATUS, 0));
+        sink.waitForSent(2, 5000);
+        change.complete(null);
+        assertTrue(sink.waitForClose(5000));
+        List<String> sent = sink.getSent();
+        assertTrue(sent.get(0).startsWith("event: progress\n"));
+        assertEquals(":\n\n", sent.get(1));
+        assertEquals("event: gone\ndata: {}\n\n", sent.get(sent.size() - 1));
+        verify(mockEngine);
+    }
+
+    @Test
+    public void testClientDisconnectEndsStream() throws Exception {
+        SearchEngine mockEngine = createMock(SearchEngine.class);
+        expect(mockEngine.getQueryChangeFuture("12345")).andReturn(new CompletableFuture<>());
+        replay(mockEngine);
+        ListSink sink = new ListSink();
+        TaskEventStream stream = new TaskEventStream(mockEngine, "12345", 10,
+                60000, _executor, sink);
+        stream.start(getStatus(QueryStatus.PROCESSING_STATUS, 0));
+        sink.disconnect();
+
+        // next heartbeat notices the client is gone
+        assertTrue(sink.waitForClose(5000));
+        assertTrue(stream.isClosed());
+        verify(mockEngine);
+    }
+
+    @Test
+    public void testStreamEndsAfterMaxDuration() throws Exception {
+        SearchEngine mockEngine = createMock(SearchEngine.class);
+        expect(mockEngine.getQueryChangeFuture("12345")).andReturn(new CompletableFuture<>());
+        replay(mockEngine);
+        ListSink sink = new ListSink();
+        TaskEventStream stream = new TaskEventStream(mockEngine, "12345", 60000,
+                50, _executor, sink);
+        stream.start(getStatus(QueryStatus.PROCESSING_STATUS, 0));
+        assertTrue(sink.waitForClose(5000));
+        assertTrue(stream.isClosed());
+        assertEquals(1, sink.getSent().size());
+        verify(mockEngine);
+    }
+
+    @Test
+    public void testErrorGettingStatusEndsStream() throws Exception {
+        SearchEngine mockEngine = createMock(SearchEngine.class);
+        expect(mockEngine.getQueryChangeFuture("12345")).andReturn(CompletableFuture.completedFuture(null));
+        expect(mockEngine.getQueryStatus(anyString())).andThrow(new RuntimeException("boom"));
+        replay(mockEngine);
+        ListSink sink = new ListSink();
+        TaskEventStream stream = new TaskEventStream(mockEngine, "12345", 60000,
+                60000, _executor, sink);
+        stream.start(getStatus(QueryStatus.PROCESSING_STATUS, 0));
+        assertTrue(sink.waitForClose(5000));
+        assertEquals(1, sink.getSent().size());
+        verify(mockEngine);
+    }
+}